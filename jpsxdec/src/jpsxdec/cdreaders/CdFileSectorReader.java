@@ -43,6 +43,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -90,6 +93,11 @@ public class CdFileSectorReader implements Closeable {
     
     private static final int DEFAULT_SECTOR_BUFFER_COUNT   = 16;
 
+    /** Number of sectors in each memory-mapped chunk of the disc image.
+     * A single mapping is limited to 2GB, so large images are mapped
+     * in several chunks. Chunks always hold whole sectors. */
+    private static final int MAPPED_CHUNK_SECTOR_COUNT     = 65536;
+
     /* ---------------------------------------------------------------------- */
     /* Fields --------------------------------------------------------------- */
     /* ---------------------------------------------------------------------- */
@@ -105,11 +113,25 @@ public class CdFileSectorReader implements Closeable {
     private final int _iSectorCount;
 
     private int _iCachedSectorStart;
+    /** Number of sectors actually in {@link #_bulkReadCache}, which may be
+     * fewer than asked for near the end of the disc image. */
+    private int _iCachedSectorCount;
     private int _iSectorsToCache;
     @CheckForNull
-    private byte[] _abBulkReadCache;
+    private ByteBuffer _bulkReadCache;
     private long _lngCacheFileOffset;
 
+    /** If not null, sectors are read directly from memory-mapped chunks
+     * of the disc image instead of the bulk read cache.
+     * Chunks are mapped the first time one of their sectors is read. */
+    @CheckForNull
+    private MappedByteBuffer[] _aoMappedChunks;
+
+    /** If not null, windows of sectors are read on a background thread
+     * and handed off to the bulk read cache. */
+    @CheckForNull
+    private SectorReadAhead _readAhead;
+
     /* ---------------------------------------------------------------------- */
     /* Constructors --------------------------------------------------------- */
     /* ---------------------------------------------------------------------- */
@@ -264,6 +286,25 @@ public class CdFileSectorReader implements Closeable {
 
     }
 
+    /** Opens another read-only handle to the same disc image.
+     * @see #openCopy() */
+    private CdFileSectorReader(@Nonnull CdFileSectorReader source)
+            throws CdFileNotFoundException
+    {
+        _sourceFile = source._sourceFile;
+        _sectorFactory = source._sectorFactory;
+        _iSectorCount = source._iSectorCount;
+        _iSectorsToCache = source._iSectorsToCache;
+
+        try {
+            _inputFile = new RandomAccessFile(_sourceFile, "r");
+        } catch (FileNotFoundException ex) {
+            throw new CdFileNotFoundException(I.IO_OPENING_FILE_NOT_FOUND_NAME(_sourceFile.getName()), _sourceFile, ex);
+        }
+
+        setMemoryMapped(source.isMemoryMapped());
+    }
+
     private int calculateSectorCount() throws IOException {
         return (int)((_inputFile.length() - _sectorFactory.get1stSectorOffset())
                       / _sectorFactory.getRawSectorSize());
@@ -307,7 +348,23 @@ public class CdFileSectorReader implements Closeable {
     }
 
     public void close() throws IOException {
-        _inputFile.close();
+        if (_aoMappedChunks != null) // let go of the mappings so they can be released
+            Arrays.fill(_aoMappedChunks, null);
+        try {
+            if (_readAhead != null)
+                _readAhead.close();
+        } finally {
+            _inputFile.close();
+        }
+    }
+
+    /** Opens a separate read-only reader of the same disc image with the
+     * same format. The copy has its own file handle and cache so it can be
+     * used on another thread at the same time as this reader.
+     * It will be memory-mapped if this reader is, but never reads ahead.
+     * The caller is responsible for closing the copy. */
+    public @Nonnull CdFileSectorReader openCopy() throws CdFileNotFoundException {
+        return new CdFileSectorReader(this);
     }
 
     //..........................................................................
@@ -342,31 +399,123 @@ public class CdFileSectorReader implements Closeable {
         return _sectorFactory.getTypeDescription();
     }
 
+    /** Selects how sectors are read from the disc image.
+     * When memory-mapped, sectors are created directly over the mapped
+     * file contents without any copying or buffer allocation. This is
+     * much faster when the image is already in the OS file cache,
+     * but uses a lot of address space (which may not be available
+     * on a 32-bit JVM).
+     *<p>
+     * This has no effect on {@link #serialize()}. */
+    public void setMemoryMapped(boolean blnMemoryMapped) {
+        if (blnMemoryMapped) {
+            if (_aoMappedChunks == null) {
+                _aoMappedChunks = new MappedByteBuffer[
+                        (_iSectorCount + MAPPED_CHUNK_SECTOR_COUNT - 1) / MAPPED_CHUNK_SECTOR_COUNT];
+            }
+        } else {
+            _aoMappedChunks = null;
+        }
+    }
+
+    public boolean isMemoryMapped() {
+        return _aoMappedChunks != null;
+    }
+
+    /** Enables reading sectors on a background thread ahead of where they
+     * are being read. This lets disc I/O happen at the same time as
+     * processing the sectors when they are read in order (such as when
+     * indexing or saving). Memory-mapping takes precedence over read-ahead.
+     * @param iQueueDepth       Number of windows to keep read ahead,
+     *                          or 0 to disable read-ahead.
+     * @param iSectorsPerWindow Number of sectors read at a time.
+     */
+    public void setReadAhead(int iQueueDepth, int iSectorsPerWindow) throws IOException {
+        if (_readAhead != null) {
+            SectorReadAhead old = _readAhead;
+            _readAhead = null;
+            _bulkReadCache = null;
+            old.close();
+        }
+        if (iQueueDepth > 0) {
+            _readAhead = new SectorReadAhead(_sourceFile, _sectorFactory.get1stSectorOffset(),
+                                             _sectorFactory.getRawSectorSize(), _iSectorCount,
+                                             iSectorsPerWindow, iQueueDepth);
+            _bulkReadCache = null;
+        }
+    }
+
+    /** Enables read-ahead using the default number of sectors per window.
+     * @see #setReadAhead(int, int) */
+    public void setReadAhead(int iQueueDepth) throws IOException {
+        setReadAhead(iQueueDepth, DEFAULT_SECTOR_BUFFER_COUNT);
+    }
+
+    public boolean isReadAhead() {
+        return _readAhead != null;
+    }
+
+    /** Total milliseconds spent waiting for the read-ahead thread
+     * to provide sectors, or 0 if read-ahead is not enabled. */
+    public long getReadAheadStallTime() {
+        return _readAhead == null ? 0 : _readAhead.getStallTime();
+    }
+
     //..........................................................................
 
     public @Nonnull CdSector getSector(int iSector) throws IOException {
         if (iSector < 0 || iSector >= _iSectorCount)
             throw new IndexOutOfBoundsException("Sector "+iSector+" not in bounds of CD");
 
+        if (_aoMappedChunks != null)
+            return getMappedSector(iSector, _aoMappedChunks);
+
+        if (iSector >= _iCachedSectorStart + _iCachedSectorCount || iSector < _iCachedSectorStart || _bulkReadCache == null) {
+            _bulkReadCache = null; // in case of failure, make sure we aren't left with some invalid cache
+
+            if (_readAhead != null) {
+                SectorReadAhead.Window window = _readAhead.getWindow(iSector);
+                _iCachedSectorStart = window.iStartSector;
+                _iCachedSectorCount = window.iSectorCount;
+                _lngCacheFileOffset = window.lngFileOffset;
+                _bulkReadCache = ByteBuffer.wrap(window.abData);
+            } else {
+                _iCachedSectorStart = iSector;
+                _lngCacheFileOffset = getFilePointer(iSector);
+                _inputFile.seek(_lngCacheFileOffset);
+
+                byte[] abBulkReadCache = new byte[_sectorFactory.getRawSectorSize() * _iSectorsToCache];
+                int iBytesRead = IO.readByteArrayMax(_inputFile, abBulkReadCache, 0, abBulkReadCache.length);
+
+                if (iBytesRead < _sectorFactory.getRawSectorSize())
+                    throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
+                _iCachedSectorCount = iBytesRead / _sectorFactory.getRawSectorSize();
+                _bulkReadCache = ByteBuffer.wrap(abBulkReadCache);
+            }
+        }
+
+        int iOffset = _sectorFactory.getRawSectorSize() * (iSector - _iCachedSectorStart);
 
-        if (iSector >= _iCachedSectorStart + _iSectorsToCache || iSector < _iCachedSectorStart || _abBulkReadCache == null) {
-            _abBulkReadCache = null; // in case of failure, make sure we aren't left with some invalid cache
+        return _sectorFactory.createSector(iSector, _bulkReadCache, iOffset, _lngCacheFileOffset + iOffset);
+    }
 
-            _iCachedSectorStart = iSector;
-            _lngCacheFileOffset = getFilePointer(iSector);
-            _inputFile.seek(_lngCacheFileOffset);
-            
-            byte[] abBulkReadCache = new byte[_sectorFactory.getRawSectorSize() * _iSectorsToCache];
-            int iBytesRead = IO.readByteArrayMax(_inputFile, abBulkReadCache, 0, abBulkReadCache.length);
-            
-            if (iBytesRead < _sectorFactory.getRawSectorSize())
-                throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
-            _abBulkReadCache = abBulkReadCache;
+    private @Nonnull CdSector getMappedSector(int iSector, @Nonnull MappedByteBuffer[] aoMappedChunks)
+            throws IOException
+    {
+        int iChunk = iSector / MAPPED_CHUNK_SECTOR_COUNT;
+        int iChunkStartSector = iChunk * MAPPED_CHUNK_SECTOR_COUNT;
+        MappedByteBuffer chunk = aoMappedChunks[iChunk];
+        if (chunk == null) {
+            int iChunkSectorCount = Math.min(MAPPED_CHUNK_SECTOR_COUNT, _iSectorCount - iChunkStartSector);
+            chunk = _inputFile.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    getFilePointer(iChunkStartSector),
+                    (long)iChunkSectorCount * _sectorFactory.getRawSectorSize());
+            aoMappedChunks[iChunk] = chunk;
         }
 
-        int iOffset = _sectorFactory.getRawSectorSize() * (iSector - _iCachedSectorStart);
+        int iOffset = _sectorFactory.getRawSectorSize() * (iSector - iChunkStartSector);
 
-        return _sectorFactory.createSector(iSector, _abBulkReadCache, iOffset, _lngCacheFileOffset + iOffset);
+        return _sectorFactory.createSector(iSector, chunk, iOffset, getFilePointer(iSector));
     }
 
     //..........................................................................
@@ -388,6 +537,49 @@ public class CdFileSectorReader implements Closeable {
 
         _inputFile.seek(lngOffset);
         _inputFile.write(abRawData);
+
+        if (_readAhead != null) // anything read ahead may now be out of date
+            _readAhead.reset();
+    }
+
+    /** Writes the user data of a range of sectors, rebuilding the
+     * error correction of each one. Each run of consecutive sectors is
+     * written at once, instead of a seek and write for every sector.
+     * Will fail if CD was not opened with write access.
+     * @param aabSrcUserData User data for sectors starting at
+     *                       {@code iStartSector}. Sectors with null
+     *                       are left untouched. */
+    public void writeSectors(int iStartSector, @Nonnull byte[][] aabSrcUserData)
+            throws IOException
+    {
+        int iRawSize = _sectorFactory.getRawSectorSize();
+        int i = 0;
+        while (i < aabSrcUserData.length) {
+            if (aabSrcUserData[i] == null) {
+                i++;
+                continue;
+            }
+            int iRunStart = i;
+            while (i < aabSrcUserData.length && aabSrcUserData[i] != null)
+                i++;
+
+            byte[] abRun = new byte[(i - iRunStart) * iRawSize];
+            for (int j = iRunStart; j < i; j++) {
+                CdSector cdSector = getSector(iStartSector + j);
+                if (cdSector.getCdUserDataSize() != aabSrcUserData[j].length)
+                    throw new IllegalArgumentException("Data to write is not the right size.");
+                byte[] abRawData = cdSector.rebuildRawSector(aabSrcUserData[j]);
+                System.arraycopy(abRawData, 0, abRun, (j - iRunStart) * iRawSize, iRawSize);
+            }
+
+            _inputFile.seek(getFilePointer(iStartSector + iRunStart));
+            _inputFile.write(abRun);
+            // the cached sectors may now be out of date
+            _bulkReadCache = null;
+        }
+
+        if (_readAhead != null) // anything read ahead may now be out of date
+            _readAhead.reset();
     }
 
     //..........................................................................
@@ -407,7 +599,7 @@ public class CdFileSectorReader implements Closeable {
     /* ---------------------------------------------------------------------- */
     
     private interface SectorFactory {
-        @Nonnull CdSector createSector(int iSector, @Nonnull byte[] abSectorBuff, int iOffset, long lngFilePointer);
+        @Nonnull CdSector createSector(int iSector, @Nonnull ByteBuffer sectorBuff, int iOffset, long lngFilePointer);
         @Nonnull ILocalizedMessage getTypeDescription();
         boolean hasSectorHeader();
         long get1stSectorOffset();
@@ -426,8 +618,8 @@ public class CdFileSectorReader implements Closeable {
             _lng1stSectorOffset = lngStartOffset;
         }
 
-        public @Nonnull CdSector createSector(int iSector, @Nonnull byte[] abSectorBuff, int iOffset, long lngFilePointer) {
-            return new CdSector2048(abSectorBuff, iOffset, iSector, lngFilePointer);
+        public @Nonnull CdSector createSector(int iSector, @Nonnull ByteBuffer sectorBuff, int iOffset, long lngFilePointer) {
+            return new CdSector2048(sectorBuff, iOffset, iSector, lngFilePointer);
         }
 
 
@@ -520,8 +712,8 @@ public class CdFileSectorReader implements Closeable {
             _lng1stSectorOffset = lngStartOffset;
         }
 
-        public @Nonnull CdSector createSector(int iSector, @Nonnull byte[] abSectorBuff, int iOffset, long lngFilePointer) {
-            CdSector2336 sector = new CdSector2336(abSectorBuff, iOffset, iSector, lngFilePointer);
+        public @Nonnull CdSector createSector(int iSector, @Nonnull ByteBuffer sectorBuff, int iOffset, long lngFilePointer) {
+            CdSector2336 sector = new CdSector2336(sectorBuff, iOffset, iSector, lngFilePointer);
             return sector;
         }
 
@@ -610,8 +802,8 @@ public class CdFileSectorReader implements Closeable {
             _lng1stSectorOffset = lngStartOffset;
         }
 
-        public @Nonnull CdSector createSector(int iSector, @Nonnull byte[] abSectorBuff, int iOffset, long lngFilePointer) {
-            CdSector2352 sector = new CdSector2352(abSectorBuff, iOffset, iSector, lngFilePointer);
+        public @Nonnull CdSector createSector(int iSector, @Nonnull ByteBuffer sectorBuff, int iOffset, long lngFilePointer) {
+            CdSector2352 sector = new CdSector2352(sectorBuff, iOffset, iSector, lngFilePointer);
             return sector;
         }
 
@@ -37,30 +37,84 @@
 
 package jpsxdec.cdreaders;
 
+import java.nio.ByteBuffer;
 import javax.annotation.Nonnull;
 import jpsxdec.util.ByteArrayFPIS;
-
-/** Represents a single sector on a CD. */
+import jpsxdec.util.ByteSlices;
+
+/** Represents a single sector on a CD.
+ *<p>
+ * The sector data may be backed by a plain byte array or by a region of
+ * a memory-mapped disc image. All access to the backing buffer is done
+ * with absolute reads so the same buffer can be shared by many sectors
+ * (and threads) without copying. */
 public abstract class  CdSector {
 
     protected final int _iSectorIndex;
     /** Byte offset of this sector in the source file. */
     protected final long _lngFilePointer;
+    /** Never read or write the position/limit of this buffer,
+     * only use absolute access. */
     @Nonnull
-    protected final byte[] _abSectorBytes;
-    /** Offset in {@link #_abSectorBytes} where this sector begins. */
+    protected final ByteBuffer _sectorBytes;
+    /** Offset in {@link #_sectorBytes} where this sector begins. */
     protected final int _iByteStartOffset;
 
 
     protected CdSector(@Nonnull byte[] abSectorBytes, int iByteStartOffset,
                        int iSectorIndex, long lngFilePointer)
+    {
+        this(ByteBuffer.wrap(abSectorBytes), iByteStartOffset, iSectorIndex, lngFilePointer);
+    }
+
+    protected CdSector(@Nonnull ByteBuffer sectorBytes, int iByteStartOffset,
+                       int iSectorIndex, long lngFilePointer)
     {
         _iSectorIndex = iSectorIndex;
         _lngFilePointer = lngFilePointer;
-        _abSectorBytes = abSectorBytes;
+        _sectorBytes = sectorBytes;
         _iByteStartOffset = iByteStartOffset;
     }
 
+    /** Copies bytes out of the backing buffer.
+     * @param iBufferPos Absolute position in {@link #_sectorBytes}. */
+    protected void copyBufferBytes(int iBufferPos, @Nonnull byte[] abOut, int iOutPos, int iLength) {
+        if (_sectorBytes.hasArray()) {
+            System.arraycopy(_sectorBytes.array(), _sectorBytes.arrayOffset() + iBufferPos,
+                             abOut, iOutPos, iLength);
+        } else {
+            ByteBuffer dup = _sectorBytes.duplicate();
+            dup.position(iBufferPos);
+            dup.get(abOut, iOutPos, iLength);
+        }
+    }
+
+    /** Adds a range of the backing buffer to the slices without copying it.
+     * @param iBufferPos Absolute position in {@link #_sectorBytes}.
+     * @return false (and nothing is added) if the sector is not backed by
+     *         an array, i.e. it is memory mapped. */
+    protected boolean addBufferSlice(int iBufferPos, int iLength, @Nonnull ByteSlices slices) {
+        if (!_sectorBytes.hasArray())
+            return false;
+        slices.add(_sectorBytes.array(), _sectorBytes.arrayOffset() + iBufferPos, iLength);
+        return true;
+    }
+
+    /** Creates a stream over a range of the backing buffer.
+     * If the sector is backed by an array, the stream will wrap it directly,
+     * otherwise the range is copied (the only time a mapped sector is copied).
+     * @param iBufferPos Absolute position in {@link #_sectorBytes}. */
+    protected @Nonnull ByteArrayFPIS makeBufferStream(int iBufferPos, int iLength, long lngFilePointer) {
+        if (_sectorBytes.hasArray()) {
+            return new ByteArrayFPIS(_sectorBytes.array(), _sectorBytes.arrayOffset() + iBufferPos,
+                                     iLength, lngFilePointer);
+        } else {
+            byte[] ab = new byte[iLength];
+            copyBufferBytes(iBufferPos, ab, 0, iLength);
+            return new ByteArrayFPIS(ab, 0, iLength, lngFilePointer);
+        }
+    }
+
     /**
      * @return The sector index from the start of the file.
      */
@@ -79,6 +133,11 @@ public abstract class  CdSector {
     /** Returns the size of the 'user data' portion of the sector. */
     abstract public int getCdUserDataSize();
 
+    /** Adds a range of the 'user data' to the slices without copying it.
+     * @return false if the sector data can't be referenced directly and
+     *         needs to be copied with {@link #getCdUserDataCopy(int, byte[], int, int)}. */
+    abstract public boolean addCdUserDataSlice(int iSourcePos, int iLength, @Nonnull ByteSlices slices);
+
 
     /** Returns the actual offset in bytes from the start of the file/CD
      * to the start of the sector userdata. */
@@ -103,6 +162,14 @@ public abstract class  CdSector {
      * sector header and error correction data and returns the result. */
     abstract public @Nonnull byte[] rebuildRawSector(@Nonnull byte[] abNewUserData);
 
+    /** Checks the sector's error detection and correction codes against
+     * its data. Only raw 2352 byte sectors have them.
+     * @return 0 if they match or the sector doesn't have any, otherwise
+     *         the errors flags from {@link SectorErrorCorrection#verifySector}. */
+    public int verifyErrorCorrection() {
+        return 0;
+    }
+
     /**
      * @throws UnsupportedOperationException when the sector doesn't have a header.
      */
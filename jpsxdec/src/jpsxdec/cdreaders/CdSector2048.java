@@ -37,8 +37,10 @@
 
 package jpsxdec.cdreaders;
 
+import java.nio.ByteBuffer;
 import javax.annotation.Nonnull;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 
 
 /** 2048 sectors are standard .iso size that excludes any raw header info. */
@@ -47,7 +49,13 @@ public class CdSector2048 extends CdSector {
     public CdSector2048(@Nonnull byte[] abSectorBytes, int iByteStartOffset, 
                         int iSectorIndex, long lngFilePointer)
     {
-        super(abSectorBytes, iByteStartOffset, iSectorIndex, lngFilePointer);
+        this(ByteBuffer.wrap(abSectorBytes), iByteStartOffset, iSectorIndex, lngFilePointer);
+    }
+
+    public CdSector2048(@Nonnull ByteBuffer sectorBytes, int iByteStartOffset,
+                        int iSectorIndex, long lngFilePointer)
+    {
+        super(sectorBytes, iByteStartOffset, iSectorIndex, lngFilePointer);
         // TODO: verify bytes are minimum size
     }
 
@@ -59,7 +67,7 @@ public class CdSector2048 extends CdSector {
     
     public byte readUserDataByte(int i) {
         if (i < 0 || i >= CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1) throw new IndexOutOfBoundsException();
-        return _abSectorBytes[_iByteStartOffset + i];
+        return _sectorBytes.get(_iByteStartOffset + i);
     }
 
     /** Returns copy of the 'user data' portion of the sector. */
@@ -75,14 +83,18 @@ public class CdSector2048 extends CdSector {
         {
             throw new IndexOutOfBoundsException();
         }
-        System.arraycopy(_abSectorBytes, _iByteStartOffset + iSourcePos, 
-                abOut, iOutPos,
-                iLength);
+        copyBufferBytes(_iByteStartOffset + iSourcePos, abOut, iOutPos, iLength);
+    }
+
+    public boolean addCdUserDataSlice(int iSourcePos, int iLength, @Nonnull ByteSlices slices) {
+        if (iSourcePos < 0 || iLength < 0 || iSourcePos + iLength > CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1)
+            throw new IndexOutOfBoundsException();
+        return addBufferSlice(_iByteStartOffset + iSourcePos, iLength, slices);
     }
     
     /** Returns an InputStream of the 'user data' portion of the sector. */
     public @Nonnull ByteArrayFPIS getCdUserDataStream() {
-        return new ByteArrayFPIS(_abSectorBytes, _iByteStartOffset, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1, _lngFilePointer);
+        return makeBufferStream(_iByteStartOffset, CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1, _lngFilePointer);
     }
 
     /** Returns direct reference to the underlying sector data, with raw
@@ -37,10 +37,12 @@
 
 package jpsxdec.cdreaders;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.Misc;
 
 
@@ -64,15 +66,21 @@ public class CdSector2352 extends CdSector {
     // If the user data was 2048, then final [276 bytes] are error correction
 
     private final int _iHeaderSize;
-    /** Offset in {@link #_abSectorBytes} where this sector's user data begins. */
+    /** Offset in {@link #_sectorBytes} where this sector's user data begins. */
     private final int _iUserDataOffset;
     private final int _iUserDataSize;
     
     public CdSector2352(@Nonnull byte[] abSectorBytes, int iByteStartOffset,
                         int iSectorIndex, long lngFilePointer)
     {
-        super(abSectorBytes, iByteStartOffset, iSectorIndex, lngFilePointer);
-        _header = new CdxaHeader(iSectorIndex, abSectorBytes, iByteStartOffset);
+        this(ByteBuffer.wrap(abSectorBytes), iByteStartOffset, iSectorIndex, lngFilePointer);
+    }
+
+    public CdSector2352(@Nonnull ByteBuffer sectorBytes, int iByteStartOffset,
+                        int iSectorIndex, long lngFilePointer)
+    {
+        super(sectorBytes, iByteStartOffset, iSectorIndex, lngFilePointer);
+        _header = new CdxaHeader(iSectorIndex, sectorBytes, iByteStartOffset);
         // TODO: if the sync header is imperfect (but passable), but the subheader is all errors -> it's cd audio
         switch (_header.getType()) {
             case CD_AUDIO:
@@ -87,7 +95,7 @@ public class CdSector2352 extends CdSector {
                 _iUserDataSize = CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1;
                 break;
             default: // mode 2
-                _subHeader = new CdxaSubHeader(iSectorIndex, abSectorBytes, _iByteStartOffset + CdxaHeader.SIZE);
+                _subHeader = new CdxaSubHeader(iSectorIndex, sectorBytes, _iByteStartOffset + CdxaHeader.SIZE);
                 _iHeaderSize = _header.getSize() + _subHeader.getSize();
                 if (_subHeader.getSubMode().getForm() == 1)
                     _iUserDataSize = CdFileSectorReader.SECTOR_USER_DATA_SIZE_FORM1;
@@ -105,7 +113,7 @@ public class CdSector2352 extends CdSector {
     
     public byte readUserDataByte(int i) {
         if (i < 0 || i >= _iUserDataSize) throw new IndexOutOfBoundsException();
-        return _abSectorBytes[_iUserDataOffset + i];
+        return _sectorBytes.get(_iUserDataOffset + i);
     }
 
     /** Returns copy of the 'user data' portion of the sector. */
@@ -121,20 +129,24 @@ public class CdSector2352 extends CdSector {
         {
             throw new IndexOutOfBoundsException();
         }
-        System.arraycopy(_abSectorBytes, _iUserDataOffset + iSourcePos,
-                abOut, iOutPos,
-                iLength);
+        copyBufferBytes(_iUserDataOffset + iSourcePos, abOut, iOutPos, iLength);
+    }
+
+    public boolean addCdUserDataSlice(int iSourcePos, int iLength, @Nonnull ByteSlices slices) {
+        if (iSourcePos < 0 || iLength < 0 || iSourcePos + iLength > _iUserDataSize)
+            throw new IndexOutOfBoundsException();
+        return addBufferSlice(_iUserDataOffset + iSourcePos, iLength, slices);
     }
     
     /** Returns an InputStream of the 'user data' portion of the sector. */
     public @Nonnull ByteArrayFPIS getCdUserDataStream() {
-        return new ByteArrayFPIS(_abSectorBytes, _iUserDataOffset, _iUserDataSize, _lngFilePointer);
+        return makeBufferStream(_iUserDataOffset, _iUserDataSize, _lngFilePointer);
     }
 
     @Override
     public @Nonnull byte[] getRawSectorDataCopy() {
         byte[] ab = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
-        System.arraycopy(_abSectorBytes, _iByteStartOffset, ab, 0, ab.length);
+        copyBufferBytes(_iByteStartOffset, ab, 0, ab.length);
         return ab;
     }
 
@@ -266,6 +278,25 @@ public class CdSector2352 extends CdSector {
         return abRawData;
     }
 
+    @Override
+    public int verifyErrorCorrection() {
+        int iMode, iForm;
+        switch (_header.getType()) {
+            case CD_AUDIO:
+                return 0;
+            case MODE1:
+                iMode = 1;
+                iForm = 1;
+                break;
+            default:
+                iMode = 2;
+                iForm = _subHeader.getSubMode().getForm();
+                break;
+        }
+        return SectorErrorCorrection.verifySector(getRawSectorDataCopy(), 0, iMode, iForm,
+                                                  new byte[SectorErrorCorrection.VERIFY_SCRATCH_SIZE]);
+    }
+
     /**
      * Form 1:
      * <pre>
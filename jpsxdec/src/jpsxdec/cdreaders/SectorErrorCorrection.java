@@ -15,6 +15,7 @@
 */
 package jpsxdec.cdreaders;
 
+import java.util.Arrays;
 import javax.annotation.Nonnull;
 
 /**
@@ -59,99 +60,118 @@ public class SectorErrorCorrection {
         0xE381F801L, 0x7310F900L, 0x72A0FA00L, 0xE231FB01L, 0x71C0FC00L, 0xE151FD01L, 0xE0E1FE01L, 0x7070FF00L,
     };
 
-    private static final short rs_l12_log[/*256*/] = {
-          0,   0,   1,  25,   2,  50,  26, 198,   3, 223,  51, 238,  27, 104, 199,  75,
-          4, 100, 224,  14,  52, 141, 239, 129,  28, 193, 105, 248, 200,   8,  76, 113,
-          5, 138, 101,  47, 225,  36,  15,  33,  53, 147, 142, 218, 240,  18, 130,  69,
-         29, 181, 194, 125, 106,  39, 249, 185, 201, 154,   9, 120,  77, 228, 114, 166,
-          6, 191, 139,  98, 102, 221,  48, 253, 226, 152,  37, 179,  16, 145,  34, 136,
-         54, 208, 148, 206, 143, 150, 219, 189, 241, 210,  19,  92, 131,  56,  70,  64,
-         30,  66, 182, 163, 195,  72, 126, 110, 107,  58,  40,  84, 250, 133, 186,  61,
-        202,  94, 155, 159,  10,  21, 121,  43,  78, 212, 229, 172, 115, 243, 167,  87,
-          7, 112, 192, 247, 140, 128,  99,  13, 103,  74, 222, 237,  49, 197, 254,  24,
-        227, 165, 153, 119,  38, 184, 180, 124,  17,  68, 146, 217,  35,  32, 137,  46,
-         55,  63, 209,  91, 149, 188, 207, 205, 144, 135, 151, 178, 220, 252, 190,  97,
-        242,  86, 211, 171,  20,  42,  93, 158, 132,  60,  57,  83,  71, 109,  65, 162,
-         31,  45,  67, 216, 183, 123, 164, 118, 196,  23,  73, 236, 127,  12, 111, 246,
-        108, 161,  59,  82,  41, 157,  85, 170, 251,  96, 134, 177, 187, 204,  62,  90,
-        203,  89,  95, 176, 156, 169, 160,  81,  11, 245,  22, 235, 122, 117,  44, 215,
-         79, 174, 213, 233, 230, 231, 173, 232, 116, 214, 244, 234, 168,  80,  88, 175,
-    };
-    
-    private static final short rs_l12_alog[/*255*/] = {
-          1,   2,   4,   8,  16,  32,  64, 128,  29,  58, 116, 232, 205, 135,  19,  38,
-         76, 152,  45,  90, 180, 117, 234, 201, 143,   3,   6,  12,  24,  48,  96, 192,
-        157,  39,  78, 156,  37,  74, 148,  53, 106, 212, 181, 119, 238, 193, 159,  35,
-         70, 140,   5,  10,  20,  40,  80, 160,  93, 186, 105, 210, 185, 111, 222, 161,
-         95, 190,  97, 194, 153,  47,  94, 188, 101, 202, 137,  15,  30,  60, 120, 240,
-        253, 231, 211, 187, 107, 214, 177, 127, 254, 225, 223, 163,  91, 182, 113, 226,
-        217, 175,  67, 134,  17,  34,  68, 136,  13,  26,  52, 104, 208, 189, 103, 206,
-        129,  31,  62, 124, 248, 237, 199, 147,  59, 118, 236, 197, 151,  51, 102, 204,
-        133,  23,  46,  92, 184, 109, 218, 169,  79, 158,  33,  66, 132,  21,  42,  84,
-        168,  77, 154,  41,  82, 164,  85, 170,  73, 146,  57, 114, 228, 213, 183, 115,
-        230, 209, 191,  99, 198, 145,  63, 126, 252, 229, 215, 179, 123, 246, 241, 255,
-        227, 219, 171,  75, 150,  49,  98, 196, 149,  55, 110, 220, 165,  87, 174,  65,
-        130,  25,  50, 100, 200, 141,   7,  14,  28,  56, 112, 224, 221, 167,  83, 166,
-         81, 162,  89, 178, 121, 242, 249, 239, 195, 155,  43,  86, 172,  69, 138,   9,
-         18,  36,  72, 144,  61, 122, 244, 245, 247, 243, 251, 235, 203, 139,  11,  22,
-         44,  88, 176, 125, 250, 233, 207, 131,  27,  54, 108, 216, 173,  71, 142,
-    };
-    
-    private static final short DQ[/*2*/][/*43*/] = {
-        {190, 96,250,132,59, 81,159,154,200,  7,111,245,10,20, 41,156,168, 79,173,231,229,171,210,240,17, 67,215, 43,120,  8,199, 74,102,220,251, 95,175, 87,166,113, 75,198,25},
-        { 97,251,133, 60,82,160,155,201,  8,112,246, 11,21,42,157,169, 80,174,232,230,172,211,241, 18,68,216, 44,121,  9,200, 75,103,221,252, 96,176, 88,167,114, 76,199, 26, 1}
-    };
-    private static final short DP[/*2*/][/*24*/] = {
-        {231,229,171,210,240,17, 67,215, 43,120,  8,199, 74,102,220,251, 95,175, 87,166,113, 75,198,25},
-        {230,172,211,241, 18,68,216, 44,121,  9,200, 75,103,221,252, 96,176, 88,167,114, 76,199, 26, 1}
-    };
-    
-    private static final int RS_L12_BITS = 8;
+    /** {@link #EDC_crctable} extended to process 8 bytes at a time
+     * ("slice-by-8"). {@code EDC_SLICES[0]} is the original table, and
+     * {@code EDC_SLICES[k][i]} is the CRC of byte {@code i} followed by
+     * {@code k} zero bytes. */
+    private static final int[][] EDC_SLICES = new int[8][256];
+    static {
+        for (int i = 0; i < 256; i++)
+            EDC_SLICES[0][i] = (int)EDC_crctable[i];
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int iPrev = EDC_SLICES[k-1][i];
+                EDC_SLICES[k][i] = (iPrev >>> 8) ^ EDC_SLICES[0][iPrev & 0xff];
+            }
+        }
+    }
+
+    /** Reed-Solomon lookup tables in GF(2^8) with the CD-ROM polynomial
+     * x^8+x^4+x^3+x^2+1. {@code ECC_F_LUT[i]} is {@code i} multiplied by 2,
+     * and {@code ECC_B_LUT[i ^ ECC_F_LUT[i]] = i} (i.e. divide by 3). */
+    private static final byte[] ECC_F_LUT = new byte[256];
+    private static final byte[] ECC_B_LUT = new byte[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int j = (i << 1) ^ ((i & 0x80) != 0 ? 0x11D : 0);
+            ECC_F_LUT[i] = (byte)j;
+            ECC_B_LUT[i ^ j] = (byte)i;
+        }
+    }
+
+    /** Size of the data covered by the P parity, which starts at the header. */
+    private static final int P_DATA_SIZE = 43 * 24 * 2;
+    /** Size of the data covered by the Q parity, which includes the P parity. */
+    private static final int Q_DATA_SIZE = 4 + 0x800 + 4 + 8 + 43 * 2 * 2;
     private static final int L2_P = 43 * 2 * 2;
     private static final int L2_Q = 26 * 2 * 2;
-    
+
+    /** Offset of the header in a raw sector. */
+    private static final int HEADER_OFFSET = 12;
+    private static final int MODE1_EDC_OFFSET = 0x810;
+    private static final int FORM1_EDC_OFFSET = 0x818;
+    private static final int FORM2_EDC_OFFSET = 0x92C;
+    private static final int ECC_P_OFFSET = 0x81C;
+    private static final int ECC_Q_OFFSET = 0x8C8;
+
+    /** {@link #verifySector} flag: the EDC doesn't match the data. */
+    public static final int EDC_ERROR = 1;
+    /** {@link #verifySector} flag: the P parity doesn't match the data. */
+    public static final int ECC_P_ERROR = 2;
+    /** {@link #verifySector} flag: the Q parity doesn't match the data. */
+    public static final int ECC_Q_ERROR = 4;
+    /** Size needed for the {@code abScratch} of {@link #verifySector}. */
+    public static final int VERIFY_SCRATCH_SIZE = L2_P + L2_Q;
 
     /** Generate sector EDC. It is a 32-but value, unsigned in a long. */
     public static long generateErrorDetectionAndCorrection(@Nonnull byte[] data, 
                                                            int iStart, int iEnd)
     {
-        long edc_i = 0;
-        for (int i = iStart; i < iEnd; i++) {
-            edc_i = EDC_crctable[(int)((edc_i ^ data[i]) & 0xFF)] ^ (edc_i >> 8);
+        int[] t0 = EDC_SLICES[0], t1 = EDC_SLICES[1], t2 = EDC_SLICES[2], t3 = EDC_SLICES[3],
+              t4 = EDC_SLICES[4], t5 = EDC_SLICES[5], t6 = EDC_SLICES[6], t7 = EDC_SLICES[7];
+        int edc = 0;
+        int i = iStart;
+        for (int iEnd8 = iEnd - 7; i < iEnd8; i += 8) {
+            int iLo = edc ^ ((data[i  ] & 0xff)       | (data[i+1] & 0xff) <<  8 |
+                             (data[i+2] & 0xff) << 16 | (data[i+3] & 0xff) << 24);
+            edc = t7[iLo & 0xff] ^ t6[(iLo >>> 8) & 0xff] ^
+                  t5[(iLo >>> 16) & 0xff] ^ t4[iLo >>> 24] ^
+                  t3[data[i+4] & 0xff] ^ t2[data[i+5] & 0xff] ^
+                  t1[data[i+6] & 0xff] ^ t0[data[i+7] & 0xff];
+        }
+        for (; i < iEnd; i++) {
+            edc = t0[(edc ^ data[i]) & 0xff] ^ (edc >>> 8);
         }
 
-        return edc_i;
+        return edc & 0xffffffffL;
+    }
+
+    /** Reed-Solomon product code over {@code iMajorCount * iMinorCount}
+     * bytes of data, XORed into 2 * {@code iMajorCount} bytes of output. */
+    private static void generateErrorCorrectionCode(@Nonnull byte[] data, int data_p,
+                                                    int iMajorCount, int iMinorCount,
+                                                    int iMajorMult, int iMinorInc,
+                                                    @Nonnull byte[] output, int output_p)
+    {
+        int iSize = iMajorCount * iMinorCount;
+        for (int iMajor = 0; iMajor < iMajorCount; iMajor++) {
+            int iIndex = (iMajor >> 1) * iMajorMult + (iMajor & 1);
+            int iEccA = 0, iEccB = 0;
+            for (int iMinor = 0; iMinor < iMinorCount; iMinor++) {
+                int iByte = data[data_p + iIndex] & 0xff;
+                iIndex += iMinorInc;
+                if (iIndex >= iSize)
+                    iIndex -= iSize;
+                iEccA ^= iByte;
+                iEccB ^= iByte;
+                iEccA = ECC_F_LUT[iEccA] & 0xff;
+            }
+            iEccA = ECC_B_LUT[(ECC_F_LUT[iEccA] & 0xff) ^ iEccB] & 0xff;
+            output[output_p + iMajor] ^= (byte)iEccA;
+            output[output_p + iMajor + iMajorCount] ^= (byte)(iEccA ^ iEccB);
+        }
     }
-    
+
     /** Generate sector ECC P.
      * @param data_p Start pointer to {@code data}.
      * @param output_p Start pointer to {@code output}. */
     public static void generateErrorCorrectionCode_P(@Nonnull byte[] data, int data_p, 
                                                      @Nonnull byte[] output, int output_p)
     {
-        assert data.length - data_p >= 43 * 24 * 2;
+        assert data.length - data_p >= P_DATA_SIZE;
         assert output.length - output_p >= L2_P;
 
-        for (int j = 0; j < 43; j++, output_p += 2, data_p += 2) {
-            for (int i = 0; i < 24; i++) {
-                for (int n = 0; n < 2; n++) {
-                    int cdata = data[data_p+ i * 2 * 43 + n] & 0xff;
-                    if (cdata == 0) {
-                        continue;
-                    }
-
-                    int base = rs_l12_log[cdata];
-
-                    for (int t = 0; t < 2; t++) {
-                        int sum = base + DP[t][i];
-                        if (sum >= ((1 << RS_L12_BITS) - 1)) {
-                            sum -= (1 << RS_L12_BITS) - 1;
-                        }
-                        output[output_p+ 43 * 2 * t + n] ^= rs_l12_alog[sum];
-                    }
-                }
-            }
-        }
+        generateErrorCorrectionCode(data, data_p, 43 * 2, 24, 2, 43 * 2, output, output_p);
     }
 
     /** Generate sector ECC Q.
@@ -160,30 +180,85 @@ public class SectorErrorCorrection {
     public static void generateErrorCorrectionCode_Q(@Nonnull byte[] data, int data_p, 
                                                      @Nonnull byte[] output, int output_p)
     {
-        assert data.length - data_p >= 4 + 0x800 + 4 + 8 + L2_P;
+        assert data.length - data_p >= Q_DATA_SIZE;
         assert output.length - output_p >= L2_Q;
 
-        for (int j = 0; j < 26; j++, output_p += 2) {
-            for (int i = 0; i < 43; i++) {
-                for (int n = 0; n < 2; n++) {
-                    int cdata = data[data_p+ (j * 43 * 2 + i * 2 * 44 + n) % (4 + 0x800 + 4 + 8 + L2_P)] & 0xff;
-                    if (cdata == 0) {
-                        continue;
-                    }
-
-                    int base = rs_l12_log[cdata];
-
-                    for (int t = 0; t < 2; t++) {
-                        int sum = base + DQ[t][i];
-                        if (sum >= ((1 << RS_L12_BITS) - 1)) {
-                            sum -= (1 << RS_L12_BITS) - 1;
-                        }
-                        output[output_p+ 26 * 2 * t + n] ^= rs_l12_alog[sum];
-
-                    }
-                }
+        generateErrorCorrectionCode(data, data_p, 26 * 2, 43, 43 * 2, 44 * 2, output, output_p);
+    }
+
+    private static boolean edcMatches(@Nonnull byte[] abSector, int iOffset,
+                                      int iEnd, boolean blnZeroIsUnused)
+    {
+        long lngStored = (abSector[iOffset+iEnd  ] & 0xff)        |
+                         (abSector[iOffset+iEnd+1] & 0xff) <<  8  |
+                         (abSector[iOffset+iEnd+2] & 0xff) << 16  |
+                         (abSector[iOffset+iEnd+3] & 0xffL) << 24;
+        // Form 2 sectors are allowed to skip the EDC
+        if (blnZeroIsUnused && lngStored == 0)
+            return true;
+        int iStart = iEnd == MODE1_EDC_OFFSET ? 0 : 0x10;
+        return lngStored == generateErrorDetectionAndCorrection(abSector, iOffset + iStart, iOffset + iEnd);
+    }
+
+    /** Checks the EDC, and for Mode 1 and Mode 2 Form 1 the ECC P and Q
+     * parity, of a raw 2352 byte sector.
+     * <p>
+     * For Mode 2 the header is temporarily zeroed in {@code abSector} while
+     * the parity is calculated, as the standard requires.
+     * @param iMode 1 or 2.
+     * @param iForm 1 or 2, ignored for Mode 1.
+     * @param abScratch At least {@link #VERIFY_SCRATCH_SIZE} bytes to hold
+     *                  the calculated parity.
+     * @return 0 if everything matches, otherwise any of {@link #EDC_ERROR},
+     *         {@link #ECC_P_ERROR} and {@link #ECC_Q_ERROR}. */
+    public static int verifySector(@Nonnull byte[] abSector, int iOffset,
+                                   int iMode, int iForm, @Nonnull byte[] abScratch)
+    {
+        int iErrors = 0;
+        if (iMode == 2 && iForm == 2) {
+            if (!edcMatches(abSector, iOffset, FORM2_EDC_OFFSET, true))
+                iErrors |= EDC_ERROR;
+            return iErrors;
+        }
+
+        if (!edcMatches(abSector, iOffset, iMode == 1 ? MODE1_EDC_OFFSET : FORM1_EDC_OFFSET, false))
+            iErrors |= EDC_ERROR;
+
+        int iHeader = iOffset + HEADER_OFFSET;
+        byte b0 = 0, b1 = 0, b2 = 0, b3 = 0;
+        if (iMode == 2) {
+            b0 = abSector[iHeader  ]; abSector[iHeader  ] = 0;
+            b1 = abSector[iHeader+1]; abSector[iHeader+1] = 0;
+            b2 = abSector[iHeader+2]; abSector[iHeader+2] = 0;
+            b3 = abSector[iHeader+3]; abSector[iHeader+3] = 0;
+        }
+        try {
+            Arrays.fill(abScratch, 0, L2_P + L2_Q, (byte)0);
+            generateErrorCorrectionCode_P(abSector, iHeader, abScratch, 0);
+            // Q covers the stored P parity, not the calculated one
+            generateErrorCorrectionCode_Q(abSector, iHeader, abScratch, L2_P);
+        } finally {
+            if (iMode == 2) {
+                abSector[iHeader  ] = b0;
+                abSector[iHeader+1] = b1;
+                abSector[iHeader+2] = b2;
+                abSector[iHeader+3] = b3;
+            }
+        }
+
+        for (int i = 0; i < L2_P; i++) {
+            if (abScratch[i] != abSector[iOffset + ECC_P_OFFSET + i]) {
+                iErrors |= ECC_P_ERROR;
+                break;
+            }
+        }
+        for (int i = 0; i < L2_Q; i++) {
+            if (abScratch[L2_P + i] != abSector[iOffset + ECC_Q_OFFSET + i]) {
+                iErrors |= ECC_Q_ERROR;
+                break;
             }
         }
+        return iErrors;
     }
 
 }
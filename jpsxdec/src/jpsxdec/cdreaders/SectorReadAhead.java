@@ -0,0 +1,284 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.i18n.I;
+import jpsxdec.i18n.LocalizedIOException;
+import jpsxdec.util.IO;
+import jpsxdec.util.IOException6;
+
+/** Reads windows of sectors from a disc image on a background thread,
+ * ahead of where the sectors are being consumed.
+ *<p>
+ * The reading thread has its own file handle and fills a bounded queue with
+ * consecutive windows of sectors. As long as the consumer keeps asking for
+ * sectors in order, the disc I/O overlaps with whatever the consumer is
+ * doing with the sectors. If the consumer jumps somewhere else, the queue
+ * is thrown away and reading starts over at the new location.
+ *<p>
+ * Only one thread may consume windows at a time. */
+class SectorReadAhead implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SectorReadAhead.class.getName());
+
+    /** A block of consecutive raw sectors read from the disc image. */
+    static class Window {
+        public final int iStartSector;
+        public final int iSectorCount;
+        public final long lngFileOffset;
+        @CheckForNull
+        public final byte[] abData;
+        /** If there was an error reading this window. */
+        @CheckForNull
+        public final IOException error;
+
+        public Window(int iStartSector, int iSectorCount, long lngFileOffset, @Nonnull byte[] abData) {
+            this.iStartSector = iStartSector;
+            this.iSectorCount = iSectorCount;
+            this.lngFileOffset = lngFileOffset;
+            this.abData = abData;
+            this.error = null;
+        }
+
+        public Window(int iStartSector, @Nonnull IOException error) {
+            this.iStartSector = iStartSector;
+            this.iSectorCount = 0;
+            this.lngFileOffset = -1;
+            this.abData = null;
+            this.error = error;
+        }
+
+        public boolean contains(int iSector) {
+            return iSector >= iStartSector && iSector < iStartSector + iSectorCount;
+        }
+    }
+
+    @Nonnull
+    private final RandomAccessFile _inputFile;
+    private final long _lng1stSectorOffset;
+    private final int _iRawSectorSize;
+    private final int _iSectorCount;
+    private final int _iSectorsPerWindow;
+    private final int _iQueueDepth;
+
+    @Nonnull
+    private final ArrayBlockingQueue<Window> _queue;
+    @CheckForNull
+    private ReaderThread _thread;
+    /** The start sector of the next window that will come out of the queue. */
+    private int _iNextWindowStart;
+
+    /** Total time the consumer has spent waiting for the reading thread. */
+    private long _lngStallNanos = 0;
+
+    public SectorReadAhead(@Nonnull File sourceFile, long lng1stSectorOffset,
+                           int iRawSectorSize, int iSectorCount,
+                           int iSectorsPerWindow, int iQueueDepth)
+            throws IOException
+    {
+        if (iSectorsPerWindow < 1 || iQueueDepth < 1)
+            throw new IllegalArgumentException();
+        _inputFile = new RandomAccessFile(sourceFile, "r");
+        _lng1stSectorOffset = lng1stSectorOffset;
+        _iRawSectorSize = iRawSectorSize;
+        _iSectorCount = iSectorCount;
+        _iSectorsPerWindow = iSectorsPerWindow;
+        _iQueueDepth = iQueueDepth;
+        _queue = new ArrayBlockingQueue<Window>(iQueueDepth);
+    }
+
+    public int getSectorsPerWindow() {
+        return _iSectorsPerWindow;
+    }
+
+    public int getQueueDepth() {
+        return _iQueueDepth;
+    }
+
+    /** Total milliseconds the consumer has been blocked waiting for sectors. */
+    public long getStallTime() {
+        return _lngStallNanos / 1000000;
+    }
+
+    /** Returns the window holding the requested sector, waiting for it
+     * to be read if necessary.
+     * @throws IOException if there was an error reading the window. */
+    public @Nonnull Window getWindow(int iSector) throws IOException {
+        if (iSector < 0 || iSector >= _iSectorCount)
+            throw new IndexOutOfBoundsException("Sector "+iSector+" not in bounds of CD");
+
+        // how far the sector is from what's in the queue
+        if (_thread == null ||
+            iSector < _iNextWindowStart ||
+            iSector >= _iNextWindowStart + _iSectorsPerWindow * _iQueueDepth)
+        {
+            restart(iSector);
+        }
+
+        while (true) {
+            Window window = _queue.poll();
+            if (window == null) {
+                long lngStart = System.nanoTime();
+                try {
+                    window = _queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException6("Interrupted while waiting for sectors", ex);
+                } finally {
+                    _lngStallNanos += System.nanoTime() - lngStart;
+                }
+            }
+
+            if (window.error != null) {
+                // the reading thread is done, make sure it starts over next time
+                stop();
+                throw window.error;
+            }
+
+            _iNextWindowStart = window.iStartSector + window.iSectorCount;
+            if (window.contains(iSector))
+                return window;
+            // otherwise the consumer skipped over this window, so drop it
+        }
+    }
+
+    /** Throws away everything that has been read ahead so the next
+     * {@link #getWindow(int)} will re-read from the disc image.
+     * Necessary after the disc image has been modified. */
+    public void reset() {
+        stop();
+    }
+
+    private void restart(int iStartSector) {
+        stop();
+        _iNextWindowStart = iStartSector;
+        _thread = new ReaderThread(iStartSector);
+        _thread.start();
+    }
+
+    private void stop() {
+        if (_thread != null) {
+            _thread.halt();
+            _thread = null;
+        }
+        _queue.clear();
+    }
+
+    public void close() throws IOException {
+        stop();
+        _inputFile.close();
+    }
+
+    //..........................................................................
+
+    private class ReaderThread extends Thread {
+
+        private final int _iStartSector;
+        private volatile boolean _blnHalt = false;
+
+        public ReaderThread(int iStartSector) {
+            super(SectorReadAhead.class.getSimpleName() + " " + iStartSector);
+            setDaemon(true);
+            _iStartSector = iStartSector;
+        }
+
+        @Override
+        public void run() {
+            int iSector = _iStartSector;
+            try {
+                while (!_blnHalt && iSector < _iSectorCount) {
+                    Window window;
+                    try {
+                        window = read(iSector);
+                    } catch (IOException ex) {
+                        window = new Window(iSector, ex);
+                    }
+                    _queue.put(window);
+                    if (window.error != null)
+                        break;
+                    iSector += window.iSectorCount;
+                }
+            } catch (InterruptedException ex) {
+                // halted while waiting for room in the queue
+            } catch (Throwable ex) {
+                LOG.log(Level.SEVERE, "Unexpected error in read-ahead thread", ex);
+            }
+        }
+
+        private @Nonnull Window read(int iSector) throws IOException {
+            int iSectorsToRead = Math.min(_iSectorsPerWindow, _iSectorCount - iSector);
+            long lngFileOffset = (long)iSector * _iRawSectorSize + _lng1stSectorOffset;
+            byte[] abData = new byte[iSectorsToRead * _iRawSectorSize];
+            // only one reading thread exists at a time so the file handle is safe to use
+            _inputFile.seek(lngFileOffset);
+            int iBytesRead = IO.readByteArrayMax(_inputFile, abData, 0, abData.length);
+            if (iBytesRead < _iRawSectorSize)
+                throw new LocalizedIOException(I.FAILED_TO_READ_1_SECTOR());
+            return new Window(iSector, iBytesRead / _iRawSectorSize, lngFileOffset, abData);
+        }
+
+        /** Stops the thread and waits for it to finish, even if interrupted,
+         * since the next thread will use the same file handle. */
+        public void halt() {
+            _blnHalt = true;
+            interrupt();
+            boolean blnInterrupted = false;
+            while (true) {
+                try {
+                    join();
+                    break;
+                } catch (InterruptedException ex) {
+                    blnInterrupted = true;
+                }
+            }
+            if (blnInterrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.annotation.Nonnull;
+import jpsxdec.util.IO;
+import jpsxdec.util.IOException6;
+
+/** Checks the error detection and correction codes of a range of sectors
+ * in a disc image to find sectors that are corrupted.
+ * Sectors can be checked in parallel, each thread using its own copy of
+ * the {@link CdFileSectorReader}.
+ * @see SectorErrorCorrection#verifySector */
+public class SectorVerifier {
+
+    private static final Logger LOG = Logger.getLogger(SectorVerifier.class.getName());
+
+    /** Number of sectors each thread checks at a time. */
+    private static final int SECTORS_PER_RANGE = 2000;
+
+    /** A sector whose error detection or correction codes don't match. */
+    public static class BadSector {
+        private final int _iSector;
+        private final int _iErrors;
+
+        private BadSector(int iSector, int iErrors) {
+            _iSector = iSector;
+            _iErrors = iErrors;
+        }
+
+        public int getSectorNumber() {
+            return _iSector;
+        }
+
+        public boolean hasEdcError() {
+            return (_iErrors & SectorErrorCorrection.EDC_ERROR) != 0;
+        }
+
+        public boolean hasEccPError() {
+            return (_iErrors & SectorErrorCorrection.ECC_P_ERROR) != 0;
+        }
+
+        public boolean hasEccQError() {
+            return (_iErrors & SectorErrorCorrection.ECC_Q_ERROR) != 0;
+        }
+
+        /** Lists the codes that didn't match, e.g. "EDC ECC-P". */
+        public @Nonnull String getErrorDescription() {
+            StringBuilder sb = new StringBuilder();
+            if (hasEdcError())
+                sb.append("EDC");
+            if (hasEccPError())
+                sb.append(sb.length() > 0 ? " " : "").append("ECC-P");
+            if (hasEccQError())
+                sb.append(sb.length() > 0 ? " " : "").append("ECC-Q");
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "Sector " + _iSector + " " + getErrorDescription();
+        }
+    }
+
+    /** Checks every sector from {@code iStartSector} to
+     * {@code iEndSectorInclusive}.
+     * @param iThreads Number of threads to check on. If 1, the sectors are
+     *                 checked on the calling thread using {@code cd}.
+     * @return The bad sectors in order, empty if there are none. */
+    public static @Nonnull List<BadSector> verify(@Nonnull CdFileSectorReader cd,
+                                                  int iStartSector, int iEndSectorInclusive,
+                                                  int iThreads)
+            throws IOException
+    {
+        if (iThreads <= 1)
+            return verifyRange(cd, iStartSector, iEndSectorInclusive);
+
+        final ArrayList<CdFileSectorReader> readers = new ArrayList<CdFileSectorReader>(iThreads);
+        ExecutorService executor = null;
+        try {
+            for (int i = 0; i < iThreads; i++)
+                readers.add(cd.openCopy());
+
+            executor = Executors.newFixedThreadPool(iThreads, new ThreadFactory() {
+                private final AtomicInteger _threadNumber = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, SectorVerifier.class.getSimpleName() + " " + _threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+            // each thread always uses the same reader
+            final ThreadLocal<CdFileSectorReader> threadReader = new ThreadLocal<CdFileSectorReader>() {
+                private int _iNextReader = 0;
+                @Override
+                protected synchronized CdFileSectorReader initialValue() {
+                    return readers.get(_iNextReader++);
+                }
+            };
+
+            ArrayList<Future<List<BadSector>>> ranges = new ArrayList<Future<List<BadSector>>>();
+            for (int iStart = iStartSector; iStart <= iEndSectorInclusive; iStart += SECTORS_PER_RANGE) {
+                final int iRangeStart = iStart;
+                final int iRangeEnd = Math.min(iStart + SECTORS_PER_RANGE - 1, iEndSectorInclusive);
+                ranges.add(executor.submit(new Callable<List<BadSector>>() {
+                    public List<BadSector> call() throws IOException {
+                        return verifyRange(threadReader.get(), iRangeStart, iRangeEnd);
+                    }
+                }));
+            }
+
+            ArrayList<BadSector> badSectors = new ArrayList<BadSector>();
+            for (Future<List<BadSector>> range : ranges) {
+                try {
+                    badSectors.addAll(range.get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException6("Interrupted while verifying sectors", ex);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException)
+                        throw (IOException)ex.getCause();
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+            return badSectors;
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+            for (CdFileSectorReader reader : readers)
+                IO.closeSilently(reader, LOG);
+        }
+    }
+
+    private static @Nonnull List<BadSector> verifyRange(@Nonnull CdFileSectorReader cd,
+                                                        int iStartSector, int iEndSectorInclusive)
+            throws IOException
+    {
+        ArrayList<BadSector> badSectors = new ArrayList<BadSector>();
+        for (int iSector = iStartSector; iSector <= iEndSectorInclusive; iSector++) {
+            int iErrors = cd.getSector(iSector).verifyErrorCorrection();
+            if (iErrors != 0)
+                badSectors.add(new BadSector(iSector, iErrors));
+        }
+        return badSectors;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cmdline;
+
+import argparser.BooleanHolder;
+import argparser.StringHolder;
+import java.io.IOException;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.i18n.I;
+import jpsxdec.util.ArgParser;
+import jpsxdec.util.FeedbackStream;
+
+/** Universal command-line options for how the disc image is read. */
+class CdReaderArgs {
+
+    @Nonnull
+    private final BooleanHolder _memoryMap;
+    @Nonnull
+    private final StringHolder _readAhead;
+    @Nonnull
+    private final StringHolder _readAheadWindow;
+
+    public CdReaderArgs(@Nonnull ArgParser ap) {
+        _memoryMap = ap.addBoolOption("-mmap");
+        _readAhead = ap.addStringOption("-readahead");
+        _readAheadWindow = ap.addStringOption("-readaheadwindow");
+    }
+
+    /** Configures the disc reader according to the options.
+     * Invalid values are ignored with a warning. */
+    public void apply(@Nonnull CdFileSectorReader cd, @Nonnull FeedbackStream fbs)
+            throws IOException
+    {
+        cd.setMemoryMapped(_memoryMap.value);
+
+        if (_readAhead.value != null) {
+            int iQueueDepth = parsePositive(_readAhead.value);
+            if (iQueueDepth < 0) {
+                fbs.printlnWarn(I.CMD_IGNORING_INVALID_READ_AHEAD(_readAhead.value));
+            } else if (_readAheadWindow.value != null) {
+                int iWindow = parsePositive(_readAheadWindow.value);
+                if (iWindow < 1) {
+                    fbs.printlnWarn(I.CMD_IGNORING_INVALID_READ_AHEAD(_readAheadWindow.value));
+                    cd.setReadAhead(iQueueDepth);
+                } else {
+                    cd.setReadAhead(iQueueDepth, iWindow);
+                }
+            } else {
+                cd.setReadAhead(iQueueDepth);
+            }
+        }
+    }
+
+    /** @return the parsed number, or -1 if invalid. */
+    private static int parsePositive(@Nonnull String s) {
+        try {
+            int i = Integer.parseInt(s);
+            return i < 0 ? -1 : i;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
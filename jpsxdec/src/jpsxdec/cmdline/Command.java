@@ -40,12 +40,18 @@ package jpsxdec.cmdline;
 import argparser.StringHolder;
 import java.io.File;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.indexing.DiscIndex;
+import jpsxdec.indexing.DiscProfile;
+import jpsxdec.indexing.DiscProfiles;
+import jpsxdec.indexing.IndexCache;
+import jpsxdec.indexing.IndexCheckpoint;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.FeedbackStream;
@@ -53,6 +59,9 @@ import jpsxdec.util.UserFriendlyLogger;
 
 
 public abstract class Command {
+
+    private static final Logger LOG = Logger.getLogger(Command.class.getName());
+
     @Nonnull
     private final String[] _asFlags;
 
@@ -68,16 +77,34 @@ public abstract class Command {
     @Nonnull
     private StringHolder inputFileArg, indexFileArg;
     @Nonnull
+    private CdReaderArgs cdReaderArgs;
+    /** Number of threads requested with -threads, at least 1. */
+    protected int _iThreads;
+    /** Null if -fullscan was used. */
+    @CheckForNull
+    private DiscProfiles _profiles;
+    /** Null unless -indexcache was used. */
+    @CheckForNull
+    private IndexCache _indexCache;
+    @Nonnull
     protected FeedbackStream _fbs;
 
     final public Command init(@Nonnull ArgParser ap,
                               @Nonnull StringHolder inputFileArg,
                               @Nonnull StringHolder indexFileArg,
+                              @Nonnull CdReaderArgs cdReaderArgs,
+                              int iThreads,
+                              @CheckForNull DiscProfiles profiles,
+                              @CheckForNull IndexCache indexCache,
                               @Nonnull FeedbackStream fbs)
     {
         _receiver = ap.addStringOption(_asFlags);
         this.inputFileArg = inputFileArg;
         this.indexFileArg = indexFileArg;
+        this.cdReaderArgs = cdReaderArgs;
+        _iThreads = iThreads;
+        _profiles = profiles;
+        _indexCache = indexCache;
         _fbs = fbs;
         return this;
     }
@@ -98,7 +125,7 @@ public abstract class Command {
 
     protected @Nonnull CdFileSectorReader getCdReader() throws CommandLineException {
         if (inputFileArg.value != null) {
-            return CommandLine.loadDisc(inputFileArg.value, _fbs);
+            return CommandLine.loadDisc(inputFileArg.value, cdReaderArgs, _fbs);
         } else if (indexFileArg.value != null) {
             _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
             DiscIndex index;
@@ -113,6 +140,7 @@ public abstract class Command {
                 log.close();
             }
             _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+            applyCdReaderArgs(index.getSourceCd());
             return index.getSourceCd();
         }
         throw new CommandLineException(I.CMD_DISC_FILE_REQUIRED());
@@ -123,7 +151,7 @@ public abstract class Command {
         final DiscIndex index;
         if (indexFileArg.value != null) {
             if (inputFileArg.value != null) {
-                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, _fbs);
+                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, cdReaderArgs, _fbs);
                 File idxFile = new File(indexFileArg.value);
                 if (idxFile.exists()) {
                     _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
@@ -140,8 +168,10 @@ public abstract class Command {
                     _fbs.println(I.CMD_USING_SRC_FILE(index.getSourceCd().getSourceFile()));
                     _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
                 } else {
-                    index = CommandLine.buildIndex(cd, _fbs);
+                    IndexCheckpoint checkpoint = IndexCheckpoint.forIndexFile(idxFile);
+                    index = CommandLine.buildIndex(cd, _iThreads, _profiles, checkpoint, _fbs);
                     CommandLine.saveIndex(index, indexFileArg.value, _fbs);
+                    checkpoint.delete();
                 }
             } else {
                 _fbs.println(I.CMD_READING_INDEX_FILE(indexFileArg.value));
@@ -157,11 +187,15 @@ public abstract class Command {
                 }
                 _fbs.println(I.CMD_USING_SRC_FILE(index.getSourceCd().getSourceFile()));
                 _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+                applyCdReaderArgs(index.getSourceCd());
             }
         } else {
             if (inputFileArg.value != null) {
-                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, _fbs);
-                index = CommandLine.buildIndex(cd, _fbs);
+                CdFileSectorReader cd = CommandLine.loadDisc(inputFileArg.value, cdReaderArgs, _fbs);
+                if (_indexCache == null)
+                    index = CommandLine.buildIndex(cd, _iThreads, _profiles, null, _fbs);
+                else
+                    index = getCachedIndex(_indexCache, cd);
             } else {
                 throw new CommandLineException(I.CMD_NEED_INPUT_OR_INDEX());
             }
@@ -169,6 +203,57 @@ public abstract class Command {
         return index;
     }
 
+    /** Loads the index from the cache, or builds the index and adds it
+     * to the cache. Problems with the cache are only warnings. */
+    private @Nonnull DiscIndex getCachedIndex(@Nonnull IndexCache indexCache,
+                                              @Nonnull CdFileSectorReader cd)
+    {
+        // the same profile the index will be built with
+        DiscProfile profile = null;
+        if (_profiles != null) {
+            try {
+                profile = _profiles.find(cd);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Error reading disc serial", ex);
+            }
+        }
+
+        UserFriendlyLogger log = new UserFriendlyLogger(I.INDEX_LOG_FILE_BASE_NAME().getLocalizedMessage());
+        try {
+            DiscIndex index = indexCache.load(cd, profile, log);
+            if (index != null) {
+                _fbs.println(I.CMD_USING_CACHED_INDEX());
+                _fbs.println(I.CMD_ITEMS_LOADED(index.size()));
+                return index;
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, null, ex);
+            _fbs.printlnWarn(I.CMD_INDEX_CACHE_ERROR());
+        } finally {
+            log.close();
+        }
+
+        DiscIndex index = CommandLine.buildIndex(cd, _iThreads, _profiles, null, _fbs);
+        if (index.size() > 0) {
+            try {
+                File entry = indexCache.save(index, profile);
+                _fbs.println(I.CMD_SAVED_INDEX_TO_CACHE(entry));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, null, ex);
+                _fbs.printlnWarn(I.CMD_INDEX_CACHE_ERROR());
+            }
+        }
+        return index;
+    }
+
+    private void applyCdReaderArgs(@Nonnull CdFileSectorReader cd) throws CommandLineException {
+        try {
+            cdReaderArgs.apply(cd, _fbs);
+        } catch (IOException ex) {
+            throw new CommandLineException(I.CMD_DISC_READ_ERROR(), ex);
+        }
+    }
+
     protected @Nonnull File getInFile() throws CommandLineException {
         if (inputFileArg.value == null)
             throw new CommandLineException(I.CMD_INPUT_FILE_REQUIRED());
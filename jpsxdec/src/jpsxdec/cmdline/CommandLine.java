@@ -37,6 +37,7 @@
 
 package jpsxdec.cmdline;
 
+import argparser.BooleanHolder;
 import argparser.StringHolder;
 import java.io.BufferedReader;
 import java.io.File;
@@ -55,6 +56,9 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.MiscResources;
 import jpsxdec.indexing.DiscIndex;
+import jpsxdec.indexing.DiscProfiles;
+import jpsxdec.indexing.IndexCache;
+import jpsxdec.indexing.IndexCheckpoint;
 import jpsxdec.util.ArgParser;
 import jpsxdec.util.ConsoleProgressLogger;
 import jpsxdec.util.FeedbackStream;
@@ -76,18 +80,34 @@ public class CommandLine {
 
         StringHolder inputFileArg = ap.addStringOption("-f","-file");
         StringHolder indexFileArg = ap.addStringOption("-x","-index");
+        CdReaderArgs cdReaderArgs = new CdReaderArgs(ap);
+        StringHolder threadsArg = ap.addStringOption("-threads");
+        BooleanHolder fullScanArg = ap.addBoolOption(false, "-fullscan");
+        StringHolder indexCacheArg = ap.addStringOption("-indexcache");
+        StringHolder indexCacheSizeArg = ap.addStringOption("-indexcachesize");
 
         Command[] aoCommands = {
             new Command_CopySect(),
             new Command_SectorDump(),
+            new Command_Verify(),
             new Command_Static(),
             new Command_Visualize(),
             new Command_Items.Command_Item(),
             new Command_Items.Command_All(),
         };
 
+        ap.match();
+
+        int iThreads = parseThreads(threadsArg.value, Feedback);
+        // null to search the whole disc for everything
+        DiscProfiles profiles = fullScanArg.value ? null : DiscProfiles.load();
+        IndexCache indexCache = null;
+        if (indexCacheArg.value != null)
+            indexCache = new IndexCache(new File(indexCacheArg.value),
+                                        parseIndexCacheSize(indexCacheSizeArg.value, Feedback));
+
         for (Command command : aoCommands) {
-            command.init(ap, inputFileArg, indexFileArg, Feedback);
+            command.init(ap, inputFileArg, indexFileArg, cdReaderArgs, iThreads, profiles, indexCache, Feedback);
         }
 
         ap.match();
@@ -110,7 +130,8 @@ public class CommandLine {
                     printMainHelp(Feedback);
                 } else {
                     if (inputFileArg.value != null && indexFileArg.value != null) {
-                        createAndSaveIndex(inputFileArg.value, indexFileArg.value, Feedback);
+                        createAndSaveIndex(inputFileArg.value, indexFileArg.value,
+                                           cdReaderArgs, iThreads, profiles, Feedback);
                     } else {
                         Feedback.printlnErr(I.CMD_NEED_MAIN_COMMAND());
                         Feedback.printlnErr(I.CMD_TRY_HELP());
@@ -165,6 +186,41 @@ public class CommandLine {
         }
     }
     
+    /** @return the number of threads to use, 1 if not specified or invalid. */
+    private static int parseThreads(@CheckForNull String sThreads,
+                                    @Nonnull FeedbackStream fbs)
+    {
+        if (sThreads == null)
+            return 1;
+        try {
+            int iThreads = Integer.parseInt(sThreads);
+            if (iThreads >= 1)
+                return iThreads;
+        } catch (NumberFormatException ex) {
+        }
+        fbs.printlnWarn(I.CMD_IGNORING_INVALID_THREADS(sThreads));
+        return 1;
+    }
+
+    /** Default size limit of the index cache in MB. */
+    private static final int DEFAULT_INDEX_CACHE_MB = 100;
+
+    /** @return the index cache size limit in bytes. */
+    private static long parseIndexCacheSize(@CheckForNull String sMegabytes,
+                                            @Nonnull FeedbackStream fbs)
+    {
+        if (sMegabytes != null) {
+            try {
+                int iMegabytes = Integer.parseInt(sMegabytes);
+                if (iMegabytes >= 0)
+                    return iMegabytes * 1024L * 1024L;
+            } catch (NumberFormatException ex) {
+            }
+            fbs.printlnWarn(I.CMD_IGNORING_INVALID_INDEX_CACHE_SIZE(sMegabytes));
+        }
+        return DEFAULT_INDEX_CACHE_MB * 1024L * 1024L;
+    }
+
     private static void printMainHelp(@Nonnull FeedbackStream fbs) {
         Iterator<ILocalizedMessage> helpLines = MiscResources.main_cmdline_help();
         while (helpLines.hasNext()) {
@@ -176,19 +232,25 @@ public class CommandLine {
 
     private static void createAndSaveIndex(@CheckForNull String sDiscFile,
                                            @Nonnull String sIndexFile,
+                                           @Nonnull CdReaderArgs cdReaderArgs,
+                                           int iThreads,
+                                           @CheckForNull DiscProfiles profiles,
                                            @Nonnull FeedbackStream Feedback)
             throws CommandLineException
     {
-        CdFileSectorReader cd = loadDisc(sDiscFile, Feedback);
+        CdFileSectorReader cd = loadDisc(sDiscFile, cdReaderArgs, Feedback);
         try {
-            DiscIndex index = buildIndex(cd, Feedback);
+            IndexCheckpoint checkpoint = IndexCheckpoint.forIndexFile(new File(sIndexFile));
+            DiscIndex index = buildIndex(cd, iThreads, profiles, checkpoint, Feedback);
             saveIndex(index, sIndexFile, Feedback);
+            checkpoint.delete();
         } finally {
             IO.closeSilently(cd, LOG);
         }
     }
 
     static @Nonnull CdFileSectorReader loadDisc(@CheckForNull String sDiscFile,
+                                                @Nonnull CdReaderArgs cdReaderArgs,
                                                 @Nonnull FeedbackStream Feedback)
             throws CommandLineException
     {
@@ -197,6 +259,7 @@ public class CommandLine {
         Feedback.println(I.IO_OPENING_FILE(sDiscFile));
         try {
             CdFileSectorReader cd = new CdFileSectorReader(new File(sDiscFile));
+            cdReaderArgs.apply(cd, Feedback);
             Feedback.println(I.CMD_DISC_IDENTIFIED(cd.getTypeDescription()));
             return cd;
         } catch (CdFileNotFoundException ex) {
@@ -206,7 +269,11 @@ public class CommandLine {
         }
     }
 
-    static DiscIndex buildIndex(@Nonnull CdFileSectorReader cd,
+    /** @param profiles null to search the whole disc for everything.
+     *  @param checkpoint null to not save or resume from a checkpoint. */
+    static DiscIndex buildIndex(@Nonnull CdFileSectorReader cd, int iThreads,
+                                @CheckForNull DiscProfiles profiles,
+                                @CheckForNull IndexCheckpoint checkpoint,
                                 @Nonnull FeedbackStream fbs)
     {
         fbs.println(I.CMD_BUILDING_INDEX());
@@ -215,7 +282,7 @@ public class CommandLine {
                 I.INDEX_LOG_FILE_BASE_NAME().getLocalizedMessage(), fbs.getUnderlyingStream());
         try {
             cpl.log(Level.INFO, I.CMD_GUI_INDEXING(cd));
-            index = new DiscIndex(cd, cpl);
+            index = new DiscIndex(cd, iThreads, profiles, checkpoint, cpl);
         } catch (TaskCanceledException ex) {
             throw new RuntimeException("Impossible TaskCanceledException during commandline indexing", ex);
         } finally {
@@ -234,9 +301,14 @@ public class CommandLine {
         } else {
             Feedback.println(I.CMD_SAVING_INDEX(sIndexFile));
             try {
-                index.serializeIndex(new File(sIndexFile));
+                if (sIndexFile.toLowerCase().endsWith(DiscIndex.BINARY_INDEX_EXTENSION))
+                    index.serializeIndexBinary(new File(sIndexFile));
+                else
+                    index.serializeIndex(new File(sIndexFile));
             } catch (FileNotFoundException ex) {
                 throw new CommandLineException(I.IO_OPENING_FILE_NOT_FOUND_NAME(sIndexFile), ex);
+            } catch (IOException ex) {
+                throw new CommandLineException(I.IO_WRITING_FILE_ERROR_NAME(sIndexFile), ex);
             }
         }
     }
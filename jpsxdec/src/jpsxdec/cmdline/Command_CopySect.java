@@ -124,7 +124,7 @@ class Command_CopySect extends Command {
 
     /** Parse a number range. e.g. 5-10
      * @return Array of 2 elements, or null on error. */
-    private static @CheckForNull int[] parseNumberRange(@Nonnull String s) {
+    static @CheckForNull int[] parseNumberRange(@Nonnull String s) {
         int iStart, iEnd;
         String[] split = s.split("-");
         try {
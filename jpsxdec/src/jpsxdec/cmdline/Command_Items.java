@@ -40,15 +40,28 @@ package jpsxdec.cmdline;
 import argparser.BooleanHolder;
 import argparser.StringHolder;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.imageio.ImageIO;
 import javax.sound.sampled.UnsupportedAudioFileException;
+import jpsxdec.cdreaders.CdFileNotFoundException;
+import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemSaverBuilder;
 import jpsxdec.discitems.DiscItemStrVideoStream;
@@ -56,6 +69,7 @@ import jpsxdec.discitems.DiscItemTim;
 import jpsxdec.discitems.DiscItemVideoStream;
 import jpsxdec.discitems.DiscItemXaAudioStream;
 import jpsxdec.discitems.IDiscItemSaver;
+import jpsxdec.discitems.savers.DecoderPool;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.UnlocalizedMessage;
@@ -64,6 +78,7 @@ import jpsxdec.util.ArgParser;
 import jpsxdec.util.BinaryDataNotRecognized;
 import jpsxdec.util.ConsoleProgressLogger;
 import jpsxdec.util.FeedbackStream;
+import jpsxdec.util.IO;
 import jpsxdec.util.LocalizedIncompatibleException;
 import jpsxdec.util.LoggedFailure;
 import jpsxdec.util.TaskCanceledException;
@@ -117,6 +132,7 @@ class Command_Items {
             try {
                 handleItem(item, ap, _fbs, saveLog, replaceLog);
             } finally {
+                DecoderPool.clear();
                 saveLog.close();
                 replaceLog.close();
             }
@@ -138,30 +154,192 @@ class Command_Items {
         public void execute(@Nonnull ArgParser ap) throws CommandLineException {
             DiscIndex discIndex = getIndex();
 
-            boolean blnFound = false;
+            ArrayList<DiscItem> items = new ArrayList<DiscItem>();
+            for (DiscItem item : discIndex) {
+                if (item.getType().getName().equalsIgnoreCase(_sType))
+                    items.add(item);
+            }
+
+            if (items.isEmpty()) {
+                _fbs.println(I.CMD_NO_ITEMS_OF_TYPE(_sType));
+                return;
+            }
+
             ConsoleProgressLogger saveLog = new ConsoleProgressLogger(
                     I.SAVE_LOG_FILE_BASE_NAME().getLocalizedMessage(), _fbs.getUnderlyingStream());
             ConsoleProgressLogger replaceLog = new ConsoleProgressLogger(
                     I.REPLACE_LOG_FILE_BASE_NAME().getLocalizedMessage(), _fbs.getUnderlyingStream());
 
             try {
-                for (DiscItem item : discIndex) {
-                    if (item.getType().getName().equalsIgnoreCase(_sType)) {
-                        blnFound = true;
+                if (_iThreads > 1 && items.size() > 1) {
+                    handleItemsConcurrently(discIndex, items, ap, saveLog, replaceLog);
+                } else {
+                    for (DiscItem item : items) {
                         handleItem(item, ap.copy(), _fbs, saveLog, replaceLog);
                         _fbs.println(I.CMD_ITEM_COMPLETE());
                         _fbs.println();
                     }
                 }
             } finally {
+                DecoderPool.clear();
                 saveLog.close();
                 replaceLog.close();
             }
 
-            if (!blnFound) {
-                _fbs.println(I.CMD_NO_ITEMS_OF_TYPE(_sType));
-            } else {
-                _fbs.println(I.CMD_ALL_ITEMS_COMPLETE());
+            _fbs.println(I.CMD_ALL_ITEMS_COMPLETE());
+        }
+
+        /** Handles the items on up to {@link #_iThreads} threads. Each thread
+         * has its own reader of the disc image and copy of the index.
+         * The console and log output of each item is held until the item is
+         * done, then written in index order. Unlike handling the items one
+         * at a time, a failed item doesn't stop the others, but the command
+         * still fails at the end. */
+        private void handleItemsConcurrently(@Nonnull DiscIndex discIndex,
+                                             @Nonnull List<DiscItem> items,
+                                             @Nonnull ArgParser ap,
+                                             @Nonnull ConsoleProgressLogger saveLog,
+                                             @Nonnull ConsoleProgressLogger replaceLog)
+                throws CommandLineException
+        {
+            int iThreads = Math.min(_iThreads, items.size());
+            ArrayList<CdFileSectorReader> cdCopies = new ArrayList<CdFileSectorReader>(iThreads);
+            BlockingQueue<DiscIndex> indexCopies = new LinkedBlockingQueue<DiscIndex>();
+            ExecutorService pool = Executors.newFixedThreadPool(iThreads);
+            try {
+                for (int i = 0; i < iThreads; i++) {
+                    CdFileSectorReader cdCopy;
+                    try {
+                        cdCopy = discIndex.getSourceCd().openCopy();
+                    } catch (CdFileNotFoundException ex) {
+                        throw new CommandLineException(I.CMD_FILE_NOT_FOUND_FILE(ex.getFile()), ex);
+                    }
+                    cdCopies.add(cdCopy);
+                    indexCopies.add(new DiscIndex(discIndex, cdCopy, saveLog));
+                }
+
+                ArrayList<Future<ItemTask>> tasks = new ArrayList<Future<ItemTask>>(items.size());
+                for (DiscItem item : items) {
+                    tasks.add(pool.submit(new ItemTask(item.getIndex(), ap.copy(),
+                                                       indexCopies, _fbs.getLevel())));
+                }
+
+                int iFailedCount = 0;
+                for (Future<ItemTask> future : tasks) {
+                    ItemTask task;
+                    try {
+                        task = future.get();
+                    } catch (InterruptedException ex) {
+                        throw new CommandLineException(ex);
+                    } catch (ExecutionException ex) {
+                        throw new CommandLineException(ex.getCause());
+                    }
+                    task.writeOutput(_fbs, saveLog, replaceLog);
+                    if (task.failed()) {
+                        iFailedCount++;
+                    } else {
+                        _fbs.println(I.CMD_ITEM_COMPLETE());
+                    }
+                    _fbs.println();
+                }
+
+                if (iFailedCount > 0)
+                    throw new CommandLineException(I.CMD_ITEMS_FAILED(iFailedCount, items.size()));
+            } finally {
+                pool.shutdownNow();
+                for (CdFileSectorReader cdCopy : cdCopies) {
+                    IO.closeSilently(cdCopy, LOG);
+                }
+            }
+        }
+    }
+
+    /** Handles one item of {@link Command_All} on a pool thread using
+     * whichever copy of the index is free, buffering all its output. */
+    private static class ItemTask implements Callable<ItemTask> {
+
+        private final int _iItemIndex;
+        @Nonnull
+        private final ArgParser _ap;
+        @Nonnull
+        private final BlockingQueue<DiscIndex> _indexCopies;
+        private final int _iVerboseLevel;
+
+        private final ByteArrayOutputStream _console = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream _saveLog = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream _replaceLog = new ByteArrayOutputStream();
+        private boolean _blnFailed = false;
+
+        public ItemTask(int iItemIndex, @Nonnull ArgParser ap,
+                        @Nonnull BlockingQueue<DiscIndex> indexCopies, int iVerboseLevel)
+        {
+            _iItemIndex = iItemIndex;
+            _ap = ap;
+            _indexCopies = indexCopies;
+            _iVerboseLevel = iVerboseLevel;
+        }
+
+        public @Nonnull ItemTask call() throws InterruptedException {
+            DiscIndex index = _indexCopies.take();
+            try {
+                PrintStream console = new PrintStream(_console, true);
+                FeedbackStream fbs = new FeedbackStream(console, _iVerboseLevel);
+                ConsoleProgressLogger saveLog = new ConsoleProgressLogger(
+                        I.SAVE_LOG_FILE_BASE_NAME().getLocalizedMessage(), console, utf8(_saveLog));
+                ConsoleProgressLogger replaceLog = new ConsoleProgressLogger(
+                        I.REPLACE_LOG_FILE_BASE_NAME().getLocalizedMessage(), console, utf8(_replaceLog));
+                try {
+                    DiscItem item = index.getByIndex(_iItemIndex);
+                    if (item == null)
+                        throw new CommandLineException(I.CMD_DISC_ITEM_NOT_FOUND_NUM(_iItemIndex));
+                    handleItem(item, _ap, fbs, saveLog, replaceLog);
+                } catch (CommandLineException ex) {
+                    _blnFailed = true;
+                    ILocalizedMessage msg = ex.getSourceMessage();
+                    if (msg == null) {
+                        LOG.log(Level.SEVERE, null, ex);
+                    } else {
+                        msg.logEnglish(LOG, Level.SEVERE, ex);
+                        fbs.printlnErr(msg);
+                    }
+                } finally {
+                    saveLog.close();
+                    replaceLog.close();
+                    console.flush();
+                }
+            } finally {
+                _indexCopies.add(index);
+            }
+            return this;
+        }
+
+        public boolean failed() {
+            return _blnFailed;
+        }
+
+        /** Writes the buffered output to the real console and logs. */
+        public void writeOutput(@Nonnull FeedbackStream fbs,
+                                @Nonnull ConsoleProgressLogger saveLog,
+                                @Nonnull ConsoleProgressLogger replaceLog)
+        {
+            PrintStream ps = fbs.getUnderlyingStream();
+            ps.write(_console.toByteArray(), 0, _console.size());
+            ps.flush();
+            try {
+                saveLog.append(_saveLog.toString("UTF-8"));
+                replaceLog.append(_replaceLog.toString("UTF-8"));
+            } catch (UnsupportedEncodingException ex) {
+                // Every implementation of the Java platform is required to support UTF-8
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private static @Nonnull PrintStream utf8(@Nonnull ByteArrayOutputStream buffer) {
+            try {
+                return new PrintStream(buffer, true, "UTF-8");
+            } catch (UnsupportedEncodingException ex) {
+                // Every implementation of the Java platform is required to support UTF-8
+                throw new RuntimeException(ex);
             }
         }
     }
@@ -314,6 +492,7 @@ class Command_Items {
 
         long lngStart, lngEnd;
         lngStart = System.currentTimeMillis();
+        long lngStallStart = item.getSourceCd().getReadAheadStallTime();
         try {
             cpl.log(Level.INFO, new UnlocalizedMessage(item.getSourceCd().toString()));
             cpl.log(Level.INFO, new UnlocalizedMessage(item.toString()));
@@ -324,6 +503,12 @@ class Command_Items {
         }
         lngEnd = System.currentTimeMillis();
         fbs.println(I.PROCESS_TIME((lngEnd - lngStart) / 1000.0));
+        if (item.getSourceCd().isReadAhead()) {
+            ILocalizedMessage stallMsg = I.READ_AHEAD_STALL_TIME(
+                    (item.getSourceCd().getReadAheadStallTime() - lngStallStart) / 1000.0);
+            cpl.log(Level.INFO, stallMsg);
+            fbs.println(stallMsg);
+        }
     }
 
 }
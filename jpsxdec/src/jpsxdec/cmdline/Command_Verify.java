@@ -0,0 +1,110 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cmdline;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.SectorVerifier;
+import jpsxdec.i18n.I;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.util.ArgParser;
+
+
+/** Command to check the error detection and correction codes of sectors
+ * in a disc image. */
+class Command_Verify extends Command {
+
+    public Command_Verify() {
+        super("-verify");
+    }
+    /** null for the whole disc. */
+    @CheckForNull
+    private int[] _aiStartEndSectors;
+
+    protected @CheckForNull ILocalizedMessage validate(@Nonnull String s) {
+        if (s.equalsIgnoreCase("all")) {
+            _aiStartEndSectors = null;
+            return null;
+        }
+        _aiStartEndSectors = Command_CopySect.parseNumberRange(s);
+        if (_aiStartEndSectors == null || _aiStartEndSectors[0] < 0 ||
+            _aiStartEndSectors[0] > _aiStartEndSectors[1])
+        {
+            return I.CMD_SECTOR_RANGE_INVALID(s);
+        } else {
+            return null;
+        }
+    }
+
+    public void execute(@Nonnull ArgParser ap) throws CommandLineException {
+        CdFileSectorReader cdReader = getCdReader();
+        if (!cdReader.hasSectorHeader()) {
+            _fbs.printlnWarn(I.CMD_VERIFY_NO_ERROR_CORRECTION());
+            return;
+        }
+
+        int iStartSector, iEndSector;
+        if (_aiStartEndSectors == null) {
+            iStartSector = 0;
+            iEndSector = cdReader.getLength() - 1;
+        } else {
+            iStartSector = _aiStartEndSectors[0];
+            iEndSector = Math.min(_aiStartEndSectors[1], cdReader.getLength() - 1);
+        }
+
+        _fbs.println(I.CMD_VERIFYING_SECTORS(iStartSector, iEndSector));
+
+        List<SectorVerifier.BadSector> badSectors;
+        try {
+            badSectors = SectorVerifier.verify(cdReader, iStartSector, iEndSector, _iThreads);
+        } catch (IOException ex) {
+            throw new CommandLineException(I.IO_READING_FROM_FILE_ERROR_NAME(cdReader.getSourceFile().toString()), ex);
+        }
+
+        for (SectorVerifier.BadSector badSector : badSectors) {
+            _fbs.printlnWarn(I.CMD_VERIFY_BAD_SECTOR(badSector.getSectorNumber(),
+                                                     badSector.getErrorDescription()));
+        }
+        _fbs.println(I.CMD_VERIFY_RESULT(badSectors.size(), Math.max(0, iEndSector - iStartSector + 1)));
+    }
+
+}
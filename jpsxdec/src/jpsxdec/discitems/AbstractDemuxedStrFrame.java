@@ -46,6 +46,7 @@ import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.i18n.I;
 import jpsxdec.sectors.IVideoSector;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.LocalizedIncompatibleException;
 import jpsxdec.util.LoggedFailure;
 import jpsxdec.util.ILocalizedLogger;
@@ -182,6 +183,20 @@ public abstract class AbstractDemuxedStrFrame<T extends IVideoSector> implements
         return abBuffer;
     }
 
+    /** Frames with missing chunks are only copied, so the missing chunks
+     * are only reported once by {@link #copyDemuxData(byte[])}. */
+    public boolean addDemuxSlices(@Nonnull ByteSlices slices) {
+        for (IVideoSector chunk : _aoChunks) {
+            if (chunk == null)
+                return false;
+        }
+        for (IVideoSector chunk : _aoChunks) {
+            if (!chunk.addIdentifiedUserDataSlice(slices))
+                return false;
+        }
+        return true;
+    }
+
     public void printSectors(@Nonnull PrintStream ps) {
         for (T vidSector : _aoChunks) {
             ps.println(vidSector);
@@ -194,6 +209,8 @@ public abstract class AbstractDemuxedStrFrame<T extends IVideoSector> implements
                                @Nonnull ILocalizedLogger log)
             throws LoggedFailure
     {
+        // all the sectors are written at once after they're ready
+        byte[][] aabSectorUserData = new byte[_iEndSector - _iStartSector + 1][];
         int iDemuxOfs = 0;
         for (T vidSector : _aoChunks) {
             if (vidSector == null) {
@@ -214,13 +231,14 @@ public abstract class AbstractDemuxedStrFrame<T extends IVideoSector> implements
             // bytes to copy might be 0, which is ok because we
             // still need to write the updated headers
             System.arraycopy(abNewDemux, iDemuxOfs, abSectUserData, iSectorHeaderSize, iBytesToCopy);
-            try {
-                cd.writeSector(vidSector.getSectorNumber(), abSectUserData);
-            } catch (IOException ex) {
-                throw new LoggedFailure(log, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
-            }
+            aabSectorUserData[vidSector.getSectorNumber() - _iStartSector] = abSectUserData;
             iDemuxOfs += iBytesToCopy;
         }
+        try {
+            cd.writeSectors(_iStartSector, aabSectorUserData);
+        } catch (IOException ex) {
+            throw new LoggedFailure(log, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
+        }
     }
 
     @Override
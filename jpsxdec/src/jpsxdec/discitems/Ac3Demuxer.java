@@ -131,5 +131,11 @@ public class Ac3Demuxer {
         _listener = listener;
     }
 
+    /** First sector of the frame that is still being demuxed,
+     * or -1 if there isn't one. */
+    public int getPartialFrameStartSector() {
+        return _currentFrame == null ? -1 : _currentFrame.getStartSector();
+    }
+
 }
 
@@ -46,6 +46,7 @@ import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.i18n.I;
 import jpsxdec.sectors.SectorCrusader;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.ILocalizedLogger;
 import jpsxdec.util.LoggedFailure;
 
@@ -118,6 +119,29 @@ public class DemuxedCrusaderFrame implements IDemuxedFrame {
         return abBuffer;
     }
 
+    /** Missing chunks leave the demux shorter than {@link #getDemuxSize()},
+     * so those frames are only copied. */
+    public boolean addDemuxSlices(@Nonnull ByteSlices slices) {
+        int iLen = _aoSectors[0].getIdentifiedUserDataSize() - _iStartOffset;
+        if (iLen > _iSize)
+            iLen = _iSize;
+        if (!_aoSectors[0].addIdentifiedUserDataSlice(_iStartOffset, iLen, slices))
+            return false;
+        int iPos = iLen;
+        for (int iChunk = 1; iChunk < _aoSectors.length; iChunk++) {
+            SectorCrusader chunk = _aoSectors[iChunk];
+            if (chunk == null)
+                return false;
+            iLen = chunk.getIdentifiedUserDataSize();
+            if (iPos + iLen > _iSize)
+                iLen = _iSize - iPos;
+            if (!chunk.addIdentifiedUserDataSlice(0, iLen, slices))
+                return false;
+            iPos += iLen;
+        }
+        return true;
+    }
+
     public int getChunksInFrame() {
         return _aoSectors.length;
     }
@@ -183,6 +207,8 @@ public class DemuxedCrusaderFrame implements IDemuxedFrame {
 
         // not going to check that the bitstream is of any version
 
+        // all the sectors are written at once after they're ready
+        byte[][] aabSectorUserData = new byte[_iEndSector - _iStartSector + 1][];
         int iDemuxOfs = 0;
         for (int iChunk = 0; iChunk < _aoSectors.length; iChunk++) {
             SectorCrusader vidSector = _aoSectors[iChunk];
@@ -204,16 +230,17 @@ public class DemuxedCrusaderFrame implements IDemuxedFrame {
                 break;
             
             System.arraycopy(abNewDemux, iDemuxOfs, abSectUserData, iCopyTo, iBytesToCopy);
-
-            try {
-                cd.writeSector(vidSector.getSectorNumber(), abSectUserData);
-            } catch (IOException ex) {
-                throw new LoggedFailure(log, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
-            }
+            aabSectorUserData[vidSector.getSectorNumber() - _iStartSector] = abSectUserData;
 
             iDemuxOfs += iBytesToCopy;
         }
 
+        try {
+            cd.writeSectors(_iStartSector, aabSectorUserData);
+        } catch (IOException ex) {
+            throw new LoggedFailure(log, Level.SEVERE, I.IO_WRITING_TO_FILE_ERROR_NAME(cd.getSourceFile().toString()), ex);
+        }
+
     }
 
     @Override
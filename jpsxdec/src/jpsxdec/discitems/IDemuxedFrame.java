@@ -41,6 +41,7 @@ import java.io.PrintStream;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.LoggedFailure;
 import jpsxdec.util.ILocalizedLogger;
 
@@ -71,6 +72,13 @@ public interface IDemuxedFrame {
      * @param abBuffer Optional buffer to copy the demuxed data into. */
     @Nonnull byte[] copyDemuxData(@CheckForNull byte[] abBuffer);
 
+    /** Adds the demuxed data to the slices, referencing the sector data
+     * instead of copying it.
+     * @return false if some of the data can't be referenced and
+     *         {@link #copyDemuxData(byte[])} needs to be used instead
+     *         (the slices may be partly filled). */
+    boolean addDemuxSlices(@Nonnull ByteSlices slices);
+
     void printSectors(@Nonnull PrintStream ps);
 
     void writeToSectors(@Nonnull byte[] abNewDemux,
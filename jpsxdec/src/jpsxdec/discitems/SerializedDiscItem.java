@@ -150,6 +150,15 @@ public class SerializedDiscItem {
         return sb.toString();
     }
     
+    /** Replaces the index and id, so an item that doesn't have them yet
+     * can be serialized in a form that can be read back. */
+    public void setIndexAndId(int iIndex, @Nonnull String sIndexId) {
+        _fields.remove(INDEX_KEY);
+        _fields.remove(ID_KEY);
+        addNumberNoKeyNameCheck(INDEX_KEY, iIndex);
+        addStringNoKeyNameCheck(ID_KEY, sIndexId);
+    }
+
     // =========================================================================
 
     final public void addString(@Nonnull String sFieldName, @Nonnull String sValue) {
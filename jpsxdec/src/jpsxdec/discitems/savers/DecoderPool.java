@@ -0,0 +1,231 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems.savers;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.psxvideo.mdec.MdecDecoder;
+import jpsxdec.psxvideo.mdec.MdecDecoder_double_interpolate;
+import jpsxdec.psxvideo.mdec.MdecDecoder_int;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import jpsxdec.util.player.ObjectPool;
+
+/** Keeps decoders and images that are done being used so saving many
+ * videos of the same size doesn't keep allocating the same large buffers.
+ * Decoders are pooled by quality and dimensions, images by dimensions.
+ * Only a limited number are kept, anything given back beyond that is left
+ * for the garbage collector. Thread safe.
+ * <p>
+ * Borrow through a {@link Lease}, which gives everything back at once
+ * when the work is done. Call {@link #clear()} when done saving so the
+ * pooled buffers don't stay around for the life of the process. */
+public class DecoderPool {
+
+    private static class Key {
+        @CheckForNull
+        public final MdecDecodeQuality quality;
+        public final int iWidth, iHeight;
+
+        public Key(@CheckForNull MdecDecodeQuality quality, int iWidth, int iHeight) {
+            this.quality = quality;
+            this.iWidth = iWidth;
+            this.iHeight = iHeight;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return quality == other.quality &&
+                   iWidth == other.iWidth && iHeight == other.iHeight;
+        }
+
+        @Override
+        public int hashCode() {
+            int iHash = quality == null ? 0 : quality.hashCode();
+            return (iHash * 31 + iWidth) * 31 + iHeight;
+        }
+    }
+
+    private static class DecoderObjectPool extends ObjectPool<MdecDecoder> {
+        @Nonnull
+        private final Key _key;
+        public DecoderObjectPool(@Nonnull Key key) {
+            _key = key;
+        }
+        @Override
+        protected @Nonnull MdecDecoder createNewObject() {
+            return _key.quality.makeDecoder(_key.iWidth, _key.iHeight);
+        }
+    }
+
+    private static class ImageObjectPool extends ObjectPool<BufferedImage> {
+        @Nonnull
+        private final Key _key;
+        public ImageObjectPool(@Nonnull Key key) {
+            _key = key;
+        }
+        @Override
+        protected @Nonnull BufferedImage createNewObject() {
+            return new BufferedImage(_key.iWidth, _key.iHeight, BufferedImage.TYPE_INT_RGB);
+        }
+    }
+
+    /** Most idle decoders, or images, kept for one quality and size.
+     * Enough for every thread decoding frames of the same size. */
+    static final int MAX_IDLE_PER_KEY =
+            Math.max(4, Runtime.getRuntime().availableProcessors());
+    /** Most idle decoders, and separately images, kept for all sizes. */
+    static final int MAX_IDLE_TOTAL = MAX_IDLE_PER_KEY * 4;
+
+    private static final HashMap<Key, DecoderObjectPool> DECODERS =
+            new HashMap<Key, DecoderObjectPool>();
+    private static final HashMap<Key, ImageObjectPool> IMAGES =
+            new HashMap<Key, ImageObjectPool>();
+
+    private static @Nonnull DecoderObjectPool decoderPool(@Nonnull Key key) {
+        synchronized (DECODERS) {
+            DecoderObjectPool pool = DECODERS.get(key);
+            if (pool == null) {
+                pool = new DecoderObjectPool(key);
+                DECODERS.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    private static @Nonnull ImageObjectPool imagePool(@Nonnull Key key) {
+        synchronized (IMAGES) {
+            ImageObjectPool pool = IMAGES.get(key);
+            if (pool == null) {
+                pool = new ImageObjectPool(key);
+                IMAGES.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /** Gives the object back to its pool, unless enough are already idle.
+     * Call while holding the lock on the map of pools. */
+    private static <T> void giveBack(@Nonnull HashMap<Key, ? extends ObjectPool<T>> pools,
+                                     @Nonnull ObjectPool<T> pool, @Nonnull T object)
+    {
+        if (pool.getIdleCount() >= MAX_IDLE_PER_KEY)
+            return;
+        int iTotalIdle = 0;
+        for (ObjectPool<T> other : pools.values()) {
+            iTotalIdle += other.getIdleCount();
+        }
+        if (iTotalIdle < MAX_IDLE_TOTAL)
+            pool.giveBack(object);
+    }
+
+    /** Drops everything pooled. Anything still borrowed can be given back
+     * as usual, it just starts filling the pools again. */
+    public static void clear() {
+        synchronized (DECODERS) {
+            DECODERS.clear();
+        }
+        synchronized (IMAGES) {
+            IMAGES.clear();
+        }
+    }
+
+    /** Puts a decoder back to how {@link MdecDecodeQuality#makeDecoder(int, int)}
+     * made it, except for the contents of its buffers. */
+    private static void reset(@Nonnull MdecDecoder decoder) {
+        decoder.setQuantizationTable(MdecInputStream.getDefaultPsxQuantMatrixCopy());
+        if (decoder instanceof MdecDecoder_int)
+            ((MdecDecoder_int)decoder).setParallel(null, null);
+        else if (decoder instanceof MdecDecoder_double_interpolate)
+            ((MdecDecoder_double_interpolate)decoder).setResampler(MdecDecoder_double_interpolate.Upsampler.Bicubic);
+    }
+
+    /** Tracks what has been borrowed so it can all be given back when done.
+     * Everything borrowed must no longer be in use when calling
+     * {@link #giveBackAll()}. Anything never given back is simply left for
+     * the garbage collector. */
+    public static class Lease {
+
+        private final ArrayList<Key> _decoderKeys = new ArrayList<Key>();
+        private final ArrayList<MdecDecoder> _decoders = new ArrayList<MdecDecoder>();
+        private final ArrayList<BufferedImage> _images = new ArrayList<BufferedImage>();
+
+        /** Borrows a decoder as if made by
+         * {@link MdecDecodeQuality#makeDecoder(int, int)}. */
+        public synchronized @Nonnull MdecDecoder decoder(@Nonnull MdecDecodeQuality quality,
+                                                         int iWidth, int iHeight)
+        {
+            Key key = new Key(quality, iWidth, iHeight);
+            MdecDecoder decoder = decoderPool(key).borrow();
+            _decoderKeys.add(key);
+            _decoders.add(decoder);
+            return decoder;
+        }
+
+        /** Borrows a {@link BufferedImage#TYPE_INT_RGB} image. */
+        public synchronized @Nonnull BufferedImage rgbImage(int iWidth, int iHeight) {
+            BufferedImage bi = imagePool(new Key(null, iWidth, iHeight)).borrow();
+            _images.add(bi);
+            return bi;
+        }
+
+        public synchronized void giveBackAll() {
+            for (int i = 0; i < _decoders.size(); i++) {
+                MdecDecoder decoder = _decoders.get(i);
+                reset(decoder);
+                synchronized (DECODERS) {
+                    giveBack(DECODERS, decoderPool(_decoderKeys.get(i)), decoder);
+                }
+            }
+            for (BufferedImage bi : _images) {
+                synchronized (IMAGES) {
+                    giveBack(IMAGES, imagePool(new Key(null, bi.getWidth(), bi.getHeight())), bi);
+                }
+            }
+            _decoderKeys.clear();
+            _decoders.clear();
+            _images.clear();
+        }
+    }
+
+}
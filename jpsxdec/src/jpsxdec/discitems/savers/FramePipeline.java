@@ -0,0 +1,432 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems.savers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.discitems.FrameNumber;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.psxvideo.mdec.MdecDecoder;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import jpsxdec.util.ByteSlices;
+import jpsxdec.util.ExposedBAOS;
+import jpsxdec.util.ILocalizedLogger;
+import jpsxdec.util.LoggedFailure;
+
+/** Runs the expensive stages of the {@link VDP} (bitstream uncompressing,
+ * MDEC decoding, image and JPEG encoding) for several frames at once on a
+ * pool of threads.
+ * <p>
+ * Each frame is handed to a {@link FrameWorker}, which processes it on a
+ * pool thread. The saving thread then finishes the frames in the same order
+ * they were received, so frames reach the AVI or list of generated files in
+ * presentation order, and the AVI writer is only ever used by the saving
+ * thread. Messages logged by the workers are held until their frame is
+ * finished so the log reads the same as when saving serially.
+ * <p>
+ * The number of frames being processed is limited to twice the number
+ * of threads. */
+class FramePipeline implements VDP.ISlicedBitstreamListener, Closeable {
+
+    /** Creates a new worker whenever all existing workers are busy. */
+    public interface WorkerFactory {
+        @Nonnull FrameWorker create();
+    }
+
+    /** Processes one frame at a time. A worker is not reused until the saving
+     * thread has finished its frame. */
+    public static abstract class FrameWorker {
+        @Nonnull
+        private final DeferredLog _log = new DeferredLog();
+        /** Copy of the frame's bitstream. */
+        @Nonnull
+        private byte[] _abBitstream = new byte[0];
+
+        /** Log to use in {@link #process(byte[], int, FrameNumber, int)}. */
+        public @Nonnull ILocalizedLogger getLog() {
+            return _log;
+        }
+
+        /** Called on a pool thread. */
+        abstract protected void process(@Nonnull byte[] abBitstream, int iSize,
+                                        @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure;
+
+        /** Called on the saving thread, in frame order, after
+         * {@link #process(byte[], int, FrameNumber, int)} completes. */
+        abstract protected void finish(@Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure;
+    }
+
+    /** Holds log messages so they can be logged later on another thread. */
+    private static class DeferredLog implements ILocalizedLogger {
+
+        private static class Entry {
+            @Nonnull
+            public final Level level;
+            @Nonnull
+            public final ILocalizedMessage msg;
+            @CheckForNull
+            public final Throwable debugException;
+
+            public Entry(@Nonnull Level level, @Nonnull ILocalizedMessage msg,
+                         @CheckForNull Throwable debugException)
+            {
+                this.level = level;
+                this.msg = msg;
+                this.debugException = debugException;
+            }
+        }
+
+        private final ArrayList<Entry> _entries = new ArrayList<Entry>();
+
+        public void log(@Nonnull Level level, @Nonnull ILocalizedMessage msg) {
+            log(level, msg, null);
+        }
+
+        public void log(@Nonnull Level level, @Nonnull ILocalizedMessage msg,
+                        @CheckForNull Throwable debugException)
+        {
+            synchronized (_entries) {
+                _entries.add(new Entry(level, msg, debugException));
+            }
+        }
+
+        /** Logs all the held messages to the log, then forgets them. */
+        public void replay(@Nonnull ILocalizedLogger log) {
+            synchronized (_entries) {
+                for (Entry entry : _entries) {
+                    log.log(entry.level, entry.msg, entry.debugException);
+                }
+                _entries.clear();
+            }
+        }
+    }
+
+    /** A frame being processed. */
+    private static class Pending {
+        @Nonnull
+        public final FrameWorker worker;
+        @Nonnull
+        public final Future<?> future;
+        @Nonnull
+        public final FrameNumber frameNumber;
+        public final int iFrameEndSector;
+
+        public Pending(@Nonnull FrameWorker worker, @Nonnull Future<?> future,
+                       @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+        {
+            this.worker = worker;
+            this.future = future;
+            this.frameNumber = frameNumber;
+            this.iFrameEndSector = iFrameEndSector;
+        }
+    }
+
+    // #########################################################################
+
+    @Nonnull
+    private final WorkerFactory _workerFactory;
+    @Nonnull
+    private final ILocalizedLogger _log;
+    @Nonnull
+    private final ExecutorService _executor;
+    private final int _iMaxFramesInProgress;
+    /** Frames being processed, in the order they were received. */
+    private final LinkedList<Pending> _pending = new LinkedList<Pending>();
+    /** Workers not processing a frame. */
+    private final ArrayList<FrameWorker> _idleWorkers = new ArrayList<FrameWorker>();
+
+    public FramePipeline(@Nonnull WorkerFactory workerFactory, int iThreads,
+                         @Nonnull ILocalizedLogger log)
+    {
+        if (iThreads < 1)
+            throw new IllegalArgumentException("Invalid thread count " + iThreads);
+        _workerFactory = workerFactory;
+        _log = log;
+        _iMaxFramesInProgress = iThreads * 2;
+        _executor = Executors.newFixedThreadPool(iThreads, new ThreadFactory() {
+            private final AtomicInteger _threadNumber = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, FramePipeline.class.getSimpleName() + " " + _threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /** Copies the bitstream and queues it to be processed. If too many
+     * frames are already being processed, first finishes the oldest. */
+    public void bitstream(@Nonnull byte[] abBitstream, int iSize,
+                          @Nonnull final FrameNumber frameNumber, final int iFrameEndSector)
+            throws LoggedFailure
+    {
+        FrameWorker worker = nextWorker(iSize);
+        System.arraycopy(abBitstream, 0, worker._abBitstream, 0, iSize);
+        submit(worker, iSize, frameNumber, iFrameEndSector);
+    }
+
+    /** The slices are copied straight into the worker's buffer. */
+    public void bitstream(@Nonnull ByteSlices bitstream,
+                          @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+            throws LoggedFailure
+    {
+        FrameWorker worker = nextWorker(bitstream.getSize());
+        bitstream.copyTo(0, worker._abBitstream, 0, bitstream.getSize());
+        submit(worker, bitstream.getSize(), frameNumber, iFrameEndSector);
+    }
+
+    /** Waits until another frame can be started, then returns an idle worker
+     * whose buffer can hold the bitstream. */
+    private @Nonnull FrameWorker nextWorker(int iSize) throws LoggedFailure {
+        while (_pending.size() >= _iMaxFramesInProgress)
+            finishNext();
+
+        FrameWorker worker;
+        if (_idleWorkers.isEmpty())
+            worker = _workerFactory.create();
+        else
+            worker = _idleWorkers.remove(_idleWorkers.size() - 1);
+
+        if (worker._abBitstream.length < iSize)
+            worker._abBitstream = new byte[iSize];
+        return worker;
+    }
+
+    private void submit(@Nonnull final FrameWorker worker, final int iBitstreamSize,
+                        @Nonnull final FrameNumber frameNumber, final int iFrameEndSector)
+    {
+        Future<?> future = _executor.submit(new Callable<Object>() {
+            public Object call() throws LoggedFailure {
+                worker.process(worker._abBitstream, iBitstreamSize, frameNumber, iFrameEndSector);
+                return null;
+            }
+        });
+        _pending.add(new Pending(worker, future, frameNumber, iFrameEndSector));
+    }
+
+    /** Waits for the oldest frame to be processed, then finishes it. */
+    private void finishNext() throws LoggedFailure {
+        Pending next = _pending.removeFirst();
+        try {
+            next.future.get();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            next.worker._log.replay(_log);
+            Throwable cause = ex.getCause();
+            if (cause instanceof LoggedFailure)
+                throw (LoggedFailure) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+        next.worker._log.replay(_log);
+        next.worker.finish(next.frameNumber, next.iFrameEndSector);
+        _idleWorkers.add(next.worker);
+    }
+
+    /** Finishes all frames still being processed. */
+    public void flush() throws LoggedFailure {
+        while (!_pending.isEmpty())
+            finishNext();
+    }
+
+    /** If no frames are being processed, so no worker is in use. */
+    public boolean isFinished() {
+        return _pending.isEmpty();
+    }
+
+    /** Stops the threads. Any frames not finished are abandoned. */
+    public void close() {
+        _executor.shutdownNow();
+        _pending.clear();
+    }
+
+    // #########################################################################
+
+    /** Runs a whole {@link VDP} chain that saves each frame to its own file.
+     * The generated files are passed on in frame order. */
+    public static abstract class FileWorker extends FrameWorker
+                                            implements VDP.GeneratedFileListener
+    {
+        @Nonnull
+        private final VDP.GeneratedFileListener _saverListener;
+        private final ArrayList<File> _generatedFiles = new ArrayList<File>();
+        @CheckForNull
+        private VDP.IBitstreamListener _chain;
+
+        public FileWorker(@Nonnull VDP.GeneratedFileListener saverListener) {
+            _saverListener = saverListener;
+        }
+
+        /** Creates the chain this worker will use.
+         * @param log  the chain must log to this.
+         * @param genFileListener  the chain must report files to this. */
+        abstract protected @Nonnull VDP.IBitstreamListener makeChain(
+                @Nonnull ILocalizedLogger log,
+                @Nonnull VDP.GeneratedFileListener genFileListener);
+
+        protected void process(@Nonnull byte[] abBitstream, int iSize,
+                               @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
+            if (_chain == null)
+                _chain = makeChain(getLog(), this);
+            _chain.bitstream(abBitstream, iSize, frameNumber, iFrameEndSector);
+        }
+
+        public void fileGenerated(@Nonnull File f) {
+            _generatedFiles.add(f);
+        }
+
+        protected void finish(@Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+            for (File f : _generatedFiles) {
+                _saverListener.fileGenerated(f);
+            }
+            _generatedFiles.clear();
+        }
+    }
+
+    /** Decodes frames with its own decoder, then the saving thread passes
+     * the decoder to the AVI to read the decoded image. */
+    public static class DecodedWorker extends FrameWorker implements VDP.IDecodedListener {
+        @Nonnull
+        private final VDP.IDecodedListener _output;
+        @Nonnull
+        private final VDP.Bitstream2Mdec _chain;
+        @CheckForNull
+        private MdecDecoder _decoded;
+        @CheckForNull
+        private ILocalizedMessage _errMsg;
+
+        public DecodedWorker(@Nonnull VDP.IDecodedListener output, @Nonnull MdecDecoder decoder) {
+            _output = output;
+            VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(decoder, getLog());
+            mdec2decode.setDecoded(this);
+            _chain = new VDP.Bitstream2Mdec(mdec2decode);
+        }
+
+        protected void process(@Nonnull byte[] abBitstream, int iSize,
+                               @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
+            _decoded = null;
+            _errMsg = null;
+            _chain.bitstream(abBitstream, iSize, frameNumber, iFrameEndSector);
+        }
+
+        public void decoded(@Nonnull MdecDecoder decoder, @Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+            _decoded = decoder;
+        }
+
+        public void error(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+            _errMsg = errMsg;
+        }
+
+        public void assertAcceptsDecoded(@Nonnull MdecDecoder decoder) throws IllegalArgumentException {
+            _output.assertAcceptsDecoded(decoder);
+        }
+
+        protected void finish(@Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
+            if (_errMsg != null)
+                _output.error(_errMsg, frameNumber, iFrameEndSector);
+            else if (_decoded != null)
+                _output.decoded(_decoded, frameNumber, iFrameEndSector);
+        }
+    }
+
+    /** Translates frames to JPEG, then the saving thread writes the JPEG
+     * to the AVI. */
+    public static class MjpegWorker extends FrameWorker implements VDP.IMdecListener {
+        @Nonnull
+        private final VDP.Mdec2MjpegAvi _output;
+        @Nonnull
+        private final jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg _jpegTranslator;
+        @Nonnull
+        private final ExposedBAOS _buffer = new ExposedBAOS();
+        @Nonnull
+        private final VDP.Bitstream2Mdec _chain;
+        @CheckForNull
+        private ILocalizedMessage _errMsg;
+
+        public MjpegWorker(@Nonnull VDP.Mdec2MjpegAvi output, int iWidth, int iHeight) {
+            _output = output;
+            _jpegTranslator = new jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg(iWidth, iHeight);
+            _chain = new VDP.Bitstream2Mdec(this);
+        }
+
+        protected void process(@Nonnull byte[] abBitstream, int iSize,
+                               @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
+            _errMsg = null;
+            _chain.bitstream(abBitstream, iSize, frameNumber, iFrameEndSector);
+        }
+
+        public void mdec(@Nonnull MdecInputStream mdecIn, @Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+            _errMsg = VDP.Mdec2MjpegAvi.toJpeg(_jpegTranslator, mdecIn, frameNumber, _buffer, getLog());
+        }
+
+        public void error(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) {
+            _errMsg = errMsg;
+        }
+
+        protected void finish(@Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
+            if (_errMsg != null)
+                _output.error(_errMsg, frameNumber, iFrameEndSector);
+            else
+                _output.writeJpeg(_buffer.getBuffer(), _buffer.size(), frameNumber, iFrameEndSector);
+        }
+    }
+
+}
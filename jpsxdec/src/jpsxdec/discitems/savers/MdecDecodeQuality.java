@@ -37,6 +37,7 @@
 
 package jpsxdec.discitems.savers;
 
+import java.util.concurrent.ExecutorService;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.i18n.I;
@@ -44,6 +45,8 @@ import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.psxvideo.mdec.MdecDecoder;
 import jpsxdec.psxvideo.mdec.MdecDecoder_double_interpolate;
 import jpsxdec.psxvideo.mdec.MdecDecoder_int;
+import jpsxdec.psxvideo.mdec.idct.AanIDCT_int;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
 import jpsxdec.psxvideo.mdec.idct.PsxMdecIDCT_double;
 import jpsxdec.psxvideo.mdec.idct.PsxMdecIDCT_int;
 import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
@@ -52,8 +55,9 @@ import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
 public enum MdecDecodeQuality {
     LOW(I.QUALITY_FAST_DESCRIPTION(), I.QUALITY_FAST_COMMAND()) {
         public MdecDecoder makeDecoder(int iWidth, int iHeight) {
-            return new MdecDecoder_int(new SimpleIDCT(), iWidth, iHeight);
+            return new MdecDecoder_int(makeIdct_int(), iWidth, iHeight);
         }
+        protected IDCT_int makeIdct_int() { return new SimpleIDCT(); }
     },
     HIGH_PLUS(I.QUALITY_HIGH_DESCRIPTION(), I.QUALITY_HIGH_COMMAND()) {
         public MdecDecoder makeDecoder(int iWidth, int iHeight) {
@@ -63,12 +67,40 @@ public enum MdecDecodeQuality {
     },
     PSX(I.QUALITY_PSX_DESCRIPTION(), I.QUALITY_PSX_COMMAND()) {
         public MdecDecoder makeDecoder(int iWidth, int iHeight) {
-            return new MdecDecoder_int(new PsxMdecIDCT_int(), iWidth, iHeight);
+            return new MdecDecoder_int(makeIdct_int(), iWidth, iHeight);
         }
+        protected IDCT_int makeIdct_int() { return new PsxMdecIDCT_int(); }
+    },
+    FAST(I.QUALITY_PREVIEW_DESCRIPTION(), I.QUALITY_PREVIEW_COMMAND()) {
+        public MdecDecoder makeDecoder(int iWidth, int iHeight) {
+            return new MdecDecoder_int(makeIdct_int(), iWidth, iHeight);
+        }
+        protected IDCT_int makeIdct_int() { return new AanIDCT_int(); }
     };
 
     public boolean canUpsample() { return false; }
 
+    /** Separate instance of the IDCT used by {@link MdecDecoder_int} decoders
+     * of this quality, or null if the decoder is not a {@link MdecDecoder_int}. */
+    protected @CheckForNull IDCT_int makeIdct_int() { return null; }
+
+    /** Has a decoder made by {@link #makeDecoder(int, int)} split the IDCT of
+     * each frame across iThreads threads of the executor
+     * (see {@link MdecDecoder_int#setParallel}).
+     * @return false if decoders of this quality can't do that. */
+    public boolean setParallel(@Nonnull MdecDecoder decoder,
+                               @Nonnull ExecutorService executor, int iThreads)
+    {
+        if (!(decoder instanceof MdecDecoder_int) || makeIdct_int() == null)
+            return false;
+        IDCT_int[] aoIdcts = new IDCT_int[iThreads];
+        for (int i = 0; i < aoIdcts.length; i++) {
+            aoIdcts[i] = makeIdct_int();
+        }
+        ((MdecDecoder_int)decoder).setParallel(executor, aoIdcts);
+        return true;
+    }
+
     public static @CheckForNull MdecDecodeQuality fromCmdLine(@Nonnull String sCmdLine) {
         for (MdecDecodeQuality dq : MdecDecodeQuality.values()) {
             if (dq.getCmdLine().equalsIgnoreCase(sCmdLine))
@@ -69,6 +69,7 @@ import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.psxvideo.mdec.MdecInputStream;
 import jpsxdec.psxvideo.mdec.MdecInputStreamReader;
 import jpsxdec.util.BinaryDataNotRecognized;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.ExposedBAOS;
 import jpsxdec.util.Fraction;
 import jpsxdec.util.ILocalizedLogger;
@@ -109,7 +110,14 @@ public class VDP {
                        @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure;
     }
 
-    public static class Bitstream2File implements IBitstreamListener {
+    /** Can also receive the bitstream as slices of the sector data
+     * so it doesn't need to be copied together first. */
+    public interface ISlicedBitstreamListener extends IBitstreamListener {
+        void bitstream(@Nonnull ByteSlices bitstream,
+                       @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure;
+    }
+
+    public static class Bitstream2File implements ISlicedBitstreamListener {
 
         @Nonnull
         private final FrameFileFormatter _formatter;
@@ -125,6 +133,20 @@ public class VDP {
 
         public void bitstream(@Nonnull byte[] abBitstream, int iSize,
                               @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+        {
+            write(abBitstream, iSize, null, frameNumber);
+        }
+
+        public void bitstream(@Nonnull ByteSlices bitstream,
+                              @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+        {
+            write(null, 0, bitstream, frameNumber);
+        }
+
+        /** Writes either the array or the slices. */
+        private void write(@CheckForNull byte[] abBitstream, int iSize,
+                           @CheckForNull ByteSlices slices,
+                           @Nonnull FrameNumber frameNumber)
         {
             File f = _formatter.format(frameNumber, _log);
             try {
@@ -139,7 +161,14 @@ public class VDP {
                 fos = new FileOutputStream(f);
                 if (_fileGenListener != null)
                     _fileGenListener.fileGenerated(f);
-                fos.write(abBitstream, 0, iSize);
+                if (slices != null) {
+                    for (int i = 0; i < slices.getSliceCount(); i++) {
+                        fos.write(slices.getSliceArray(i), slices.getSliceOffset(i),
+                                  slices.getSliceLength(i));
+                    }
+                } else {
+                    fos.write(abBitstream, 0, iSize);
+                }
             } catch (FileNotFoundException ex) {
                 _log.log(Level.SEVERE, I.IO_OPENING_FILE_ERROR_NAME(f.toString()), ex);
             } catch (IOException ex) {
@@ -154,7 +183,7 @@ public class VDP {
         }
     }
 
-    public static class Bitstream2Mdec implements IBitstreamListener {
+    public static class Bitstream2Mdec implements ISlicedBitstreamListener {
 
         @Nonnull
         private final ILocalizedLogger _log;
@@ -162,6 +191,9 @@ public class VDP {
         private BitStreamUncompressor _uncompressor;
         @Nonnull
         private final IMdecListener _listener;
+        /** Only used to identify the bitstream type of sliced bitstreams. */
+        @CheckForNull
+        private byte[] _abIdentifyBuffer;
 
         public Bitstream2Mdec(@Nonnull IMdecListener mdecListener) {
             _listener = mdecListener;
@@ -204,6 +236,24 @@ public class VDP {
                 _listener.mdec(_uncompressor, frameNumber, iFrameEndSector);
         }
 
+        public void bitstream(@Nonnull ByteSlices bitstream,
+                              @Nonnull FrameNumber frameNumber, int iFrameEndSector)
+                throws LoggedFailure
+        {
+            if (_uncompressor != null) {
+                try {
+                    _uncompressor.reset(bitstream);
+                    _listener.mdec(_uncompressor, frameNumber, iFrameEndSector);
+                    return;
+                } catch (BinaryDataNotRecognized ex) {
+                    // identify it below
+                }
+            }
+            // identifying needs the whole bitstream in one array
+            _abIdentifyBuffer = bitstream.copyAll(_abIdentifyBuffer);
+            bitstream(_abIdentifyBuffer, bitstream.getSize(), frameNumber, iFrameEndSector);
+        }
+
     }
 
     /** Either
@@ -424,9 +474,15 @@ public class VDP {
         private GeneratedFileListener _fileGenListener;
 
         public Decoded2JavaImage(@Nonnull FrameFileFormatter formatter, @Nonnull JavaImageFormat eFmt, int iWidth, int iHeight, @Nonnull ILocalizedLogger log) {
+            this(formatter, eFmt, new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB), log);
+        }
+
+        /** @param rgbImg {@link BufferedImage#TYPE_INT_RGB} image to decode
+         *                into, sized to the frames to save. */
+        public Decoded2JavaImage(@Nonnull FrameFileFormatter formatter, @Nonnull JavaImageFormat eFmt, @Nonnull BufferedImage rgbImg, @Nonnull ILocalizedLogger log) {
             _formatter = formatter;
             _sFmt = eFmt.getId();
-            _rgbImg = new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB);
+            _rgbImg = rgbImg;
             _log = log;
         }
         
@@ -670,10 +726,7 @@ public class VDP {
             super(outputFile, iWidth, iHeight, avSync, af, log);
         }
 
-        public void assertAcceptsDecoded(@Nonnull MdecDecoder decoder) throws IllegalArgumentException {
-            if (!(decoder instanceof MdecDecoder_double))
-                throw new IllegalArgumentException(getClass().getName() + " can't handle " + decoder.getClass().getName());
-        }
+        public void assertAcceptsDecoded(@Nonnull MdecDecoder decoder) {}
         
         public void open()
                 throws LocalizedFileNotFoundException, FileNotFoundException, IOException
@@ -694,8 +747,8 @@ public class VDP {
         public void decoded(@Nonnull MdecDecoder decoder, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
             if (_writerYuv == null)
                 throw new IllegalStateException("AVI not open.");
-            // only accepts MdecDecoder_double, verified in assertAcceptsDecoded()
-            ((MdecDecoder_double)decoder).readDecoded_Rec601_YCbCr420(_yuvImgBuff);
+            decoder.readDecodedYuv420(_yuvImgBuff.getWidth(), _yuvImgBuff.getHeight(),
+                    _yuvImgBuff.getY(), _yuvImgBuff.getCb(), _yuvImgBuff.getCr());
             try {
                 prepForFrame(frameNumber, iFrameEndSector);
                 _writerYuv.write(_yuvImgBuff.getY(), _yuvImgBuff.getCb(), _yuvImgBuff.getCr());
@@ -735,6 +788,12 @@ public class VDP {
             super(outputFile, iWidth, iHeight, vidSync, log);
         }
 
+        @Override
+        public void assertAcceptsDecoded(@Nonnull MdecDecoder decoder) throws IllegalArgumentException {
+            if (!(decoder instanceof MdecDecoder_double))
+                throw new IllegalArgumentException(getClass().getName() + " can't handle " + decoder.getClass().getName());
+        }
+
         @Override
         public void decoded(@Nonnull MdecDecoder decoder, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
             if (_writerYuv == null)
@@ -785,25 +844,32 @@ public class VDP {
         public void mdec(@Nonnull MdecInputStream mdecIn, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
             if (_mjpegWriter == null)
                 throw new IllegalStateException("AVI not open.");
+            ILocalizedMessage err = toJpeg(_jpegTranslator, mdecIn, frameNumber, _buffer, _log);
+            if (err == null)
+                writeJpeg(_buffer.getBuffer(), _buffer.size(), frameNumber, iFrameEndSector);
+            else
+                error(err, frameNumber, iFrameEndSector);
+        }
+
+        /** Translates the MDEC codes to a JPEG image in the buffer.
+         * @return null if successful, otherwise the error (already logged). */
+        static @CheckForNull ILocalizedMessage toJpeg(@Nonnull jpsxdec.psxvideo.mdec.tojpeg.Mdec2Jpeg jpegTranslator,
+                                                      @Nonnull MdecInputStream mdecIn,
+                                                      @Nonnull FrameNumber frameNumber,
+                                                      @Nonnull ExposedBAOS buffer,
+                                                      @Nonnull ILocalizedLogger log)
+        {
             ILocalizedMessage err;
             Exception fail;
             try {
-                _jpegTranslator.readMdec(mdecIn);
-                _buffer.reset();
+                jpegTranslator.readMdec(mdecIn);
+                buffer.reset();
                 try {
-                    _jpegTranslator.writeJpeg(_buffer);
+                    jpegTranslator.writeJpeg(buffer);
                 } catch (IOException ex) {
                     throw new RuntimeException("Should not happen", ex);
                 }
-
-                try {
-                    prepForFrame(frameNumber, iFrameEndSector);
-                    _mjpegWriter.writeFrame(_buffer.getBuffer(), 0, _buffer.size());
-                } catch (IOException ex) {
-                    throw new LoggedFailure(_log, Level.SEVERE,
-                            I.IO_WRITING_TO_FILE_ERROR_NAME(_writer.getFile().toString()), ex);
-                }
-                return;
+                return null;
                 // kinda icky way to do this
             } catch (MdecException.ReadCorruption ex) {
                 err = I.FRAME_NUM_CORRUPTED(frameNumber.toString());
@@ -815,8 +881,21 @@ public class VDP {
                 err = I.JPEG_ENCODER_FRAME_FAIL(frameNumber);
                 fail = ex;
             }
-            _log.log(Level.WARNING, err, fail);
-            error(err, frameNumber, iFrameEndSector);
+            log.log(Level.WARNING, err, fail);
+            return err;
+        }
+
+        /** Writes an already translated JPEG image as the frame. */
+        public void writeJpeg(@Nonnull byte[] abJpeg, int iSize, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
+            if (_mjpegWriter == null)
+                throw new IllegalStateException("AVI not open.");
+            try {
+                prepForFrame(frameNumber, iFrameEndSector);
+                _mjpegWriter.writeFrame(abJpeg, 0, iSize);
+            } catch (IOException ex) {
+                throw new LoggedFailure(_log, Level.SEVERE,
+                        I.IO_WRITING_TO_FILE_ERROR_NAME(_writer.getFile().toString()), ex);
+            }
         }
 
         public void error(@Nonnull ILocalizedMessage errMsg, @Nonnull FrameNumber frameNumber, int iFrameEndSector) throws LoggedFailure {
@@ -60,8 +60,6 @@ public enum VideoFormat {
     AVI_YUV(I.VID_AVI_YUV_DESCRIPTION(), I.VID_AVI_YUV_COMMAND()) {
         public String getExtension() { return ".avi"; }
         public boolean isAvi() { return true; }
-        public int getDecodeQualityCount() { return 1; }
-        public MdecDecodeQuality getMdecDecodeQuality(int i) { return MdecDecodeQuality.HIGH_PLUS; }
     },
     AVI_JYUV(I.VID_AVI_JYUV_DESCRIPTION(), I.VID_AVI_JYUV_COMMAND()) {
         public String getExtension() { return ".avi"; }
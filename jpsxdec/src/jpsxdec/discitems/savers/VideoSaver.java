@@ -37,11 +37,16 @@
 
 package jpsxdec.discitems.savers;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -65,7 +70,9 @@ import jpsxdec.psxvideo.mdec.MdecDecoder_double_interpolate;
 import jpsxdec.psxvideo.mdec.MdecDecoder_double_interpolate.Upsampler;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.FeedbackStream;
+import jpsxdec.util.ILocalizedLogger;
 import jpsxdec.util.IO;
 import jpsxdec.util.LoggedFailure;
 import jpsxdec.util.ProgressLogger;
@@ -85,6 +92,22 @@ public abstract class VideoSaver
     protected final VideoFormat _vidFmt;
     @CheckForNull
     protected final MdecDecoder _decoder;
+    /** Quality of {@link #_decoder} so more can be made. */
+    @CheckForNull
+    private MdecDecodeQuality _decodeQuality;
+    /** Chroma upsampling of {@link #_decoder} so more can be made. */
+    @CheckForNull
+    private Upsampler _chromaUpsampler;
+    /** Number of threads to decode frames with. */
+    protected final int _iThreads;
+    /** Number of threads to split the IDCT of each frame across. */
+    private final int _iIdctThreads;
+    /** Runs the IDCT for all the decoders, created when first needed. */
+    @CheckForNull
+    private ExecutorService _idctExecutor;
+    /** Decoders and images borrowed for this save. */
+    @Nonnull
+    private final DecoderPool.Lease _lease = new DecoderPool.Lease();
     @CheckForNull
     protected final FrameLookup _startFrame, _endFrame;
     @Nonnull
@@ -96,6 +119,9 @@ public abstract class VideoSaver
     /** Reusable buffer to temporarily hold bitstream. */
     @CheckForNull
     private byte[] _abBitstreamBuf;
+    /** Reusable list of the sector data holding the bitstream, for listeners
+     * that can read it without it being copied together. */
+    private final ByteSlices _bitstreamSlices = new ByteSlices();
     @CheckForNull
     protected FrameNumber _currentFrame;
     /** Initially null. {@link #startSave(jpsxdec.util.ProgressLogger)}
@@ -113,6 +139,7 @@ public abstract class VideoSaver
         _videoItem = videoItem;
         _vidFmt = vsb.getVideoFormat();
         _sectorFeeder = fdr;
+        _iIdctThreads = vsb.getIdctThreads();
         
         switch (_vidFmt) {
             case IMGSEQ_BMP:
@@ -149,6 +176,10 @@ public abstract class VideoSaver
 
         _numberFormatter = videoItem.getFrameNumberFormat().makeFormatter(vsb.getFileNumberType());
 
+        _iThreads = vsb.getDecodeThreads();
+        if (_iThreads > 1)
+            _selectedOptions.add(I.CMD_DECODE_THREADS(_iThreads));
+
         _sectorFeeder.videoDemuxer.setFrameListener(this);
     }
 
@@ -185,6 +216,19 @@ public abstract class VideoSaver
         if (!savingAudio() && ((_startFrame != null && _startFrame.compareTo(_currentFrame) > 0) ||
                                (_endFrame   != null && _endFrame.compareTo(_currentFrame)   < 0)))
             return; // haven't received the starting frame yet, or have past the end frame
+        if (_bsListener instanceof VDP.ISlicedBitstreamListener) {
+            _bitstreamSlices.clear();
+            try {
+                if (frame.addDemuxSlices(_bitstreamSlices)) {
+                    ((VDP.ISlicedBitstreamListener)_bsListener).bitstream(
+                            _bitstreamSlices, frame.getFrame(), frame.getPresentationSector());
+                    return;
+                }
+            } finally {
+                // don't hold on to the sector data
+                _bitstreamSlices.clear();
+            }
+        }
         _abBitstreamBuf = frame.copyDemuxData(_abBitstreamBuf);
         _bsListener.bitstream(_abBitstreamBuf, frame.getDemuxSize(), frame.getFrame(), frame.getPresentationSector());
     }
@@ -196,15 +240,72 @@ public abstract class VideoSaver
         // quality should != null for the target format
         MdecDecodeQuality quality = vsb.getDecodeQuality();
         _selectedOptions.add(I.CMD_DECODE_QUALITY(quality));
-        MdecDecoder vidDecoder = quality.makeDecoder(_videoItem.getWidth(), _videoItem.getHeight());
+        _decodeQuality = quality;
+        MdecDecoder vidDecoder = _lease.decoder(quality, _videoItem.getWidth(), _videoItem.getHeight());
         if (vidDecoder instanceof MdecDecoder_double_interpolate) {
             Upsampler chroma = vsb.getChromaInterpolation();
             _selectedOptions.add(I.CMD_UPSAMPLE_QUALITY(chroma));
+            _chromaUpsampler = chroma;
             ((MdecDecoder_double_interpolate)vidDecoder).setResampler(chroma);
         }
+        if (setParallelIdct(vidDecoder))
+            _selectedOptions.add(I.CMD_IDCT_THREADS(_iIdctThreads));
         return vidDecoder;
     }
 
+    /** Makes another decoder the same as {@link #_decoder}, for use on another
+     * thread. Call only when the target video format has decoders. */
+    final protected @Nonnull MdecDecoder makeAnotherVideoDecoder() {
+        if (_decodeQuality == null)
+            throw new IllegalStateException("Video format has no decoder");
+        MdecDecoder vidDecoder = _lease.decoder(_decodeQuality, _videoItem.getWidth(), _videoItem.getHeight());
+        if (_chromaUpsampler != null)
+            ((MdecDecoder_double_interpolate)vidDecoder).setResampler(_chromaUpsampler);
+        setParallelIdct(vidDecoder);
+        return vidDecoder;
+    }
+
+    /** Has the decoder split the IDCT of each frame across
+     * {@link #_iIdctThreads} threads, if requested and its quality can.
+     * @return if the decoder will split the IDCT. */
+    private synchronized boolean setParallelIdct(@Nonnull MdecDecoder decoder) {
+        if (_iIdctThreads <= 1)
+            return false;
+        if (_idctExecutor == null) {
+            _idctExecutor = Executors.newFixedThreadPool(_iIdctThreads, new ThreadFactory() {
+                private final AtomicInteger _threadNumber = new AtomicInteger();
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "IDCT " + _threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return _decodeQuality.setParallel(decoder, _idctExecutor, _iIdctThreads);
+    }
+
+    /** Stops the threads started by {@link #setParallelIdct}.
+     * Call after the decoders are done being used. */
+    final protected synchronized void stopIdctThreads() {
+        if (_idctExecutor != null) {
+            _idctExecutor.shutdownNow();
+            _idctExecutor = null;
+        }
+    }
+
+    /** Borrows an image the size of the saved frames. */
+    final protected @Nonnull BufferedImage borrowRgbImage() {
+        return _lease.rgbImage(_iCroppedWidth, _iCroppedHeight);
+    }
+
+    /** Gives the borrowed decoders and images back to the {@link DecoderPool}
+     * when saving is done, unless the pipeline may still be using some.
+     * Call before closing the pipeline. */
+    final protected void giveBackBorrowed(@CheckForNull FramePipeline pipeline) {
+        if (pipeline == null || pipeline.isFinished())
+            _lease.giveBackAll();
+    }
+
     final protected void addSkipFrameSelectedOptions() {
         if (_startFrame != null)
             _selectedOptions.add(I.CMD_FRAME_RANGE_BEFORE(_startFrame));
@@ -247,44 +348,85 @@ public abstract class VideoSaver
             return false;
         }
 
-        public void startSave(@Nonnull ProgressLogger pll) throws LoggedFailure, TaskCanceledException {
-
+        /** Creates the pipeline to save to the sequence of files. */
+        private @Nonnull VDP.IBitstreamListener makeBitstreamListener(
+                @CheckForNull MdecDecoder decoder,
+                @Nonnull ILocalizedLogger log,
+                @Nonnull VDP.GeneratedFileListener genFileListener)
+        {
             switch (_vidFmt) {
                 case IMGSEQ_BITSTREAM:
                 {
-                    VDP.Bitstream2File b2f = new VDP.Bitstream2File(_outFileFormat, pll);
-                    b2f.setGenFileListener(this);
-                    _bsListener = b2f;
-                } break;
+                    VDP.Bitstream2File b2f = new VDP.Bitstream2File(_outFileFormat, log);
+                    b2f.setGenFileListener(genFileListener);
+                    return b2f;
+                }
                 case IMGSEQ_MDEC:
                 {
                     VDP.Mdec2File mdec2file = new VDP.Mdec2File(_outFileFormat,
-                            _videoItem.getWidth(), _videoItem.getHeight(), pll);
-                    mdec2file.setGenFileListener(this);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2file);
-                } break;
+                            _videoItem.getWidth(), _videoItem.getHeight(), log);
+                    mdec2file.setGenFileListener(genFileListener);
+                    return new VDP.Bitstream2Mdec(mdec2file);
+                }
                 case IMGSEQ_JPG:
                 {
                     VDP.Mdec2Jpeg mdec2jpeg = new VDP.Mdec2Jpeg(_outFileFormat,
-                            _videoItem.getWidth(), _videoItem.getHeight(), pll);
-                    mdec2jpeg.setGenFileListener(this);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2jpeg);
-                } break;
+                            _videoItem.getWidth(), _videoItem.getHeight(), log);
+                    mdec2jpeg.setGenFileListener(genFileListener);
+                    return new VDP.Bitstream2Mdec(mdec2jpeg);
+                }
                 case IMGSEQ_BMP:
                 case IMGSEQ_PNG:
                 {
                     // vf.getImgFmt() should != null for these image formats
-                    VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(_decoder, pll);
+                    VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(decoder, log);
                     VDP.Decoded2JavaImage decode2img = new VDP.Decoded2JavaImage(
-                            _outFileFormat, _vidFmt.getImgFmt(), _iCroppedWidth, _iCroppedHeight, pll);
-                    decode2img.setGenFileListener(this);
+                            _outFileFormat, _vidFmt.getImgFmt(),
+                            borrowRgbImage(), log);
+                    decode2img.setGenFileListener(genFileListener);
                     mdec2decode.setDecoded(decode2img);
-                    _bsListener = new VDP.Bitstream2Mdec(mdec2decode);
-                } break;
+                    return new VDP.Bitstream2Mdec(mdec2decode);
+                }
                 default:
                     throw new UnsupportedOperationException(_vidFmt + " not implemented yet.");
             }
+        }
+
+        public void startSave(@Nonnull ProgressLogger pll) throws LoggedFailure, TaskCanceledException {
 
+            FramePipeline pipeline = null;
+            if (_iThreads > 1) {
+                pipeline = new FramePipeline(new FramePipeline.WorkerFactory() {
+                    public @Nonnull FramePipeline.FrameWorker create() {
+                        return new FramePipeline.FileWorker(Sequence.this) {
+                            protected @Nonnull VDP.IBitstreamListener makeChain(
+                                    @Nonnull ILocalizedLogger log,
+                                    @Nonnull VDP.GeneratedFileListener genFileListener)
+                            {
+                                MdecDecoder decoder = _decoder == null ? null : makeAnotherVideoDecoder();
+                                return makeBitstreamListener(decoder, log, genFileListener);
+                            }
+                        };
+                    }
+                }, _iThreads, pll);
+                _bsListener = pipeline;
+            } else {
+                _bsListener = makeBitstreamListener(_decoder, pll, this);
+            }
+
+            try {
+                save(pll, pipeline);
+            } finally {
+                giveBackBorrowed(pipeline);
+                if (pipeline != null)
+                    pipeline.close();
+                stopIdctThreads();
+            }
+        }
+
+        private void save(@Nonnull ProgressLogger pll, @CheckForNull FramePipeline pipeline)
+                throws LoggedFailure, TaskCanceledException
+        {
             pll.progressStart(_videoItem.getSectorLength());
             IdentifiedSectorIterator it = _videoItem.identifiedSectorIterator();
 
@@ -314,6 +456,8 @@ public abstract class VideoSaver
                     break;
             }
             _sectorFeeder.flush(pll);
+            if (pipeline != null)
+                pipeline.flush();
             if (pll.isSeekingEvent() && _currentFrame != null)
                 pll.event(_numberFormatter.getDescription(_currentFrame));
             pll.progressEnd();
@@ -414,7 +558,27 @@ public abstract class VideoSaver
             }
             toAvi.setGenFileListener(this);
 
-            if (toAvi instanceof VDP.IMdecListener) {
+            FramePipeline pipeline = null;
+            if (_iThreads > 1) {
+                FramePipeline.WorkerFactory factory;
+                if (toAvi instanceof VDP.Mdec2MjpegAvi) {
+                    factory = new FramePipeline.WorkerFactory() {
+                        public @Nonnull FramePipeline.FrameWorker create() {
+                            return new FramePipeline.MjpegWorker((VDP.Mdec2MjpegAvi)toAvi,
+                                                                 _iCroppedWidth, _iCroppedHeight);
+                        }
+                    };
+                } else {
+                    factory = new FramePipeline.WorkerFactory() {
+                        public @Nonnull FramePipeline.FrameWorker create() {
+                            return new FramePipeline.DecodedWorker((VDP.IDecodedListener)toAvi,
+                                                                   makeAnotherVideoDecoder());
+                        }
+                    };
+                }
+                pipeline = new FramePipeline(factory, _iThreads, pll);
+                _bsListener = pipeline;
+            } else if (toAvi instanceof VDP.IMdecListener) {
                 _bsListener = new VDP.Bitstream2Mdec((VDP.IMdecListener)toAvi);
             } else if (toAvi instanceof VDP.IDecodedListener) {
                 VDP.Mdec2Decoded mdec2decode = new VDP.Mdec2Decoded(_decoder, pll);
@@ -473,10 +637,16 @@ public abstract class VideoSaver
                 }
 
                 _sectorFeeder.flush(pll);
+                if (pipeline != null)
+                    pipeline.flush();
                 if (pll.isSeekingEvent() && _currentFrame != null)
                     pll.event(_numberFormatter.getDescription(_currentFrame));
                 pll.progressEnd();
             } finally {
+                giveBackBorrowed(pipeline);
+                if (pipeline != null)
+                    pipeline.close();
+                stopIdctThreads();
                 IO.closeSilently(toAvi, LOG);
             }
 
@@ -88,6 +88,8 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         setSaveEndFrame(null);
         setSingleSpeed(false);
         setAudioVolume(1.0);
+        setDecodeThreads(1);
+        setIdctThreads(1);
     }
 
     public boolean copySettingsTo(@Nonnull DiscItemSaverBuilder otherBuilder) {
@@ -106,6 +108,8 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
                 other.setSingleSpeed(getSingleSpeed());
             if (getAudioVolume_enabled())
                 other.setAudioVolume(getAudioVolume());
+            other.setDecodeThreads(getDecodeThreads());
+            other.setIdctThreads(getIdctThreads());
             return true;
         }
         return false;
@@ -249,7 +253,9 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
 
     public boolean getChromaInterpolation_enabled() {
         MdecDecodeQuality q = getDecodeQuality();
-        return getDecodeQuality_enabled() && q != null && q.canUpsample();
+        // YUV output keeps the 4:2:0 chroma, so it is never upsampled
+        return getDecodeQuality_enabled() && q != null && q.canUpsample() &&
+               getVideoFormat() != VideoFormat.AVI_YUV;
     }
 
     public @Nonnull Upsampler getChromaInterpolation_listItem(int i) {
@@ -327,6 +333,29 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         firePossibleChange();
     }
 
+    // .........................................................................
+
+    private int _iDecodeThreads = 1;
+    /** Number of threads to decode and encode frames with. */
+    public int getDecodeThreads() {
+        return _iDecodeThreads;
+    }
+    public void setDecodeThreads(int val) {
+        _iDecodeThreads = Math.max(1, val);
+        firePossibleChange();
+    }
+
+    private int _iIdctThreads = 1;
+    /** Number of threads to split the IDCT of each frame across.
+     * Only used by the decode qualities that can do that. */
+    public int getIdctThreads() {
+        return _iIdctThreads;
+    }
+    public void setIdctThreads(int val) {
+        _iIdctThreads = Math.max(1, val);
+        firePossibleChange();
+    }
+
     ////////////////////////////////////////////////////////////////////////////
 
     public void commandLineOptions(@Nonnull ArgParser ap, @Nonnull FeedbackStream fbs)
@@ -341,6 +370,8 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         StringHolder discSpeed = ap.addStringOption("-ds");
         StringHolder frames = ap.addStringOption("-frame","-frames");
         StringHolder num = ap.addStringOption("-num");
+        StringHolder decodeThreads = ap.addStringOption("-decodethreads");
+        StringHolder idctThreads = ap.addStringOption("-idctthreads");
 
         //BooleanHolder emulatefps = ap.addBoolOption(false, "-psxfps"); // Mutually excusive with fps...
 
@@ -409,6 +440,28 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
                 fbs.printWarn(I.CMD_IGNORING_INVALID_DISC_SPEED(discSpeed.value));
             }
         }
+
+        if (decodeThreads.value != null) {
+            try {
+                int iThreads = Integer.parseInt(decodeThreads.value);
+                if (iThreads < 1)
+                    throw new NumberFormatException();
+                setDecodeThreads(iThreads);
+            } catch (NumberFormatException ex) {
+                fbs.printlnWarn(I.CMD_IGNORING_INVALID_THREADS(decodeThreads.value));
+            }
+        }
+
+        if (idctThreads.value != null) {
+            try {
+                int iThreads = Integer.parseInt(idctThreads.value);
+                if (iThreads < 1)
+                    throw new NumberFormatException();
+                setIdctThreads(iThreads);
+            } catch (NumberFormatException ex) {
+                fbs.printlnWarn(I.CMD_IGNORING_INVALID_THREADS(idctThreads.value));
+            }
+        }
     }
 
     final public void printHelp(@Nonnull FeedbackStream fbs) {
@@ -457,6 +510,12 @@ public abstract class VideoSaverBuilder extends DiscItemSaverBuilder {
         tfb.newRow();
         tfb.addCell(I.CMD_VIDEO_FRAMES()).addCell(I.CMD_VIDEO_FRAMES_HELP());
 
+        tfb.newRow();
+        tfb.addCell(I.CMD_VIDEO_DECODE_THREADS()).addCell(I.CMD_VIDEO_DECODE_THREADS_HELP());
+
+        tfb.newRow();
+        tfb.addCell(I.CMD_VIDEO_IDCT_THREADS()).addCell(I.CMD_VIDEO_IDCT_THREADS_HELP());
+
         if (_sourceVidItem.shouldBeCropped()) {
             tfb.newRow();
             tfb.addCell(I.CMD_VIDEO_NOCROP()).addCell(I.CMD_VIDEO_NOCROP_HELP());
@@ -73,6 +73,7 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.i18n.UnlocalizedMessage;
 import jpsxdec.indexing.DiscIndex;
+import jpsxdec.indexing.DiscProfiles;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.IO;
 import jpsxdec.util.Misc;
@@ -196,6 +197,16 @@ public class Gui extends javax.swing.JFrame {
                 item.addActionListener(this);
                 add(item);
             }
+            addSeparator();
+            final JCheckBoxMenuItem fullScan = new JCheckBoxMenuItem(
+                    I.GUI_FULL_SCAN_MENU_ITEM().getLocalizedMessage(),
+                    _settings.getFullScan());
+            fullScan.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    _settings.setFullScan(fullScan.isSelected());
+                }
+            });
+            add(fullScan);
         }
 
         public void actionPerformed(@Nonnull ActionEvent e) {
@@ -397,7 +408,8 @@ public class Gui extends javax.swing.JFrame {
             if (!cd.hasSectorHeader())
                 JOptionPane.showMessageDialog(this, I.GUI_DISC_NO_RAW_HEADERS_WARNING());
 
-            IndexingGui gui = new IndexingGui(this, cd);
+            IndexingGui gui = new IndexingGui(this, cd,
+                    _settings.getFullScan() ? null : DiscProfiles.load());
             gui.setVisible(true);
             DiscIndex generatedIndex = gui.getIndex();
             if (generatedIndex == null) {
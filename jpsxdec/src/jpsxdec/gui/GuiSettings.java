@@ -84,6 +84,10 @@ public class GuiSettings {
     private static final String PREVIOUS_INDEX_COUNT_KEY = "PreviousIndexCount";
     private int _iPreviousIndexCount;
 
+    private static final String FULL_SCAN_KEY = "FullScan";
+    /** Index discs without using their profile. */
+    private boolean _blnFullScan;
+
     public void load() {
         Properties prop = new Properties();
         FileInputStream propFile = null;
@@ -113,6 +117,7 @@ public class GuiSettings {
         } catch (NumberFormatException ex) {
             _iPreviousIndexCount = 10;
         }
+        _blnFullScan = Boolean.valueOf(prop.getProperty(FULL_SCAN_KEY, "false")).booleanValue();
         for (int i=_iPreviousImageCount-1; i >= 0; i--) {
             String s = prop.getProperty(PREVIOUS_IMAGE_KEY + i);
             if (s != null)
@@ -138,6 +143,7 @@ public class GuiSettings {
             prop.setProperty(PREVIOUS_IMAGE_KEY + i, _previousImages.get(i));
         }
         prop.setProperty(PREVIOUS_INDEX_COUNT_KEY, String.valueOf(_iPreviousIndexCount));
+        prop.setProperty(FULL_SCAN_KEY, String.valueOf(_blnFullScan));
         for (int i=0; i < _previousIndexes.size(); i++) {
             prop.setProperty(PREVIOUS_INDEX_KEY + i, _previousIndexes.get(i));
         }
@@ -154,6 +160,14 @@ public class GuiSettings {
         }
     }
 
+    public boolean getFullScan() {
+        return _blnFullScan;
+    }
+
+    public void setFullScan(boolean blnFullScan) {
+        _blnFullScan = blnFullScan;
+    }
+
     public int getPreviousImageCount() {
         return _iPreviousImageCount;
     }
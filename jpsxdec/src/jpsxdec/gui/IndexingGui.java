@@ -52,6 +52,7 @@ import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
 import jpsxdec.indexing.DiscIndex;
+import jpsxdec.indexing.DiscProfiles;
 import jpsxdec.util.ProgressLogger;
 import jpsxdec.util.TaskCanceledException;
 import jpsxdec.util.UserFriendlyLogger;
@@ -76,6 +77,9 @@ public class IndexingGui extends javax.swing.JDialog implements PropertyChangeLi
     public DiscIndex _index;
     @Nonnull
     public CdFileSectorReader _cd;
+    /** Null to search the whole disc for everything. */
+    @CheckForNull
+    private DiscProfiles _profiles;
 
     @Nonnull
     private State _eState = State.NOT_STARTED;
@@ -89,19 +93,26 @@ public class IndexingGui extends javax.swing.JDialog implements PropertyChangeLi
 
 
 
-    /** Creates new form Progress */
-    public IndexingGui(@Nonnull java.awt.Dialog parent, @Nonnull CdFileSectorReader cd) {
+    /** Creates new form Progress
+     * @param profiles null to search the whole disc for everything. */
+    public IndexingGui(@Nonnull java.awt.Dialog parent, @Nonnull CdFileSectorReader cd,
+                       @CheckForNull DiscProfiles profiles)
+    {
         super(parent, true);
-        sharedConstructor(parent, cd);
+        sharedConstructor(parent, cd, profiles);
     }
 
-    /** Creates new form Progress */
-    public IndexingGui(@Nonnull java.awt.Frame parent, @Nonnull CdFileSectorReader cd) {
+    /** Creates new form Progress
+     * @param profiles null to search the whole disc for everything. */
+    public IndexingGui(@Nonnull java.awt.Frame parent, @Nonnull CdFileSectorReader cd,
+                       @CheckForNull DiscProfiles profiles)
+    {
         super(parent, true);
-        sharedConstructor(parent, cd);
+        sharedConstructor(parent, cd, profiles);
     }
 
-    private void sharedConstructor(@Nonnull java.awt.Window parent, @Nonnull CdFileSectorReader cd)
+    private void sharedConstructor(@Nonnull java.awt.Window parent, @Nonnull CdFileSectorReader cd,
+                                   @CheckForNull DiscProfiles profiles)
     {
         initComponents();
 
@@ -112,6 +123,7 @@ public class IndexingGui extends javax.swing.JDialog implements PropertyChangeLi
         setLocationRelativeTo(parent); // center on parent
 
         _cd = cd;
+        _profiles = profiles;
         _guiItemName.setText(cd.getSourceFile().getPath());
         _guiResultLbl.setText("");
 
@@ -402,7 +414,7 @@ public class IndexingGui extends javax.swing.JDialog implements PropertyChangeLi
         @Override
         final protected @CheckForNull Void doInBackground() {
             try {
-                _index = new DiscIndex(_cd, __progressLog);
+                _index = new DiscIndex(_cd, 1, _profiles, __progressLog);
             } catch (TaskCanceledException ex) {
                 // cool
             } catch (Throwable ex) {
@@ -43,6 +43,7 @@ import java.util.List;
 import java.util.logging.Level;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import jpsxdec.discitems.savers.DecoderPool;
 import jpsxdec.gui.SavingGuiTable.Row;
 import jpsxdec.i18n.I;
 import jpsxdec.i18n.ILocalizedMessage;
@@ -142,6 +143,7 @@ public class SavingGuiTask extends SwingWorker<Void, SavingGuiTask.Event_Message
             }
             EventQueue.invokeLater(new Event_Progress(row, SavingGuiTable.PROGRESS_DONE));
         }
+        DecoderPool.clear();
         firePropertyChange(ALL_DONE, null, null);
         _progressLog.close();
 
@@ -223,6 +223,18 @@ public class I {
         return inter("AVI_FILE_IS_CLOSED", "Avi file is closed");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Avi file is too large</pre>
+    </td></tr></table>
+    <ul>
+       <li>AviWriter.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage AVI_FILE_TOO_LARGE() {
+        return inter("AVI_FILE_TOO_LARGE", "Avi file is too large");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>JFIF header not found in jpeg data, unable to write frame to AVI.</pre>
@@ -512,6 +524,54 @@ Do you want to replace it?</pre>
         return inter("CMD_COPYING_SECTOR", "Copying sectors {0,number,#} - {1,number,#} to {2}", startSector, endSector, destinationFile);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Verifying sectors {0,number,#} - {1,number,#}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Verify.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VERIFYING_SECTORS(int startSector, int endSector) {
+        return inter("CMD_VERIFYING_SECTORS", "Verifying sectors {0,number,#} - {1,number,#}", startSector, endSector);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Sector {0,number,#} is corrupted: {1}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Verify.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VERIFY_BAD_SECTOR(int sectorNumber, @Nonnull String errorCodes) {
+        return inter("CMD_VERIFY_BAD_SECTOR", "Sector {0,number,#} is corrupted: {1}", sectorNumber, errorCodes);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>{0,number,#} of {1,number,#} sectors are corrupted</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Verify.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VERIFY_RESULT(int badSectorCount, int sectorCount) {
+        return inter("CMD_VERIFY_RESULT", "{0,number,#} of {1,number,#} sectors are corrupted", badSectorCount, sectorCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Disc image does not include error correction data to verify</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Verify.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VERIFY_NO_ERROR_CORRECTION() {
+        return inter("CMD_VERIFY_NO_ERROR_CORRECTION", "Disc image does not include error correction data to verify");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Sorry, couldn''t find any disc items of type {0}</pre>
@@ -631,6 +691,19 @@ Do you want to replace it?</pre>
         return inter("PROCESS_TIME", "Time: {0,number,#.##} sec", durationInSeconds);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Waited {0,number,#.##} sec for disc reads</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Items.java</li>
+       <li>DiscIndex.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage READ_AHEAD_STALL_TIME(double durationInSeconds) {
+        return inter("READ_AHEAD_STALL_TIME", "Waited {0,number,#.##} sec for disc reads", durationInSeconds);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>All index items complete.</pre>
@@ -643,6 +716,18 @@ Do you want to replace it?</pre>
         return inter("CMD_ALL_ITEMS_COMPLETE", "All index items complete.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>{0,number,#} of {1,number,#} items failed</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command_Items.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_ITEMS_FAILED(int failedCount, int itemCount) {
+        return inter("CMD_ITEMS_FAILED", "{0,number,#} of {1,number,#} items failed", failedCount, itemCount);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Invalid item identifier: {0}</pre>
@@ -1135,6 +1220,42 @@ Do you want to replace it?</pre>
         return inter("CMD_ITEMS_LOADED", "{0,number,#} items loaded.", itemCount);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Using cached index</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_USING_CACHED_INDEX() {
+        return inter("CMD_USING_CACHED_INDEX", "Using cached index");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Saved index to cache {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_SAVED_INDEX_TO_CACHE(@Nonnull java.io.File cacheEntryFile) {
+        return inter("CMD_SAVED_INDEX_TO_CACHE", "Saved index to cache {0}", cacheEntryFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Error using index cache</pre>
+    </td></tr></table>
+    <ul>
+       <li>Command.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_INDEX_CACHE_ERROR() {
+        return inter("CMD_INDEX_CACHE_ERROR", "Error using index cache");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Reading index file {0}</pre>
@@ -1232,6 +1353,43 @@ Do you want to replace it?</pre>
         return inter("CMD_VERBOSE_LVL_INVALID_NUM", "Invalid verbosity level {0,number,#}", badVerbosityNumber);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Ignoring invalid read-ahead {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CdReaderArgs.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_IGNORING_INVALID_READ_AHEAD(@Nonnull String badReadAhead) {
+        return inter("CMD_IGNORING_INVALID_READ_AHEAD", "Ignoring invalid read-ahead {0}", badReadAhead);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Ignoring invalid thread count {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_IGNORING_INVALID_THREADS(@Nonnull String badThreadCount) {
+        return inter("CMD_IGNORING_INVALID_THREADS", "Ignoring invalid thread count {0}", badThreadCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Ignoring invalid index cache size {0}</pre>
+    </td></tr></table>
+    <ul>
+       <li>CommandLine.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_IGNORING_INVALID_INDEX_CACHE_SIZE(@Nonnull String badCacheSize) {
+        return inter("CMD_IGNORING_INVALID_INDEX_CACHE_SIZE", "Ignoring invalid index cache size {0}", badCacheSize);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Saving index as {0}</pre>
@@ -1576,6 +1734,18 @@ Do you want to replace it?</pre>
         return inter("INDEX_HEADER_MISSING", "Missing proper index header.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Binary index file is corrupted.</pre>
+    </td></tr></table>
+    <ul>
+       <li>BinaryIndexFile.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_BINARY_CORRUPTED() {
+        return inter("INDEX_BINARY_CORRUPTED", "Binary index file is corrupted.");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Error while indexing disc</pre>
@@ -1624,6 +1794,66 @@ Do you want to replace it?</pre>
         return inter("INDEX_MODE1_AMONG_MODE2", "Sector {0,number,#} is Mode 1 found among Mode 2 sectors", sectorNumber);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Only searching for what disc profile {0} uses</pre>
+    </td></tr></table>
+    <ul>
+       <li>DiscIndex.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_USING_PROFILE(@Nonnull String profileName) {
+        return inter("INDEX_USING_PROFILE", "Only searching for what disc profile {0} uses", profileName);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Sector {0,number,#} is no longer identified as it was when the checkpoint was saved</pre>
+    </td></tr></table>
+    <ul>
+       <li>DiscIndexer.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_CHECKPOINT_SECTOR_MISMATCH(int sectorNumber) {
+        return inter("INDEX_CHECKPOINT_SECTOR_MISMATCH", "Sector {0,number,#} is no longer identified as it was when the checkpoint was saved", sectorNumber);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Resuming indexing from checkpoint {0} at sector {1,number,#}</pre>
+    </td></tr></table>
+    <ul>
+       <li>DiscIndex.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_RESUMING_FROM_CHECKPOINT(@Nonnull java.io.File checkpointFile, int sectorNumber) {
+        return inter("INDEX_RESUMING_FROM_CHECKPOINT", "Resuming indexing from checkpoint {0} at sector {1,number,#}", checkpointFile, sectorNumber);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Ignoring checkpoint {0}, indexing from the start</pre>
+    </td></tr></table>
+    <ul>
+       <li>DiscIndex.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_CHECKPOINT_IGNORED(@Nonnull java.io.File checkpointFile) {
+        return inter("INDEX_CHECKPOINT_IGNORED", "Ignoring checkpoint {0}, indexing from the start", checkpointFile);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Checkpoint was saved using a different disc profile</pre>
+    </td></tr></table>
+    <ul>
+       <li>IndexCheckpoint.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage INDEX_CHECKPOINT_PROFILE_MISMATCH() {
+        return inter("INDEX_CHECKPOINT_PROFILE_MISMATCH", "Checkpoint was saved using a different disc profile");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Failed to parse line: {0}</pre>
@@ -2333,6 +2563,18 @@ Do you want to replace it?</pre>
         return inter("GUI_DISC_NO_RAW_HEADERS_WARNING", "Disc image does not have raw headers -- audio may not be detected.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Full scan (ignore disc profiles)</pre>
+    </td></tr></table>
+    <ul>
+       <li>Gui.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage GUI_FULL_SCAN_MENU_ITEM() {
+        return inter("GUI_FULL_SCAN_MENU_ITEM", "Full scan (ignore disc profiles)");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Select disc image or media file</pre>
@@ -3110,6 +3352,31 @@ Do you want to replace it?</pre>
         return inter("QUALITY_PSX_COMMAND", "psx");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Fastest (preview quality)</pre>
+    </td></tr></table>
+    <ul>
+       <li>MdecDecodeQuality.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage QUALITY_PREVIEW_DESCRIPTION() {
+        return inter("QUALITY_PREVIEW_DESCRIPTION", "Fastest (preview quality)");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>fast</pre>
+    </td></tr></table>
+    <p>1 word (no spaces) user can type on command-line. Not case sensitive</p>
+    <ul>
+       <li>MdecDecodeQuality.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage QUALITY_PREVIEW_COMMAND() {
+        return inter("QUALITY_PREVIEW_COMMAND", "fast");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Bicubic</pre>
@@ -4463,6 +4730,30 @@ Do you want to replace it?</pre>
         return inter("CMD_UPSAMPLE_QUALITY", "Chroma upsampling: {0}", upsampleDescription);
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>Decoding threads: {0,number,#}</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaver.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_DECODE_THREADS(int threadCount) {
+        return inter("CMD_DECODE_THREADS", "Decoding threads: {0,number,#}", threadCount);
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>IDCT threads: {0,number,#}</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaver.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_IDCT_THREADS(int threadCount) {
+        return inter("CMD_IDCT_THREADS", "IDCT threads: {0,number,#}", threadCount);
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>Video format: {0}</pre>
@@ -4711,6 +5002,56 @@ Do you want to replace it?</pre>
         return inter("CMD_VIDEO_FRAMES_HELP", "Process only frames in range.");
     }
 
+    /**
+    <table border="1"><tr><td>
+    <pre>-decodethreads #</pre>
+    </td></tr></table>
+    <p>Note that the command -decodethreads is hard-coded</p>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_DECODE_THREADS() {
+        return inter("CMD_VIDEO_DECODE_THREADS", "-decodethreads #");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Number of threads to decode frames with (default 1).</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_DECODE_THREADS_HELP() {
+        return inter("CMD_VIDEO_DECODE_THREADS_HELP", "Number of threads to decode frames with (default 1).");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>-idctthreads #</pre>
+    </td></tr></table>
+    <p>Note that the command -idctthreads is hard-coded</p>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_IDCT_THREADS() {
+        return inter("CMD_VIDEO_IDCT_THREADS", "-idctthreads #");
+    }
+
+    /**
+    <table border="1"><tr><td>
+    <pre>Number of threads to split the IDCT of each frame across (default 1). Only for the psx, low and fast qualities.</pre>
+    </td></tr></table>
+    <ul>
+       <li>VideoSaverBuilder.java</li>
+    </ul>
+    */
+    public static ILocalizedMessage CMD_VIDEO_IDCT_THREADS_HELP() {
+        return inter("CMD_VIDEO_IDCT_THREADS_HELP", "Number of threads to split the IDCT of each frame across (default 1). Only for the psx, low and fast qualities.");
+    }
+
     /**
     <table border="1"><tr><td>
     <pre>-num &lt;type&gt;</pre>
@@ -0,0 +1,563 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileNotFoundException;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.ILocalizedLogger;
+import jpsxdec.util.IO;
+
+/** Compact binary alternative to the text index file.
+ *<p>
+ * The file is memory-mapped and {@link DiscItem}s are only created from it
+ * when they are first accessed, so opening even a huge index is quick.
+ * Each item is stored as the same serialization string found in the text
+ * index (so the items are deserialized exactly the same way) along with a
+ * fixed-size record of the values needed to find the item without
+ * deserializing it.
+ *<pre>
+ * Header
+ *   8 bytes   {@link #MAGIC}
+ *   int       {@link #FORMAT_VERSION}
+ *   int       item count (n)
+ *   int       string count
+ * n records (in index order)
+ *   int       index number
+ *   int       string # of the index id
+ *   int       string # of the item serialization
+ *   int       start sector
+ *   int       end sector
+ *   int       record # of the parent item, or -1 if a root item
+ * n ints      record #s sorted by index number
+ * n ints      record #s sorted by index id
+ * String table
+ *   int[]     file offset of each string
+ *   strings   int byte length + UTF-8 bytes
+ *</pre>
+ * String #0 is always {@link Version#IndexHeader} and
+ * string #1 is the {@link CdFileSectorReader} serialization.
+ * All values are big-endian. */
+class BinaryIndexFile implements Iterable<DiscItem> {
+
+    private static final Logger LOG = Logger.getLogger(BinaryIndexFile.class.getName());
+
+    /** Includes "jPSXdec" so the GUI also recognizes it as an index file. */
+    private static final byte[] MAGIC = {'j','P','S','X','d','e','c','B'};
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 4 * 3;
+    private static final int RECORD_SIZE = 4 * 6;
+
+    private static final int STRING_INDEX_HEADER = 0;
+    private static final int STRING_CD = 1;
+
+    /** Checks if the file starts with the binary index {@link #MAGIC}. */
+    public static boolean isBinaryIndex(@Nonnull File file) throws FileNotFoundException, IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            byte[] abMagic = new byte[MAGIC.length];
+            return IO.readByteArrayMax(fis, abMagic, 0, abMagic.length) == abMagic.length &&
+                   Arrays.equals(abMagic, MAGIC);
+        } catch (EOFException ex) {
+            return false;
+        } finally {
+            IO.closeSilently(fis, LOG);
+        }
+    }
+
+    /** Writes the items to a binary index file.
+     * @param items All items in index order.
+     * @param rootItems The root items whose children make up the rest of
+     *                  the tree. */
+    public static void write(@Nonnull File file, @Nonnull CdFileSectorReader cd,
+                             @Nonnull Collection<DiscItem> items,
+                             @Nonnull Collection<DiscItem> rootItems)
+            throws FileNotFoundException, IOException
+    {
+        final int iItemCount = items.size();
+
+        final ArrayList<String> strings = new ArrayList<String>(iItemCount * 2 + 2);
+        strings.add(Version.IndexHeader);
+        strings.add(cd.serialize());
+
+        final DiscItem[] aoItems = items.toArray(new DiscItem[iItemCount]);
+        IdentityHashMap<DiscItem, Integer> recordNumbers = new IdentityHashMap<DiscItem, Integer>(iItemCount);
+        for (int i = 0; i < iItemCount; i++) {
+            recordNumbers.put(aoItems[i], Integer.valueOf(i));
+        }
+
+        int[] aiParents = new int[iItemCount];
+        Arrays.fill(aiParents, -1);
+        for (DiscItem root : rootItems) {
+            findParents(root, recordNumbers, aiParents);
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream(iItemCount * RECORD_SIZE);
+        DataOutputStream recordsData = new DataOutputStream(records);
+        final String[] asIds = new String[iItemCount];
+        for (int i = 0; i < iItemCount; i++) {
+            DiscItem item = aoItems[i];
+            asIds[i] = item.getIndexId().serialize();
+            recordsData.writeInt(item.getIndex());
+            recordsData.writeInt(strings.size());
+            strings.add(asIds[i]);
+            recordsData.writeInt(strings.size());
+            strings.add(item.serialize().serialize());
+            recordsData.writeInt(item.getStartSector());
+            recordsData.writeInt(item.getEndSector());
+            recordsData.writeInt(aiParents[i]);
+        }
+
+        Integer[] aoByIndex = new Integer[iItemCount];
+        Integer[] aoById = new Integer[iItemCount];
+        for (int i = 0; i < iItemCount; i++) {
+            aoByIndex[i] = aoById[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(aoByIndex, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                int i1 = aoItems[o1.intValue()].getIndex(), i2 = aoItems[o2.intValue()].getIndex();
+                return i1 < i2 ? -1 : (i1 > i2 ? 1 : 0);
+            }
+        });
+        Arrays.sort(aoById, new Comparator<Integer>() {
+            public int compare(Integer o1, Integer o2) {
+                return asIds[o1.intValue()].compareTo(asIds[o2.intValue()]);
+            }
+        });
+
+        byte[][] aabStrings = new byte[strings.size()][];
+        for (int i = 0; i < aabStrings.length; i++) {
+            aabStrings[i] = utf8(strings.get(i));
+        }
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        boolean blnExceptionThrown = true;
+        try {
+            dos.write(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(iItemCount);
+            dos.writeInt(aabStrings.length);
+
+            recordsData.flush();
+            records.writeTo(dos);
+            for (Integer i : aoByIndex)
+                dos.writeInt(i.intValue());
+            for (Integer i : aoById)
+                dos.writeInt(i.intValue());
+
+            int iOffset = dos.size() + aabStrings.length * 4;
+            for (byte[] ab : aabStrings) {
+                dos.writeInt(iOffset);
+                iOffset += 4 + ab.length;
+            }
+            for (byte[] ab : aabStrings) {
+                dos.writeInt(ab.length);
+                dos.write(ab);
+            }
+            blnExceptionThrown = false;
+        } finally {
+            if (blnExceptionThrown)
+                IO.closeSilently(dos, LOG);
+            else
+                dos.close(); // expose close exception
+        }
+    }
+
+    private static void findParents(@Nonnull DiscItem parent,
+                                    @Nonnull IdentityHashMap<DiscItem, Integer> recordNumbers,
+                                    @Nonnull int[] aiParents)
+    {
+        Iterable<DiscItem> children = parent.getChildren();
+        if (children == null)
+            return;
+        Integer parentRecord = recordNumbers.get(parent);
+        for (DiscItem child : children) {
+            Integer childRecord = recordNumbers.get(child);
+            if (parentRecord != null && childRecord != null)
+                aiParents[childRecord.intValue()] = parentRecord.intValue();
+            findParents(child, recordNumbers, aiParents);
+        }
+    }
+
+    private static @Nonnull byte[] utf8(@Nonnull String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // Every implementation of the Java platform is required to support UTF-8
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // =========================================================================
+
+    @Nonnull
+    private final ByteBuffer _buffer;
+    @Nonnull
+    private final CdFileSectorReader _sourceCd;
+    @Nonnull
+    private final ILocalizedLogger _errLog;
+    @Nonnull
+    private final DiscIndexer[] _aoIndexers;
+
+    private final int _iItemCount;
+    private final int _iStringCount;
+    private final int _iByIndexStart;
+    private final int _iByIdStart;
+    private final int _iStringTableStart;
+
+    /** Items that have been created so far. */
+    @Nonnull
+    private final DiscItem[] _aoItems;
+    /** Records that failed to deserialize, so they aren't tried again. */
+    @Nonnull
+    private final boolean[] _ablnFailed;
+
+    /** Children of each record are at
+     * {@code _aiChildren[_aiFirstChild[i]]} to
+     * {@code _aiChildren[_aiFirstChild[i+1]-1]}. */
+    @Nonnull
+    private final int[] _aiFirstChild, _aiChildren;
+    @Nonnull
+    private final int[] _aiRootRecords;
+
+    /** Maps the binary index file and opens (or validates) the source disc.
+     * No {@link DiscItem}s are created. */
+    public BinaryIndexFile(@Nonnull File indexFile,
+                           @CheckForNull CdFileSectorReader cdReader,
+                           boolean blnAllowWrites,
+                           @Nonnull ILocalizedLogger errLog)
+            throws CdFileNotFoundException, FileNotFoundException,
+                   IOException, DeserializationFail
+    {
+        _errLog = errLog;
+
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        try {
+            // the mapping stays valid after the file is closed
+            _buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+
+        try {
+            byte[] abMagic = new byte[MAGIC.length];
+            _buffer.get(abMagic);
+            if (!Arrays.equals(abMagic, MAGIC) || _buffer.getInt() != FORMAT_VERSION)
+                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+            _iItemCount = _buffer.getInt();
+            _iStringCount = _buffer.getInt();
+            if (_iItemCount < 0 || _iStringCount < 2)
+                throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+            _iByIndexStart = HEADER_SIZE + _iItemCount * RECORD_SIZE;
+            _iByIdStart = _iByIndexStart + _iItemCount * 4;
+            _iStringTableStart = _iByIdStart + _iItemCount * 4;
+            if (_iStringTableStart + _iStringCount * 4 > _buffer.limit())
+                throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED());
+
+            if (!Version.IndexHeader.equals(getString(STRING_INDEX_HEADER)))
+                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+
+            // build the tree from just the parent record numbers
+            _aiFirstChild = new int[_iItemCount + 1];
+            int iRootCount = 0;
+            for (int i = 0; i < _iItemCount; i++) {
+                int iParent = getParentRecord(i);
+                if (iParent < 0)
+                    iRootCount++;
+                else
+                    _aiFirstChild[iParent + 1]++;
+            }
+            for (int i = 0; i < _iItemCount; i++) {
+                _aiFirstChild[i + 1] += _aiFirstChild[i];
+            }
+            _aiChildren = new int[_iItemCount - iRootCount];
+            _aiRootRecords = new int[iRootCount];
+            int[] aiChildPos = new int[_iItemCount];
+            System.arraycopy(_aiFirstChild, 0, aiChildPos, 0, _iItemCount);
+            iRootCount = 0;
+            for (int i = 0; i < _iItemCount; i++) {
+                int iParent = getParentRecord(i);
+                if (iParent < 0)
+                    _aiRootRecords[iRootCount++] = i;
+                else
+                    _aiChildren[aiChildPos[iParent]++] = i;
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED(), ex);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new DeserializationFail(I.INDEX_BINARY_CORRUPTED(), ex);
+        }
+
+        String sCdSerialization = getString(STRING_CD);
+        if (cdReader != null) {
+            // verify that the source file matches
+            if (!cdReader.matchesSerialization(sCdSerialization))
+                errLog.log(Level.WARNING, I.CD_FORMAT_MISMATCH(cdReader, sCdSerialization));
+            _sourceCd = cdReader;
+        } else {
+            _sourceCd = new CdFileSectorReader(sCdSerialization, blnAllowWrites);
+        }
+
+        _aoIndexers = DiscIndexer.createIndexers(errLog);
+        // deserialized items are never added to this list
+        List<DiscItem> unused = Collections.emptyList();
+        for (DiscIndexer indexer : _aoIndexers) {
+            indexer.indexInit(unused, _sourceCd, null);
+        }
+
+        _aoItems = new DiscItem[_iItemCount];
+        _ablnFailed = new boolean[_iItemCount];
+    }
+
+    public @Nonnull CdFileSectorReader getSourceCd() {
+        return _sourceCd;
+    }
+
+    public @Nonnull DiscIndexer[] getIndexers() {
+        return _aoIndexers;
+    }
+
+    /** Number of items in the file, including any that may fail to
+     * deserialize. */
+    public int size() {
+        return _iItemCount;
+    }
+
+    public @CheckForNull DiscItem getByIndex(int iIndex) {
+        int iRecord = findByIndex(iIndex);
+        return iRecord < 0 ? null : getItem(iRecord);
+    }
+
+    public boolean hasIndex(int iIndex) {
+        return findByIndex(iIndex) >= 0;
+    }
+
+    public @CheckForNull DiscItem getById(@Nonnull String sId) {
+        int iLow = 0, iHigh = _iItemCount - 1;
+        while (iLow <= iHigh) {
+            int iMid = (iLow + iHigh) >>> 1;
+            int iRecord = _buffer.getInt(_iByIdStart + iMid * 4);
+            int iCmp = getString(getIdStringNumber(iRecord)).compareTo(sId);
+            if (iCmp < 0)
+                iLow = iMid + 1;
+            else if (iCmp > 0)
+                iHigh = iMid - 1;
+            else
+                return getItem(iRecord);
+        }
+        return null;
+    }
+
+    /** Creates the root items (and all their children). */
+    public @Nonnull ArrayList<DiscItem> getRoot() {
+        ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>(_aiRootRecords.length);
+        for (int iRecord : _aiRootRecords) {
+            DiscItem item = getItem(iRecord);
+            if (item != null)
+                rootItems.add(item);
+        }
+        return rootItems;
+    }
+
+    /** Iterates through the items in index order, creating each as it is
+     * reached. Items that fail to deserialize are skipped. */
+    public @Nonnull Iterator<DiscItem> iterator() {
+        return new Iterator<DiscItem>() {
+            private int _iNextRecord = 0;
+            @CheckForNull
+            private DiscItem _next = findNext();
+
+            private @CheckForNull DiscItem findNext() {
+                while (_iNextRecord < _iItemCount) {
+                    DiscItem item = getItem(_iNextRecord++);
+                    if (item != null)
+                        return item;
+                }
+                return null;
+            }
+
+            public boolean hasNext() {
+                return _next != null;
+            }
+
+            public @Nonnull DiscItem next() {
+                if (_next == null)
+                    throw new NoSuchElementException();
+                DiscItem item = _next;
+                _next = findNext();
+                return item;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    // .........................................................................
+
+    /** @return the record number, or -1 if not found. */
+    private int findByIndex(int iIndex) {
+        int iLow = 0, iHigh = _iItemCount - 1;
+        while (iLow <= iHigh) {
+            int iMid = (iLow + iHigh) >>> 1;
+            int iRecord = _buffer.getInt(_iByIndexStart + iMid * 4);
+            int iMidIndex = _buffer.getInt(HEADER_SIZE + iRecord * RECORD_SIZE);
+            if (iMidIndex < iIndex)
+                iLow = iMid + 1;
+            else if (iMidIndex > iIndex)
+                iHigh = iMid - 1;
+            else
+                return iRecord;
+        }
+        return -1;
+    }
+
+    private int getIdStringNumber(int iRecord) {
+        return _buffer.getInt(HEADER_SIZE + iRecord * RECORD_SIZE + 4);
+    }
+
+    private int getSerializationStringNumber(int iRecord) {
+        return _buffer.getInt(HEADER_SIZE + iRecord * RECORD_SIZE + 8);
+    }
+
+    private int getParentRecord(int iRecord) {
+        return _buffer.getInt(HEADER_SIZE + iRecord * RECORD_SIZE + 20);
+    }
+
+    private @Nonnull String getString(int iString) {
+        if (iString < 0 || iString >= _iStringCount)
+            throw new IndexOutOfBoundsException("String #" + iString);
+        int iOffset = _buffer.getInt(_iStringTableStart + iString * 4);
+        int iLength = _buffer.getInt(iOffset);
+        byte[] ab = new byte[iLength];
+        ByteBuffer dup = _buffer.duplicate();
+        dup.position(iOffset + 4);
+        dup.get(ab);
+        try {
+            return new String(ab, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // Every implementation of the Java platform is required to support UTF-8
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** Gets the item for the record, deserializing it (and its children)
+     * the first time.
+     * @return null if the item could not be deserialized. */
+    private synchronized @CheckForNull DiscItem getItem(int iRecord) {
+        DiscItem item = _aoItems[iRecord];
+        if (item != null || _ablnFailed[iRecord])
+            return item;
+
+        item = deserialize(iRecord);
+        if (item == null) {
+            _ablnFailed[iRecord] = true;
+            return null;
+        }
+        _aoItems[iRecord] = item;
+
+        for (int i = _aiFirstChild[iRecord]; i < _aiFirstChild[iRecord + 1]; i++) {
+            DiscItem child = getItem(_aiChildren[i]);
+            if (child != null && !item.addChild(child))
+                _errLog.log(Level.WARNING, I.INDEX_REBUILD_PARENT_REJECTED_CHILD(item, child));
+        }
+        return item;
+    }
+
+    private @CheckForNull DiscItem deserialize(int iRecord) {
+        String sItemLine;
+        try {
+            sItemLine = getString(getSerializationStringNumber(iRecord));
+        } catch (RuntimeException ex) {
+            LOG.log(Level.WARNING, "Corrupted binary index record " + iRecord, ex);
+            return null;
+        }
+
+        DiscItem found = null;
+        for (DiscIndexer indexer : _aoIndexers) {
+            try {
+                SerializedDiscItem deserializedLine = new SerializedDiscItem(sItemLine);
+                DiscItem item = indexer.deserializeLineRead(deserializedLine);
+                if (item != null) {
+                    found = item;
+                    break;
+                }
+            } catch (DeserializationFail ex) {
+                _errLog.log(Level.WARNING, I.INDEX_PARSE_LINE_FAIL(sItemLine), ex);
+                return null;
+            }
+        }
+        if (found == null)
+            _errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(sItemLine));
+        return found;
+    }
+}
@@ -157,6 +157,26 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
             _iReadPos = 0;
         }
 
+        /** Buffers sectors ahead (without changing the read position) until
+         * {@code iSector} is buffered.
+         * @return false if the sequence ends before {@code iSector}. */
+        public boolean bufferThrough(int iSector) throws IOException {
+            while (_buffer.size() == 0 ||
+                   _buffer.get(_buffer.size()-1).getSectorNumberFromStart() < iSector)
+            {
+                CdSector c = _sectorIter.nextUnidentified();
+                if (c == null)
+                    return false;
+                _buffer.enqueue(c);
+            }
+            return true;
+        }
+
+        /** The first sector in the buffer. */
+        public @Nonnull CdSector head() {
+            return _buffer.get(0);
+        }
+
         public boolean atEndOfDisc() {
             return _sectorIter.atEndOfDisc() && _buffer.size() == 0;
         }
@@ -214,6 +234,15 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
         return _current.getSectorNumberFromStart();
     }
 
+    /** The marked sector if nothing has been read since the mark.
+     * Do not call after {@link #resetSkipMark(int)} returns false.
+     * @throws IllegalStateException */
+    public @Nonnull CdSector getCurrentCdSector() {
+        if (_current == null)
+            throw new IllegalStateException();
+        return _current;
+    }
+
     @Override
     public void reset() {
         throw new UnsupportedOperationException("Do not call this");
@@ -255,6 +284,27 @@ public class DemuxedUnidentifiedDataStream extends InputStream {
         return true;
     }
 
+    /** Moves the mark to the start of the sector after the marked sector.
+     * Same as calling {@link #resetSkipMark(int)} with the number of bytes
+     * remaining in the marked sector.
+     * Do not call after {@link #resetSkipMark(int)} returns false.
+     * @throws IllegalStateException */
+    public boolean resetSkipMarkToNextSector() throws IOException {
+        if (_current == null)
+            throw new IllegalStateException();
+        return resetSkipMark(_readBuffer.head().getCdUserDataSize() - _iStartingOffset);
+    }
+
+    /** Checks if every sector from the marked sector through {@code iSector}
+     * is part of this unidentified sequence. Sectors are read ahead as
+     * necessary, but the stream position and mark are unchanged.
+     * Do not call after {@link #resetSkipMark(int)} returns false.
+     * @throws IllegalStateException */
+    public boolean isUnidentifiedThrough(int iSector) throws IOException {
+        if (_current == null)
+            throw new IllegalStateException();
+        return _readBuffer.bufferThrough(iSector);
+    }
 
     /** Do not call after {@link #resetSkipMark(int)} returns false.
      * @throws IllegalStateException */
@@ -50,10 +50,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -69,7 +71,9 @@ import jpsxdec.discitems.DiscItemStrVideoStream;
 import jpsxdec.discitems.IndexId;
 import jpsxdec.discitems.SerializedDiscItem;
 import jpsxdec.i18n.I;
+import jpsxdec.sectors.IdentificationStatistics;
 import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.ILocalizedLogger;
 import jpsxdec.util.IO;
@@ -86,50 +90,193 @@ public class DiscIndex implements Iterable<DiscItem> {
     private static final Logger LOG = Logger.getLogger(DiscIndex.class.getName());
 
     private static final String COMMENT_LINE_START = ";";
+
+    /** Suggested extension for binary index files.
+     * @see #serializeIndexBinary(java.io.File) */
+    public static final String BINARY_INDEX_EXTENSION = ".idxb";
     
     @Nonnull
     private final CdFileSectorReader _sourceCD;
     @CheckForNull
     private String _sDiscName = null;
-    @Nonnull
+    /** Null if loaded from a binary index. */
+    @CheckForNull
     private final ArrayList<DiscItem> _root;
     private final List<DiscItem> _iterate = new LinkedList<DiscItem>();
 
     private final LinkedHashMap<Object, DiscItem> _lookup = new LinkedHashMap<Object, DiscItem>();
 
-    /** Finds all the interesting items on the CD. */
+    /** If loaded from a binary index, items are only created from it as
+     * they are accessed, and {@link #_root}, {@link #_iterate} and
+     * {@link #_lookup} are unused. */
+    @CheckForNull
+    private final BinaryIndexFile _binary;
+
+    /** Searches the whole CD for all the interesting items. */
     public DiscIndex(@Nonnull CdFileSectorReader cdReader, @Nonnull final ProgressLogger pl) 
             throws TaskCanceledException
+    {
+        this(cdReader, 1, null, pl);
+    }
+
+    /** Finds all the interesting items on the CD. */
+    public DiscIndex(@Nonnull CdFileSectorReader cdReader, int iThreads,
+                     @CheckForNull DiscProfiles profiles,
+                     @Nonnull final ProgressLogger pl)
+            throws TaskCanceledException
+    {
+        this(cdReader, iThreads, profiles, null, pl);
+    }
+
+    /** Finds all the interesting items on the CD.
+     * @param iThreads If greater than 1, the search for TIM images is done
+     *                 ahead of time on this many threads
+     *                 (see {@link ParallelTimScan}). The resulting index is
+     *                 the same regardless of the number of threads.
+     *                 Either way, only the offsets where a static indexer's
+     *                 signature matches are searched (see {@link SignatureScan}).
+     * @param profiles If the disc has a profile in here, only the sector types,
+     *                 indexers and frame rates it lists are searched for.
+     *                 If null, the whole disc is searched for everything.
+     * @param checkpoint If not null, indexing resumes from the checkpoint
+     *                   if there is one, and a checkpoint is saved every so
+     *                   often (see {@link IndexCheckpoint}). The checkpoint
+     *                   is not deleted, that should be done once the index
+     *                   has been saved. */
+    public DiscIndex(@Nonnull CdFileSectorReader cdReader, int iThreads,
+                     @CheckForNull DiscProfiles profiles,
+                     @CheckForNull IndexCheckpoint checkpoint,
+                     @Nonnull final ProgressLogger pl)
+            throws TaskCanceledException
     {
         _sourceCD = cdReader;
+        _binary = null;
+
+        DiscProfile profile = null;
+        if (profiles != null) {
+            try {
+                profile = profiles.find(cdReader);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Error reading disc serial", ex);
+            }
+        }
+        Set<SectorType> sectorTypes;
+        if (profile == null) {
+            sectorTypes = EnumSet.allOf(SectorType.class);
+        } else {
+            pl.log(Level.INFO, I.INDEX_USING_PROFILE(profile.getName()));
+            LOG.log(Level.INFO, "Profile {0}", profile);
+            sectorTypes = profile.getSectorTypes();
+        }
         
-        final DiscIndexer[] aoIndexers = DiscIndexer.createIndexers(pl);
+        DiscIndexer[] aoIndexers = createIndexers(pl, profile);
+
+        // the sector each indexer resumes from
+        int[] aiResumeSectors = null;
+        if (checkpoint != null) {
+            try {
+                aiResumeSectors = checkpoint.resume(cdReader, profile, aoIndexers);
+            } catch (IOException ex) {
+                pl.log(Level.WARNING, I.INDEX_CHECKPOINT_IGNORED(checkpoint.getFile()), ex);
+            } catch (DeserializationFail ex) {
+                pl.log(Level.WARNING, I.INDEX_CHECKPOINT_IGNORED(checkpoint.getFile()), ex);
+            }
+            if (aiResumeSectors == null && !_iterate.isEmpty()) {
+                // restoring failed part way, so start over with fresh indexers
+                _iterate.clear();
+                aoIndexers = createIndexers(pl, profile);
+            }
+        }
+        if (aiResumeSectors == null)
+            aiResumeSectors = new int[aoIndexers.length];
 
+        int iStartSector = Integer.MAX_VALUE;
+        int iLastResumeSector = 0;
+        int iStaticResumeSector = 0;
         final List<DiscIndexer.Identified> identifiedIndexers = new ArrayList<DiscIndexer.Identified>();
+        int[] aiIdentifiedResumeSectors = new int[aoIndexers.length];
         final List<DiscIndexer.Static> staticIndexers = new ArrayList<DiscIndexer.Static>();
 
-        for (DiscIndexer indexer : aoIndexers) {
-            indexer.indexInit(_iterate, _sourceCD);
-            
-            if (indexer instanceof DiscIndexer.Identified)
+        for (int i = 0; i < aoIndexers.length; i++) {
+            DiscIndexer indexer = aoIndexers[i];
+            iStartSector = Math.min(iStartSector, aiResumeSectors[i]);
+            iLastResumeSector = Math.max(iLastResumeSector, aiResumeSectors[i]);
+
+            if (indexer instanceof DiscIndexer.Identified) {
+                aiIdentifiedResumeSectors[identifiedIndexers.size()] = aiResumeSectors[i];
                 identifiedIndexers.add((DiscIndexer.Identified) indexer);
-            if (indexer instanceof DiscIndexer.Static)
+            }
+            if (indexer instanceof DiscIndexer.Static) {
+                iStaticResumeSector = Math.max(iStaticResumeSector, aiResumeSectors[i]);
                 staticIndexers.add((DiscIndexer.Static) indexer);
+            }
         }
+        if (iStartSector > 0)
+            pl.log(Level.INFO, I.INDEX_RESUMING_FROM_CHECKPOINT(checkpoint.getFile(), iStartSector));
 
         pl.progressStart(cdReader.getLength());
         
         UnidentifiedSectorIteratorListener iterListener =
-                new UnidentifiedSectorIteratorListener(cdReader, pl, identifiedIndexers);
+                new UnidentifiedSectorIteratorListener(cdReader, iStartSector, sectorTypes, pl,
+                                                       identifiedIndexers, aiIdentifiedResumeSectors,
+                                                       checkpoint, iLastResumeSector, profile, aoIndexers);
+        IdentificationStatistics idStats = null;
+        if (LOG.isLoggable(Level.FINE))
+            idStats = iterListener.collectIdentificationStatistics();
 
         long lngStart, lngEnd;
         lngStart = System.currentTimeMillis();
+        long lngStallStart = cdReader.getReadAheadStallTime();
 
+        ParallelTimScan timScan = null;
         try {
+            // the scan replaces the search of the TIM indexer, so it can
+            // only be used when that's the only static indexer
+            if (iThreads > 1 && staticIndexers.size() == 1 &&
+                staticIndexers.get(0) instanceof DiscIndexerTim)
+            {
+                timScan = new ParallelTimScan(cdReader, iThreads, iStaticResumeSector,
+                                              sectorTypes, (DiscIndexerTim)staticIndexers.get(0));
+            }
+            // null if some static indexer has to search every offset
+            SignatureScan signatureScan = SignatureScan.create(staticIndexers);
+
             while (iterListener.seekToNextUnidentified()) {
+                if (staticIndexers.isEmpty() ||
+                    iterListener.getSequenceStartSector() < iStaticResumeSector)
+                {
+                    // the profile doesn't use any, or they already searched
+                    // the sequence before indexing was interrupted,
+                    // just skip the sequence
+                    while (iterListener.nextUnidentified() != null)
+                        iterListener.checkTaskCanceled();
+                    continue;
+                }
                 DemuxedUnidentifiedDataStream staticStream = new DemuxedUnidentifiedDataStream(iterListener);
 
+                boolean blnMore;
                 do {
+                    if (timScan != null && staticStream.getCurrentSectorOffset() == 0 &&
+                        timScan.addTimsAtMark(staticStream, (DiscIndexerTim)staticIndexers.get(0)))
+                    {
+                        // the whole sector has already been searched
+                        iterListener.checkTaskCanceled();
+                        blnMore = staticStream.resetSkipMarkToNextSector();
+                        continue;
+                    }
+
+                    if (signatureScan != null) {
+                        int iSkip = signatureScan.bytesToNextCandidate(
+                                staticStream.getCurrentCdSector(),
+                                staticStream.getCurrentSectorOffset());
+                        if (iSkip > 0) {
+                            // no static indexer could find anything before then
+                            iterListener.checkTaskCanceled();
+                            blnMore = staticStream.resetSkipMark(iSkip);
+                            continue;
+                        }
+                    }
+
                     // do the first static indexer first
                     staticIndexers.get(0).staticRead(staticStream);
                     iterListener.checkTaskCanceled();
@@ -144,12 +291,16 @@ public class DiscIndex implements Iterable<DiscItem> {
                         iterListener.checkTaskCanceled();
                     }
 
-                } while (staticStream.resetSkipMark(4));
+                    blnMore = staticStream.resetSkipMark(4);
+                } while (blnMore);
                 iterListener.checkTaskCanceled();
             }
 
         } catch (IOException ex) {
             pl.log(Level.SEVERE, I.INDEXING_ERROR(), ex);
+        } finally {
+            if (timScan != null)
+                timScan.close();
         }
 
         // notify indexers that the disc is finished
@@ -184,11 +335,25 @@ public class DiscIndex implements Iterable<DiscItem> {
 
         lngEnd = System.currentTimeMillis();
         pl.log(Level.INFO, I.PROCESS_TIME((lngEnd - lngStart) / 1000.0));
+        if (cdReader.isReadAhead())
+            pl.log(Level.INFO, I.READ_AHEAD_STALL_TIME((cdReader.getReadAheadStallTime() - lngStallStart) / 1000.0));
+        if (idStats != null)
+            LOG.log(Level.FINE, "Sector identification: {0}", idStats);
         pl.progressEnd();
 
     }
 
 
+    private @Nonnull DiscIndexer[] createIndexers(@Nonnull ILocalizedLogger log,
+                                                  @CheckForNull DiscProfile profile)
+    {
+        DiscIndexer[] aoIndexers = DiscIndexer.createIndexers(log, profile);
+        for (DiscIndexer indexer : aoIndexers) {
+            indexer.indexInit(_iterate, _sourceCD, profile);
+        }
+        return aoIndexers;
+    }
+
     private @Nonnull ArrayList<DiscItem> buildTree(@Nonnull Collection<DiscItem> allItems) {
 
         ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
@@ -255,7 +420,8 @@ public class DiscIndex implements Iterable<DiscItem> {
         }
     };
 
-    /** Deserializes the CD index file, and tries to open the CD listed in the index. */
+    /** Deserializes the CD index file (text or binary),
+     * and tries to open the CD listed in the index. */
     public DiscIndex(@Nonnull String sIndexFile, @Nonnull ILocalizedLogger errLog)
             throws CdFileNotFoundException, IOException, DeserializationFail
     {
@@ -282,6 +448,17 @@ public class DiscIndex implements Iterable<DiscItem> {
     { // TODO: IOException could be becauze of index file or cd, caller doesn't know
         File indexFile = new File(sIndexFile);
 
+        if (BinaryIndexFile.isBinaryIndex(indexFile)) {
+            _binary = new BinaryIndexFile(indexFile, cdReader, blnAllowWrites, errLog);
+            _sourceCD = _binary.getSourceCd();
+            _root = null;
+            for (DiscIndexer indexer : _binary.getIndexers()) {
+                indexer.indexGenerated(this);
+            }
+            return;
+        }
+        _binary = null;
+
         CdFileSectorReader sourceCd = null;
         FileInputStream fis = new FileInputStream(indexFile);
         Closeable streamToClose = fis;
@@ -339,50 +516,7 @@ public class DiscIndex implements Iterable<DiscItem> {
                 _sourceCD = sourceCd;
             }
 
-            // setup indexers
-            DiscIndexer[] aoIndexers = DiscIndexer.createIndexers(errLog);
-
-            for (DiscIndexer indexer : aoIndexers) {
-                indexer.indexInit(_iterate, _sourceCD);
-            }
-
-            // now create the disc items
-            for (String sItemLine : readLines) {
-
-                boolean blnLineHandled = false;
-                for (DiscIndexer indexer : aoIndexers) {
-                    try {
-                        SerializedDiscItem deserializedLine = new SerializedDiscItem(sItemLine);
-                        DiscItem item = indexer.deserializeLineRead(deserializedLine);
-                        if (item != null) {
-                            blnLineHandled = true;
-                            _iterate.add(item);
-                        }
-                    } catch (DeserializationFail ex) {
-                        errLog.log(Level.WARNING, I.INDEX_PARSE_LINE_FAIL(sItemLine), ex);
-                        blnLineHandled = true;
-                    }
-                }
-                if (!blnLineHandled)
-                    errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(sItemLine));
-            }
-
-            _root = recreateTree(_iterate, errLog);
-
-            // copy the items to this class
-            for (DiscItem item : _iterate) {
-                addLookupItem(item);
-            }
-            // notify the indexers that the list has been generated
-            for (DiscIndexer indexer : aoIndexers) {
-                indexer.indexGenerated(this);
-            }
-
-
-            // debug print the list contents
-            if (LOG.isLoggable(Level.FINE)) {
-                for (DiscItem item : this) LOG.fine(item.toString());
-            }
+            _root = deserializeItems(readLines, errLog);
 
             // no exception thrown, don't close the CD in finally block
             blnExceptionThrown = false;
@@ -400,6 +534,76 @@ public class DiscIndex implements Iterable<DiscItem> {
 
     }
 
+    /** Creates a copy of an index whose items read from another reader of
+     * the same disc image (usually from {@link CdFileSectorReader#openCopy()}),
+     * so items from both indexes can be used on different threads. */
+    public DiscIndex(@Nonnull DiscIndex source, @Nonnull CdFileSectorReader cdReader,
+                     @Nonnull ILocalizedLogger errLog)
+    {
+        _binary = null;
+        _sourceCD = cdReader;
+
+        ArrayList<String> itemLines = new ArrayList<String>(source.size());
+        for (DiscItem item : source) {
+            itemLines.add(item.serialize().serialize());
+        }
+        _root = deserializeItems(itemLines, errLog);
+        _sDiscName = source._sDiscName;
+    }
+
+    /** Creates the disc items from their serialized lines, builds the item
+     * tree, and returns the root items. */
+    private @Nonnull ArrayList<DiscItem> deserializeItems(@Nonnull List<String> itemLines,
+                                                          @Nonnull ILocalizedLogger errLog)
+    {
+        // setup indexers
+        DiscIndexer[] aoIndexers = DiscIndexer.createIndexers(errLog);
+
+        for (DiscIndexer indexer : aoIndexers) {
+            indexer.indexInit(_iterate, _sourceCD, null);
+        }
+
+        // now create the disc items
+        for (String sItemLine : itemLines) {
+
+            boolean blnLineHandled = false;
+            for (DiscIndexer indexer : aoIndexers) {
+                try {
+                    SerializedDiscItem deserializedLine = new SerializedDiscItem(sItemLine);
+                    DiscItem item = indexer.deserializeLineRead(deserializedLine);
+                    if (item != null) {
+                        blnLineHandled = true;
+                        _iterate.add(item);
+                    }
+                } catch (DeserializationFail ex) {
+                    errLog.log(Level.WARNING, I.INDEX_PARSE_LINE_FAIL(sItemLine), ex);
+                    blnLineHandled = true;
+                }
+            }
+            if (!blnLineHandled)
+                errLog.log(Level.WARNING, I.INDEX_UNHANDLED_LINE(sItemLine));
+        }
+
+        ArrayList<DiscItem> root = recreateTree(_iterate, errLog);
+
+        // copy the items to this class
+        for (DiscItem item : _iterate) {
+            addLookupItem(item);
+        }
+        // notify the indexers that the list has been generated
+        for (DiscIndexer indexer : aoIndexers) {
+            indexer.indexGenerated(this);
+        }
+
+
+        // debug print the list contents
+        if (LOG.isLoggable(Level.FINE)) {
+            for (DiscItem item : this) LOG.fine(item.toString());
+        }
+
+        return root;
+    }
+
     private @Nonnull ArrayList<DiscItem> recreateTree(@Nonnull Collection<DiscItem> allItems, @Nonnull ILocalizedLogger log) {
         ArrayList<DiscItem> rootItems = new ArrayList<DiscItem>();
 
@@ -453,6 +657,19 @@ public class DiscIndex implements Iterable<DiscItem> {
         }
     }
     
+    /** Serializes the list of disc items to a binary index file
+     * (see {@link BinaryIndexFile}). Either format can be read by the
+     * constructors. */
+    public void serializeIndexBinary(@Nonnull File file)
+            throws FileNotFoundException, IOException
+    {
+        ArrayList<DiscItem> items = new ArrayList<DiscItem>(size());
+        for (DiscItem item : this) {
+            items.add(item);
+        }
+        BinaryIndexFile.write(file, _sourceCD, items, getRoot());
+    }
+
     /** Serializes the list of disc items to a stream. */
     private void serializeIndex(@Nonnull PrintStream ps) {
         ps.println(Version.IndexHeader);
@@ -469,18 +686,26 @@ public class DiscIndex implements Iterable<DiscItem> {
     }
 
     public @Nonnull List<DiscItem> getRoot() {
+        if (_binary != null)
+            return _binary.getRoot();
         return _root;
     }
 
     public @CheckForNull DiscItem getByIndex(int iIndex) {
+        if (_binary != null)
+            return _binary.getByIndex(iIndex);
         return _lookup.get(Integer.valueOf(iIndex));
     }
 
     public @CheckForNull DiscItem getById(@Nonnull String sId) {
+        if (_binary != null)
+            return _binary.getById(sId);
         return _lookup.get(sId);
     }
     
     public boolean hasIndex(int iIndex) {
+        if (_binary != null)
+            return _binary.hasIndex(iIndex);
         return _lookup.containsKey(Integer.valueOf(iIndex));
     }
 
@@ -489,17 +714,21 @@ public class DiscIndex implements Iterable<DiscItem> {
     }
     
     public int size() {
+        if (_binary != null)
+            return _binary.size();
         return _iterate.size();
     }
     
     //[implements Iterable]
     public @Nonnull Iterator<DiscItem> iterator() {
+        if (_binary != null)
+            return _binary.iterator();
         return _iterate.iterator();
     }
 
     @Override
     public String toString() {
-        return String.format("%s (%s) %d items", _sourceCD.getSourceFile(), _sDiscName, _iterate.size());
+        return String.format("%s (%s) %d items", _sourceCD.getSourceFile(), _sDiscName, size());
     }
 
     private class UnidentifiedSectorIteratorListener extends UnidentifiedSectorIterator {
@@ -508,17 +737,60 @@ public class DiscIndex implements Iterable<DiscItem> {
         private final ProgressLogger _pl;
         @Nonnull
         private final List<DiscIndexer.Identified> _identifiedIndexers;
+        /** Sectors before these were already passed to the identified
+         * indexers before indexing was interrupted. */
+        @Nonnull
+        private final int[] _aiIdentifiedResumeSectors;
         private int iCurrentHeaderSectorNumber = -1;
         private int iMode1Count = 0;
         private int iMode2Count = 0;
 
+        @CheckForNull
+        private final IndexCheckpoint _checkpoint;
+        @CheckForNull
+        private final DiscProfile _profile;
+        @Nonnull
+        private final DiscIndexer[] _aoIndexers;
+        /** A checkpoint can't be saved until all indexers have resumed. */
+        private final int _iFirstCheckpointSector;
+        /** If between unidentified sequences. */
+        private boolean _blnSeeking = false;
+        private int _iSequenceStartSector = -1;
+
         public UnidentifiedSectorIteratorListener(@Nonnull CdFileSectorReader cd,
+                                                  int iStartSector,
+                                                  @Nonnull Set<SectorType> sectorTypes,
                                                   @Nonnull ProgressLogger pl,
-                                                  @Nonnull List<DiscIndexer.Identified> identifiedIndexers)
+                                                  @Nonnull List<DiscIndexer.Identified> identifiedIndexers,
+                                                  @Nonnull int[] aiIdentifiedResumeSectors,
+                                                  @CheckForNull IndexCheckpoint checkpoint,
+                                                  int iFirstCheckpointSector,
+                                                  @CheckForNull DiscProfile profile,
+                                                  @Nonnull DiscIndexer[] aoIndexers)
         {
-            super(cd);
+            super(cd, iStartSector, sectorTypes);
             _pl = pl;
             _identifiedIndexers = identifiedIndexers;
+            _aiIdentifiedResumeSectors = aiIdentifiedResumeSectors;
+            _checkpoint = checkpoint;
+            _iFirstCheckpointSector = iFirstCheckpointSector;
+            _profile = profile;
+            _aoIndexers = aoIndexers;
+        }
+
+        @Override
+        public boolean seekToNextUnidentified() throws IOException, TaskCanceledException {
+            _blnSeeking = true;
+            try {
+                return super.seekToNextUnidentified();
+            } finally {
+                _blnSeeking = false;
+            }
+        }
+
+        /** First sector of the current unidentified sequence. */
+        public int getSequenceStartSector() {
+            return _iSequenceStartSector;
         }
 
         public void sectorRead(@Nonnull CdSector cdSector, @CheckForNull IdentifiedSector idSector) 
@@ -549,11 +821,29 @@ public class DiscIndex implements Iterable<DiscItem> {
             } else if (!cdSector.isCdAudioSector())
                 iMode2Count++;
 
-            for (DiscIndexer.Identified indexer : _identifiedIndexers) {
-                indexer.indexingSectorRead(cdSector, idSector);
+            int iSector = cdSector.getSectorNumberFromStart();
+
+            for (int i = 0; i < _identifiedIndexers.size(); i++) {
+                if (iSector >= _aiIdentifiedResumeSectors[i])
+                    _identifiedIndexers.get(i).indexingSectorRead(cdSector, idSector);
+            }
+
+            if (_blnSeeking) {
+                if (idSector == null) {
+                    _iSequenceStartSector = iSector;
+                } else if (_checkpoint != null && iSector >= _iFirstCheckpointSector &&
+                           _checkpoint.isDue())
+                {
+                    // the static indexers are between sequences so
+                    // only the identified indexers have anything in progress
+                    try {
+                        _checkpoint.save(_sourceCD, _profile, _aoIndexers, _iterate, iSector + 1);
+                    } catch (IOException ex) {
+                        LOG.log(Level.WARNING, "Error saving checkpoint " + _checkpoint.getFile(), ex);
+                    }
+                }
             }
 
-            int iSector = cdSector.getSectorNumberFromStart();
             _pl.progressUpdate(iSector);
 
             if (_pl.isSeekingEvent())
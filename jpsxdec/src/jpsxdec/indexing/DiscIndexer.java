@@ -38,7 +38,9 @@
 package jpsxdec.indexing;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -47,7 +49,9 @@ import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
 import jpsxdec.sectors.IdentifiedSector;
+import jpsxdec.sectors.IdentifiedSectorIterator;
 import jpsxdec.util.DeserializationFail;
 import jpsxdec.util.ILocalizedLogger;
 
@@ -72,6 +76,33 @@ public abstract class DiscIndexer {
         public void staticRead(@Nonnull DemuxedUnidentifiedDataStream is) throws IOException;
     }
 
+    /** {@link Static} indexer that can only find something where the data
+     * starts with a known 4 byte signature. If every static indexer has one,
+     * {@link Static#staticRead(DemuxedUnidentifiedDataStream)} is only
+     * called at offsets where a signature matches (see {@link SignatureScan}). */
+    public interface StaticSignature extends Static {
+        /** @param iFirstWord The first 4 bytes at an offset as a little-endian int.
+         * @return false only if staticRead() would not find anything
+         *         starting with these bytes. */
+        public boolean couldStartWith(int iFirstWord);
+    }
+
+    /** Creates only the indexers used by the profile.
+     * @param profile null for all indexers. */
+    public static @Nonnull DiscIndexer[] createIndexers(@Nonnull ILocalizedLogger log,
+                                                        @CheckForNull DiscProfile profile)
+    {
+        DiscIndexer[] aoAll = createIndexers(log);
+        if (profile == null)
+            return aoAll;
+        ArrayList<DiscIndexer> used = new ArrayList<DiscIndexer>();
+        for (DiscIndexer indexer : aoAll) {
+            if (profile.usesIndexer(indexer))
+                used.add(indexer);
+        }
+        return used.toArray(new DiscIndexer[used.size()]);
+    }
+
     public static @Nonnull DiscIndexer[] createIndexers(@Nonnull ILocalizedLogger log) {
         return new DiscIndexer[] {
             new DiscIndexerISO9660(log),
@@ -90,13 +121,21 @@ public abstract class DiscIndexer {
     private Collection<DiscItem> _mediaList;
     @CheckForNull
     private CdFileSectorReader _sourceCd;
+    @CheckForNull
+    private DiscProfile _profile;
+    /** Items added by this indexer, so an {@link IndexCheckpoint} knows
+     * which items the indexer will find again when it resumes. */
+    private final ArrayList<DiscItem> _addedItems = new ArrayList<DiscItem>();
 
-    /** Called by {@link DiscIndex} right away. */
+    /** Called by {@link DiscIndex} right away.
+     * @param profile null if the whole disc is being searched for everything. */
     final void indexInit(@Nonnull Collection<DiscItem> items,
-                         @Nonnull CdFileSectorReader cd)
+                         @Nonnull CdFileSectorReader cd,
+                         @CheckForNull DiscProfile profile)
     {
         _mediaList = items;
         _sourceCd = cd;
+        _profile = profile;
     }
 
 
@@ -108,6 +147,17 @@ public abstract class DiscIndexer {
         }
         LOG.log(Level.INFO, "Adding disc item {0}", discItem);
         _mediaList.add(discItem);
+        _addedItems.add(discItem);
+    }
+
+    /** Adds an item that this indexer found before indexing was interrupted. */
+    final void addCheckpointItem(@Nonnull DiscItem discItem) {
+        _mediaList.add(discItem);
+        _addedItems.add(discItem);
+    }
+
+    final @Nonnull List<DiscItem> getAddedItems() {
+        return _addedItems;
     }
 
     final protected @Nonnull CdFileSectorReader getCd() {
@@ -116,6 +166,59 @@ public abstract class DiscIndexer {
         return _sourceCd;
     }
 
+    /** Inconsistent frame rate patterns the disc can use,
+     * or null if all of them should be tried. */
+    final protected @CheckForNull Collection<String> getFpsPatterns() {
+        return _profile == null ? null : _profile.getFpsPatterns();
+    }
+
+    /** Identifies a sector the same way it was identified during indexing,
+     * for indexers restoring their state from a checkpoint.
+     * Only works for sector types that are identified without context.
+     * @throws DeserializationFail if the sector isn't identified as the type. */
+    final protected @Nonnull <T> T identifyCheckpointSector(int iSector, @Nonnull Class<T> type)
+            throws IOException, DeserializationFail
+    {
+        CdSector cdSector = getCd().getSector(iSector);
+        IdentifiedSector idSector;
+        if (_profile == null)
+            idSector = IdentifiedSectorIterator.identifyWithoutContext(cdSector);
+        else
+            idSector = IdentifiedSectorIterator.identifyWithoutContext(cdSector, _profile.getSectorTypes());
+        if (!type.isInstance(idSector))
+            throw new DeserializationFail(I.INDEX_CHECKPOINT_SECTOR_MISMATCH(iSector));
+        return type.cast(idSector);
+    }
+
+    /** Called when a checkpoint is being saved, between sectors
+     * {@code iNextSector-1} and {@code iNextSector}.
+     * If the indexer is in the middle of something it can't save with
+     * {@link #getCheckpointState()}, it returns the first sector of it.
+     * Indexing will then resume this indexer from that sector with a fresh
+     * state, and any items it found from there on are found again.
+     * The indexer may also finish anything that can't continue any further.
+     * @return {@code iNextSector} if the indexer can resume with the next sector. */
+    public int getCheckpointResumeSector(int iNextSector) {
+        return iNextSector;
+    }
+
+    /** The state of anything the indexer is in the middle of, that can't be
+     * found again by resuming from an earlier sector. Called after
+     * {@link #getCheckpointResumeSector(int)}.
+     * @return null if there's nothing to save. */
+    public @CheckForNull String getCheckpointState() {
+        return null;
+    }
+
+    /** Called before indexing resumes from a checkpoint.
+     * @param sState What {@link #getCheckpointState()} returned,
+     *               or null if it returned null.
+     * @param items The items this indexer had found that are kept. */
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items)
+            throws IOException, DeserializationFail
+    {
+    }
+
     /** Signals to the indexers that no more sectors will be passed, and that
      * indexers should close off and submit any lingering disc items. */
     abstract public void indexingEndOfDisc();
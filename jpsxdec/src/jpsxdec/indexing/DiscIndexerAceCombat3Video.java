@@ -40,6 +40,7 @@ package jpsxdec.indexing;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.TreeMap;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -75,13 +76,15 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
         @Nonnull
         private int _iLastInvertedFrameNumber;
 
-        public VidBuilder(@Nonnull Ac3Demuxer.DemuxedAc3Frame firstFrame) {
+        public VidBuilder(@Nonnull Ac3Demuxer.DemuxedAc3Frame firstFrame,
+                          @CheckForNull Collection<String> fpsPatterns)
+        {
             _iEndFrame = _iLastInvertedFrameNumber = firstFrame.getInvertedHeaderFrameNumber();
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
                     _frameNumberFactory.next(firstFrame.getStartSector(),
                                              _iEndFrame - firstFrame.getInvertedHeaderFrameNumber()),
-                    firstFrame.getEndSector());
+                    firstFrame.getEndSector(), fpsPatterns);
             _iChannel = firstFrame.getChannel();
         }
 
@@ -101,6 +104,16 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
             return true;
         }
 
+        public int getStartSector() {
+            return _frameTracker.getStartSector();
+        }
+
+        /** @return if a frame starting at the sector, or any later sector,
+         *          would not be accepted as part of this video. */
+        public boolean isEndedBy(int iFrameStartSector) {
+            return iFrameStartSector > _frameTracker.getEndSector() + 100;
+        }
+
         public @Nonnull DiscItemAceCombat3VideoStream endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
             return new DiscItemAceCombat3VideoStream(cd,
@@ -148,7 +161,18 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
             if (_videoBuilder != null && !_videoBuilder.addFrame(frame))
                 endVideo();
             if (_videoBuilder == null)
-                _videoBuilder = new VidBuilder(frame);
+                _videoBuilder = new VidBuilder(frame, _indexer.getFpsPatterns());
+        }
+
+        /** @see DiscIndexer#getCheckpointResumeSector(int) */
+        public int getCheckpointResumeSector(int iNextSector) {
+            int iPartialFrameStart = _demuxer.getPartialFrameStartSector();
+            int iNextFrameStart = iPartialFrameStart < 0 ? iNextSector : iPartialFrameStart;
+            if (_videoBuilder != null && _videoBuilder.isEndedBy(iNextFrameStart))
+                endVideo();
+            if (_videoBuilder != null)
+                return _videoBuilder.getStartSector();
+            return iNextFrameStart;
         }
 
         public void endVideo() {
@@ -199,6 +223,22 @@ public class DiscIndexerAceCombat3Video extends DiscIndexer implements DiscIndex
     }
 
 
+    @Override
+    public int getCheckpointResumeSector(int iNextSector) {
+        // channels are interleaved, so all start over from the earliest one
+        int iResumeSector = iNextSector;
+        for (Ac3Channel channel : _activeStreams.values()) {
+            iResumeSector = Math.min(iResumeSector, channel.getCheckpointResumeSector(iNextSector));
+        }
+        return iResumeSector;
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items) {
+        for (DiscItem item : items)
+            _completedVideos.add((DiscItemAceCombat3VideoStream) item);
+    }
+
     @Override
     public void indexingEndOfDisc() {
         for (Ac3Channel channel : _activeStreams.values()) {
@@ -167,6 +167,14 @@ public class DiscIndexerCrusader extends DiscIndexer implements DiscIndexer.Iden
 
     }
 
+    /** An open stream can't be saved, so start over from its first sector. */
+    @Override
+    public int getCheckpointResumeSector(int iNextSector) {
+        if (_currentStream != null)
+            return _currentStream._demuxer.getStartSector();
+        return iNextSector;
+    }
+
     @Override
     public void indexingEndOfDisc() {
         if (_currentStream != null) {
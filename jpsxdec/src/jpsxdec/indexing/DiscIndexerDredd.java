@@ -39,6 +39,7 @@ package jpsxdec.indexing;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -67,11 +68,13 @@ public class DiscIndexerDredd extends DiscIndexer
         @Nonnull
         private final FullFrameTracker _frameTracker;
 
-        public VidBuilder(@Nonnull DreddDemuxer.DemuxedDreddFrame firstFrame) {
+        public VidBuilder(@Nonnull DreddDemuxer.DemuxedDreddFrame firstFrame,
+                          @CheckForNull Collection<String> fpsPatterns)
+        {
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
                     _frameNumberFactory.next(firstFrame.getStartSector()),
-                    firstFrame.getEndSector());
+                    firstFrame.getEndSector(), fpsPatterns);
         }
 
         /** @return if the frame was accepted as part of this video, otherwise start a new video. */
@@ -87,6 +90,16 @@ public class DiscIndexerDredd extends DiscIndexer
             return true;
         }
 
+        public int getStartSector() {
+            return _frameTracker.getStartSector();
+        }
+
+        /** @return if a frame starting at the sector, or any later sector,
+         *          would not be accepted as part of this video. */
+        public boolean isEndedBy(int iFrameStartSector) {
+            return iFrameStartSector > _frameTracker.getEndSector() + 100;
+        }
+
         public @Nonnull DiscItemDreddVideo endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
 
@@ -143,7 +156,7 @@ public class DiscIndexerDredd extends DiscIndexer
         if (_videoBuilder != null && !_videoBuilder.addFrame(frame))
             endVideo();
         if (_videoBuilder == null)
-            _videoBuilder = new VidBuilder(frame);
+            _videoBuilder = new VidBuilder(frame, getFpsPatterns());
     }
 
     // [implements DreddDemuxer.Listener]
@@ -157,6 +170,24 @@ public class DiscIndexerDredd extends DiscIndexer
         _videoBuilder = null;
     }
 
+    @Override
+    public int getCheckpointResumeSector(int iNextSector) {
+        int iPartialFrameStart = _videoDemuxer.getPartialFrameStartSector();
+        int iNextFrameStart = iPartialFrameStart < 0 ? iNextSector : iPartialFrameStart;
+        // no need to start over for a video that can't continue
+        if (_videoBuilder != null && _videoBuilder.isEndedBy(iNextFrameStart))
+            endVideo();
+        if (_videoBuilder != null)
+            return _videoBuilder.getStartSector();
+        return iNextFrameStart;
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items) {
+        for (DiscItem item : items)
+            _completedVideos.add((DiscItemDreddVideo) item);
+    }
+
     @Override
     public void indexingEndOfDisc() {
         endVideo();
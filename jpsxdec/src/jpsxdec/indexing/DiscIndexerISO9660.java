@@ -38,9 +38,11 @@
 package jpsxdec.indexing;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -49,6 +51,7 @@ import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemISO9660File;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
 import jpsxdec.iso9660.DirectoryRecord;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.SectorISO9660DirectoryRecords;
@@ -111,6 +114,98 @@ public class DiscIndexerISO9660 extends DiscIndexer implements DiscIndexer.Ident
         }
     }
 
+    /** Everything found so far, since the file system is only built once
+     * the whole disc has been read: the primary descriptor sectors,
+     * the directory record sectors, then the ranges of Mode 2 Form 2 and
+     * CD audio sectors, separated by ';'. */
+    @Override
+    public @Nonnull String getCheckpointState() {
+        StringBuilder sb = new StringBuilder();
+        appendSectorNumbers(sb, _primaryDescriptors);
+        sb.append(';');
+        appendSectorNumbers(sb, _dirRecords);
+        sb.append(';');
+        appendSectorTypeRanges(sb, MODE2FORM2);
+        sb.append(';');
+        appendSectorTypeRanges(sb, CD_AUDIO);
+        return sb.toString();
+    }
+
+    private static void appendSectorNumbers(@Nonnull StringBuilder sb,
+                                            @Nonnull Collection<? extends IdentifiedSector> sectors)
+    {
+        boolean blnFirst = true;
+        for (IdentifiedSector sector : sectors) {
+            if (!blnFirst)
+                sb.append(',');
+            sb.append(sector.getSectorNumber());
+            blnFirst = false;
+        }
+    }
+
+    /** Appends "start-end" ranges of the sectors set to the type. */
+    private void appendSectorTypeRanges(@Nonnull StringBuilder sb, int iType) {
+        int iTypeBit = iType == MODE2FORM2 ? 0 : 1;
+        int iRangeStart = -1, iRangeEnd = -1;
+        for (int iBit = _sectorTypes.nextSetBit(0); iBit >= 0; iBit = _sectorTypes.nextSetBit(iBit+1)) {
+            if ((iBit & 1) != iTypeBit)
+                continue;
+            int iSector = iBit / 2;
+            if (iSector == iRangeEnd + 1 && iRangeStart >= 0) {
+                iRangeEnd = iSector;
+                continue;
+            }
+            if (iRangeStart >= 0)
+                sb.append(iRangeStart).append('-').append(iRangeEnd).append(',');
+            iRangeStart = iRangeEnd = iSector;
+        }
+        if (iRangeStart >= 0)
+            sb.append(iRangeStart).append('-').append(iRangeEnd);
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items)
+            throws IOException, DeserializationFail
+    {
+        if (sState == null)
+            return;
+        String[] asParts = sState.split(";", -1);
+        if (asParts.length != 4)
+            throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sState));
+        for (long lngSector : parseCheckpointList(asParts[0])) {
+            _primaryDescriptors.add(identifyCheckpointSector((int)lngSector,
+                    SectorISO9660VolumePrimaryDescriptor.class));
+        }
+        for (long lngSector : parseCheckpointList(asParts[1])) {
+            _dirRecords.add(identifyCheckpointSector((int)lngSector,
+                    SectorISO9660DirectoryRecords.class));
+        }
+        restoreSectorTypeRanges(asParts[2], MODE2FORM2);
+        restoreSectorTypeRanges(asParts[3], CD_AUDIO);
+    }
+
+    private static @Nonnull long[] parseCheckpointList(@Nonnull String sList)
+            throws DeserializationFail
+    {
+        if (sList.length() == 0)
+            return new long[0];
+        return IndexCheckpoint.parseStateNumbers(sList);
+    }
+
+    private void restoreSectorTypeRanges(@Nonnull String sRanges, int iType)
+            throws DeserializationFail
+    {
+        if (sRanges.length() == 0)
+            return;
+        for (String sRange : sRanges.split(",")) {
+            long[] alngRange = IndexCheckpoint.parseStateNumbers(sRange.replace('-', ','));
+            if (alngRange.length != 2)
+                throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sRange));
+            for (int iSector = (int)alngRange[0]; iSector <= alngRange[1]; iSector++)
+                setSectorType(iSector, iType);
+        }
+    }
+
     @Override
     public void indexingEndOfDisc() {
         _dirRecords.trimToSize();
@@ -37,7 +37,9 @@
 
 package jpsxdec.indexing;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -45,6 +47,7 @@ import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.DiscItem;
 import jpsxdec.discitems.DiscItemSquareAudioStream;
 import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
 import jpsxdec.sectors.ISquareAudioSector;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.util.DeserializationFail;
@@ -133,6 +136,35 @@ public class DiscIndexerSquare extends DiscIndexer implements DiscIndexer.Identi
         _prevAudioSect = audioSect;
     }
 
+    /** The start sector, sample counts, previous sector,
+     * previous left channel sector, and left channel period. */
+    @Override
+    public @CheckForNull String getCheckpointState() {
+        if (_prevAudioSect == null)
+            return null;
+        return _iAudioStartSector + "," +
+               _lngAudioLeftSampleCount + "," + _lngAudioRightSampleCount + "," +
+               _prevAudioSect.getSectorNumber() + "," +
+               _iPrevLeftAudioSectorNum + "," + _iLeftAudioPeriod;
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items)
+            throws IOException, DeserializationFail
+    {
+        if (sState == null)
+            return;
+        long[] alngValues = IndexCheckpoint.parseStateNumbers(sState);
+        if (alngValues.length != 6)
+            throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sState));
+        _iAudioStartSector = (int)alngValues[0];
+        _lngAudioLeftSampleCount = alngValues[1];
+        _lngAudioRightSampleCount = alngValues[2];
+        _prevAudioSect = identifyCheckpointSector((int)alngValues[3], ISquareAudioSector.class);
+        _iPrevLeftAudioSectorNum = (int)alngValues[4];
+        _iLeftAudioPeriod = (int)alngValues[5];
+    }
+
     @Override
     public void indexingEndOfDisc() {
         if (_prevAudioSect != null) {
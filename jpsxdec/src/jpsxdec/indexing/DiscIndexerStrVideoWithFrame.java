@@ -74,13 +74,15 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
         private final FullFrameTracker _frameTracker;
         private int _iLastFrameNumber;
 
-        public VidBuilder(@Nonnull StrDemuxer.DemuxedStrFrame firstFrame) {
+        public VidBuilder(@Nonnull StrDemuxer.DemuxedStrFrame firstFrame,
+                          @CheckForNull Collection<String> fpsPatterns)
+        {
             _iLastFrameNumber = firstFrame.getHeaderFrameNumber();
             _frameTracker = new FullFrameTracker(
                     firstFrame.getWidth(), firstFrame.getHeight(),
                     _frameNumberFactory.next(firstFrame.getStartSector(), 
                                              firstFrame.getHeaderFrameNumber()),
-                    firstFrame.getEndSector());
+                    firstFrame.getEndSector(), fpsPatterns);
         }
 
         /** @return if the frame was accepted as part of this video, otherwise start a new video. */
@@ -103,6 +105,16 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
             return true;
         }
 
+        public int getStartSector() {
+            return _frameTracker.getStartSector();
+        }
+
+        /** @return if a frame starting at the sector, or any later sector,
+         *          would not be accepted as part of this video. */
+        public boolean isEndedBy(int iFrameStartSector) {
+            return iFrameStartSector > _frameTracker.getEndSector() + 100;
+        }
+
         public @Nonnull DiscItemStrVideoStream endOfMovie(@Nonnull CdFileSectorReader cd) {
             int[] aiSectorsPerFrame = _frameTracker.getSectorsPerFrame();
 
@@ -158,7 +170,7 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
         if (_videoBuilder != null && !_videoBuilder.addFrame(frame))
             endVideo();
         if (_videoBuilder == null)
-            _videoBuilder = new VidBuilder(frame);
+            _videoBuilder = new VidBuilder(frame, getFpsPatterns());
     }
 
     private void endVideo() {
@@ -171,6 +183,24 @@ public class DiscIndexerStrVideoWithFrame extends DiscIndexer
         _videoBuilder = null;
     }
 
+    @Override
+    public int getCheckpointResumeSector(int iNextSector) {
+        int iPartialFrameStart = _videoDemuxer.getPartialFrameStartSector();
+        int iNextFrameStart = iPartialFrameStart < 0 ? iNextSector : iPartialFrameStart;
+        // no need to start over for a video that can't continue
+        if (_videoBuilder != null && _videoBuilder.isEndedBy(iNextFrameStart))
+            endVideo();
+        if (_videoBuilder != null)
+            return _videoBuilder.getStartSector();
+        return iNextFrameStart;
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items) {
+        for (DiscItem item : items)
+            _completedVideos.add((DiscItemStrVideoStream) item);
+    }
+
     @Override
     public void indexingEndOfDisc() {
         endVideo();
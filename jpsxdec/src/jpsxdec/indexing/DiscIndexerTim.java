@@ -54,7 +54,7 @@ import jpsxdec.util.DeserializationFail;
 /**
  * Searches for TIM images
  */
-public class DiscIndexerTim extends DiscIndexer implements DiscIndexer.Static {
+public class DiscIndexerTim extends DiscIndexer implements DiscIndexer.StaticSignature {
 
     private static final Logger LOG = Logger.getLogger(DiscIndexerTim.class.getName());
 
@@ -74,18 +74,27 @@ public class DiscIndexerTim extends DiscIndexer implements DiscIndexer.Static {
 
         try {
             TimInfo info;
-            if ((info = Tim.isTim(inStream)) != null) {
-                super.addDiscItem(new DiscItemTim(
-                        getCd(),
-                        iStartSector, inStream.getCurrentSector(),
-                        iStartOffset, info.iPaletteCount, info.iBitsPerPixel,
-                        info.iPixelWidth, info.iPixelHeight));
-            }
+            if ((info = Tim.isTim(inStream)) != null)
+                addTim(iStartSector, inStream.getCurrentSector(), iStartOffset, info);
         } catch (EOFException ex) {
             LOG.log(Level.INFO, "Stream ended in the middle of possible Tim", ex);
         }
     }
 
+    public boolean couldStartWith(int iFirstWord) {
+        return iFirstWord == Tim.HEADER_FIRST_WORD_LE;
+    }
+
+    /** Adds a TIM that was found somewhere other than
+     * {@link #staticRead(DemuxedUnidentifiedDataStream)}. */
+    void addTim(int iStartSector, int iEndSector, int iStartOffset, @Nonnull TimInfo info) {
+        super.addDiscItem(new DiscItemTim(
+                getCd(),
+                iStartSector, iEndSector,
+                iStartOffset, info.iPaletteCount, info.iBitsPerPixel,
+                info.iPixelWidth, info.iPixelHeight));
+    }
+
     @Override
     public void indexingEndOfDisc() {
     }
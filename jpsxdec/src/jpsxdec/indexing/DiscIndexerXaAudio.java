@@ -37,7 +37,9 @@
 
 package jpsxdec.indexing;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
@@ -105,11 +107,33 @@ public class DiscIndexerXaAudio extends DiscIndexer implements DiscIndexer.Ident
         private final ILocalizedLogger _errLog;
 
         public AudioStreamIndex(@Nonnull SectorXaAudio first, @Nonnull ILocalizedLogger errLog) {
-            _currentXA = first;
-            _iStartSector = first.getSectorNumber();
+            this(first.getSectorNumber(), null, first, -1, errLog);
+        }
+
+        /** Continues a stream saved in a checkpoint. */
+        public AudioStreamIndex(int iStartSector,
+                                @CheckForNull SectorXaAudio previous,
+                                @Nonnull SectorXaAudio current,
+                                int iAudioStride,
+                                @Nonnull ILocalizedLogger errLog)
+        {
+            _iStartSector = iStartSector;
+            _previousXA = previous;
+            _currentXA = current;
+            _iAudioStride = iAudioStride;
             _errLog = errLog;
         }
 
+        /** The start sector, then the previous sector and stride
+         * if there is a previous sector, then the current sector. */
+        public @Nonnull String getCheckpointState() {
+            if (_previousXA == null)
+                return _iStartSector + "," + _currentXA.getSectorNumber();
+            else
+                return _iStartSector + "," + _previousXA.getSectorNumber() + "," +
+                       _iAudioStride + "," + _currentXA.getSectorNumber();
+        }
+
         /**
          * @return true if the sector was accepted as part of this stream,
          *         or false if the stream is finished.
@@ -206,6 +230,44 @@ public class DiscIndexerXaAudio extends DiscIndexer implements DiscIndexer.Ident
 
     }
 
+    @Override
+    public @CheckForNull String getCheckpointState() {
+        StringBuilder sb = new StringBuilder();
+        for (AudioStreamIndex audStream : _aoChannels) {
+            if (audStream == null)
+                continue;
+            if (sb.length() > 0)
+                sb.append(';');
+            sb.append(audStream.getCheckpointState());
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    @Override
+    public void resumeFromCheckpoint(@CheckForNull String sState, @Nonnull List<DiscItem> items)
+            throws IOException, DeserializationFail
+    {
+        if (sState == null)
+            return;
+        for (String sStream : sState.split(";")) {
+            long[] alngValues = IndexCheckpoint.parseStateNumbers(sStream);
+            AudioStreamIndex audStream;
+            if (alngValues.length == 2) {
+                audStream = new AudioStreamIndex((int)alngValues[0], null,
+                        identifyCheckpointSector((int)alngValues[1], SectorXaAudio.class),
+                        -1, _errLog);
+            } else if (alngValues.length == 4) {
+                audStream = new AudioStreamIndex((int)alngValues[0],
+                        identifyCheckpointSector((int)alngValues[1], SectorXaAudio.class),
+                        identifyCheckpointSector((int)alngValues[3], SectorXaAudio.class),
+                        (int)alngValues[2], _errLog);
+            } else {
+                throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sStream));
+            }
+            _aoChannels[audStream.getCurrent().getChannel()] = audStream;
+        }
+    }
+
     @Override
     public void indexingEndOfDisc() {
         for (int i = 0; i < _aoChannels.length; i++) {
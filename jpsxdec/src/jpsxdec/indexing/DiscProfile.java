@@ -0,0 +1,143 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+
+/** The sector types, indexers, and inconsistent frame rate patterns
+ * a title actually uses. When a disc is known, indexing only looks for these,
+ * which is faster and finds fewer false-positive items.
+ * Profiles are looked up by the disc serial (see {@link DiscProfiles}). */
+public class DiscProfile {
+
+    /** Prefix of all the indexer class names that is left out of the
+     * indexer names used in a profile. */
+    private static final String INDEXER_CLASS_PREFIX = "DiscIndexer";
+
+    /** {@link #getIdentity(DiscProfile)} when there is no profile. */
+    public static final String FULL_SCAN_IDENTITY = "full";
+
+    /** The name used in a profile for an indexer,
+     * e.g. "Tim" for {@link DiscIndexerTim}. */
+    public static @Nonnull String getIndexerName(@Nonnull DiscIndexer indexer) {
+        String sName = indexer.getClass().getSimpleName();
+        if (sName.startsWith(INDEXER_CLASS_PREFIX))
+            sName = sName.substring(INDEXER_CLASS_PREFIX.length());
+        return sName;
+    }
+
+    @Nonnull
+    private final String _sName;
+    @Nonnull
+    private final Set<SectorType> _sectorTypes;
+    @Nonnull
+    private final Set<String> _indexers;
+    /** Null to try all the patterns. */
+    @CheckForNull
+    private final Set<String> _fpsPatterns;
+    @Nonnull
+    private final String _sIdentity;
+
+    /** The file system is always indexed since that is where the serial
+     * comes from, so its sector types are always included.
+     * @param fpsPatterns null to try all patterns. */
+    public DiscProfile(@Nonnull String sName,
+                       @Nonnull Collection<SectorType> sectorTypes,
+                       @Nonnull Collection<String> indexers,
+                       @CheckForNull Collection<String> fpsPatterns)
+    {
+        _sName = sName;
+        EnumSet<SectorType> types = EnumSet.of(SectorType.ISO9660_DIRECTORY_RECORDS,
+                                               SectorType.ISO9660_VOLUME_PRIMARY_DESCRIPTOR);
+        types.addAll(sectorTypes);
+        _sectorTypes = Collections.unmodifiableSet(types);
+        _indexers = Collections.unmodifiableSet(new TreeSet<String>(indexers));
+        if (fpsPatterns == null)
+            _fpsPatterns = null;
+        else
+            _fpsPatterns = Collections.unmodifiableSet(new TreeSet<String>(fpsPatterns));
+        String sContents = _sectorTypes + " " + _indexers + " " +
+                           (_fpsPatterns == null ? "all" : _fpsPatterns.toString());
+        _sIdentity = _sName + "-" + IndexCache.hashText(sContents).substring(0, 8);
+    }
+
+    public @Nonnull String getName() {
+        return _sName;
+    }
+
+    /** The name along with a hash of the sector types, indexers and
+     * frame rate patterns, so an index or checkpoint made with the profile
+     * isn't used after the profile is edited. */
+    public @Nonnull String getIdentity() {
+        return _sIdentity;
+    }
+
+    /** @return {@link #FULL_SCAN_IDENTITY} if the profile is null. */
+    public static @Nonnull String getIdentity(@CheckForNull DiscProfile profile) {
+        return profile == null ? FULL_SCAN_IDENTITY : profile.getIdentity();
+    }
+
+    public @Nonnull Set<SectorType> getSectorTypes() {
+        return _sectorTypes;
+    }
+
+    public boolean usesIndexer(@Nonnull DiscIndexer indexer) {
+        return indexer instanceof DiscIndexerISO9660 ||
+               _indexers.contains(getIndexerName(indexer));
+    }
+
+    /** @return null to try all the patterns. */
+    public @CheckForNull Set<String> getFpsPatterns() {
+        return _fpsPatterns;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s sectors=%s indexers=%s fps=%s",
+                             _sName, _sectorTypes, _indexers,
+                             _fpsPatterns == null ? "all" : _fpsPatterns);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.indexing.psxvideofps.InconsistentFrameSequence;
+import jpsxdec.iso9660.DirectoryRecord;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import jpsxdec.sectors.SectorISO9660DirectoryRecords;
+import jpsxdec.sectors.SectorISO9660VolumePrimaryDescriptor;
+import jpsxdec.util.IO;
+import jpsxdec.util.Misc;
+
+/** Database of {@link DiscProfile}s, looked up by the name of the boot
+ * executable in the disc's SYSTEM.CNF (e.g. "SLUS_006.62").
+ * <p>
+ * The profiles that come with jPSXdec are in {@link #BUNDLED_RESOURCE}.
+ * More can be added (or bundled ones replaced) in {@link #USER_FILE_NAME}
+ * in the working directory. Both are properties files where each
+ * profile is a group of keys starting with the profile name.
+ * <pre>
+ * [name].serials = [boot executable names]
+ * [name].sectors = [{@link SectorType} names]
+ * [name].indexers = [indexer names, see {@link DiscProfile#getIndexerName(DiscIndexer)}]
+ * [name].fps = [optional inconsistent frame rate patterns, all if missing]
+ * </pre>
+ * Values are separated by whitespace.
+ */
+public class DiscProfiles {
+
+    private static final Logger LOG = Logger.getLogger(DiscProfiles.class.getName());
+
+    public static final String BUNDLED_RESOURCE = "DiscProfiles.properties";
+    public static final String USER_FILE_NAME = "jpsxdec-profiles.properties";
+
+    private static final String SERIALS_KEY = ".serials";
+    private static final String SECTORS_KEY = ".sectors";
+    private static final String INDEXERS_KEY = ".indexers";
+    private static final String FPS_KEY = ".fps";
+
+    /** ISO9660 primary volume descriptor is always here. */
+    private static final int VOLUME_DESCRIPTOR_SECTOR = 16;
+    /** Don't bother reading a SYSTEM.CNF larger than this. */
+    private static final int MAX_SYSTEM_CNF_SIZE = 2048 * 4;
+
+    /** Loads the bundled profiles, and then any in the user file.
+     * Problems with either are only logged. */
+    public static @Nonnull DiscProfiles load() {
+        DiscProfiles profiles = new DiscProfiles();
+
+        InputStream is = DiscProfiles.class.getResourceAsStream(BUNDLED_RESOURCE);
+        if (is == null) {
+            LOG.log(Level.WARNING, "Unable to find profile resource {0}", BUNDLED_RESOURCE);
+        } else {
+            try {
+                profiles.add(is);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Error loading bundled profiles", ex);
+            } finally {
+                IO.closeSilently(is, LOG);
+            }
+        }
+
+        FileInputStream userFile = null;
+        try {
+            profiles.add(userFile = new FileInputStream(USER_FILE_NAME));
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.INFO, "User profile file not found");
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Error loading user profiles", ex);
+        } finally {
+            IO.closeSilently(userFile, LOG);
+        }
+
+        return profiles;
+    }
+
+    /** Profiles by serial. */
+    private final HashMap<String, DiscProfile> _profiles = new HashMap<String, DiscProfile>();
+
+    /** Adds the profiles in the stream, replacing any with the same serial. */
+    public void add(@Nonnull InputStream is) throws IOException {
+        Properties props = new Properties();
+        props.load(is);
+
+        for (Enumeration<?> e = props.propertyNames(); e.hasMoreElements();) {
+            String sKey = (String) e.nextElement();
+            if (!sKey.endsWith(SERIALS_KEY))
+                continue;
+            String sName = sKey.substring(0, sKey.length() - SERIALS_KEY.length());
+            DiscProfile profile = parseProfile(sName, props);
+            if (profile == null)
+                continue;
+            for (String sSerial : split(props.getProperty(sKey)))
+                _profiles.put(sSerial.toUpperCase(), profile);
+        }
+    }
+
+    /** @return null if the profile is invalid. */
+    private static @CheckForNull DiscProfile parseProfile(@Nonnull String sName,
+                                                          @Nonnull Properties props)
+    {
+        String sSectors = props.getProperty(sName + SECTORS_KEY);
+        String sIndexers = props.getProperty(sName + INDEXERS_KEY);
+        if (sSectors == null || sIndexers == null) {
+            LOG.log(Level.WARNING, "Profile {0} needs both {1} and {2}",
+                    new Object[] {sName, sName + SECTORS_KEY, sName + INDEXERS_KEY});
+            return null;
+        }
+
+        List<SectorType> types = new ArrayList<SectorType>();
+        for (String sType : split(sSectors)) {
+            try {
+                types.add(SectorType.valueOf(sType));
+            } catch (IllegalArgumentException ex) {
+                LOG.log(Level.WARNING, "Profile {0} has unknown sector type {1}",
+                        new Object[] {sName, sType});
+                return null;
+            }
+        }
+
+        String sFps = props.getProperty(sName + FPS_KEY);
+        List<String> fps = null;
+        if (sFps != null) {
+            fps = split(sFps);
+            for (String sPattern : fps) {
+                if (!InconsistentFrameSequence.isPattern(sPattern)) {
+                    LOG.log(Level.WARNING, "Profile {0} has unknown frame rate pattern {1}",
+                            new Object[] {sName, sPattern});
+                    return null;
+                }
+            }
+        }
+
+        return new DiscProfile(sName, types, split(sIndexers), fps);
+    }
+
+    private static @Nonnull List<String> split(@Nonnull String sValue) {
+        sValue = sValue.trim();
+        if (sValue.length() == 0)
+            return new ArrayList<String>();
+        return Arrays.asList(sValue.split("\\s+"));
+    }
+
+    public int size() {
+        return _profiles.size();
+    }
+
+    /** Each profile once, no matter how many serials it has. */
+    public @Nonnull Collection<DiscProfile> getProfiles() {
+        return new LinkedHashSet<DiscProfile>(_profiles.values());
+    }
+
+    public @CheckForNull DiscProfile get(@Nonnull String sSerial) {
+        return _profiles.get(sSerial.toUpperCase());
+    }
+
+    /** Looks up the profile for the disc.
+     * @return null if the disc doesn't have a serial, or it isn't known. */
+    public @CheckForNull DiscProfile find(@Nonnull CdFileSectorReader cd) throws IOException {
+        String sSerial = readSerial(cd);
+        if (sSerial == null)
+            return null;
+        return get(sSerial);
+    }
+
+    /** Reads the name of the boot executable from SYSTEM.CNF
+     * in the root directory of the disc's file system.
+     * Only needs to read a few sectors at the start of the disc.
+     * @return null if there is no file system or SYSTEM.CNF. */
+    public static @CheckForNull String readSerial(@Nonnull CdFileSectorReader cd) throws IOException {
+        if (cd.getLength() <= VOLUME_DESCRIPTOR_SECTOR)
+            return null;
+        CdSector pvdSector = cd.getSector(VOLUME_DESCRIPTOR_SECTOR);
+        SectorISO9660VolumePrimaryDescriptor pvd = new SectorISO9660VolumePrimaryDescriptor(pvdSector);
+        if (pvd.getProbability() == 0)
+            return null;
+
+        // same as DiscIndexerISO9660
+        int iSectorNumberDiff = 0;
+        if (pvdSector.hasHeaderSectorNumber()) {
+            int iHeaderSector = pvdSector.getHeaderSectorNumber();
+            if (iHeaderSector != -1)
+                iSectorNumberDiff = iHeaderSector - VOLUME_DESCRIPTOR_SECTOR;
+        }
+
+        DirectoryRecord root = pvd.getVPD().root_directory_record;
+        for (int iSect = 0; iSect < root.size / 2048; iSect++) {
+            int iSector = (int)(root.extent - iSectorNumberDiff + iSect);
+            if (iSector < 0 || iSector >= cd.getLength())
+                return null;
+            SectorISO9660DirectoryRecords dirRecSect = new SectorISO9660DirectoryRecords(cd.getSector(iSector));
+            if (dirRecSect.getProbability() == 0)
+                return null;
+            for (DirectoryRecord rec : dirRecSect.getRecords()) {
+                if ((rec.flags & DirectoryRecord.FLAG_IS_DIRECTORY) == 0 &&
+                    "SYSTEM.CNF".equalsIgnoreCase(rec.name))
+                {
+                    return parseSerial(readFile(cd, (int)(rec.extent - iSectorNumberDiff),
+                                                (int)Math.min(rec.size, MAX_SYSTEM_CNF_SIZE)));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static @Nonnull String readFile(@Nonnull CdFileSectorReader cd,
+                                            int iStartSector, int iSize)
+            throws IOException
+    {
+        byte[] abFile = new byte[iSize];
+        int iPos = 0;
+        for (int iSector = iStartSector; iPos < iSize && iSector < cd.getLength(); iSector++) {
+            CdSector cdSector = cd.getSector(iSector);
+            int iLength = Math.min(iSize - iPos, cdSector.getCdUserDataSize());
+            cdSector.getCdUserDataCopy(0, abFile, iPos, iLength);
+            iPos += iLength;
+        }
+        return Misc.asciiToString(abFile, 0, iPos);
+    }
+
+    /** Parses the name of the boot executable from the contents of SYSTEM.CNF.
+     * e.g. {@code BOOT = cdrom:\SLUS_006.62;1} is "SLUS_006.62".
+     * @return null if the BOOT line isn't found. */
+    static @CheckForNull String parseSerial(@Nonnull String sSystemCnf) {
+        for (String sLine : sSystemCnf.split("[\r\n]+")) {
+            int iEquals = sLine.indexOf('=');
+            if (iEquals < 0 || !sLine.substring(0, iEquals).trim().equalsIgnoreCase("BOOT"))
+                continue;
+            String sPath = sLine.substring(iEquals + 1).trim();
+            // drop the device and any directories
+            sPath = sPath.substring(Math.max(sPath.lastIndexOf(':'), sPath.lastIndexOf('\\')) + 1);
+            int iVersion = sPath.indexOf(';');
+            if (iVersion >= 0)
+                sPath = sPath.substring(0, iVersion);
+            sPath = sPath.trim();
+            if (sPath.length() == 0)
+                return null;
+            return sPath.toUpperCase();
+        }
+        return null;
+    }
+}
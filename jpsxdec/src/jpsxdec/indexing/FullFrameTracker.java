@@ -37,8 +37,10 @@
 
 package jpsxdec.indexing;
 
+import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.discitems.FrameNumber;
 import jpsxdec.discitems.FrameNumberFormat;
@@ -62,7 +64,11 @@ public class FullFrameTracker {
     @Nonnull
     private final MiniFrameTracker _miniTracker;
 
-    public FullFrameTracker(int iWidth, int iHeight, @Nonnull FrameNumber frameNum, int iEndSector) {
+    /** @param fpsPatterns Inconsistent frame rate patterns to try,
+     *                     or null for all of them. */
+    public FullFrameTracker(int iWidth, int iHeight, @Nonnull FrameNumber frameNum, int iEndSector,
+                            @CheckForNull Collection<String> fpsPatterns)
+    {
         _miniTracker = new MiniFrameTracker(frameNum);
         _iWidth = iWidth;
         _iHeight = iHeight;
@@ -70,7 +76,7 @@ public class FullFrameTracker {
         _iEndSector = iEndSector;
         _iFrame1PresentationSector = iEndSector - _iStartSector;
         _fpsCalc = new StrFrameRateCalc(frameNum.getSector() - _iStartSector,
-                                        iEndSector - _iStartSector);
+                                        iEndSector - _iStartSector, fpsPatterns);
     }
 
     public void next(@Nonnull FrameNumber frameNum, int iEndSector) {
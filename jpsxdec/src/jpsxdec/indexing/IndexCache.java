@@ -0,0 +1,277 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.ILocalizedLogger;
+import jpsxdec.util.IO;
+
+/** Directory of previously generated indexes, keyed by the contents of
+ * the disc image they were generated from, so the same image doesn't have
+ * to be indexed again.
+ *<p>
+ * The key is a hash of the image size and a sample of the image contents
+ * (the start, the end, and evenly spaced blocks in between), so images
+ * only differing in unsampled bytes would share an entry. The jPSXdec
+ * version is part of every entry name, and entries from other versions
+ * are deleted, since a different version may index differently.
+ * The {@link DiscProfile} used to make the index is also part of the key
+ * (see {@link DiscProfile#getIdentity(DiscProfile)}), so a full scan never
+ * gets an index limited by a profile, or the other way around.
+ * Entries are saved as binary indexes (see {@link BinaryIndexFile}).
+ *<p>
+ * When the total size of the entries goes over the limit, the least
+ * recently used entries are deleted (using the file modified time, which is
+ * updated whenever an entry is used). */
+public class IndexCache {
+
+    private static final Logger LOG = Logger.getLogger(IndexCache.class.getName());
+
+    /** Bytes hashed from the start and end of the image. */
+    private static final int EDGE_SAMPLE_SIZE = 64 * 1024;
+    /** Number of blocks hashed between the start and end. */
+    private static final int MIDDLE_SAMPLE_COUNT = 64;
+    private static final int MIDDLE_SAMPLE_SIZE = 4 * 1024;
+
+    /** Identifies entries made by this version. */
+    private static final String VERSION_TAG = hashText(Version.IndexHeader).substring(0, 8);
+    private static final String ENTRY_EXTENSION = DiscIndex.BINARY_INDEX_EXTENSION;
+
+    @Nonnull
+    private final File _dir;
+    private final long _lngMaxBytes;
+
+    /** @param lngMaxBytes Total size the entries in the directory can use. */
+    public IndexCache(@Nonnull File dir, long lngMaxBytes) {
+        _dir = dir;
+        _lngMaxBytes = lngMaxBytes;
+    }
+
+    /** Loads the index generated for the same image as {@code cd}, if any.
+     * The index will use {@code cd} as its source.
+     * @param profile The profile that applies to the disc, or null for a full scan.
+     * @return null if there is no entry for the image and profile. */
+    public @CheckForNull DiscIndex load(@Nonnull CdFileSectorReader cd,
+                                        @CheckForNull DiscProfile profile,
+                                        @Nonnull ILocalizedLogger log)
+            throws IOException
+    {
+        File entry = getEntryFile(cd, profile);
+        if (!entry.exists())
+            return null;
+
+        DiscIndex index;
+        try {
+            index = new DiscIndex(entry.getPath(), cd, log);
+        } catch (DeserializationFail ex) {
+            LOG.log(Level.WARNING, "Deleting bad index cache entry " + entry, ex);
+            if (!entry.delete())
+                LOG.log(Level.WARNING, "Unable to delete {0}", entry);
+            return null;
+        }
+        // mark the entry as recently used
+        if (!entry.setLastModified(System.currentTimeMillis()))
+            LOG.log(Level.WARNING, "Unable to update modified time of {0}", entry);
+        LOG.log(Level.INFO, "Loaded {0} from index cache", entry);
+        return index;
+    }
+
+    /** Saves the index as the entry for its source image, then deletes
+     * entries from other versions and old entries over the size limit.
+     * @param profile The profile used to make the index, or null for a full scan.
+     * @return the entry file. */
+    public @Nonnull File save(@Nonnull DiscIndex index, @CheckForNull DiscProfile profile)
+            throws IOException
+    {
+        IO.makeDirs(_dir);
+        File entry = getEntryFile(index.getSourceCd(), profile);
+
+        // write to a temporary file first so a partial entry is never used
+        File temp = File.createTempFile(entry.getName(), ".tmp", _dir);
+        try {
+            index.serializeIndexBinary(temp);
+            if (entry.exists() && !entry.delete())
+                throw new IOException("Unable to replace " + entry);
+            if (!temp.renameTo(entry))
+                throw new IOException("Unable to rename " + temp + " to " + entry);
+        } finally {
+            if (temp.exists() && !temp.delete())
+                LOG.log(Level.WARNING, "Unable to delete {0}", temp);
+        }
+        LOG.log(Level.INFO, "Saved {0} to index cache", entry);
+
+        prune(entry);
+        return entry;
+    }
+
+    /** Deletes entries from other versions, then the least recently used
+     * entries until the rest fit in the size limit.
+     * The newest entry is never deleted. */
+    private void prune(@Nonnull File newestEntry) {
+        File[] aoEntries = _dir.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().endsWith(ENTRY_EXTENSION);
+            }
+        });
+        if (aoEntries == null)
+            return;
+
+        // most recently used first
+        Arrays.sort(aoEntries, new Comparator<File>() {
+            public int compare(File o1, File o2) {
+                long lng1 = o1.lastModified(), lng2 = o2.lastModified();
+                return lng1 > lng2 ? -1 : (lng1 < lng2 ? 1 : 0);
+            }
+        });
+
+        long lngTotal = newestEntry.length();
+        for (File entry : aoEntries) {
+            if (entry.equals(newestEntry))
+                continue;
+            boolean blnDelete;
+            if (!entry.getName().startsWith(VERSION_TAG)) {
+                blnDelete = true;
+            } else {
+                lngTotal += entry.length();
+                blnDelete = lngTotal > _lngMaxBytes;
+            }
+            if (blnDelete) {
+                LOG.log(Level.INFO, "Removing {0} from index cache", entry);
+                if (!entry.delete())
+                    LOG.log(Level.WARNING, "Unable to delete {0}", entry);
+            }
+        }
+    }
+
+    // .........................................................................
+
+    private @Nonnull File getEntryFile(@Nonnull CdFileSectorReader cd,
+                                       @CheckForNull DiscProfile profile)
+            throws IOException
+    {
+        // profile names may not be valid in a file name, so use a hash
+        String sProfile = profile == null ? DiscProfile.FULL_SCAN_IDENTITY
+                                          : hashText(profile.getIdentity()).substring(0, 8);
+        return new File(_dir, VERSION_TAG + "_" + hashImage(cd.getSourceFile()) +
+                              "_" + sProfile + ENTRY_EXTENSION);
+    }
+
+    /** Hashes the size of the file along with samples of its contents. */
+    static @Nonnull String hashImage(@Nonnull File imageFile)
+            throws FileNotFoundException, IOException
+    {
+        MessageDigest digest = newSha1();
+        RandomAccessFile raf = new RandomAccessFile(imageFile, "r");
+        try {
+            long lngLength = raf.length();
+            for (int i = 56; i >= 0; i -= 8) {
+                digest.update((byte)(lngLength >>> i));
+            }
+
+            byte[] abEdge = new byte[(int)Math.min(EDGE_SAMPLE_SIZE, lngLength)];
+            raf.seek(0);
+            IO.readByteArray(raf, abEdge);
+            digest.update(abEdge);
+
+            if (lngLength > EDGE_SAMPLE_SIZE * 2) {
+                byte[] abMiddle = new byte[MIDDLE_SAMPLE_SIZE];
+                long lngMiddleLength = lngLength - EDGE_SAMPLE_SIZE * 2 - MIDDLE_SAMPLE_SIZE;
+                for (int i = 0; i < MIDDLE_SAMPLE_COUNT && lngMiddleLength > 0; i++) {
+                    raf.seek(EDGE_SAMPLE_SIZE + lngMiddleLength * i / MIDDLE_SAMPLE_COUNT);
+                    IO.readByteArray(raf, abMiddle);
+                    digest.update(abMiddle);
+                }
+            }
+
+            raf.seek(lngLength - abEdge.length);
+            IO.readByteArray(raf, abEdge);
+            digest.update(abEdge);
+        } finally {
+            IO.closeSilently(raf, LOG);
+        }
+        return hex(digest.digest());
+    }
+
+    private static @Nonnull MessageDigest newSha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            // Every implementation of the Java platform is required to support SHA-1
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /** Hex SHA-1 of the UTF-8 text. */
+    static @Nonnull String hashText(@Nonnull String s) {
+        return hex(newSha1().digest(utf8(s)));
+    }
+
+    private static @Nonnull byte[] utf8(@Nonnull String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            // Every implementation of the Java platform is required to support UTF-8
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static @Nonnull String hex(@Nonnull byte[] ab) {
+        StringBuilder sb = new StringBuilder(ab.length * 2);
+        for (byte b : ab) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.discitems.IndexId;
+import jpsxdec.discitems.SerializedDiscItem;
+import jpsxdec.i18n.I;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.IO;
+
+/** Saves the progress of indexing a disc every so often, so indexing can
+ * resume from there if it is canceled or the process dies before the
+ * index is finished.
+ *<p>
+ * A checkpoint is only saved between sequences of unidentified sectors,
+ * so no {@link DiscIndexer.Static} indexer is in the middle of a search.
+ * Each indexer either saves what it's in the middle of
+ * ({@link DiscIndexer#getCheckpointState()}), or resumes from the first
+ * sector of it ({@link DiscIndexer#getCheckpointResumeSector(int)}).
+ * Items that an indexer will find again when it resumes are not saved,
+ * so the finished index is the same as if indexing was never interrupted.
+ *<p>
+ * The file is like a text index file with extra lines for the profile used,
+ * the sector each indexer resumes from, and the indexer states.
+ * The items are saved with temporary index numbers. */
+public class IndexCheckpoint {
+
+    private static final Logger LOG = Logger.getLogger(IndexCheckpoint.class.getName());
+
+    /** Added to the name of the index file being generated
+     * to get the name of its checkpoint file. */
+    public static final String EXTENSION = ".checkpoint";
+    /** How often a checkpoint is saved, unless specified. */
+    public static final long DEFAULT_INTERVAL_MILLIS = 60 * 1000;
+
+    private static final String PROFILE_START = "Profile:";
+    private static final String RESUME_START = "Resume:";
+    private static final String STATE_START = "State:";
+    private static final String NAME_VALUE_DELIMITER = "=";
+
+    /** The checkpoint used while generating the index file. */
+    public static @Nonnull IndexCheckpoint forIndexFile(@Nonnull File indexFile) {
+        return new IndexCheckpoint(new File(indexFile.getPath() + EXTENSION),
+                                   DEFAULT_INTERVAL_MILLIS);
+    }
+
+    @Nonnull
+    private final File _file;
+    private final long _lngIntervalMillis;
+    private long _lngLastSaveTime;
+
+    public IndexCheckpoint(@Nonnull File file, long lngIntervalMillis) {
+        _file = file;
+        _lngIntervalMillis = lngIntervalMillis;
+        _lngLastSaveTime = System.currentTimeMillis();
+    }
+
+    public @Nonnull File getFile() {
+        return _file;
+    }
+
+    /** If it's time to save another checkpoint. */
+    boolean isDue() {
+        return System.currentTimeMillis() - _lngLastSaveTime >= _lngIntervalMillis;
+    }
+
+    /** Saves where the indexers have gotten to, replacing any previous
+     * checkpoint. Sectors before {@code iNextSector} have been passed to the
+     * indexers, and no static indexer is in the middle of a search. */
+    void save(@Nonnull CdFileSectorReader cd, @CheckForNull DiscProfile profile,
+              @Nonnull DiscIndexer[] aoIndexers, @Nonnull Collection<DiscItem> allItems,
+              int iNextSector)
+            throws IOException
+    {
+        int[] aiResumeSectors = new int[aoIndexers.length];
+        String[] asStates = new String[aoIndexers.length];
+        IdentityHashMap<DiscItem, Boolean> keptItems = new IdentityHashMap<DiscItem, Boolean>();
+        for (int i = 0; i < aoIndexers.length; i++) {
+            DiscIndexer indexer = aoIndexers[i];
+            // may finish items, so ask before looking at the items
+            int iResumeSector = indexer.getCheckpointResumeSector(iNextSector);
+            List<DiscItem> added = indexer.getAddedItems();
+            // an item that crosses the resume sector would be found again
+            // partially, so resume at its start and find the whole thing
+            boolean blnMoved;
+            do {
+                blnMoved = false;
+                for (DiscItem item : added) {
+                    if (item.getStartSector() < iResumeSector && item.getEndSector() >= iResumeSector) {
+                        iResumeSector = item.getStartSector();
+                        blnMoved = true;
+                    }
+                }
+            } while (blnMoved);
+            for (DiscItem item : added) {
+                if (item.getStartSector() < iResumeSector)
+                    keptItems.put(item, Boolean.TRUE);
+            }
+            aiResumeSectors[i] = iResumeSector;
+            asStates[i] = indexer.getCheckpointState();
+        }
+
+        File tempFile = new File(_file.getPath() + ".tmp");
+        PrintStream ps = new PrintStream(tempFile, "UTF-8");
+        try {
+            ps.println(Version.IndexHeader);
+            ps.println(cd.serialize());
+            ps.println(PROFILE_START + DiscProfile.getIdentity(profile));
+            for (int i = 0; i < aoIndexers.length; i++) {
+                ps.println(RESUME_START + DiscProfile.getIndexerName(aoIndexers[i]) +
+                           NAME_VALUE_DELIMITER + aiResumeSectors[i]);
+            }
+            for (int i = 0; i < aoIndexers.length; i++) {
+                if (asStates[i] != null) {
+                    ps.println(STATE_START + DiscProfile.getIndexerName(aoIndexers[i]) +
+                               NAME_VALUE_DELIMITER + asStates[i]);
+                }
+            }
+            int iIndex = 0;
+            for (DiscItem item : allItems) {
+                if (!keptItems.containsKey(item))
+                    continue;
+                // the line can't be read back without an index and id,
+                // so use temporary ones without changing the item (the real
+                // ones are assigned when indexing is finished)
+                SerializedDiscItem fields = item.serialize();
+                fields.setIndexAndId(iIndex, new IndexId(iIndex).serialize());
+                ps.println(fields.serialize());
+                iIndex++;
+            }
+            if (ps.checkError())
+                throw new IOException("Error writing " + tempFile);
+        } finally {
+            ps.close();
+        }
+
+        // only replace the previous checkpoint once the new one is complete
+        if (!tempFile.renameTo(_file)) {
+            // some platforms won't rename over an existing file
+            _file.delete();
+            if (!tempFile.renameTo(_file))
+                throw new IOException("Unable to rename " + tempFile + " to " + _file);
+        }
+        _lngLastSaveTime = System.currentTimeMillis();
+        LOG.log(Level.INFO, "Saved checkpoint at sector {0}", iNextSector);
+    }
+
+    /** Restores the checkpoint into freshly initialized indexers.
+     * @return The sector each indexer resumes from, in the same order,
+     *         or null if there is no checkpoint.
+     * @throws DeserializationFail if the checkpoint isn't for this disc
+     *                             and profile, or can't be restored. */
+    @CheckForNull int[] resume(@Nonnull CdFileSectorReader cd,
+                               @CheckForNull DiscProfile profile,
+                               @Nonnull DiscIndexer[] aoIndexers)
+            throws IOException, DeserializationFail
+    {
+        if (!_file.exists())
+            return null;
+
+        HashMap<String, Integer> resumeSectors = new HashMap<String, Integer>();
+        HashMap<String, String> states = new HashMap<String, String>();
+        ArrayList<String> itemLines = new ArrayList<String>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(_file), "UTF-8"));
+        try {
+            if (!Version.IndexHeader.equals(reader.readLine()))
+                throw new DeserializationFail(I.INDEX_HEADER_MISSING());
+            String sLine = reader.readLine();
+            if (sLine == null || !cd.matchesSerialization(sLine))
+                throw new DeserializationFail(I.CD_FORMAT_MISMATCH(cd, String.valueOf(sLine)));
+            sLine = reader.readLine();
+            String sProfile = PROFILE_START + DiscProfile.getIdentity(profile);
+            if (!sProfile.equals(sLine))
+                throw new DeserializationFail(I.INDEX_CHECKPOINT_PROFILE_MISMATCH());
+
+            while ((sLine = reader.readLine()) != null) {
+                if (sLine.startsWith(RESUME_START)) {
+                    String[] asNameValue = splitNameValue(sLine, RESUME_START);
+                    try {
+                        resumeSectors.put(asNameValue[0], Integer.valueOf(asNameValue[1]));
+                    } catch (NumberFormatException ex) {
+                        throw new DeserializationFail(I.SERIALIZATION_FAILED_TO_CONVERT_TO_INT(asNameValue[1]), ex);
+                    }
+                } else if (sLine.startsWith(STATE_START)) {
+                    String[] asNameValue = splitNameValue(sLine, STATE_START);
+                    states.put(asNameValue[0], asNameValue[1]);
+                } else {
+                    itemLines.add(sLine);
+                }
+            }
+        } finally {
+            IO.closeSilently(reader, LOG);
+        }
+
+        for (String sItemLine : itemLines) {
+            SerializedDiscItem fields = new SerializedDiscItem(sItemLine);
+            boolean blnLineHandled = false;
+            for (DiscIndexer indexer : aoIndexers) {
+                DiscItem item = indexer.deserializeLineRead(fields);
+                if (item != null) {
+                    indexer.addCheckpointItem(item);
+                    blnLineHandled = true;
+                    break;
+                }
+            }
+            if (!blnLineHandled)
+                throw new DeserializationFail(I.INDEX_UNHANDLED_LINE(sItemLine));
+        }
+
+        int[] aiResumeSectors = new int[aoIndexers.length];
+        for (int i = 0; i < aoIndexers.length; i++) {
+            String sName = DiscProfile.getIndexerName(aoIndexers[i]);
+            Integer oiResumeSector = resumeSectors.get(sName);
+            if (oiResumeSector == null)
+                throw new DeserializationFail(I.SERIALIZATION_FIELD_NOT_FOUND(RESUME_START + sName));
+            aiResumeSectors[i] = oiResumeSector.intValue();
+            aoIndexers[i].resumeFromCheckpoint(states.get(sName), aoIndexers[i].getAddedItems());
+        }
+        return aiResumeSectors;
+    }
+
+    private static @Nonnull String[] splitNameValue(@Nonnull String sLine, @Nonnull String sStart)
+            throws DeserializationFail
+    {
+        int i = sLine.indexOf(NAME_VALUE_DELIMITER);
+        if (i < 0)
+            throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sLine));
+        return new String[] { sLine.substring(sStart.length(), i), sLine.substring(i + 1) };
+    }
+
+    /** Deletes the checkpoint, once the finished index has been saved. */
+    public void delete() {
+        if (_file.exists() && !_file.delete())
+            LOG.log(Level.WARNING, "Unable to delete checkpoint {0}", _file);
+    }
+
+    /** Parses a comma separated list of numbers in an indexer's state. */
+    static @Nonnull long[] parseStateNumbers(@Nonnull String sState) throws DeserializationFail {
+        String[] asValues = sState.split(",");
+        long[] alngValues = new long[asValues.length];
+        try {
+            for (int i = 0; i < asValues.length; i++)
+                alngValues[i] = Long.parseLong(asValues[i]);
+        } catch (NumberFormatException ex) {
+            throw new DeserializationFail(I.SERIALIZATION_FIELD_IMPROPERLY_FORMATTED(sState), ex);
+        }
+        return alngValues;
+    }
+}
@@ -0,0 +1,444 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.sectors.IdentifiedSectorIterator;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import jpsxdec.tim.Tim;
+import jpsxdec.tim.TimInfo;
+import jpsxdec.util.IO;
+
+/** Searches for TIM images in ranges of the disc on several threads
+ * ahead of the normal (sequential) indexing.
+ *<p>
+ * Searching for TIMs at every 4 byte offset of every unidentified sector
+ * is the slowest part of indexing, but sector identification is contextual
+ * so exactly which sectors are unidentified is only known once the disc is
+ * iterated in order. Each range is instead searched speculatively, treating
+ * every sector that can't be identified without context as unidentified.
+ * The range also records the last sector that was read while searching each
+ * sector. When the sequential indexing reaches an unidentified sector,
+ * the speculative results for the sector are only used if every sector that
+ * was read is also unidentified in the actual sequence, otherwise the sector
+ * is searched normally. This way the index is always identical to one
+ * generated without this.
+ *<p>
+ * Each thread uses its own copy of the {@link CdFileSectorReader}. */
+class ParallelTimScan implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ParallelTimScan.class.getName());
+
+    /** Number of sectors searched by each task. */
+    private static final int SECTORS_PER_RANGE = 1024;
+
+    /** The speculative search results for one sector. */
+    private static class FoundTim {
+        public final int iStartSector;
+        public final int iStartOffset;
+        public final int iEndSector;
+        @Nonnull
+        public final TimInfo info;
+
+        public FoundTim(int iStartSector, int iStartOffset, int iEndSector,
+                        @Nonnull TimInfo info)
+        {
+            this.iStartSector = iStartSector;
+            this.iStartOffset = iStartOffset;
+            this.iEndSector = iEndSector;
+            this.info = info;
+        }
+    }
+
+    /** Speculative search results for a range of sectors. */
+    private static class Range {
+        public final int iStartSector;
+        /** For each sector in the range, the last sector read while searching
+         * for TIMs at all the offsets in the sector.
+         * -1 if the sector was identified without context and so
+         * wasn't searched. */
+        @Nonnull
+        public final int[] aiLastSectorRead;
+        /** All TIMs found in the range, in order. */
+        public final ArrayList<FoundTim> tims = new ArrayList<FoundTim>();
+        /** For each sector in the range, index of the first TIM in
+         * {@link #tims} that starts in the sector or later. */
+        @Nonnull
+        public final int[] aiFirstTim;
+
+        public Range(int iStartSector, int iSectorCount) {
+            this.iStartSector = iStartSector;
+            aiLastSectorRead = new int[iSectorCount];
+            aiFirstTim = new int[iSectorCount + 1];
+        }
+    }
+
+    @Nonnull
+    private final ExecutorService _executor;
+    /** Reader copies that aren't being used by a task. */
+    @Nonnull
+    private final BlockingQueue<CdFileSectorReader> _readers;
+    @Nonnull
+    private final ArrayList<CdFileSectorReader> _allReaders;
+    @Nonnull
+    private final ArrayList<Future<Range>> _ranges = new ArrayList<Future<Range>>();
+    /** Range number of the first range in {@link #_ranges}. */
+    private final int _iFirstRange;
+    private final int _iSectorCount;
+    /** Shared between tasks so sectors at the edge of a range are only
+     * identified once (usually). 0 = not known yet,
+     * 1 = unidentified, 2 = identified without context. */
+    @Nonnull
+    private final byte[] _abIdentified;
+
+    /** Only used for its signature, which is safe to check on any thread. */
+    @Nonnull
+    private final DiscIndexerTim _timSignature;
+    /** The same sector types the indexing iterator is identifying. */
+    @Nonnull
+    private final Set<SectorType> _sectorTypes;
+
+    /** Immediately starts searching the whole disc on {@code iThreads} threads.
+     * @param sectorTypes Must be the same types the {@link UnidentifiedSectorIterator}
+     *                    is identifying. */
+    public ParallelTimScan(@Nonnull CdFileSectorReader cd, int iThreads,
+                           @Nonnull Set<SectorType> sectorTypes,
+                           @Nonnull DiscIndexerTim timIndexer)
+            throws IOException
+    {
+        this(cd, iThreads, 0, sectorTypes, timIndexer);
+    }
+
+    /** Immediately starts searching the disc from {@code iStartSector} on.
+     * Sectors before that can't be checked with {@link #addTimsAtMark}. */
+    public ParallelTimScan(@Nonnull CdFileSectorReader cd, int iThreads, int iStartSector,
+                           @Nonnull Set<SectorType> sectorTypes,
+                           @Nonnull DiscIndexerTim timIndexer)
+            throws IOException
+    {
+        _timSignature = timIndexer;
+        _sectorTypes = sectorTypes;
+        _iSectorCount = cd.getLength();
+        _abIdentified = new byte[_iSectorCount];
+        _readers = new ArrayBlockingQueue<CdFileSectorReader>(iThreads);
+        _allReaders = new ArrayList<CdFileSectorReader>(iThreads);
+        try {
+            for (int i = 0; i < iThreads; i++) {
+                CdFileSectorReader copy = cd.openCopy();
+                _allReaders.add(copy);
+                _readers.add(copy);
+            }
+        } catch (IOException ex) {
+            closeReaders();
+            throw ex;
+        }
+
+        _executor = Executors.newFixedThreadPool(iThreads, new ThreadFactory() {
+            private final AtomicInteger _threadNumber = new AtomicInteger();
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, ParallelTimScan.class.getSimpleName() + " " + _threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        // tasks are run in the order submitted, so the beginning of the
+        // disc will be searched first
+        _iFirstRange = iStartSector / SECTORS_PER_RANGE;
+        for (int iStart = _iFirstRange * SECTORS_PER_RANGE; iStart < _iSectorCount; iStart += SECTORS_PER_RANGE) {
+            final int iRangeStart = iStart;
+            final int iRangeCount = Math.min(SECTORS_PER_RANGE, _iSectorCount - iStart);
+            _ranges.add(_executor.submit(new Callable<Range>() {
+                public Range call() throws IOException, InterruptedException {
+                    CdFileSectorReader reader = _readers.take();
+                    try {
+                        return searchRange(reader, iRangeStart, iRangeCount);
+                    } finally {
+                        _readers.put(reader);
+                    }
+                }
+            }));
+        }
+    }
+
+    /** Stops any searching still in progress and closes the reader copies. */
+    public void close() {
+        _executor.shutdownNow();
+        try {
+            // wait for the tasks to let go of the readers before closing them
+            while (!_executor.awaitTermination(1, TimeUnit.SECONDS))
+                LOG.info("Waiting for TIM search to stop");
+        } catch (InterruptedException ex) {
+            LOG.log(Level.WARNING, null, ex);
+        }
+        closeReaders();
+    }
+
+    private void closeReaders() {
+        for (CdFileSectorReader reader : _allReaders)
+            IO.closeSilently(reader, LOG);
+    }
+
+    /** If the speculative search results can be used for the sector at the
+     * mark of the stream, adds the TIMs found in the sector to the indexer.
+     * The stream mark must be at the start of the sector.
+     * @return if the results were used and the search of this sector can be
+     *         skipped, otherwise the sector needs to be searched normally. */
+    public boolean addTimsAtMark(@Nonnull DemuxedUnidentifiedDataStream stream,
+                                 @Nonnull DiscIndexerTim indexer)
+            throws IOException
+    {
+        int iSector = stream.getCurrentSector();
+        Range range = getRange(iSector / SECTORS_PER_RANGE);
+        int iIndex = iSector - range.iStartSector;
+        int iLastSectorRead = range.aiLastSectorRead[iIndex];
+        if (iLastSectorRead < 0 || !stream.isUnidentifiedThrough(iLastSectorRead))
+            return false;
+        for (int i = range.aiFirstTim[iIndex]; i < range.aiFirstTim[iIndex+1]; i++) {
+            FoundTim tim = range.tims.get(i);
+            indexer.addTim(tim.iStartSector, tim.iEndSector, tim.iStartOffset, tim.info);
+        }
+        return true;
+    }
+
+    private @Nonnull Range getRange(int iRange) throws IOException {
+        try {
+            return _ranges.get(iRange - _iFirstRange).get();
+        } catch (InterruptedException ex) {
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    // .........................................................................
+
+    private @Nonnull Range searchRange(@Nonnull CdFileSectorReader reader,
+                                       int iRangeStart, int iRangeCount)
+            throws IOException, InterruptedException
+    {
+        Range range = new Range(iRangeStart, iRangeCount);
+        SpeculativeStream stream = new SpeculativeStream(reader);
+        SignatureScan signatureScan = new SignatureScan(_timSignature);
+
+        for (int i = 0; i < iRangeCount; i++) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            int iSector = iRangeStart + i;
+            range.aiFirstTim[i] = range.tims.size();
+            CdSector cdSector = stream.startAt(iSector);
+            if (cdSector == null) {
+                range.aiLastSectorRead[i] = -1;
+                continue;
+            }
+
+            int iLastSectorRead = iSector;
+            // same offsets searched as DiscIndex
+            for (int iOffset = 0; iOffset < cdSector.getCdUserDataSize(); iOffset += 4) {
+                // skipped offsets would only read the first word, in this sector
+                iOffset += signatureScan.bytesToNextCandidate(cdSector, iOffset);
+                if (iOffset >= cdSector.getCdUserDataSize())
+                    break;
+                stream.seek(cdSector, iOffset);
+                try {
+                    TimInfo info = Tim.isTim(stream);
+                    if (info != null)
+                        range.tims.add(new FoundTim(iSector, iOffset, stream.getCurrentSector(), info));
+                } catch (EOFException ex) {
+                    // no TIM here, same as DiscIndexerTim
+                }
+                iLastSectorRead = Math.max(iLastSectorRead, stream.getLastSectorRead());
+            }
+            if (cdSector.getCdUserDataSize() == 0) // can't predict what will happen
+                iLastSectorRead = -1;
+            range.aiLastSectorRead[i] = iLastSectorRead;
+        }
+        range.aiFirstTim[iRangeCount] = range.tims.size();
+        return range;
+    }
+
+    private boolean isIdentified(@Nonnull CdSector cdSector) {
+        int iSector = cdSector.getSectorNumberFromStart();
+        byte bIdentified = _abIdentified[iSector];
+        if (bIdentified == 0) {
+            bIdentified = IdentifiedSectorIterator.identifyWithoutContext(cdSector, _sectorTypes) == null ? (byte)1 : (byte)2;
+            _abIdentified[iSector] = bIdentified;
+        }
+        return bIdentified == 2;
+    }
+
+    /** Reads the same as {@link DemuxedUnidentifiedDataStream} would
+     * if every sector that can't be identified without context was part of
+     * the unidentified sequence. Keeps the sectors read from the starting
+     * sector onward so they aren't re-read for every offset. */
+    private class SpeculativeStream extends InputStream {
+
+        @Nonnull
+        private final CdFileSectorReader _reader;
+        /** Consecutive unidentified sectors from the starting sector. */
+        private final ArrayList<CdSector> _sectors = new ArrayList<CdSector>();
+        @CheckForNull
+        private CdSector _current;
+        private int _iCurrentOffset;
+        private int _iLastSectorRead;
+
+        public SpeculativeStream(@Nonnull CdFileSectorReader reader) {
+            _reader = reader;
+        }
+
+        /** Drops any sectors before {@code iSector}.
+         * @return the sector if it is unidentified, null if identified. */
+        public @CheckForNull CdSector startAt(int iSector) throws IOException {
+            int iDrop = 0;
+            while (iDrop < _sectors.size() &&
+                   _sectors.get(iDrop).getSectorNumberFromStart() < iSector)
+                iDrop++;
+            _sectors.subList(0, iDrop).clear();
+            if (_sectors.isEmpty()) {
+                CdSector cdSector = _reader.getSector(iSector);
+                if (isIdentified(cdSector))
+                    return null;
+                _sectors.add(cdSector);
+            }
+            return _sectors.get(0);
+        }
+
+        public void seek(@Nonnull CdSector cdSector, int iOffset) {
+            _current = cdSector;
+            _iCurrentOffset = iOffset;
+            _iLastSectorRead = cdSector.getSectorNumberFromStart();
+        }
+
+        public int getCurrentSector() {
+            return _current.getSectorNumberFromStart();
+        }
+
+        public int getLastSectorRead() {
+            return _iLastSectorRead;
+        }
+
+        /** Same as the unidentified sequence ending if the next sector
+         * is past the end of the disc or is identified. */
+        private @CheckForNull CdSector nextUnidentified() throws IOException {
+            int iNext = _current.getSectorNumberFromStart() + 1;
+            int iIndex = iNext - _sectors.get(0).getSectorNumberFromStart();
+            if (iIndex < _sectors.size()) {
+                _iLastSectorRead = Math.max(_iLastSectorRead, iNext);
+                return _sectors.get(iIndex);
+            }
+            // only the last sector in the list can lead to an identified one
+            if (iNext >= _iSectorCount)
+                return null;
+            CdSector next = _reader.getSector(iNext);
+            if (isIdentified(next))
+                return null;
+            _sectors.add(next);
+            _iLastSectorRead = Math.max(_iLastSectorRead, iNext);
+            return next;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (_iCurrentOffset >= _current.getCdUserDataSize()) {
+                CdSector next = nextUnidentified();
+                if (next != null) {
+                    _iCurrentOffset = 0;
+                    _current = next;
+                } else {
+                    return -1;
+                }
+            }
+
+            int iReturn = _current.readUserDataByte(_iCurrentOffset) & 0xff;
+            _iCurrentOffset++;
+            return iReturn;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            long lngRemain = n;
+            while (lngRemain > 0) {
+                int iSectorRemain = _current.getCdUserDataSize() - _iCurrentOffset;
+                if (lngRemain <= iSectorRemain) {
+                    _iCurrentOffset += lngRemain;
+                    lngRemain = 0;
+                } else {
+                    lngRemain -= iSectorRemain;
+                    _iCurrentOffset += iSectorRemain;
+                    CdSector next = nextUnidentified();
+                    if (next != null) {
+                        _iCurrentOffset = 0;
+                        _current = next;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (n == lngRemain)
+                return -1;
+            else
+                return n - lngRemain;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+
+/** Finds the offsets in an unidentified sector where a
+ * {@link DiscIndexer.StaticSignature} indexer might find something, by
+ * checking the signatures against each 4 byte word of the sector's
+ * user data. Only those offsets then need the full (much slower) search
+ * through the {@link DemuxedUnidentifiedDataStream}.
+ * <p>
+ * The offsets skipped are ones where every indexer's staticRead() would
+ * have found nothing after reading at most the first word, which is always
+ * in the sector, so the index is identical to searching every offset. */
+class SignatureScan {
+
+    /** If every static indexer has a signature, creates a scan for them,
+     * otherwise every offset needs to be searched and returns null. */
+    public static @CheckForNull SignatureScan create(@Nonnull List<DiscIndexer.Static> indexers) {
+        DiscIndexer.StaticSignature[] aoSignatures = new DiscIndexer.StaticSignature[indexers.size()];
+        for (int i = 0; i < aoSignatures.length; i++) {
+            DiscIndexer.Static indexer = indexers.get(i);
+            if (!(indexer instanceof DiscIndexer.StaticSignature))
+                return null;
+            aoSignatures[i] = (DiscIndexer.StaticSignature) indexer;
+        }
+        return new SignatureScan(aoSignatures);
+    }
+
+    @Nonnull
+    private final DiscIndexer.StaticSignature[] _aoSignatures;
+
+    /** The sector whose user data is in {@link #_abUserData}. */
+    @CheckForNull
+    private CdSector _sector;
+    @Nonnull
+    private byte[] _abUserData = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+    private int _iUserDataSize;
+
+    public SignatureScan(@Nonnull DiscIndexer.StaticSignature ... aoSignatures) {
+        _aoSignatures = aoSignatures;
+    }
+
+    /** Scans the user data of the sector from {@code iOffset} in steps of 4
+     * bytes, the same offsets that are searched normally.
+     * @return The number of bytes from {@code iOffset} to the first offset
+     *         that needs to be searched, or to the first offset past the end
+     *         of the sector if none do. 0 if {@code iOffset} needs to be
+     *         searched. */
+    public int bytesToNextCandidate(@Nonnull CdSector cdSector, int iOffset) {
+        if (cdSector != _sector) {
+            _iUserDataSize = cdSector.getCdUserDataSize();
+            if (_abUserData.length < _iUserDataSize)
+                _abUserData = new byte[_iUserDataSize];
+            cdSector.getCdUserDataCopy(0, _abUserData, 0, _iUserDataSize);
+            _sector = cdSector;
+        }
+
+        final byte[] ab = _abUserData;
+        int i = iOffset;
+        for (; i + 4 <= _iUserDataSize; i += 4) {
+            int iWord = (ab[i  ] & 0xff)        |
+                        (ab[i+1] & 0xff) <<  8  |
+                        (ab[i+2] & 0xff) << 16  |
+                        (ab[i+3]       ) << 24;
+            for (DiscIndexer.StaticSignature signature : _aoSignatures) {
+                if (signature.couldStartWith(iWord))
+                    return i - iOffset;
+            }
+        }
+        // if the word continues into the next sector (sector size not
+        // a multiple of 4) this is the offset to search normally,
+        // otherwise it is past the end of the sector
+        return i - iOffset;
+    }
+
+}
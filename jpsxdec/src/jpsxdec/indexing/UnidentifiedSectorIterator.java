@@ -38,12 +38,15 @@
 package jpsxdec.indexing;
 
 import java.io.IOException;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
+import jpsxdec.sectors.IdentificationStatistics;
 import jpsxdec.sectors.IdentifiedSector;
 import jpsxdec.sectors.IdentifiedSectorIterator;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
 import jpsxdec.util.TaskCanceledException;
 
 /** Individually iterates over {@link CdSector}s that cannot be identified
@@ -69,6 +72,28 @@ public abstract class UnidentifiedSectorIterator {
         _sectorIter = IdentifiedSectorIterator.create(cd);
     }
 
+    /** Only the given sector types are identified, everything else is
+     * considered unidentified. */
+    public UnidentifiedSectorIterator(@Nonnull CdFileSectorReader cd,
+                                      @Nonnull Set<SectorType> sectorTypes)
+    {
+        this(cd, 0, sectorTypes);
+    }
+
+    /** Same as {@link #UnidentifiedSectorIterator(CdFileSectorReader, Set)},
+     * but starting at a sector other than the first. */
+    public UnidentifiedSectorIterator(@Nonnull CdFileSectorReader cd, int iStartSector,
+                                      @Nonnull Set<SectorType> sectorTypes)
+    {
+        _sectorIter = IdentifiedSectorIterator.create(cd, iStartSector, cd.getLength()-1, sectorTypes);
+    }
+
+    /** Starts keeping statistics of how sector identification goes.
+     * @see IdentifiedSectorIterator#collectStatistics() */
+    public @Nonnull IdentificationStatistics collectIdentificationStatistics() {
+        return _sectorIter.collectStatistics();
+    }
+
     abstract protected void sectorRead(@Nonnull CdSector cdSector,
                                        @CheckForNull IdentifiedSector idSector)
             throws TaskCanceledException;
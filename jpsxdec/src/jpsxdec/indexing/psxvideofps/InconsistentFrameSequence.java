@@ -41,6 +41,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -59,25 +60,46 @@ public class InconsistentFrameSequence {
     // --  Static stuff  -------------------------------------------------------
     // -------------------------------------------------------------------------
 
-    /** List of sectors/frame data files. Update this list if the files change. */
+    /** Names of the sectors/frame data files, without the
+     * {@link #FPS_LIST_EXTENSION}. Update this list if the files change. */
     private static final String[] FPS_LISTS = new String[] {
-        "20FPS_A8.dat",
-        "20FPS_A16.dat",
-        "NTSC20_A8.dat",
-        "NTSC20_A8-SB.dat",
-        "NTSC15_A8-100,999.dat",
-        "NTSC15_A8-101,1000.dat",
-        "LUNAR2_24FPS_A16(S43).dat",
-        "LUNAR2_24FPS_A16(S56).dat",
-        "DREDD15FPS.dat",
+        "20FPS_A8",
+        "20FPS_A16",
+        "NTSC20_A8",
+        "NTSC20_A8-SB",
+        "NTSC15_A8-100,999",
+        "NTSC15_A8-101,1000",
+        "LUNAR2_24FPS_A16(S43)",
+        "LUNAR2_24FPS_A16(S56)",
+        "DREDD15FPS",
     };
+    private static final String FPS_LIST_EXTENSION = ".dat";
+
+    /** If the name is one of the known sequences. */
+    public static boolean isPattern(@Nonnull String sName) {
+        for (String sList : FPS_LISTS) {
+            if (sList.equals(sName))
+                return true;
+        }
+        return false;
+    }
 
     public static @Nonnull LinkedList<InconsistentFrameSequence> generate(int iFirstFrameStartSector,
                                                                           int iFirstFrameEndSector)
+    {
+        return generate(iFirstFrameStartSector, iFirstFrameEndSector, null);
+    }
+
+    /** @param patterns Only try the sequences with these names,
+     *                  or all of them if null. */
+    public static @Nonnull LinkedList<InconsistentFrameSequence> generate(int iFirstFrameStartSector,
+                                                                          int iFirstFrameEndSector,
+                                                                          @CheckForNull Collection<String> patterns)
     {
         LinkedList<InconsistentFrameSequence> possibles = new LinkedList<InconsistentFrameSequence>();
-        for (String sResource : FPS_LISTS) {
-            possibles.add(new InconsistentFrameSequence(sResource));
+        for (String sList : FPS_LISTS) {
+            if (patterns == null || patterns.contains(sList))
+                possibles.add(new InconsistentFrameSequence(sList + FPS_LIST_EXTENSION));
         }
         return possibles;
     }
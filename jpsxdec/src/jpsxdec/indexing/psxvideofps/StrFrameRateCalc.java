@@ -38,6 +38,7 @@
 package jpsxdec.indexing.psxvideofps;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.logging.Level;
@@ -154,8 +155,17 @@ public class StrFrameRateCalc {
     private LinkedList<InconsistentFrameSequence> _inconsistentFrameRate;
 
     public StrFrameRateCalc(int iFirstFrameStartSector, int iFirstFrameEndSector) {
+        this(iFirstFrameStartSector, iFirstFrameEndSector, null);
+    }
+
+    /** @param fpsPatterns Only try these inconsistent frame rate patterns,
+     *                     or all of them if null. */
+    public StrFrameRateCalc(int iFirstFrameStartSector, int iFirstFrameEndSector,
+                            @CheckForNull Collection<String> fpsPatterns)
+    {
         _wholeFrameRate = new WholeNumberSectorsPerFrame(iFirstFrameEndSector);
-        _inconsistentFrameRate = InconsistentFrameSequence.generate(iFirstFrameStartSector, iFirstFrameEndSector);
+        _inconsistentFrameRate = InconsistentFrameSequence.generate(iFirstFrameStartSector, iFirstFrameEndSector,
+                                                                    fpsPatterns);
     }
 
     public void nextVideo(int iNextFrameStartSector, int iNextFrameEndSector) {
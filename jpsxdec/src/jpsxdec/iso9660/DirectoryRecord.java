@@ -79,6 +79,7 @@ public class DirectoryRecord extends ISO9660Struct {
         /*     interleave             */ magic1(is, 0);
         /*     volume_sequence_number */ magic4_bothendian(is, 1);
         int    name_len                = read1(is);
+        if (length < 33 + name_len) throw new BinaryDataNotRecognized();
                name                    = sanitizeFileName(readS(is, name_len));
         byte[] name_extra              = readX(is, length - 33 - name_len);
     }
@@ -99,6 +99,79 @@ public class PsxYCbCr_int {
         rgb4.setB(iYshift + iChromBlue);
     }
 
+    // .........................................................................
+    // Lookup tables for converting straight to ARGB
+
+    /** Smallest Y, Cb, or Cr value handled by the lookup tables. */
+    private static final int LUT_MIN = -1024;
+    /** Number of Y, Cb, or Cr values handled by the lookup tables. */
+    private static final int LUT_SIZE = 2048;
+    /** Red added by Cr. */
+    private static final int[] CR_RED = new int[LUT_SIZE];
+    /** Blue added by Cb. */
+    private static final int[] CB_BLUE = new int[LUT_SIZE];
+    /** Fixed-point green added by Cr and Cb. Rounding is only done after
+     * adding the two together, so these are kept in fixed-point
+     * (with the rounding bias included in the Cr table). */
+    private static final int[] CR_GREEN_FIXED = new int[LUT_SIZE];
+    private static final int[] CB_GREEN_FIXED = new int[LUT_SIZE];
+    /** Offset into {@link #CLAMP} for the sum of Y, 128 and a chroma value.
+     * The sum is at least -1024 + 128 - 1816 and at most 1023 + 128 + 1815. */
+    private static final int CLAMP_OFFSET = 128 + 4096;
+    /** Clamps to 0 to 255. */
+    private static final int[] CLAMP = new int[8192];
+
+    static {
+        for (int i = 0; i < LUT_SIZE; i++) {
+            int c = i + LUT_MIN;
+            CR_RED[i]  = (int)Maths.shrRound(_1_402 * c, FIXED_BITS);
+            CB_BLUE[i] = (int)Maths.shrRound(_1_772 * c, FIXED_BITS);
+            CR_GREEN_FIXED[i] = (int)(-_0_7143 * c) + (1 << (FIXED_BITS - 1));
+            CB_GREEN_FIXED[i] = (int)(-_0_3437 * c);
+        }
+        for (int i = 0; i < CLAMP.length; i++) {
+            int v = i - 4096;
+            CLAMP[i] = v < 0 ? 0 : v > 255 ? 255 : v;
+        }
+    }
+
+    /** Converts a 2x2 group of pixels sharing the same chroma straight to
+     * ARGB, writing y1 and y2 at aiDest[iDestOfs1] and y3 and y4 at
+     * aiDest[iDestOfs2]. Gives the same result as
+     * {@link #toRgb(RGB, RGB, RGB, RGB)} followed by {@link RGB#toInt()},
+     * but uses lookup tables when the values are in the usual range. */
+    public static void toArgb(int y1, int y2, int y3, int y4, int cb, int cr,
+                              int[] aiDest, int iDestOfs1, int iDestOfs2)
+    {
+        int iLumaRange = (y1 - LUT_MIN) | (y2 - LUT_MIN) | (y3 - LUT_MIN) | (y4 - LUT_MIN);
+        int iCb = cb - LUT_MIN, iCr = cr - LUT_MIN;
+        if (((iLumaRange | iCb | iCr) & ~(LUT_SIZE - 1)) == 0) {
+            int iRed   = CR_RED[iCr] + CLAMP_OFFSET;
+            int iGreen = ((CR_GREEN_FIXED[iCr] + CB_GREEN_FIXED[iCb]) >> FIXED_BITS) + CLAMP_OFFSET;
+            int iBlue  = CB_BLUE[iCb] + CLAMP_OFFSET;
+            aiDest[iDestOfs1  ] = 0xFF000000 | (CLAMP[y1 + iRed] << 16) | (CLAMP[y1 + iGreen] << 8) | CLAMP[y1 + iBlue];
+            aiDest[iDestOfs1+1] = 0xFF000000 | (CLAMP[y2 + iRed] << 16) | (CLAMP[y2 + iGreen] << 8) | CLAMP[y2 + iBlue];
+            aiDest[iDestOfs2  ] = 0xFF000000 | (CLAMP[y3 + iRed] << 16) | (CLAMP[y3 + iGreen] << 8) | CLAMP[y3 + iBlue];
+            aiDest[iDestOfs2+1] = 0xFF000000 | (CLAMP[y4 + iRed] << 16) | (CLAMP[y4 + iGreen] << 8) | CLAMP[y4 + iBlue];
+        } else {
+            // only corrupted frames should get here
+            int iRed   = (int)Maths.shrRound(                      _1_402  * cr , FIXED_BITS) + 128;
+            int iGreen = (int)Maths.shrRound( -(_0_3437 * cb)  -  (_0_7143 * cr), FIXED_BITS) + 128;
+            int iBlue  = (int)Maths.shrRound(   _1_772  * cb                    , FIXED_BITS) + 128;
+            aiDest[iDestOfs1  ] = toArgb(y1 + iRed, y1 + iGreen, y1 + iBlue);
+            aiDest[iDestOfs1+1] = toArgb(y2 + iRed, y2 + iGreen, y2 + iBlue);
+            aiDest[iDestOfs2  ] = toArgb(y3 + iRed, y3 + iGreen, y3 + iBlue);
+            aiDest[iDestOfs2+1] = toArgb(y4 + iRed, y4 + iGreen, y4 + iBlue);
+        }
+    }
+
+    private static int toArgb(int r, int g, int b) {
+        int clampr = r < 0 ? 0x000000 : r > 255 ? 0xff0000 : r << 16;
+        int clampg = g < 0 ? 0x000000 : g > 255 ? 0x00ff00 : g << 8;
+        int clampb = b < 0 ? 0x000000 : b > 255 ? 0x0000ff : b;
+        return 0xFF000000 | clampr | clampg | clampb;
+    }
+
     public String toString() {
         return String.format( "([%d, %d, %d, %d] %d, %d)" , y1, y2, y3, y4, cb, cr);
     }
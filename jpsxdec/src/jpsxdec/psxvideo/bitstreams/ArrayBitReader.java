@@ -53,11 +53,11 @@ public class ArrayBitReader {
 
     /** Data to be read as a binary stream. */
     @Nonnull
-    private byte[] _abData;
+    protected byte[] _abData;
     /** Size of the data (ignores data array size). */
     protected int _iDataSize;
     /** If 16-bit words should be read in big or little endian order. */
-    private boolean _blnLittleEndian;
+    protected boolean _blnLittleEndian;
     /** Offset of first byte in the current word being read from the source buffer. */
     protected int _iByteOffset;
     /** The current 16-bit word value from the source data. */
@@ -101,7 +101,7 @@ public class ArrayBitReader {
     /** Re-constructs this ArrayBitReader. Allows for re-using the object
      *  so there is no need to create a new one.
      *  @param iReadStart  Position in array to start reading. Must be an even number. */
-    public final void reset(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart) {
+    public void reset(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart) {
         if (iReadStart < 0 || iReadStart > abData.length)
             throw new IllegalArgumentException("Read start out of array bounds.");
         if ((iReadStart & 1) != 0)
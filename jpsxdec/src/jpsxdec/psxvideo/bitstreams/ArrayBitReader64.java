@@ -0,0 +1,278 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.util.ByteSlices;
+
+/** {@link ArrayBitReader} that buffers up to 4 16-bit words at a time in a
+ * 64-bit accumulator. Bits are peeked and skipped by shifting the accumulator
+ * so there is no word boundary handling or masking per read.
+ * <p>
+ * {@link #_iByteOffset} is the index in {@link #_abData} of the next word
+ * to buffer and {@link #_iBitsLeft} is the number of bits in the accumulator.
+ * {@link #getWordPosition()}, and the behavior at the end of the stream,
+ * match {@link ArrayBitReader}.
+ * <p>
+ * After {@link #continueWith(ByteSlices)} the stream continues into
+ * {@link ByteSlices} (e.g. the payloads of a frame's sectors), so they never
+ * need to be copied together. {@link #_abData} is switched to each slice's
+ * array as it is reached and {@link #_iArrayShift} converts between
+ * {@link #_iByteOffset} and the offset in the whole stream. That way reading
+ * within a slice is no different than reading a single array. */
+public class ArrayBitReader64 extends ArrayBitReader {
+
+    private static final Logger LOG = Logger.getLogger(ArrayBitReader64.class.getName());
+
+    /** Buffered bits starting at the most-significant bit.
+     * Bits after the first {@link #_iBitsLeft} bits are always 0. */
+    private long _lngBuffer;
+
+    /** The rest of the stream, or null if it is only in {@link #_abData}. */
+    @CheckForNull
+    private ByteSlices _slices;
+    /** Index in {@link #_abData} where its part of the stream ends. */
+    private int _iArrayEnd;
+    /** Index in {@link #_abData} minus the offset in the whole stream. */
+    private int _iArrayShift;
+
+    /** Performs no initialization. {@link #reset(byte[], int, boolean, int)}
+     * needs to be called before using this class. */
+    public ArrayBitReader64() {
+    }
+
+    /** Start reading from the start of the array with the requested
+     * endian-ness. */
+    public ArrayBitReader64(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian)
+    {
+        super(abData, iDataSize, blnLittleEndian);
+    }
+
+    /** Start reading from a requested point in the array with the requested
+     *  endian-ness.
+     *  @param iReadStart  Position in array to start reading. Must be an even number. */
+    public ArrayBitReader64(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart)
+    {
+        super(abData, iDataSize, blnLittleEndian, iReadStart);
+    }
+
+    @Override
+    public void reset(@Nonnull byte[] abData, int iDataSize, boolean blnLittleEndian, int iReadStart) {
+        super.reset(abData, iDataSize, blnLittleEndian, iReadStart);
+        _lngBuffer = 0;
+        _slices = null;
+        _iArrayEnd = _iDataSize;
+        _iArrayShift = 0;
+    }
+
+    /** Continues the stream into the slices after the end of the current
+     * array, keeping the current position. The current array must hold a
+     * copy of the start of the slices (usually the frame header).
+     * The slices must not change until the reader is reset. */
+    public void continueWith(@Nonnull ByteSlices slices) {
+        if (_iArrayShift != 0 || slices.getSize() < _iDataSize)
+            throw new IllegalArgumentException("Slices don't continue the data");
+        _slices = slices;
+        _iDataSize = slices.getSize();
+    }
+
+    /** Offset of {@link #_iByteOffset} in the whole stream. */
+    private int streamOffset() {
+        return _iByteOffset - _iArrayShift;
+    }
+
+    @Override
+    public int getBitsRead() {
+        return streamOffset() * 8 - _iBitsLeft;
+    }
+
+    @Override
+    public int getBitsRemaining() {
+        return (_iDataSize - streamOffset()) * 8 + _iBitsLeft;
+    }
+
+    /** Buffers as many whole words as will fit in the accumulator. */
+    private void fill() {
+        fillFromArray();
+        if (_slices != null && _iBitsLeft <= 48)
+            fillFromSlices();
+    }
+
+    /** Buffers whole words from the current array. */
+    private void fillFromArray() {
+        final byte[] abData = _abData;
+        final int iArrayEnd = _iArrayEnd;
+        int iByteOffset = _iByteOffset;
+        int iBitsLeft = _iBitsLeft;
+        long lngBuffer = _lngBuffer;
+        if (_blnLittleEndian) {
+            while (iBitsLeft <= 48 && iByteOffset + 1 < iArrayEnd) {
+                long lngWord = ((abData[iByteOffset+1] & 0xFF) << 8) | (abData[iByteOffset] & 0xFF);
+                lngBuffer |= lngWord << (48 - iBitsLeft);
+                iByteOffset += 2;
+                iBitsLeft += 16;
+            }
+        } else {
+            while (iBitsLeft <= 48 && iByteOffset + 1 < iArrayEnd) {
+                long lngWord = ((abData[iByteOffset] & 0xFF) << 8) | (abData[iByteOffset+1] & 0xFF);
+                lngBuffer |= lngWord << (48 - iBitsLeft);
+                iByteOffset += 2;
+                iBitsLeft += 16;
+            }
+        }
+        _iByteOffset = iByteOffset;
+        _iBitsLeft = iBitsLeft;
+        _lngBuffer = lngBuffer;
+    }
+
+    /** Continues {@link #fill()} past the end of the current array. */
+    private void fillFromSlices() {
+        final ByteSlices slices = _slices;
+        while (_iBitsLeft <= 48) {
+            int iStreamOffset = streamOffset();
+            if (iStreamOffset + 1 >= _iDataSize)
+                return;
+            if (_iByteOffset < _iArrayEnd) {
+                // the word is split across 2 slices
+                int iByte1 = slices.get(iStreamOffset) & 0xFF;
+                int iByte2 = slices.get(iStreamOffset + 1) & 0xFF;
+                long lngWord;
+                if (_blnLittleEndian)
+                    lngWord = (iByte2 << 8) | iByte1;
+                else
+                    lngWord = (iByte1 << 8) | iByte2;
+                _lngBuffer |= lngWord << (48 - _iBitsLeft);
+                _iByteOffset += 2;
+                _iBitsLeft += 16;
+            } else {
+                int iSlice = slices.findSlice(iStreamOffset);
+                int iSliceOffset = slices.getSliceOffset(iSlice);
+                _abData = slices.getSliceArray(iSlice);
+                _iArrayShift = iSliceOffset - slices.getSliceStart(iSlice);
+                _iArrayEnd = iSliceOffset + slices.getSliceLength(iSlice);
+                _iByteOffset = iStreamOffset + _iArrayShift;
+                fillFromArray();
+            }
+        }
+    }
+
+    /** Returns the offset of the word containing the next bit to read,
+     * the same as {@link ArrayBitReader#getWordPosition()}. */
+    @Override
+    public int getWordPosition() {
+        return ((getBitsRead() + 15) >> 4) << 1;
+    }
+
+    /** Reads the requested number of bits.
+     * If fewer bits remain in the stream, they are returned padded with 0
+     * bits and the stream is at its end.
+     * @param iCount  expected to be from 1 to 31  */
+    @Override
+    public int readUnsignedBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount < 0 || iCount >= 32)
+            throw new IllegalArgumentException("Bits to read are out of range " + iCount);
+        if (iCount == 0)
+            return 0;
+
+        if (_iBitsLeft < iCount) {
+            fill();
+            if (_iBitsLeft < iCount) {
+                if (_iBitsLeft == 0)
+                    throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(streamOffset()));
+                LOG.log(Level.INFO, "Bitstream is about to end");
+                int iRet = (int)(_lngBuffer >>> (64 - iCount));
+                _lngBuffer = 0;
+                _iBitsLeft = 0;
+                return iRet;
+            }
+        }
+
+        int iRet = (int)(_lngBuffer >>> (64 - iCount));
+        _lngBuffer <<= iCount;
+        _iBitsLeft -= iCount;
+        return iRet;
+    }
+
+    /** @param iCount  expected to be from 1 to 31  */
+    @Override
+    public int peekUnsignedBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount < 0 || iCount >= 32)
+            throw new IllegalArgumentException("Bits to read are out of range " + iCount);
+        if (iCount == 0)
+            return 0;
+
+        if (_iBitsLeft < iCount) {
+            fill();
+            if (_iBitsLeft == 0)
+                throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(streamOffset()));
+        }
+        // any bits beyond the end of the stream will be 0
+        return (int)(_lngBuffer >>> (64 - iCount));
+    }
+
+    @Override
+    public void skipBits(int iCount) throws MdecException.EndOfStream {
+        if (iCount <= _iBitsLeft && iCount < 64) {
+            _lngBuffer <<= iCount;
+            _iBitsLeft -= iCount;
+            return;
+        }
+
+        // skip past everything buffered, then any whole words
+        iCount -= _iBitsLeft;
+        _lngBuffer = 0;
+        _iBitsLeft = 0;
+        _iByteOffset += (iCount >> 4) << 1;
+        iCount &= 0xf;
+        int iStreamOffset = streamOffset();
+        if (iStreamOffset > _iDataSize || (iCount > 0 && iStreamOffset + 1 >= _iDataSize)) {
+            _iByteOffset = _iDataSize + _iArrayShift;
+            throw new MdecException.EndOfStream(MdecException.END_OF_BITSTREAM(_iDataSize));
+        }
+        if (iCount > 0) {
+            fill();
+            _lngBuffer <<= iCount;
+            _iBitsLeft -= iCount;
+        }
+    }
+
+}
@@ -47,6 +47,7 @@ import jpsxdec.psxvideo.mdec.MdecInputStream;
 import jpsxdec.psxvideo.mdec.MdecInputStream.MdecCode;
 import jpsxdec.util.Misc;
 import jpsxdec.util.BinaryDataNotRecognized;
+import jpsxdec.util.ByteSlices;
 
 /** Converts a (demuxed) video frame bitstream into an {@link MdecInputStream},
  * that can then be fed into an MDEC decoder to produce an image. */
@@ -207,6 +208,21 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
         /** Holds all the codes for references and compression. */
         private final AcBitCode[] _aoAcBitCodes = new AcBitCode[111];
 
+        /** Packed entries of {@link #PackedShort} and {@link #PackedLong}:
+         * bits 0-4 are the code bit length (0 if the code is invalid),
+         * bit 5 flags {@link #END_OF_BLOCK}, bit 6 flags {@link #ESCAPE_CODE},
+         * bits 8-13 are the zero-run, and bits 16-31 are the signed AC
+         * coefficient. */
+        static final int PACKED_LENGTH_MASK = 0x1F,
+                         PACKED_END_OF_BLOCK = 0x20,
+                         PACKED_ESCAPE_CODE = 0x40;
+        /** Packed codes that don't start with 7 zero bits (11 bits or less),
+         *  indexed by the first 11 bits of the 17 bits. */
+        final int[] PackedShort = new int[1 << 11];
+        /** Packed codes that start with 7 zero bits (12 to 17 bits),
+         *  indexed by the last 10 bits of the 17 bits. */
+        final int[] PackedLong = new int[1 << 10];
+
         public AcLookup() {
             // initialize the two codes we know about
             setBits(END_OF_BLOCK);
@@ -380,6 +396,52 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
                     throw new RuntimeException("Resetting an existing bitstream lookup probably means some code is wrong.");
                 aoTable[iTableStart + i] = lu;
             }
+
+            setPacked(lu);
+        }
+
+        /** Places the bit code in the appropriate packed lookup table. */
+        private void setPacked(@Nonnull AcBitCode lu) {
+            int iPacked = lu.BitLength;
+            if (lu == END_OF_BLOCK)
+                iPacked |= PACKED_END_OF_BLOCK;
+            else if (lu == ESCAPE_CODE)
+                iPacked |= PACKED_ESCAPE_CODE;
+            else
+                iPacked |= (lu.ZeroRun << 8) | (lu.AcCoefficient << 16);
+
+            final int[] aiTable;
+            final int iBitsRemain;
+            final int iTableStart;
+            if (lu.BitString.startsWith("0000000")) {
+                aiTable = PackedLong;
+                iBitsRemain = AC_LONGEST_VARIABLE_LENGTH_CODE - lu.BitLength;
+                iTableStart = (Integer.parseInt(lu.BitString, 2) << iBitsRemain) & 0x3FF;
+            } else {
+                aiTable = PackedShort;
+                iBitsRemain = 11 - lu.BitLength;
+                iTableStart = Integer.parseInt(lu.BitString, 2) << iBitsRemain;
+            }
+
+            final int iTableEntriesToAssociate = (1 << iBitsRemain);
+            for (int i = 0; i < iTableEntriesToAssociate; i++) {
+                if (aiTable[iTableStart + i] != 0)
+                    throw new RuntimeException("Resetting an existing bitstream lookup probably means some code is wrong.");
+                aiTable[iTableStart + i] = iPacked;
+            }
+        }
+
+        /** Returns the packed entry for the 17 bits
+         * (see {@link #PACKED_LENGTH_MASK}), or 0 if the bits are invalid.
+         * Unlike {@link #lookup(int)}, bits beyond the 17 least-significant
+         * bits must be 0.
+         * Same as the inlined lookup in
+         * {@link BitStreamUncompressor#readMdecCode(MdecCode)}. */
+        int lookupPacked(final int i17bits) {
+            if ((i17bits >>> 10) != 0)
+                return PackedShort[i17bits >>> 6];
+            else
+                return PackedLong[i17bits & 0x3FF];
         }
 
         public @Nonnull Iterable<AcBitCode> getCodeList() {
@@ -403,9 +465,13 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
          * If a full 17 bits are unavailable, fill the remaining with zeros
          * to ensure failure if bit code is invalid.
          *
+         * <p>
+         * Decoding now uses the faster {@link #lookupPacked(int)}, this
+         * remains to get the full {@link AcBitCode}.
+         *
          * @param i17bits  Integer containing 17 bits to decode.
          */
-        private @Nonnull AcBitCode lookup(final int i17bits) throws MdecException.ReadCorruption {
+        @Nonnull AcBitCode lookup(final int i17bits) throws MdecException.ReadCorruption {
             if        ((i17bits & b10000000000000000) != 0) {
                 assert !DEBUG || debugPrintln("Table 0 offset " + ((i17bits >> 14) & 3));
                 return       Table_1xx[(i17bits >> 14) & 3];
@@ -660,8 +726,20 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
     /** Table for looking up AC Coefficient bit codes. */
     @Nonnull
     private final AcLookup _lookupTable;
+    /** {@link AcLookup#PackedShort} of {@link #_lookupTable}. */
+    @Nonnull
+    private final int[] _aiPackedShort;
+    /** {@link AcLookup#PackedLong} of {@link #_lookupTable}. */
+    @Nonnull
+    private final int[] _aiPackedLong;
     /** Binary input stream being read. */
-    protected final ArrayBitReader _bitReader = new ArrayBitReader();
+    protected final ArrayBitReader64 _bitReader = new ArrayBitReader64();
+    /** Copy of the start of a sliced bitstream for reading its header. */
+    private final byte[] _abSlicedHeader = new byte[SLICED_HEADER_COPY_SIZE];
+    /** Contiguous copy of a sliced bitstream whose header is longer
+     * than {@link #SLICED_HEADER_COPY_SIZE}. */
+    @CheckForNull
+    private byte[] _abSlicedCopy;
 
     /** Holds the debugger when debugging is enabled. */
     @CheckForNull
@@ -689,6 +767,8 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
 
     protected BitStreamUncompressor(@Nonnull AcLookup lookupTable) {
         _lookupTable = lookupTable;
+        _aiPackedShort = lookupTable.PackedShort;
+        _aiPackedLong = lookupTable.PackedLong;
         if (DEBUG)
             _debug = new MdecDebugger();
         else
@@ -708,6 +788,29 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
             throw new BinaryDataNotRecognized();
     }
 
+    /** Bytes copied from the start of a sliced bitstream to read the header.
+     * Enough for all the headers except Iki (whose header includes its
+     * compressed lookup table). */
+    private static final int SLICED_HEADER_COPY_SIZE = 32;
+
+    /** Resets this instance to read a bitstream spread across slices
+     * (usually the payloads of the frame's sectors) without copying it
+     * together. Only the header is copied, unless it is too long, in which
+     * case the whole bitstream is copied.
+     * The slices must not change until the next reset. */
+    final public void reset(@Nonnull ByteSlices bitstream)
+            throws BinaryDataNotRecognized
+    {
+        int iHeaderSize = Math.min(bitstream.getSize(), SLICED_HEADER_COPY_SIZE);
+        bitstream.copyTo(0, _abSlicedHeader, 0, iHeaderSize);
+        if (iHeaderSize < bitstream.getSize() && resetNoThrow(_abSlicedHeader, iHeaderSize)) {
+            _bitReader.continueWith(bitstream);
+            return;
+        }
+        _abSlicedCopy = bitstream.copyAll(_abSlicedCopy);
+        reset(_abSlicedCopy, bitstream.getSize());
+    }
+
     private boolean resetNoThrow(@Nonnull byte[] abBitstream, int iBitstreamSize)
             throws BinaryDataNotRecognized
     {
@@ -734,10 +837,18 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
             _blnBlockStart = false;
         } else {
             int i17bits = _bitReader.peekUnsignedBits(AC_LONGEST_VARIABLE_LENGTH_CODE);
-            AcBitCode bitCode = _lookupTable.lookup(i17bits);
-            _bitReader.skipBits(bitCode.BitLength);
-
-            if (bitCode == AcLookup.END_OF_BLOCK) {
+            // single lookup in the packed tables (same as AcLookup.lookupPacked())
+            final int iPacked;
+            if ((i17bits >>> 10) != 0)
+                iPacked = _aiPackedShort[i17bits >>> 6];
+            else
+                iPacked = _aiPackedLong[i17bits & 0x3FF];
+            final int iBitLength = iPacked & AcLookup.PACKED_LENGTH_MASK;
+            if (iBitLength == 0)
+                throw new MdecException.ReadCorruption(AcLookup.UNMATCHED_AC_VLC(i17bits));
+            _bitReader.skipBits(iBitLength);
+
+            if ((iPacked & AcLookup.PACKED_END_OF_BLOCK) != 0) {
                 // end of block
                 code.setToEndOfData();
                 _blnBlockStart = true;
@@ -750,11 +861,11 @@ public abstract class BitStreamUncompressor extends MdecInputStream {
                 assert !DEBUG || _debug.append(AcLookup.END_OF_BLOCK.BitString);
             } else {
                 // block continues
-                assert !DEBUG || _debug.append(bitCode.BitString);
-                if (bitCode == AcLookup.ESCAPE_CODE) {
+                assert !DEBUG || _debug.append(Misc.bitsToString(i17bits >>> (AC_LONGEST_VARIABLE_LENGTH_CODE - iBitLength), iBitLength));
+                if ((iPacked & AcLookup.PACKED_ESCAPE_CODE) != 0) {
                     readEscapeAcCode(code);
                 } else {
-                    code.setBits(bitCode.ZeroRun, bitCode.AcCoefficient);
+                    code.setBits((iPacked >> 8) & 0x3F, iPacked >> 16);
                 }
 
                 _iCurrentBlockVectorPos += code.getTop6Bits() + 1;
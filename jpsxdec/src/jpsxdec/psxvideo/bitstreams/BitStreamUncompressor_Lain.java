@@ -63,7 +63,7 @@ public class BitStreamUncompressor_Lain extends BitStreamUncompressor {
 
     /** The custom Serial Experiments Lain PlayStation game
      *  AC coefficient variable-length (Huffman) code table. */
-    private final static AcLookup AC_VARIABLE_LENGTH_CODES_LAIN = new AcLookup()
+    final static AcLookup AC_VARIABLE_LENGTH_CODES_LAIN = new AcLookup()
       // Code               "Run" "Level"
         ._11s                ( 0  , 1  )
         ._011s               ( 0  , 2  )
@@ -145,6 +145,17 @@ public abstract class MdecDecoder {
         readDecodedRgb(iDestWidth, iDestHeight, aiDest, 0, iDestWidth);
     }
 
+    /** Retrieve the contents of the internal PSX YCbCr buffer converted to
+     *  Rec.601 YCbCr with 4:2:0 subsampling (the sample ranges used by YV12),
+     *  without going through RGB.
+     * @param abY   Receives iDestWidth x iDestHeight luma samples.
+     * @param abCb  Receives iDestWidth/2 x iDestHeight/2 chroma samples.
+     * @param abCr  Receives iDestWidth/2 x iDestHeight/2 chroma samples.
+     * @see jpsxdec.psxvideo.PsxYCbCr#toRec_601_YCbCr(jpsxdec.formats.Rec601YCbCr)
+     */
+    abstract public void readDecodedYuv420(int iDestWidth, int iDestHeight,
+                                           byte[] abY, byte[] abCb, byte[] abCr);
+
     public void setQuantizationTable(int[] aiNewTable) {
         if (aiNewTable.length != _aiQuantizationTable.length)
             throw new IllegalArgumentException("Incorrect table size");
@@ -287,42 +287,47 @@ public class MdecDecoder_double extends MdecDecoder {
     }
 
     public void readDecoded_Rec601_YCbCr420(YCbCrImage ycc) {
+        readDecodedYuv420(ycc.getWidth(), ycc.getHeight(),
+                          ycc.getY(), ycc.getCb(), ycc.getCr());
+    }
 
-        final int WIDTH = ycc.getWidth(), HEIGHT = ycc.getHeight();
-
-        if ((WIDTH % 2) != 0)
+    /** Same math as {@link PsxYCbCr#toRec_601_YCbCr(jpsxdec.formats.Rec601YCbCr)}. */
+    public void readDecodedYuv420(int iDestWidth, int iDestHeight,
+                                  byte[] abY, byte[] abCb, byte[] abCr)
+    {
+        if ((iDestWidth % 2) != 0)
             throw new IllegalArgumentException("Image width must be multiple of 2.");
-        if ((HEIGHT % 2) != 0)
+        if ((iDestHeight % 2) != 0)
             throw new IllegalArgumentException("Image height must be multiple of 2.");
 
-        final PsxYCbCr psxycc = new PsxYCbCr();
-        final Rec601YCbCr recycc = new Rec601YCbCr();
-
-        final int W2 = W*2;
-        int iLumaLineOfsStart = 0, iChromaLineOfsStart = 0;
-        for (int iY=0, iCY=0; iY < HEIGHT; iY+=2, iCY++, iLumaLineOfsStart+=W2, iChromaLineOfsStart+=CW) {
+        final int W2 = W*2, iDestWidth_x2 = iDestWidth*2, iDestChromaWidth = iDestWidth/2;
+        int iLumaLineOfsStart = 0, iChromaLineOfsStart = 0,
+            iDestLumaLineOfsStart = 0, iDestChromaLineOfsStart = 0;
+        for (int iY=0; iY < iDestHeight;
+             iY+=2,
+             iLumaLineOfsStart+=W2, iChromaLineOfsStart+=CW,
+             iDestLumaLineOfsStart+=iDestWidth_x2, iDestChromaLineOfsStart+=iDestChromaWidth)
+        {
             int iSrcLumaOfs1 = iLumaLineOfsStart;
             int iSrcLumaOfs2 = iLumaLineOfsStart + W;
             int iSrcChromaOfs = iChromaLineOfsStart;
-            for (int iX=0, iCX=0; iX < WIDTH; iX+=2, iCX++, iSrcChromaOfs++) {
-
-                psxycc.cr = _CrBuffer[iSrcChromaOfs];
-                psxycc.cb = _CbBuffer[iSrcChromaOfs];
+            int iDestLumaOfs1 = iDestLumaLineOfsStart;
+            int iDestLumaOfs2 = iDestLumaLineOfsStart + iDestWidth;
+            int iDestChromaOfs = iDestChromaLineOfsStart;
+            for (int iX=0; iX < iDestWidth; iX+=2, iSrcChromaOfs++, iDestChromaOfs++) {
 
-                psxycc.y1 = _LumaBuffer[iSrcLumaOfs1++];
-                psxycc.y3 = _LumaBuffer[iSrcLumaOfs2++];
-                psxycc.y2 = _LumaBuffer[iSrcLumaOfs1++];
-                psxycc.y4 = _LumaBuffer[iSrcLumaOfs2++];
+                double cr = _CrBuffer[iSrcChromaOfs];
+                double cb = _CbBuffer[iSrcChromaOfs];
 
-                psxycc.toRec_601_YCbCr(recycc);
+                double dblYChroma = cb * (-488509./2660418030.) + cr * (-82738./1330209015.) + 16;
 
-                ycc.setY( iX+0 , iY+0 , clamp(recycc.y1));
-                ycc.setY( iX+1 , iY+0 , clamp(recycc.y2));
-                ycc.setY( iX+0 , iY+1 , clamp(recycc.y3));
-                ycc.setY( iX+1 , iY+1 , clamp(recycc.y4));
-                ycc.setCb( iCX , iCY , clamp(recycc.cb));
-                ycc.setCr( iCX , iCY , clamp(recycc.cr));
+                abY[iDestLumaOfs1++] = clamp((_LumaBuffer[iSrcLumaOfs1++]+128)*(250./291.) + dblYChroma);
+                abY[iDestLumaOfs1++] = clamp((_LumaBuffer[iSrcLumaOfs1++]+128)*(250./291.) + dblYChroma);
+                abY[iDestLumaOfs2++] = clamp((_LumaBuffer[iSrcLumaOfs2++]+128)*(250./291.) + dblYChroma);
+                abY[iDestLumaOfs2++] = clamp((_LumaBuffer[iSrcLumaOfs2++]+128)*(250./291.) + dblYChroma);
 
+                abCb[iDestChromaOfs] = clamp(cb * (4014411./4571165.) + cr *     (164./4571165.) + 128);
+                abCr[iDestChromaOfs] = clamp(cb *   (3673./27426990.) + cr * (8031459./9142330.) + 128);
             }
         }
     }
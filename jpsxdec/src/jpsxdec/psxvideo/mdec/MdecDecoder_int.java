@@ -37,8 +37,13 @@
 
 package jpsxdec.psxvideo.mdec;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import jpsxdec.formats.RGB;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.CheckForNull;
 import jpsxdec.i18n.I;
 import jpsxdec.psxvideo.PsxYCbCr_int;
 import jpsxdec.psxvideo.mdec.idct.IDCT_int;
@@ -49,7 +54,8 @@ import jpsxdec.psxvideo.mdec.idct.IDCT_int;
  *<p>
  * WARNING: This class was not designed to be thread safe. Create a
  * separate instance of this class for each thread, or wrap its use with
- * synchronize. */
+ * synchronize. It can however split the work of decoding a frame across
+ * several threads itself (see {@link #setParallel}). */
 public class MdecDecoder_int extends MdecDecoder {
 
     protected final IDCT_int _idct;
@@ -61,6 +67,38 @@ public class MdecDecoder_int extends MdecDecoder {
     /** Matrix of 8x8 coefficient values. */
     protected final int[] _CurrentBlock = new int[64];
 
+    /** Set by {@link #readBlock}. */
+    private int _iBlockNonZeroCount, _iBlockLastZigZagPos;
+
+    /** How many rows and columns of the matrix can hold non-zero
+     * coefficients when the last non-zero coefficient is at a given
+     * zig-zag position. */
+    private static final int[] ZIG_ZAG_ROWS = new int[64],
+                               ZIG_ZAG_COLUMNS = new int[64];
+    static {
+        int iRows = 0, iColumns = 0;
+        for (int i = 0; i < 64; i++) {
+            int iMatrixPos = MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i];
+            iRows = Math.max(iRows, (iMatrixPos >> 3) + 1);
+            iColumns = Math.max(iColumns, (iMatrixPos & 7) + 1);
+            ZIG_ZAG_ROWS[i] = iRows;
+            ZIG_ZAG_COLUMNS[i] = iColumns;
+        }
+    }
+
+    // only used when decoding on several threads (see setParallel())
+    @CheckForNull
+    private ExecutorService _executor;
+    @CheckForNull
+    private ArrayList<IdctTask> _idctTasks;
+    /** 64 coefficients of each block of the frame. */
+    @CheckForNull
+    private int[] _aiCoefficients;
+    @CheckForNull
+    private int[] _aiNonZeroCount;
+    @CheckForNull
+    private int[] _aiLastZigZagPos;
+
     public MdecDecoder_int(IDCT_int idct, int iWidth, int iHeight) {
         super(iWidth, iHeight);
         _idct = idct;
@@ -70,14 +108,51 @@ public class MdecDecoder_int extends MdecDecoder {
         _LumaBuffer = new int[W*H];
     }
 
+    /** Decodes the macro blocks on several threads.
+     * The MDEC stream is first read into the coefficients of every block,
+     * then the IDCT of groups of macro blocks is done using the executor.
+     * The result is identical to decoding on a single thread.
+     * <p>
+     * Each group needs its own IDCT, so the number of groups is the number of
+     * IDCTs given. They should be separate instances of the same kind of
+     * IDCT as the one this decoder was created with.
+     *
+     * @param executor Executor to run the groups, or null to go back to
+     *                 decoding on the calling thread.
+     */
+    public void setParallel(@CheckForNull ExecutorService executor,
+                            @CheckForNull IDCT_int[] aoIdcts)
+    {
+        if (executor == null || aoIdcts == null || aoIdcts.length < 1) {
+            _executor = null;
+            _idctTasks = null;
+            _aiCoefficients = null;
+            _aiNonZeroCount = null;
+            _aiLastZigZagPos = null;
+            return;
+        }
+
+        final int iTotalMacBlks = _iMacBlockWidth * _iMacBlockHeight;
+        final int iTasks = Math.min(aoIdcts.length, iTotalMacBlks);
+        _idctTasks = new ArrayList<IdctTask>(iTasks);
+        for (int i = 0; i < iTasks; i++) {
+            _idctTasks.add(new IdctTask(aoIdcts[i],
+                                        iTotalMacBlks * i / iTasks,
+                                        iTotalMacBlks * (i+1) / iTasks));
+        }
+        _aiCoefficients = new int[iTotalMacBlks * 6 * 64];
+        _aiNonZeroCount = new int[iTotalMacBlks * 6];
+        _aiLastZigZagPos = new int[iTotalMacBlks * 6];
+        _executor = executor;
+    }
+
     public void decode(MdecInputStream mdecInStream)
             throws MdecException.EndOfStream, MdecException.ReadCorruption
     {
-
-        int iCurrentBlockQscale;
-        int iCurrentBlockVectorPosition;
-        int iCurrentBlockNonZeroCount;
-        int iCurrentBlockLastNonZeroPosition;
+        if (_executor != null) {
+            decodeParallel(mdecInStream);
+            return;
+        }
 
         int iMacBlk = 0, iBlock = 0;
 
@@ -98,63 +173,12 @@ public class MdecDecoder_int extends MdecDecoder {
                                                       BLOCK_NAMES[iBlock]));
                         
                         Arrays.fill(_CurrentBlock, 0);
-                        mdecInStream.readMdecCode(_code);
-
-                        assert !DEBUG || debugPrintln("Qscale & DC " + _code);
-
-                        if (_code.getBottom10Bits() != 0) {
-                            _CurrentBlock[0] =
-                                    _code.getBottom10Bits() * _aiQuantizationTable[0];
-                            iCurrentBlockNonZeroCount = 1;
-                            iCurrentBlockLastNonZeroPosition = 0;
-                        } else {
-                            iCurrentBlockNonZeroCount = 0;
-                            iCurrentBlockLastNonZeroPosition = -1;
-                        }
-                        assert !DEBUG || setPrequantValue(0, _code.getBottom10Bits());
-                        iCurrentBlockQscale = _code.getTop6Bits();
-                        iCurrentBlockVectorPosition = 0;
-
-                        while (!mdecInStream.readMdecCode(_code)) {
-
-                            assert !DEBUG || debugPrintln(_code.toString());
-
-                            ////////////////////////////////////////////////////////
-                            iCurrentBlockVectorPosition += _code.getTop6Bits() + 1;
-
-                            int iRevZigZagMatrixPos;
-                            try {
-                                // Reverse Zig-Zag
-                                iRevZigZagMatrixPos = MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[iCurrentBlockVectorPosition];
-                            } catch (ArrayIndexOutOfBoundsException ex) {
-                                throw new MdecException.ReadCorruption(MdecException.RLC_OOB_IN_BLOCK_NAME(
-                                               iCurrentBlockVectorPosition,
-                                               iMacBlk, iMacBlkX, iMacBlkY, iBlock, BLOCK_NAMES[iBlock]),
-                                               ex);
-                            }
-                            
-                            if (_code.getBottom10Bits() != 0) {
-
-                                assert !DEBUG || setPrequantValue(iRevZigZagMatrixPos, _code.getBottom10Bits());
-                                // Dequantize
-                                _CurrentBlock[iRevZigZagMatrixPos] =
-                                            (_code.getBottom10Bits()
-                                          * _aiQuantizationTable[iRevZigZagMatrixPos]
-                                          * iCurrentBlockQscale + 4) >> 3;
-                                //  i      >> 3  ==  (int)Math.floor(i / 8.0)
-                                // (i + 4) >> 3  ==  (int)Math.round(i / 8.0)
-                                iCurrentBlockNonZeroCount++;
-                                iCurrentBlockLastNonZeroPosition = iRevZigZagMatrixPos;
-
-                            }
-                            ////////////////////////////////////////////////////////
-                        }
-
-                        assert !DEBUG || debugPrintln(_code.toString());
+                        readBlock(mdecInStream, _CurrentBlock, 0,
+                                  iMacBlk, iMacBlkX, iMacBlkY, iBlock);
 
                         writeEndOfBlock(iMacBlk, iBlock,
-                                iCurrentBlockNonZeroCount,
-                                iCurrentBlockLastNonZeroPosition);
+                                _iBlockNonZeroCount,
+                                _iBlockLastZigZagPos);
                     }
 
                     iMacBlk++;
@@ -174,6 +198,128 @@ public class MdecDecoder_int extends MdecDecoder {
         }
     }
 
+    private void decodeParallel(MdecInputStream mdecInStream)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        int iMacBlk = 0, iBlock = 0;
+
+        try {
+
+            // read all the blocks of the image
+            for (int iMacBlkX = 0; iMacBlkX < _iMacBlockWidth; iMacBlkX ++)
+            {
+                for (int iMacBlkY = 0; iMacBlkY < _iMacBlockHeight; iMacBlkY ++)
+                {
+                    for (iBlock = 0; iBlock < 6; iBlock++) {
+                        int iBlkIdx = iMacBlk * 6 + iBlock;
+                        Arrays.fill(_aiCoefficients, iBlkIdx * 64, iBlkIdx * 64 + 64, 0);
+                        readBlock(mdecInStream, _aiCoefficients, iBlkIdx * 64,
+                                  iMacBlk, iMacBlkX, iMacBlkY, iBlock);
+                        _aiNonZeroCount[iBlkIdx] = _iBlockNonZeroCount;
+                        _aiLastZigZagPos[iBlkIdx] = _iBlockLastZigZagPos;
+                    }
+                    iBlock = 0;
+                    iMacBlk++;
+                }
+            }
+        } finally {
+            // in case an exception occured
+            // any block that wasn't completely read is left empty
+            Arrays.fill(_aiNonZeroCount, iMacBlk * 6 + iBlock, _aiNonZeroCount.length, 0);
+
+            try {
+                for (Future<Object> task : _executor.invokeAll(_idctTasks)) {
+                    try {
+                        task.get();
+                    } catch (ExecutionException ex) {
+                        Throwable cause = ex.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException)cause;
+                        if (cause instanceof Error)
+                            throw (Error)cause;
+                        throw new RuntimeException(cause);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // finish the job on this thread and let the caller know
+                for (IdctTask task : _idctTasks) {
+                    task.call();
+                }
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Reads the codes of one block, dequantizing them into the (zeroed)
+     * 64 values of aiBlock starting at iBlockOffset. Sets
+     * {@link #_iBlockNonZeroCount} and {@link #_iBlockLastZigZagPos}. */
+    private void readBlock(MdecInputStream mdecInStream,
+                           int[] aiBlock, int iBlockOffset,
+                           int iMacBlk, int iMacBlkX, int iMacBlkY, int iBlock)
+            throws MdecException.EndOfStream, MdecException.ReadCorruption
+    {
+        int iCurrentBlockQscale;
+        int iCurrentBlockVectorPosition;
+        int iCurrentBlockNonZeroCount;
+        int iCurrentBlockLastNonZeroVectorPosition;
+
+        mdecInStream.readMdecCode(_code);
+
+        assert !DEBUG || debugPrintln("Qscale & DC " + _code);
+
+        if (_code.getBottom10Bits() != 0) {
+            aiBlock[iBlockOffset] =
+                    _code.getBottom10Bits() * _aiQuantizationTable[0];
+            iCurrentBlockNonZeroCount = 1;
+        } else {
+            iCurrentBlockNonZeroCount = 0;
+        }
+        iCurrentBlockLastNonZeroVectorPosition = 0;
+        assert !DEBUG || setPrequantValue(0, _code.getBottom10Bits());
+        iCurrentBlockQscale = _code.getTop6Bits();
+        iCurrentBlockVectorPosition = 0;
+
+        while (!mdecInStream.readMdecCode(_code)) {
+
+            assert !DEBUG || debugPrintln(_code.toString());
+
+            ////////////////////////////////////////////////////////
+            iCurrentBlockVectorPosition += _code.getTop6Bits() + 1;
+
+            int iRevZigZagMatrixPos;
+            try {
+                // Reverse Zig-Zag
+                iRevZigZagMatrixPos = MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[iCurrentBlockVectorPosition];
+            } catch (ArrayIndexOutOfBoundsException ex) {
+                throw new MdecException.ReadCorruption(MdecException.RLC_OOB_IN_BLOCK_NAME(
+                               iCurrentBlockVectorPosition,
+                               iMacBlk, iMacBlkX, iMacBlkY, iBlock, BLOCK_NAMES[iBlock]),
+                               ex);
+            }
+            
+            if (_code.getBottom10Bits() != 0) {
+
+                assert !DEBUG || setPrequantValue(iRevZigZagMatrixPos, _code.getBottom10Bits());
+                // Dequantize
+                aiBlock[iBlockOffset + iRevZigZagMatrixPos] =
+                            (_code.getBottom10Bits()
+                          * _aiQuantizationTable[iRevZigZagMatrixPos]
+                          * iCurrentBlockQscale + 4) >> 3;
+                //  i      >> 3  ==  (int)Math.floor(i / 8.0)
+                // (i + 4) >> 3  ==  (int)Math.round(i / 8.0)
+                iCurrentBlockNonZeroCount++;
+                iCurrentBlockLastNonZeroVectorPosition = iCurrentBlockVectorPosition;
+
+            }
+            ////////////////////////////////////////////////////////
+        }
+
+        assert !DEBUG || debugPrintln(_code.toString());
+
+        _iBlockNonZeroCount = iCurrentBlockNonZeroCount;
+        _iBlockLastZigZagPos = iCurrentBlockLastNonZeroVectorPosition;
+    }
+
     private boolean debugPrintBlock(String sMsg) {
         System.out.println(sMsg);
         for (int i = 0; i < 8; i++) {
@@ -188,11 +334,25 @@ public class MdecDecoder_int extends MdecDecoder {
     }
 
     private void writeEndOfBlock(int iMacroBlock, int iBlock,
-                                 int iNonZeroCount, int iNonZeroPos)
+                                 int iNonZeroCount, int iLastZigZagPos)
     {
         assert !DEBUG || debugPrintPrequantBlock();
         assert !DEBUG || debugPrintBlock("Pre-IDCT block");
 
+        writeEndOfBlock(_idct, _CurrentBlock, iMacroBlock, iBlock,
+                        iNonZeroCount, iLastZigZagPos);
+
+        assert !DEBUG || debugPrintBlock("Post-IDCT block");
+    }
+
+    /** Performs the IDCT of aiBlock (in place) and copies the result to the
+     * block's location in the output buffers. The zig-zag position of the
+     * last non-zero coefficient limits the IDCT to the part of the matrix
+     * that can hold non-zero coefficients. */
+    private void writeEndOfBlock(IDCT_int idct, int[] aiBlock,
+                                 int iMacroBlock, int iBlock,
+                                 int iNonZeroCount, int iLastZigZagPos)
+    {
         int[] outputBuffer;
         int iOutOffset, iOutWidth;
         switch (iBlock) {
@@ -216,17 +376,52 @@ public class MdecDecoder_int extends MdecDecoder {
                 Arrays.fill(outputBuffer, iOutOffset, iOutOffset + 8, 0);
         } else {
             if (iNonZeroCount == 1) {
-                _idct.IDCT_1NonZero(_CurrentBlock, iNonZeroPos, 0, _CurrentBlock);
+                idct.IDCT_1NonZero(aiBlock,
+                        MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[iLastZigZagPos],
+                        0, aiBlock);
             } else {
-                _idct.IDCT(_CurrentBlock, 0, _CurrentBlock);
+                int iRows = ZIG_ZAG_ROWS[iLastZigZagPos],
+                    iColumns = ZIG_ZAG_COLUMNS[iLastZigZagPos];
+                if (iRows == 8 && iColumns == 8)
+                    idct.IDCT(aiBlock, 0, aiBlock);
+                else
+                    idct.IDCT_Sparse(aiBlock, iRows, iColumns, 0, aiBlock);
             }
             // TODO: have IDCT write to the destination location directly
             for (int i=0, iSrcOfs=0; i < 8; i++, iSrcOfs+=8, iOutOffset += iOutWidth)
-                System.arraycopy(_CurrentBlock, iSrcOfs, outputBuffer, iOutOffset, 8);
+                System.arraycopy(aiBlock, iSrcOfs, outputBuffer, iOutOffset, 8);
         }
+    }
 
-        assert !DEBUG || debugPrintBlock("Post-IDCT block");
+    /** Performs the IDCT of a range of macro blocks read by
+     * {@link #decodeParallel(MdecInputStream)}. */
+    private class IdctTask implements Callable<Object> {
+
+        private final IDCT_int _taskIdct;
+        private final int _iStartMacBlk, _iEndMacBlk;
+        /** Matrix of 8x8 coefficient values for this task. */
+        private final int[] _aiBlock = new int[64];
 
+        public IdctTask(IDCT_int idct, int iStartMacBlk, int iEndMacBlk) {
+            _taskIdct = idct;
+            _iStartMacBlk = iStartMacBlk;
+            _iEndMacBlk = iEndMacBlk;
+        }
+
+        public Object call() {
+            for (int iMacBlk = _iStartMacBlk; iMacBlk < _iEndMacBlk; iMacBlk++) {
+                for (int iBlock = 0; iBlock < 6; iBlock++) {
+                    int iBlkIdx = iMacBlk * 6 + iBlock;
+                    int iNonZeroCount = _aiNonZeroCount[iBlkIdx];
+                    // the coefficients are copied so the task can be repeated
+                    if (iNonZeroCount != 0)
+                        System.arraycopy(_aiCoefficients, iBlkIdx * 64, _aiBlock, 0, 64);
+                    writeEndOfBlock(_taskIdct, _aiBlock, iMacBlk, iBlock,
+                                    iNonZeroCount, _aiLastZigZagPos[iBlkIdx]);
+                }
+            }
+            return null;
+        }
     }
 
     public void readDecodedRgb(int iDestWidth, int iDestHeight, int[] aiDest,
@@ -237,9 +432,6 @@ public class MdecDecoder_int extends MdecDecoder {
         if ((iDestHeight % 2) != 0)
             throw new IllegalArgumentException("Image height must be multiple of 2.");
 
-        final PsxYCbCr_int psxycc = new PsxYCbCr_int();
-        final RGB rgb1 = new RGB(), rgb2 = new RGB(), rgb3 = new RGB(), rgb4 = new RGB();
-
         final int W_x2 = W*2, iOutStride_x2 = iOutStride*2;
         
         int iLumaLineOfsStart = 0, iChromaLineOfsStart = 0,
@@ -257,24 +449,90 @@ public class MdecDecoder_int extends MdecDecoder {
                 iDestOfs2 = iDestLineOfsStart + iOutStride;
             for (int iX=0;
                  iX < iDestWidth;
-                 iX+=2, iSrcChromaOfs++)
+                 iX+=2, iSrcChromaOfs++,
+                 iSrcLumaOfs1+=2, iSrcLumaOfs2+=2,
+                 iDestOfs1+=2, iDestOfs2+=2)
             {
-                psxycc.cr = _CrBuffer[iSrcChromaOfs];
-                psxycc.cb = _CbBuffer[iSrcChromaOfs];
-
-                psxycc.y1 = _LumaBuffer[iSrcLumaOfs1++];
-                psxycc.y2 = _LumaBuffer[iSrcLumaOfs1++];
-                psxycc.y3 = _LumaBuffer[iSrcLumaOfs2++];
-                psxycc.y4 = _LumaBuffer[iSrcLumaOfs2++];
+                PsxYCbCr_int.toArgb(_LumaBuffer[iSrcLumaOfs1], _LumaBuffer[iSrcLumaOfs1+1],
+                                    _LumaBuffer[iSrcLumaOfs2], _LumaBuffer[iSrcLumaOfs2+1],
+                                    _CbBuffer[iSrcChromaOfs], _CrBuffer[iSrcChromaOfs],
+                                    aiDest, iDestOfs1, iDestOfs2);
+            }
+        }
+    }
 
-                psxycc.toRgb(rgb1, rgb2, rgb3, rgb4);
+    // Rec.601 conversion in 46 bit fixed-point. Checked against every
+    // combination of luma, Cb and Cr from -2048 to 2047, it gives exactly the
+    // same results as the double conversion in PsxYCbCr.toRec_601_YCbCr().
+    // The exact luma is a multiple of 1/2660418030, so the fixed-point error
+    // has to stay well under that, and fewer bits are off by 1 at extreme
+    // chroma (32 bits were off in 382 cases). Products overflow for samples
+    // beyond about +/-100000, which only corrupt data could produce.
+    private static final int REC601_FIXED_BITS = 46;
+    private static final long REC601_HALF = 1L << (REC601_FIXED_BITS - 1);
+    // A few luma values are exactly halfway, which Math.round() rounds up.
+    // This is bigger than the fixed-point error but smaller than 1/2660418030
+    // so those round up too without changing anything else.
+    private static final long REC601_Y_TIE = 1L << (REC601_FIXED_BITS - 33);
+    private static final long REC601_Y_Y   = 60454247575313L; // Math.round(250./291.            * (1L << 46))
+    private static final long REC601_Y_CB  =   -12921189250L; // Math.round(-488509./2660418030. * (1L << 46))
+    private static final long REC601_Y_CR  =    -4376882949L; // Math.round(-82738./1330209015.  * (1L << 46))
+    private static final long REC601_CB_CB = 61798045067942L; // Math.round(4014411./4571165.    * (1L << 46))
+    private static final long REC601_CB_CR =     2524624258L; // Math.round(164./4571165.        * (1L << 46))
+    private static final long REC601_CR_CB =     9423724491L; // Math.round(3673./27426990.      * (1L << 46))
+    private static final long REC601_CR_CR = 61818342123331L; // Math.round(8031459./9142330.    * (1L << 46))
+
+    public void readDecodedYuv420(int iDestWidth, int iDestHeight,
+                                  byte[] abY, byte[] abCb, byte[] abCr)
+    {
+        if ((iDestWidth % 2) != 0)
+            throw new IllegalArgumentException("Image width must be multiple of 2.");
+        if ((iDestHeight % 2) != 0)
+            throw new IllegalArgumentException("Image height must be multiple of 2.");
 
-                aiDest[iDestOfs1++] = rgb1.toInt();
-                aiDest[iDestOfs1++] = rgb2.toInt();
-                aiDest[iDestOfs2++] = rgb3.toInt();
-                aiDest[iDestOfs2++] = rgb4.toInt();
+        final int W_x2 = W*2, iDestWidth_x2 = iDestWidth*2, iDestChromaWidth = iDestWidth/2;
+        int iLumaLineOfsStart = 0, iChromaLineOfsStart = 0,
+            iDestLumaLineOfsStart = 0, iDestChromaLineOfsStart = 0;
+        for (int iY=0; iY < iDestHeight;
+             iY+=2,
+             iLumaLineOfsStart+=W_x2, iChromaLineOfsStart+=CW,
+             iDestLumaLineOfsStart+=iDestWidth_x2, iDestChromaLineOfsStart+=iDestChromaWidth)
+        {
+            int iSrcLumaOfs1 = iLumaLineOfsStart,
+                iSrcLumaOfs2 = iLumaLineOfsStart + W,
+                iSrcChromaOfs = iChromaLineOfsStart,
+                iDestLumaOfs1 = iDestLumaLineOfsStart,
+                iDestLumaOfs2 = iDestLumaLineOfsStart + iDestWidth,
+                iDestChromaOfs = iDestChromaLineOfsStart;
+            for (int iX=0; iX < iDestWidth; iX+=2, iSrcChromaOfs++, iDestChromaOfs++) {
+                long cb = _CbBuffer[iSrcChromaOfs];
+                long cr = _CrBuffer[iSrcChromaOfs];
+
+                // 16 + rounding + chroma contribution to luma
+                long lngYChroma = cb * REC601_Y_CB + cr * REC601_Y_CR +
+                                  (16L << REC601_FIXED_BITS) + REC601_HALF + REC601_Y_TIE;
+
+                abY[iDestLumaOfs1++] = clampFixed((_LumaBuffer[iSrcLumaOfs1++] + 128L) * REC601_Y_Y + lngYChroma);
+                abY[iDestLumaOfs1++] = clampFixed((_LumaBuffer[iSrcLumaOfs1++] + 128L) * REC601_Y_Y + lngYChroma);
+                abY[iDestLumaOfs2++] = clampFixed((_LumaBuffer[iSrcLumaOfs2++] + 128L) * REC601_Y_Y + lngYChroma);
+                abY[iDestLumaOfs2++] = clampFixed((_LumaBuffer[iSrcLumaOfs2++] + 128L) * REC601_Y_Y + lngYChroma);
+
+                abCb[iDestChromaOfs] = clampFixed(cb * REC601_CB_CB + cr * REC601_CB_CR +
+                                                  (128L << REC601_FIXED_BITS) + REC601_HALF);
+                abCr[iDestChromaOfs] = clampFixed(cb * REC601_CR_CB + cr * REC601_CR_CR +
+                                                  (128L << REC601_FIXED_BITS) + REC601_HALF);
             }
         }
     }
 
+    private static byte clampFixed(long lngFixed) {
+        long lng = lngFixed >> REC601_FIXED_BITS;
+        if (lng < 0)
+            return (byte)0;
+        else if (lng > 255)
+            return (byte)255;
+        else
+            return (byte)lng;
+    }
+
 }
@@ -47,4 +47,10 @@ public interface IDCT_int {
     /** Special optimization of the IDCT when there is only 1 non-zero coefficient. */
     void IDCT_1NonZero(int[] aiIdctMatrix, int iNonZeroPos,
                        int iOutputOffset, int[] aiOutput);
+
+    /** Optimization of the IDCT when all the non-zero coefficients are in
+     * the first iRows rows and iColumns columns of the matrix.
+     * Must give exactly the same result as {@link #IDCT}. */
+    void IDCT_Sparse(int[] aiIdctMatrix, int iRows, int iColumns,
+                     int iOutputOffset, int[] aiOutput);
 }
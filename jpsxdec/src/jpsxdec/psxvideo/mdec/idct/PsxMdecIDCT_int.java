@@ -47,7 +47,15 @@ import jpsxdec.util.Maths;
  * ultimately result in slightly different color output).
  *<p>
  * Note that neither this code nor the MAME code produce what the
- * MDEC chip actually generates! */
+ * MDEC chip actually generates!
+ *<p>
+ * The passes are left as plain scalar loops. Rewriting them so each inner
+ * loop runs over the 8 lanes of a row (for HotSpot to vectorize) gave the
+ * same output but was no faster on a Java 17 JIT: the loops are too short
+ * and the sums must be 64 bit to stay exact. The
+ * {@code jdk.incubator.vector} API is not an option for a Java 5 build.
+ * Use {@link AanIDCT_int} or decode on several threads when speed matters
+ * more than matching this IDCT. */
 public class PsxMdecIDCT_int implements IDCT_int {
 
     private static final int[] PSX_DEFAULT_COSINE_MATRIX = {
@@ -127,7 +135,43 @@ public class PsxMdecIDCT_int implements IDCT_int {
     }
 
     public void IDCT_1NonZero(int[] idctMatrix, int iNonZeroPos, int iOutputOffset, int[] output) {
-        IDCT(idctMatrix, iOutputOffset, output);
+        IDCT_Sparse(idctMatrix, (iNonZeroPos >> 3) + 1, (iNonZeroPos & 7) + 1,
+                    iOutputOffset, output);
+    }
+
+    /** Same as {@link #IDCT}, but skipping the terms that are known to be 0. */
+    public void IDCT_Sparse(int[] idctMatrix, int iRows, int iColumns,
+                            int iOutputOffset, int[] output)
+    {
+        long tempSum;
+        int x;
+        int y;
+        int i;
+
+        // only the first iColumns columns of the temp matrix can be non-zero
+        for (x=0; x<iColumns; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<iRows; i++) {
+                    tempSum += (PSX_DEFAULT_COSINE_MATRIX[i*8 + y] * idctMatrix[x + i*8]);
+                }
+                
+                _aTemp[x + y*8] = tempSum;
+            }
+        }
+
+        for (x=0; x<8; x++) {
+            for (y=0; y<8; y++) {
+                tempSum = 0;
+
+                for (i=0; i<iColumns; i++) {
+                    tempSum += _aTemp[i + y*8] * PSX_DEFAULT_COSINE_MATRIX[x + i*8];
+                }
+
+                output[iOutputOffset + x + y*8] = (int)Maths.shrRound(tempSum, 32);
+            }
+        }
     }
 
     
@@ -46,4 +46,32 @@ public class SimpleIDCT extends simple_idct implements IDCT_int {
     public void IDCT_1NonZero(int[] aiIdctMatrix, int iNonZeroPos, int iOutputOffset, int[] aiOutput) {
         invers_dct_special(aiIdctMatrix, iNonZeroPos, iOutputOffset, aiOutput);
     }
+
+    public void IDCT_Sparse(int[] aiIdctMatrix, int iRows, int iColumns,
+                            int iOutputOffset, int[] aiOutput)
+    {
+        // rows that are all zero stay all zero after the row pass
+        for (int i = 0; i < iRows; i++) {
+            if (iColumns == 1)
+                dcOnly1D(aiIdctMatrix, i*8, 1, ROW_SHIFT, 0, aiIdctMatrix);
+            else
+                idct1D(aiIdctMatrix, i*8, 1, ROW_SHIFT, 0, aiIdctMatrix);
+        }
+        for (int i = 0; i < 8; i++) {
+            if (iRows == 1)
+                dcOnly1D(aiIdctMatrix, i, 8, COL_SHIFT, iOutputOffset, aiOutput);
+            else
+                idct1D(aiIdctMatrix, i, 8, COL_SHIFT, iOutputOffset, aiOutput);
+        }
+    }
+
+    /** Same as {@link #idct1D} when only the first coefficient can be
+     * non-zero: every output is the rounded DC. */
+    private static void dcOnly1D(int[] aiCoeff, int iOffset, int iStride, int iShift,
+                                 int iOutOffset, int[] aiOut)
+    {
+        int iDc = (aiCoeff[iOffset] * W4 + (1 << (iShift - 1))) >> iShift;
+        for (int i = 0, iOut = iOutOffset + iOffset; i < 8; i++, iOut += iStride)
+            aiOut[iOut] = iDc;
+    }
 }
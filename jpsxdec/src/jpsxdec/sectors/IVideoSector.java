@@ -38,6 +38,7 @@
 package jpsxdec.sectors;
 
 import javax.annotation.Nonnull;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.LocalizedIncompatibleException;
 
 /** Interface that should be implemented by all video sector classes. */
@@ -60,6 +61,12 @@ public interface IVideoSector extends IIdentifiedSector {
      *  output buffer. */
     void copyIdentifiedUserData(@Nonnull byte[] abOut, int iOutPos);
 
+    /** Adds the identified user data portion of the sector data to the
+     *  slices without copying it.
+     *  @return false if the data needs to be copied with
+     *          {@link #copyIdentifiedUserData(byte[], int)} instead. */
+    boolean addIdentifiedUserDataSlice(@Nonnull ByteSlices slices);
+
     /** Confirms that the demuxed bitstream data is compatible with the sector,
      * then modifies the sector data and demuxed bitstream data to be correct
      * for writing.
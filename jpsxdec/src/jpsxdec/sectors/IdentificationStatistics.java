@@ -0,0 +1,113 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.sectors;
+
+import javax.annotation.Nonnull;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+
+/** Tracks how much work {@link IdentifiedSectorIterator} spends on each
+ * sector type: how many sectors the type was tried on, how many it
+ * accepted, and how long it took. Sectors that the pre-classifier rules out
+ * for every type are only counted as rejected. Not thread safe. */
+public class IdentificationStatistics {
+
+    private final int[] _aiAttempts = new int[SectorType.values().length];
+    private final int[] _aiHits = new int[SectorType.values().length];
+    private final long[] _alngNanos = new long[SectorType.values().length];
+    private int _iSectors;
+    private int _iRejected;
+
+    void sectorClassified(int iCandidateTypes) {
+        _iSectors++;
+        if (iCandidateTypes == 0)
+            _iRejected++;
+    }
+
+    void identificationAttempted(@Nonnull SectorType type, boolean blnHit, long lngNanos) {
+        int i = type.ordinal();
+        _aiAttempts[i]++;
+        if (blnHit)
+            _aiHits[i]++;
+        _alngNanos[i] += lngNanos;
+    }
+
+    /** Number of sectors read. */
+    public int getSectorCount() {
+        return _iSectors;
+    }
+
+    /** Number of sectors no type was tried on because the pre-classifier
+     * found that none could match. */
+    public int getRejectedCount() {
+        return _iRejected;
+    }
+
+    /** Number of sectors the type was tried on. */
+    public int getAttempts(@Nonnull SectorType type) {
+        return _aiAttempts[type.ordinal()];
+    }
+
+    /** Number of sectors the type accepted. For contextual types this
+     * may include sectors that were later dropped. */
+    public int getHits(@Nonnull SectorType type) {
+        return _aiHits[type.ordinal()];
+    }
+
+    /** Total time spent trying to identify the type. */
+    public long getNanos(@Nonnull SectorType type) {
+        return _alngNanos[type.ordinal()];
+    }
+
+    /** One line per type that was tried. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d sectors, %d rejected by pre-classifier",
+                                _iSectors, _iRejected));
+        for (SectorType type : SectorType.values()) {
+            int i = type.ordinal();
+            if (_aiAttempts[i] == 0)
+                continue;
+            sb.append(String.format("%n%s: %d hits / %d attempts %.3f ms",
+                                    type, _aiHits[i], _aiAttempts[i],
+                                    _alngNanos[i] / 1000000.0));
+        }
+        return sb.toString();
+    }
+}
@@ -40,12 +40,15 @@ package jpsxdec.sectors;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
 import jpsxdec.util.IO;
 import jpsxdec.util.BinaryDataNotRecognized;
 
@@ -54,6 +57,36 @@ import jpsxdec.util.BinaryDataNotRecognized;
  * hence the need for an iterator. */
 public abstract class IdentifiedSectorIterator {
 
+    /** The sector types that can be identified. Identification can be
+     * restricted to a subset of these when it is known what types a disc
+     * actually uses (see {@link jpsxdec.indexing.DiscProfile}). */
+    public static enum SectorType {
+        XA_AUDIO,
+        XA_NULL,
+        STR_VIDEO,
+        ISO9660_DIRECTORY_RECORDS,
+        ISO9660_VOLUME_PRIMARY_DESCRIPTOR,
+        CD_AUDIO,
+        FF8_VIDEO,
+        FF8_AUDIO,
+        FF9_VIDEO,
+        FF9_AUDIO,
+        IKI_VIDEO,
+        CHRONO_X_AUDIO,
+        CHRONO_X_VIDEO,
+        CHRONO_X_VIDEO_NULL,
+        ACE_COMBAT_3_VIDEO,
+        LAIN_VIDEO,
+        CRUSADER,
+        GT_VIDEO,
+        FF7_VIDEO,
+        ALICE_VIDEO,
+        DREDD_VIDEO,
+    }
+
+    /** Every sector type, the default. Do not modify. */
+    private static final Set<SectorType> ALL_TYPES = EnumSet.allOf(SectorType.class);
+
     public static IdentifiedSectorIterator create(@Nonnull CdFileSectorReader cd) {
         return create(cd, 0);
     }
@@ -66,7 +99,20 @@ public abstract class IdentifiedSectorIterator {
                                                   int iStartSector,
                                                   int iEndSectorInclusive)
     {
-        return new Dredd(cd, iStartSector, iEndSectorInclusive);
+        return create(cd, iStartSector, iEndSectorInclusive, ALL_TYPES);
+    }
+    /** Only tries to identify the given sector types.
+     * Everything else is returned as unidentified. */
+    public static IdentifiedSectorIterator create(@Nonnull CdFileSectorReader cd,
+                                                  int iStartSector,
+                                                  int iEndSectorInclusive,
+                                                  @Nonnull Set<SectorType> types)
+    {
+        BaseWithGT base = new BaseWithGT(cd, iStartSector, iEndSectorInclusive, types);
+        if (types.contains(SectorType.DREDD_VIDEO))
+            return new Dredd(base);
+        else
+            return base;
     }
 
     @Nonnull
@@ -90,7 +136,307 @@ public abstract class IdentifiedSectorIterator {
     /** Moves to the next sector and tries to identify it.
      * @return null if sector could not be identified. */
     public abstract @CheckForNull IdentifiedSector next() throws IOException;
+    /** Starts keeping statistics of how identification goes. They are not
+     * kept otherwise since timing every attempt has a cost.
+     * @return The statistics, updated as iteration continues. */
+    public abstract @Nonnull IdentificationStatistics collectStatistics();
+
+
+    /** Identifies a sector using only the types that need no information
+     * from the surrounding sectors. If this identifies a sector, the iterator
+     * will also always identify it (although contextual identification may
+     * pick a different type), so this can be used to find sectors that can
+     * never be part of an unidentified sequence without iterating the
+     * whole disc.
+     * @return null if sector could not be identified without context. */
+    public static @CheckForNull IdentifiedSector identifyWithoutContext(@Nonnull CdSector cdSector) {
+        return identifyWithoutContext(cdSector, ALL_TYPES);
+    }
+
+    /** Same as {@link #identifyWithoutContext(CdSector)}, but only for
+     * the given sector types, matching an iterator created with the same types. */
+    public static @CheckForNull IdentifiedSector identifyWithoutContext(@Nonnull CdSector cdSector,
+                                                                        @Nonnull Set<SectorType> types)
+    {
+        int iCandidates = preClassify(cdSector) & toBits(types);
+        if (iCandidates == 0)
+            return null;
+        IdentifiedSector id = identifyBeforeContext(cdSector, iCandidates, null);
+        if (id != null)
+            return id;
+        return identifyAfterContext(cdSector, iCandidates, null);
+    }
+
+    /** Same as {@link #identifyWithoutContext(CdSector)}, but tries every
+     * type without pre-classification. Only for testing. */
+    static @CheckForNull IdentifiedSector identifyWithoutPreClassifying(@Nonnull CdSector cdSector) {
+        IdentifiedSector id = identifyBeforeContext(cdSector, ALL_BITS, null);
+        if (id != null)
+            return id;
+        return identifyAfterContext(cdSector, ALL_BITS, null);
+    }
+
+    // .. Pre-classification ...................................................
+
+    /** Packs the types into an int by ordinal (there are fewer than 32). */
+    private static int toBits(@Nonnull Set<SectorType> types) {
+        if (types == ALL_TYPES)
+            return ALL_BITS;
+        int iBits = 0;
+        for (SectorType type : types)
+            iBits |= 1 << type.ordinal();
+        return iBits;
+    }
+
+    private static int toBits(@Nonnull SectorType ... aoTypes) {
+        int iBits = 0;
+        for (SectorType type : aoTypes)
+            iBits |= 1 << type.ordinal();
+        return iBits;
+    }
+
+    private static final int ALL_BITS = toBits(SectorType.values());
+
+    private static final int XA_AUDIO = toBits(SectorType.XA_AUDIO);
+    private static final int XA_NULL = toBits(SectorType.XA_NULL);
+    private static final int ISO9660_DIRECTORY_RECORDS = toBits(SectorType.ISO9660_DIRECTORY_RECORDS);
+    private static final int ISO9660_VOLUME_PRIMARY_DESCRIPTOR = toBits(SectorType.ISO9660_VOLUME_PRIMARY_DESCRIPTOR);
+    private static final int CD_AUDIO = toBits(SectorType.CD_AUDIO);
+    private static final int FF8_VIDEO = toBits(SectorType.FF8_VIDEO);
+    private static final int FF8_AUDIO = toBits(SectorType.FF8_AUDIO);
+    private static final int FF9_VIDEO = toBits(SectorType.FF9_VIDEO);
+    private static final int FF9_AUDIO = toBits(SectorType.FF9_AUDIO);
+    private static final int CHRONO_X_AUDIO = toBits(SectorType.CHRONO_X_AUDIO);
+    /** Both Chrono Cross video types, which share the magic numbers. */
+    private static final int CHRONO_X_VIDEO = toBits(SectorType.CHRONO_X_VIDEO, SectorType.CHRONO_X_VIDEO_NULL);
+    private static final int ACE_COMBAT_3_VIDEO = toBits(SectorType.ACE_COMBAT_3_VIDEO);
+    private static final int CRUSADER = toBits(SectorType.CRUSADER);
+    private static final int GT_VIDEO = toBits(SectorType.GT_VIDEO);
+    private static final int FF7_VIDEO = toBits(SectorType.FF7_VIDEO);
+    private static final int ALICE_VIDEO = toBits(SectorType.ALICE_VIDEO);
+    private static final int DREDD_VIDEO = toBits(SectorType.DREDD_VIDEO);
+    /** Types that start with the standard STR video sector header. */
+    private static final int STR_HEADER = toBits(SectorType.STR_VIDEO, SectorType.IKI_VIDEO,
+                                                 SectorType.LAIN_VIDEO, SectorType.FF7_VIDEO);
+    /** Types that may match whatever the first bytes are. */
+    private static final int ANY_HEADER = XA_AUDIO | XA_NULL | CD_AUDIO;
+
+    /** Types that reject CD audio sectors. */
+    private static final int NOT_CD_AUDIO = XA_AUDIO | XA_NULL |
+            ISO9660_DIRECTORY_RECORDS | ISO9660_VOLUME_PRIMARY_DESCRIPTOR |
+            FF8_VIDEO | FF8_AUDIO | FF9_VIDEO | FF9_AUDIO | CHRONO_X_AUDIO |
+            toBits(SectorType.CHRONO_X_VIDEO_NULL) | ALICE_VIDEO;
+    /** Types that need a sub-header. */
+    private static final int NEED_SUB_HEADER = XA_AUDIO | XA_NULL | FF9_VIDEO |
+            ACE_COMBAT_3_VIDEO | DREDD_VIDEO;
+    /** Types that, if there is a sub-header, need the data or video flag. */
+    private static final int NEED_DATA_OR_VIDEO = toBits(SectorType.STR_VIDEO, SectorType.IKI_VIDEO,
+            SectorType.CHRONO_X_VIDEO, SectorType.CHRONO_X_VIDEO_NULL,
+            SectorType.LAIN_VIDEO, SectorType.ALICE_VIDEO);
+    /** Types that, if there is a sub-header, need the data flag. */
+    private static final int NEED_DATA = FF8_VIDEO | FF8_AUDIO | GT_VIDEO;
+
+    /** Quickly rules out sector types using the cheap checks each type
+     * would do first: CD audio, the sub-header flags, and the first
+     * 4 bytes of user data (where nearly every type has its magic number).
+     * No sector type is created in the process.
+     * <p>
+     * This must never rule out a type that would identify the sector.
+     * Keep it in sync with the start of each sector type's constructor.
+     * @return Bits (by {@link SectorType} ordinal) of the types that
+     *         could possibly identify the sector. */
+    static int preClassify(@Nonnull CdSector cdSector) {
+        int iHead = (int)cdSector.readUInt32LE(0);
+        int iTypes = ANY_HEADER;
+
+        switch (iHead) {
+            case (int)SectorStrVideo.VIDEO_SECTOR_MAGIC:
+                iTypes |= STR_HEADER; break;
+            case SectorFF9.SectorFF9Video.VIDEO_CHUNK_MAGIC:
+                iTypes |= FF9_VIDEO; break;
+            case SectorFF9.SectorFF9Audio.FF9_AUDIO_CHUNK_MAGIC:
+                iTypes |= FF9_AUDIO; break;
+            case (int)SectorChronoXAudio.AUDIO_CHUNK_MAGIC1: // same as Alice
+                iTypes |= CHRONO_X_AUDIO | ALICE_VIDEO; break;
+            case (int)SectorChronoXAudio.AUDIO_CHUNK_MAGIC2:
+            case (int)SectorChronoXAudio.AUDIO_CHUNK_MAGIC3:
+            case (int)SectorChronoXAudio.AUDIO_CHUNK_MAGIC4:
+                iTypes |= CHRONO_X_AUDIO; break;
+            case (int)SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC1:
+            case (int)SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC2:
+                iTypes |= CHRONO_X_VIDEO; break;
+            case (int)SectorGTVideo.GT_MAGIC:
+                iTypes |= GT_VIDEO; break;
+        }
+        // Crusader magic is big-endian
+        if (Integer.reverseBytes(iHead) == (int)SectorCrusader.MAGIC)
+            iTypes |= CRUSADER;
+        // Dredd starts with the chunk number
+        if (iHead >= 0 && iHead < SectorDreddVideo.MAX_CHUNKS_PER_FRAME)
+            iTypes |= DREDD_VIDEO;
+
+        int b0 = iHead & 0xff, b1 = (iHead >> 8) & 0xff, b2 = (iHead >> 16) & 0xff;
+        if (b0 == 'S' && b1 == 'M') {
+            if (b2 == 'J')
+                iTypes |= FF8_VIDEO;
+            else if (b2 == 'N' || b2 == 'R')
+                iTypes |= FF8_AUDIO;
+        }
+        if (b0 == 0x01) {
+            iTypes |= ACE_COMBAT_3_VIDEO;
+            if (b1 == 'C') // "CD001"
+                iTypes |= ISO9660_VOLUME_PRIMARY_DESCRIPTOR;
+        }
+        // record length, then extended attribute length
+        if (b0 != 0 && b1 == 0)
+            iTypes |= ISO9660_DIRECTORY_RECORDS;
+
+        if (cdSector.isCdAudioSector())
+            iTypes &= ~NOT_CD_AUDIO;
+        else
+            iTypes &= ~CD_AUDIO;
+
+        int iSectorNumber = cdSector.getSectorNumberFromStart();
+        if (iSectorNumber >= 0 && iSectorNumber != 16)
+            iTypes &= ~ISO9660_VOLUME_PRIMARY_DESCRIPTOR;
+
+        if (!cdSector.hasSubHeader())
+            return iTypes & ~NEED_SUB_HEADER;
+
+        int iSubMode = cdSector.subModeMask(0xff);
+        if ((iSubMode & (SubMode.MASK_FORM | SubMode.MASK_AUDIO)) != (SubMode.MASK_FORM | SubMode.MASK_AUDIO))
+            iTypes &= ~XA_AUDIO;
+        if ((iSubMode & SubMode.MASK_FORM) == 0 ||
+            (iSubMode & (SubMode.MASK_AUDIO | SubMode.MASK_VIDEO | SubMode.MASK_DATA)) != 0)
+            iTypes &= ~XA_NULL;
+        if ((iSubMode & (SubMode.MASK_DATA | SubMode.MASK_VIDEO)) == 0)
+            iTypes &= ~NEED_DATA_OR_VIDEO;
+        if ((iSubMode & SubMode.MASK_FORM) != 0)
+            iTypes &= ~toBits(SectorType.STR_VIDEO);
+        if ((iSubMode & SubMode.MASK_DATA) == 0)
+            iTypes &= ~NEED_DATA;
+        if ((iSubMode & (SubMode.MASK_DATA | SubMode.MASK_FORM)) != (SubMode.MASK_DATA | SubMode.MASK_FORM))
+            iTypes &= ~FF9_VIDEO;
+        if ((iSubMode & (SubMode.MASK_DATA | SubMode.MASK_FORM)) != SubMode.MASK_DATA)
+            iTypes &= ~CHRONO_X_AUDIO;
+        if ((iSubMode & SectorFF7Video.SUB_MODE_MASK) != 0)
+            iTypes &= ~FF7_VIDEO;
+        if ((iSubMode & ~SubMode.MASK_EOF_MARKER) != SubMode.MASK_DATA ||
+            cdSector.getSubHeaderFile() != 1 || cdSector.getSubHeaderChannel() != 2)
+            iTypes &= ~DREDD_VIDEO;
+        return iTypes;
+    }
+
+    // .. Identification .......................................................
+
+    /** Types that are checked before contextual Gran Turismo identification,
+     * sorted in order of likelyhood of encountering (my best guess). */
+    private static final SectorType[] BEFORE_CONTEXT = {
+        SectorType.XA_AUDIO,
+        SectorType.XA_NULL,
+        SectorType.STR_VIDEO,
+        SectorType.ISO9660_DIRECTORY_RECORDS,
+        SectorType.ISO9660_VOLUME_PRIMARY_DESCRIPTOR,
+        SectorType.CD_AUDIO,
+        SectorType.FF8_VIDEO,
+        SectorType.FF8_AUDIO,
+        SectorType.FF9_VIDEO,
+        SectorType.FF9_AUDIO,
+        SectorType.IKI_VIDEO,
+        SectorType.CHRONO_X_AUDIO,
+        SectorType.CHRONO_X_VIDEO,
+        SectorType.CHRONO_X_VIDEO_NULL,
+        SectorType.ACE_COMBAT_3_VIDEO,
+        SectorType.LAIN_VIDEO,
+        SectorType.CRUSADER,
+    };
+
+    /** Creates the sector type for the sector.
+     * Only for types that need no context. */
+    static @Nonnull IdentifiedSector create(@Nonnull SectorType type,
+                                                   @Nonnull CdSector cdSector)
+    {
+        switch (type) {
+            case XA_AUDIO:                          return new SectorXaAudio(cdSector);
+            case XA_NULL:                           return new SectorXaNull(cdSector);
+            case STR_VIDEO:                         return new SectorStrVideo(cdSector);
+            case ISO9660_DIRECTORY_RECORDS:         return new SectorISO9660DirectoryRecords(cdSector);
+            case ISO9660_VOLUME_PRIMARY_DESCRIPTOR: return new SectorISO9660VolumePrimaryDescriptor(cdSector);
+            case CD_AUDIO:                          return new SectorCdAudio(cdSector);
+            case FF8_VIDEO:                         return new SectorFF8.SectorFF8Video(cdSector);
+            case FF8_AUDIO:                         return new SectorFF8.SectorFF8Audio(cdSector);
+            case FF9_VIDEO:                         return new SectorFF9.SectorFF9Video(cdSector);
+            case FF9_AUDIO:                         return new SectorFF9.SectorFF9Audio(cdSector);
+            case IKI_VIDEO:                         return new SectorIkiVideo(cdSector);
+            case CHRONO_X_AUDIO:                    return new SectorChronoXAudio(cdSector);
+            case CHRONO_X_VIDEO:                    return new SectorChronoXVideo(cdSector);
+            case CHRONO_X_VIDEO_NULL:               return new SectorChronoXVideoNull(cdSector);
+            case ACE_COMBAT_3_VIDEO:                return new SectorAceCombat3Video(cdSector);
+            case LAIN_VIDEO:                        return new SectorLainVideo(cdSector);
+            case CRUSADER:                          return new SectorCrusader(cdSector);
+            case FF7_VIDEO:                         return new SectorFF7Video(cdSector);
+            default: throw new IllegalArgumentException(type.toString());
+        }
+    }
 
+    /** Tries one sector type, recording the attempt if there are statistics. */
+    private static @CheckForNull IdentifiedSector tryType(@Nonnull SectorType type,
+                                                         @Nonnull CdSector cdSector,
+                                                         @CheckForNull IdentificationStatistics stats)
+    {
+        if (stats == null) {
+            IdentifiedSector id = create(type, cdSector);
+            return id.getProbability() > 0 ? id : null;
+        }
+        long lngStart = System.nanoTime();
+        IdentifiedSector id = create(type, cdSector);
+        boolean blnHit = id.getProbability() > 0;
+        stats.identificationAttempted(type, blnHit, System.nanoTime() - lngStart);
+        return blnHit ? id : null;
+    }
+
+    /** Types that are checked before contextual Gran Turismo identification. */
+    private static @CheckForNull IdentifiedSector identifyBeforeContext(@Nonnull CdSector cdSector,
+                                                                        int iCandidates,
+                                                                        @CheckForNull IdentificationStatistics stats)
+    {
+        for (SectorType type : BEFORE_CONTEXT) {
+            if ((iCandidates & (1 << type.ordinal())) != 0) {
+                IdentifiedSector id = tryType(type, cdSector, stats);
+                if (id != null)
+                    return id;
+            }
+        }
+        return null;
+    }
+
+    /** Types that are checked after contextual Gran Turismo identification. */
+    private static @CheckForNull IdentifiedSector identifyAfterContext(@Nonnull CdSector cdSector,
+                                                                       int iCandidates,
+                                                                       @CheckForNull IdentificationStatistics stats)
+    {
+        // FF7 has such a vague header, it can easily be falsely identified
+        // when it should be one of the headers above
+        IdentifiedSector id;
+        if ((iCandidates & FF7_VIDEO) != 0 && (id = tryType(SectorType.FF7_VIDEO, cdSector, stats)) != null) return id;
+
+        if ((iCandidates & ALICE_VIDEO) == 0)
+            return null;
+
+        // special handling for Alice
+        long lngStart = stats == null ? 0 : System.nanoTime();
+        SectorAliceNullVideo nullAlice = new SectorAliceNullVideo(cdSector);
+        if (nullAlice.getProbability() > 0) {
+            id = new SectorAliceVideo(cdSector);
+            if (id.getProbability() == 0)
+                id = nullAlice;
+        } else {
+            id = null;
+        }
+        if (stats != null)
+            stats.identificationAttempted(SectorType.ALICE_VIDEO, id != null, System.nanoTime() - lngStart);
+        return id;
+    }
 
     /** Wraps {@link BaseWithGT} and adds contextual Dredd identification. */
     private static class Dredd extends IdentifiedSectorIterator{
@@ -130,9 +476,9 @@ public abstract class IdentifiedSectorIterator {
         @CheckForNull
         private SectorDreddVideo _remainingDredd;
 
-        private Dredd(@Nonnull CdFileSectorReader cd, int iStartSector, int iEndSectorInclusive) {
-            super(cd);
-            _it = new BaseWithGT(cd, iStartSector, iEndSectorInclusive);
+        private Dredd(@Nonnull BaseWithGT it) {
+            super(it._cd);
+            _it = it;
         }
 
         public @CheckForNull IdentifiedSector current() {
@@ -151,6 +497,10 @@ public abstract class IdentifiedSectorIterator {
             return _it.hasNext() || !_queue.isEmpty();
         }
 
+        public @Nonnull IdentificationStatistics collectStatistics() {
+            return _it.collectStatistics();
+        }
+
         public @CheckForNull IdentifiedSector next() throws IOException {
             if (!hasNext())
                 throw new NoSuchElementException();
@@ -169,9 +519,8 @@ public abstract class IdentifiedSectorIterator {
                         _current = new SectorPair(id);
                     } else {
                         CdSector cd = _it.currentCd();
-                        SectorDreddVideo firstDredd = new SectorDreddVideo(cd);
-                        if (firstDredd.getProbability() > 0 &&
-                            firstDredd.getChunkNumber() == 0)
+                        SectorDreddVideo firstDredd = _it.identifyDredd();
+                        if (firstDredd != null && firstDredd.getChunkNumber() == 0)
                         { // got a possible first sector
                             _current = new SectorPair(firstDredd);
                             if (!queueDredd())
@@ -212,8 +561,8 @@ public abstract class IdentifiedSectorIterator {
                 SectorPair next = new SectorPair(_it.currentCd(), _it.current());
                 _queue.offer(next);
                 if (next.idSector == null) { // skip identified sectors
-                    SectorDreddVideo nextDreddVid = new SectorDreddVideo(next.cdSector);
-                    if (nextDreddVid.getProbability() > 0) { // skip unidentified sectors that are definitely not Dredd
+                    SectorDreddVideo nextDreddVid = _it.identifyDredd();
+                    if (nextDreddVid != null) { // skip unidentified sectors that are definitely not Dredd
                         if (nextDreddVid.getChunkNumber() == iChunk) { // the chunk sequence continues
                             next.idSector = nextDreddVid;
                             iChunk++;
@@ -277,13 +626,23 @@ public abstract class IdentifiedSectorIterator {
         @CheckForNull
         private SectorGTVideo _lastGtChunk0;
 
+        /** Bits of the types to identify. */
+        private final int _iTypeBits;
+        /** Bits of the types that could identify the current sector. */
+        private int _iCandidates;
+        /** Null unless {@link #collectStatistics()} was called. */
+        @CheckForNull
+        private IdentificationStatistics _stats;
+
         private BaseWithGT(@Nonnull CdFileSectorReader cd,
-                            int iStartSector, int iEndSectorInclusive)
+                            int iStartSector, int iEndSectorInclusive,
+                            @Nonnull Set<SectorType> types)
         {
             super(cd);
             _cd = cd;
             _iCurrentSector = iStartSector;
             _iEndSectorInclusive = iEndSectorInclusive;
+            _iTypeBits = toBits(types);
         }
 
         public boolean hasNext() {
@@ -297,49 +656,50 @@ public abstract class IdentifiedSectorIterator {
             _currentCd = _cd.getSector(_iCurrentSector);
             _iCurrentSector++;
 
-            // sorted in order of likelyhood of encountering (my best guess)
-            if ((_currentId = new SectorXaAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorXaNull(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorStrVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorISO9660DirectoryRecords(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorISO9660VolumePrimaryDescriptor(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorCdAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF8.SectorFF8Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF8.SectorFF8Audio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF9.SectorFF9Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorFF9.SectorFF9Audio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorIkiVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXAudio(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorChronoXVideoNull(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorAceCombat3Video(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorLainVideo(_currentCd)).getProbability() > 0) return _currentId;
-            if ((_currentId = new SectorCrusader(_currentCd)).getProbability() > 0) return _currentId;
+            _iCandidates = preClassify(_currentCd) & _iTypeBits;
+            if (_stats != null)
+                _stats.sectorClassified(_iCandidates);
+            if (_iCandidates == 0)
+                return _currentId = null;
+
+            if ((_currentId = identifyBeforeContext(_currentCd, _iCandidates, _stats)) != null) return _currentId;
 
             // contextual GT
-            SectorGTVideo gt2Vid = new SectorGTVideo(_currentCd, _lastGtChunk0);
-            if (gt2Vid.getProbability() > 0) {
-                if (gt2Vid.getChunkNumber() == 0)
-                    _lastGtChunk0 = gt2Vid;
-                _currentId = gt2Vid;
-                return _currentId;
+            if ((_iCandidates & GT_VIDEO) != 0) {
+                long lngStart = _stats == null ? 0 : System.nanoTime();
+                SectorGTVideo gt2Vid = new SectorGTVideo(_currentCd, _lastGtChunk0);
+                boolean blnHit = gt2Vid.getProbability() > 0;
+                if (_stats != null)
+                    _stats.identificationAttempted(SectorType.GT_VIDEO, blnHit, System.nanoTime() - lngStart);
+                if (blnHit) {
+                    if (gt2Vid.getChunkNumber() == 0)
+                        _lastGtChunk0 = gt2Vid;
+                    _currentId = gt2Vid;
+                    return _currentId;
+                }
             }
 
-            // FF7 has such a vague header, it can easily be falsely identified
-            // when it should be one of the headers above
-            if ((_currentId = new SectorFF7Video(_currentCd)).getProbability() > 0) return _currentId;
-
-            // special handling for Alice
-            SectorAliceNullVideo nullAlice = new SectorAliceNullVideo(_currentCd);
-            if (nullAlice.getProbability() > 0) {
-                _currentId = new SectorAliceVideo(_currentCd);
-                if (_currentId.getProbability() == 0)
-                    _currentId = nullAlice;
-                return _currentId;
-            }
+            _currentId = identifyAfterContext(_currentCd, _iCandidates, _stats);
+            return _currentId;
+        }
 
-            _currentId = null;
-            return null;
+        /** Tries to identify the current sector as Dredd, which is left
+         * to {@link Dredd} since it needs more context. */
+        private @CheckForNull SectorDreddVideo identifyDredd() {
+            if ((_iCandidates & DREDD_VIDEO) == 0)
+                return null;
+            long lngStart = _stats == null ? 0 : System.nanoTime();
+            SectorDreddVideo dredd = new SectorDreddVideo(currentCd());
+            boolean blnHit = dredd.getProbability() > 0;
+            if (_stats != null)
+                _stats.identificationAttempted(SectorType.DREDD_VIDEO, blnHit, System.nanoTime() - lngStart);
+            return blnHit ? dredd : null;
+        }
+
+        public @Nonnull IdentificationStatistics collectStatistics() {
+            if (_stats == null)
+                _stats = new IdentificationStatistics();
+            return _stats;
         }
 
         public @CheckForNull IdentifiedSector current() {
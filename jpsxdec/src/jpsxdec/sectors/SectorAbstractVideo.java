@@ -45,6 +45,7 @@ import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv3;
 import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.util.BinaryDataNotRecognized;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.IO;
 import jpsxdec.util.LocalizedIncompatibleException;
 
@@ -144,6 +145,11 @@ public abstract class SectorAbstractVideo extends IdentifiedSector
                 iOutPos, getIdentifiedUserDataSize());
     }
 
+    final public boolean addIdentifiedUserDataSlice(@Nonnull ByteSlices slices) {
+        return super.getCdSector().addCdUserDataSlice(getSectorHeaderSize(),
+                getIdentifiedUserDataSize(), slices);
+    }
+
     public int checkAndPrepBitstreamForReplace(@Nonnull byte[] abDemuxData, int iUsedSize,
                                                int iMdecCodeCount, @Nonnull byte[] abSectUserData)
             throws LocalizedIncompatibleException
@@ -41,6 +41,7 @@ import javax.annotation.Nonnull;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 
 
 /** Alice In Cyber Land 'null' frame chunk sector. */
@@ -146,6 +147,11 @@ public class SectorAliceNullVideo extends IdentifiedSector {
         super.getCdSector().getCdUserDataCopy(ALICE_VIDEO_SECTOR_HEADER_SIZE, abOut,
                 iOutPos, getIdentifiedUserDataSize());
     }
+
+    public boolean addIdentifiedUserDataSlice(@Nonnull ByteSlices slices) {
+        return super.getCdSector().addCdUserDataSlice(ALICE_VIDEO_SECTOR_HEADER_SIZE,
+                getIdentifiedUserDataSize(), slices);
+    }
     
     public @Nonnull String getTypeName() {
         return "AliceNull";
@@ -42,12 +42,13 @@ import jpsxdec.cdreaders.CdFileSectorReader;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.discitems.CrusaderDemuxer;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 
 
 /** Audio/video sectors for Crusader: No Remorse. */
 public class SectorCrusader extends IdentifiedSector {
 
-    private static final long MAGIC = 0xAABBCCDDL;
+    static final long MAGIC = 0xAABBCCDDL;
     public static final int HEADER_SIZE = 8;
     private static final int MAX_CRUSADER_SECTOR = 15524;
     
@@ -109,6 +110,15 @@ public class SectorCrusader extends IdentifiedSector {
                 iOutPos, iSize);
     }
 
+    /** Adds part of the identified user data portion of the sector data to
+     *  the slices without copying it.
+     *  @return false if the data needs to be copied instead. */
+    public boolean addIdentifiedUserDataSlice(int iSrcPos, int iSize, @Nonnull ByteSlices slices) {
+        if (iSize < 0 || iSize > getIdentifiedUserDataSize())
+            throw new IndexOutOfBoundsException();
+        return super.getCdSector().addCdUserDataSlice(HEADER_SIZE + iSrcPos, iSize, slices);
+    }
+
     
     public String toString() {
         return getTypeName() + " " + getCdSector().toString() + " Sect:" + _iCrusaderSectorNumber;
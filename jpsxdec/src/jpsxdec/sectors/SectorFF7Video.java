@@ -68,7 +68,7 @@ public class SectorFF7Video extends SectorAbstractVideo implements IVideoSectorW
     // .. Constructor .....................................................
 
     // SubMode flags "--FT-A--" should never be set
-    private static final int SUB_MODE_MASK = 
+    static final int SUB_MODE_MASK = 
             (SubMode.MASK_FORM | SubMode.MASK_TRIGGER | SubMode.MASK_AUDIO);
 
     public SectorFF7Video(@Nonnull CdSector cdSector) {
@@ -41,6 +41,7 @@ import javax.annotation.Nonnull;
 import jpsxdec.audio.SpuAdpcmDecoder;
 import jpsxdec.cdreaders.CdSector;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 
 
 /** Base class for Final Fantasy 8 movie (audio/video) sectors. */
@@ -155,6 +156,11 @@ public abstract class SectorFF8 extends IdentifiedSector {
                     iOutPos, getIdentifiedUserDataSize());
         }
 
+        public boolean addIdentifiedUserDataSlice(@Nonnull ByteSlices slices) {
+            return super.getCdSector().addCdUserDataSlice(SHARED_HEADER_SIZE,
+                    getIdentifiedUserDataSize(), slices);
+        }
+
         public String toString() {
             return String.format("VideoFF8 %s 320x224", super.toString());
         }
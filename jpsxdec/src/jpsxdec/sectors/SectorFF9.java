@@ -46,6 +46,7 @@ import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2;
 import jpsxdec.psxvideo.mdec.MdecException;
 import jpsxdec.util.BinaryDataNotRecognized;
 import jpsxdec.util.ByteArrayFPIS;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.IO;
 import jpsxdec.util.LocalizedIncompatibleException;
 
@@ -214,6 +215,11 @@ public abstract class SectorFF9 extends IdentifiedSector {
             super.getCdSector().getCdUserDataCopy(FRAME_CHUNK_HEADER_SIZE, abOut,
                     iOutPos, getIdentifiedUserDataSize());
         }
+
+        public boolean addIdentifiedUserDataSlice(@Nonnull ByteSlices slices) {
+            return super.getCdSector().addCdUserDataSlice(FRAME_CHUNK_HEADER_SIZE,
+                    getIdentifiedUserDataSize(), slices);
+        }
         
         public @Nonnull String getTypeName() {
             return "FF9Video";
@@ -56,7 +56,7 @@ public class SectorGTVideo extends SectorAbstractVideo
     
     // .. Static stuff .....................................................
 
-    private static final long GT_MAGIC = 0x53490160;
+    static final long GT_MAGIC = 0x53490160;
 
     // .. Fields ..........................................................
 
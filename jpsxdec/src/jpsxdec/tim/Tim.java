@@ -171,6 +171,11 @@ public class Tim {
     static final int TAG_MAGIC = 0x10;
     /** All Tims are version 0. */
     static final int VERSION_0 = 0;
+    /** The first 4 bytes of every Tim (magic, version, and 16 bits of 0)
+     * read as a little-endian int.
+     * {@link #isTim(java.io.InputStream)} is always null if the stream
+     * doesn't start with this. */
+    public static final int HEADER_FIRST_WORD_LE = TAG_MAGIC | (VERSION_0 << 8);
     
     /** The color lookup table for the TIM. null if none. */
     @CheckForNull
@@ -0,0 +1,176 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/** A list of (array, offset, length) ranges that together are read as
+ * one contiguous run of bytes, without copying them together.
+ * The arrays are only referenced, so they must not change while the
+ * slices are in use. Intended to be cleared and reused. */
+public class ByteSlices {
+
+    @Nonnull
+    private byte[][] _aabArrays = new byte[16][];
+    @Nonnull
+    private int[] _aiOffsets = new int[16];
+    /** Logical position where each slice starts, with one extra entry
+     * holding the total size. */
+    @Nonnull
+    private int[] _aiStarts = new int[17];
+    private int _iCount = 0;
+
+    /** Removes all the slices. */
+    public void clear() {
+        for (int i = 0; i < _iCount; i++)
+            _aabArrays[i] = null;
+        _iCount = 0;
+    }
+
+    /** Adds a slice to the end. Empty slices are ignored. */
+    public void add(@Nonnull byte[] abArray, int iOffset, int iLength) {
+        if (iOffset < 0 || iLength < 0 || iOffset + iLength > abArray.length)
+            throw new IndexOutOfBoundsException();
+        if (iLength == 0)
+            return;
+        if (_iCount == _aabArrays.length) {
+            int iNewSize = _iCount * 2;
+            byte[][] aab = new byte[iNewSize][];
+            System.arraycopy(_aabArrays, 0, aab, 0, _iCount);
+            _aabArrays = aab;
+            int[] ai = new int[iNewSize];
+            System.arraycopy(_aiOffsets, 0, ai, 0, _iCount);
+            _aiOffsets = ai;
+            ai = new int[iNewSize + 1];
+            System.arraycopy(_aiStarts, 0, ai, 0, _iCount + 1);
+            _aiStarts = ai;
+        }
+        _aabArrays[_iCount] = abArray;
+        _aiOffsets[_iCount] = iOffset;
+        _aiStarts[_iCount + 1] = _aiStarts[_iCount] + iLength;
+        _iCount++;
+    }
+
+    /** Total number of bytes in all the slices. */
+    public int getSize() {
+        return _aiStarts[_iCount];
+    }
+
+    public int getSliceCount() {
+        return _iCount;
+    }
+
+    public @Nonnull byte[] getSliceArray(int iSlice) {
+        checkSlice(iSlice);
+        return _aabArrays[iSlice];
+    }
+
+    /** Offset in {@link #getSliceArray(int)} where the slice begins. */
+    public int getSliceOffset(int iSlice) {
+        checkSlice(iSlice);
+        return _aiOffsets[iSlice];
+    }
+
+    /** Logical position where the slice begins. */
+    public int getSliceStart(int iSlice) {
+        checkSlice(iSlice);
+        return _aiStarts[iSlice];
+    }
+
+    public int getSliceLength(int iSlice) {
+        checkSlice(iSlice);
+        return _aiStarts[iSlice + 1] - _aiStarts[iSlice];
+    }
+
+    /** Returns the slice that holds the logical position. */
+    public int findSlice(int iPos) {
+        if (iPos < 0 || iPos >= getSize())
+            throw new IndexOutOfBoundsException("Position " + iPos + " size " + getSize());
+        // binary search for the last slice starting at or before iPos
+        int iLow = 0, iHigh = _iCount - 1;
+        while (iLow < iHigh) {
+            int iMid = (iLow + iHigh + 1) >>> 1;
+            if (_aiStarts[iMid] <= iPos)
+                iLow = iMid;
+            else
+                iHigh = iMid - 1;
+        }
+        return iLow;
+    }
+
+    /** Returns the byte at the logical position. */
+    public byte get(int iPos) {
+        int iSlice = findSlice(iPos);
+        return _aabArrays[iSlice][_aiOffsets[iSlice] + iPos - _aiStarts[iSlice]];
+    }
+
+    /** Copies a logical range of the slices into an array. */
+    public void copyTo(int iPos, @Nonnull byte[] abOut, int iOutPos, int iLength) {
+        if (iLength < 0 || iPos < 0 || iPos + iLength > getSize() ||
+            iOutPos < 0 || iOutPos + iLength > abOut.length)
+            throw new IndexOutOfBoundsException();
+        if (iLength == 0)
+            return;
+        int iSlice = findSlice(iPos);
+        while (iLength > 0) {
+            int iInSlice = iPos - _aiStarts[iSlice];
+            int iCopy = Math.min(iLength, _aiStarts[iSlice + 1] - iPos);
+            System.arraycopy(_aabArrays[iSlice], _aiOffsets[iSlice] + iInSlice, abOut, iOutPos, iCopy);
+            iPos += iCopy;
+            iOutPos += iCopy;
+            iLength -= iCopy;
+            iSlice++;
+        }
+    }
+
+    /** Copies all the slices into one array. If the supplied buffer is not
+     * null and is big enough, it is used, otherwise a new one is returned. */
+    public @Nonnull byte[] copyAll(@CheckForNull byte[] abBuffer) {
+        if (abBuffer == null || abBuffer.length < getSize())
+            abBuffer = new byte[getSize()];
+        copyTo(0, abBuffer, 0, getSize());
+        return abBuffer;
+    }
+
+    private void checkSlice(int iSlice) {
+        if (iSlice < 0 || iSlice >= _iCount)
+            throw new IndexOutOfBoundsException("Slice " + iSlice + " of " + _iCount);
+    }
+
+}
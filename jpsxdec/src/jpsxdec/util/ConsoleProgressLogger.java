@@ -62,6 +62,15 @@ public class ConsoleProgressLogger extends ProgressLogger implements UserFriendl
         setListener(this);
     }
 
+    /** Logs to the supplied stream instead of a file. */
+    public ConsoleProgressLogger(@Nonnull String sBaseName, @Nonnull PrintStream progressStream,
+                                 @Nonnull PrintStream logStream)
+    {
+        super(sBaseName, logStream);
+        _progressStream = progressStream;
+        setListener(this);
+    }
+
     public void onWarn(@Nonnull ILocalizedMessage msg) {
         _iWarnCount++;
     }
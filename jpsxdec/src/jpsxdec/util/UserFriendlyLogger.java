@@ -156,6 +156,17 @@ public class UserFriendlyLogger implements ILocalizedLogger, Closeable {
         _logStream.flush();
     }
 
+    /** Writes text that was already formatted by another logger
+     * (e.g. one logging to a buffer on another thread) to this log. */
+    public void append(@Nonnull String sLoggedText) {
+        if (sLoggedText.length() == 0)
+            return;
+        if (_logStream == null)
+            openOutputFile();
+        _logStream.print(sLoggedText);
+        _logStream.flush();
+    }
+
     /** Attempts to open the target log file.
      * If fails, tries to create a temp file with the same base name.
      * If that fails, logs to System.err.  */
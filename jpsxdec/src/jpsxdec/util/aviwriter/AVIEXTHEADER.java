@@ -0,0 +1,87 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.aviwriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.annotation.Nonnull;
+import jpsxdec.util.IO;
+
+/** Represents the OpenDML AVIEXTHEADER C structure (the 'dmlh' chunk),
+ * along with the 'odml' LIST that holds it.
+ * <p>
+ * Like {@link AVISUPERINDEX}, the space is reserved as a 'JUNK' chunk
+ * and only replaced if the AVI grows beyond one RIFF chunk. */
+class AVIEXTHEADER extends AVIstruct {
+
+    public final /*FOURCC*/ int  fccList       = string2int("LIST");
+    public final /*DWORD */ int  cbList        = sizeof() - 8;
+    public final /*FOURCC*/ int  fccOdml       = string2int("odml");
+    public final /*FOURCC*/ int  fcc           = string2int("dmlh");
+    public final /*DWORD */ int  cb            = sizeof() - 20;
+    /** Total frames in the file (the 'avih' only counts the first RIFF). */
+    public       /*DWORD */ long dwGrandFrames = 0;
+    // DWORD dwFuture[61]
+
+    /** Reserves the space as a 'JUNK' chunk. */
+    @Override
+    public void makePlaceholder(@Nonnull AviOutputStream os) throws IOException {
+        super.makePlaceholder(os);
+        byte[] abJunk = new byte[8];
+        IO.writeInt32LE(abJunk, 0, string2int("JUNK"));
+        IO.writeInt32LE(abJunk, 4, cbList);
+        os.patch(os.getFilePointer() - sizeof(), abJunk);
+    }
+
+    @Override
+    public void write(@Nonnull OutputStream os) throws IOException {
+        IO.writeInt32LE(os, fccList           );
+        IO.writeInt32LE(os, cbList            );
+        IO.writeInt32LE(os, fccOdml           );
+        IO.writeInt32LE(os, fcc               );
+        IO.writeInt32LE(os, cb                );
+        IO.writeInt32LE(os, (int)dwGrandFrames);
+        os.write(new byte[61 * 4]);
+    }
+
+    @Override
+    public int sizeof() {
+        return 20 + 62 * 4;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.util.aviwriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.annotation.Nonnull;
+import jpsxdec.util.IO;
+
+/** Represents the OpenDML AVISTDINDEX C structure (the 'ix##' chunks).
+ * It indexes the chunks of one stream in one RIFF chunk of the file.
+ * Entries are collected while the RIFF chunk is written, then the index
+ * is written at the end of its 'movi' list and {@link #clear()}ed for
+ * the next RIFF chunk. */
+class AVISTDINDEX extends AVIstruct {
+
+    public static final byte AVI_INDEX_OF_CHUNKS = 0x01;
+    /** Set in the entry size when the chunk is not a key frame. */
+    public static final int AVISTDINDEX_DELTAFRAME = 0x80000000;
+
+    public final /*FOURCC*/ int   fcc;
+    public final /*WORD  */ short wLongsPerEntry = 2;
+    public final /*BYTE  */ byte  bIndexSubType  = 0;
+    public final /*BYTE  */ byte  bIndexType     = AVI_INDEX_OF_CHUNKS;
+    public final /*DWORD */ int   dwChunkId;
+    public       /*QWORD */ long  qwBaseOffset   = 0;
+    public final /*DWORD */ int   dwReserved3    = 0;
+
+    // AVISTDINDEXENTRY aIndex[]
+    /** Position in the file of each chunk's data. */
+    @Nonnull
+    private long[] _alngDataPos = new long[256];
+    @Nonnull
+    private int[] _aiSize = new int[256];
+    private int _iCount = 0;
+    /** Stream ticks covered by the entries. */
+    private long _lngDuration = 0;
+
+    /** @param sFourCC  'ix' followed by the stream number, e.g. 'ix00'. */
+    public AVISTDINDEX(@Nonnull String sFourCC, int iChunkId) {
+        fcc = string2int(sFourCC);
+        dwChunkId = iChunkId;
+    }
+
+    /** @param lngDataPos  Position in the file of the chunk's data
+     *                     (after the chunk header).
+     *  @param iSize       Size of the chunk's data, possibly including
+     *                     {@link #AVISTDINDEX_DELTAFRAME}.
+     *  @param iDuration   Stream ticks covered by the chunk. */
+    public void add(long lngDataPos, int iSize, int iDuration) {
+        if (_iCount == _alngDataPos.length) {
+            long[] alng = new long[_iCount * 2];
+            System.arraycopy(_alngDataPos, 0, alng, 0, _iCount);
+            _alngDataPos = alng;
+            int[] ai = new int[_iCount * 2];
+            System.arraycopy(_aiSize, 0, ai, 0, _iCount);
+            _aiSize = ai;
+        }
+        _alngDataPos[_iCount] = lngDataPos;
+        _aiSize[_iCount] = iSize;
+        _iCount++;
+        _lngDuration += iDuration;
+    }
+
+    public int getEntryCount() {
+        return _iCount;
+    }
+
+    public long getDuration() {
+        return _lngDuration;
+    }
+
+    public void clear() {
+        _iCount = 0;
+        _lngDuration = 0;
+    }
+
+    @Override
+    public void write(@Nonnull OutputStream os) throws IOException {
+        // entry offsets are relative to the base, so use the earliest chunk
+        // (a repeated frame can point back into the prior RIFF chunk)
+        qwBaseOffset = Long.MAX_VALUE;
+        for (int i = 0; i < _iCount; i++) {
+            if (_alngDataPos[i] < qwBaseOffset)
+                qwBaseOffset = _alngDataPos[i];
+        }
+        if (_iCount == 0)
+            qwBaseOffset = 0;
+
+        IO.writeInt32LE(os, fcc              );
+        IO.writeInt32LE(os, sizeof() - 8     );
+        IO.writeInt16LE(os, wLongsPerEntry   );
+        os.write(bIndexSubType);
+        os.write(bIndexType);
+        IO.writeInt32LE(os, _iCount          );
+        IO.writeInt32LE(os, dwChunkId        );
+        IO.writeInt32LE(os, qwBaseOffset       );
+        IO.writeInt32LE(os, qwBaseOffset >>> 32);
+        IO.writeInt32LE(os, dwReserved3      );
+        for (int i = 0; i < _iCount; i++) {
+            IO.writeInt32LE(os, _alngDataPos[i] - qwBaseOffset);
+            IO.writeInt32LE(os, _aiSize[i]);
+        }
+    }
+
+    @Override
+    public int sizeof() {
+        return 32 + _iCount * 8;
+    }
+
+}
@@ -37,8 +37,9 @@
 
 package jpsxdec.util.aviwriter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.OutputStream;
 import javax.annotation.Nonnull;
 import jpsxdec.util.Misc;
 
@@ -63,21 +64,20 @@ abstract class AVIstruct {
                ((ab[3] & 0xff) << 24);
     }
     
-    public abstract void write(@Nonnull RandomAccessFile raf) throws IOException;
+    public abstract void write(@Nonnull OutputStream os) throws IOException;
     public abstract int sizeof();
     
     private long _lngPlaceholder;
     
-    public void makePlaceholder(@Nonnull RandomAccessFile raf) throws IOException {
-        _lngPlaceholder = raf.getFilePointer();
-        raf.write(new byte[this.sizeof()]);
+    public void makePlaceholder(@Nonnull AviOutputStream os) throws IOException {
+        _lngPlaceholder = os.getFilePointer();
+        os.writeZeroes(this.sizeof());
     }
     
-    public void goBackAndWrite(@Nonnull RandomAccessFile raf) throws IOException {
-        long lngCurPos = raf.getFilePointer(); // save this pos
-        raf.seek(_lngPlaceholder); // go back
-        this.write(raf); // write the data
-        raf.seek(lngCurPos); // return to current position
+    public void goBackAndWrite(@Nonnull AviOutputStream os) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.sizeof());
+        this.write(bytes); // write the data
+        os.patch(_lngPlaceholder, bytes.toByteArray()); // over the placeholder
     }
     
 }
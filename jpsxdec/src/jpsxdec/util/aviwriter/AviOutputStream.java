@@ -0,0 +1,267 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.util.aviwriter;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import jpsxdec.util.IO;
+import jpsxdec.util.IOException6;
+
+/** Sequential file output for {@link AviWriter}. Writes are collected into
+ * large direct buffers which are handed off to a background thread that
+ * writes them to the file's {@link FileChannel}, so the thread producing the
+ * AVI only waits for the disk when all the buffers are full.
+ * <p>
+ * Instead of seeking, earlier parts of the file are changed with
+ * {@link #patch(long, byte[])}. If that part is still in the current buffer
+ * it is changed there, otherwise the change is saved and written
+ * when the file is closed. */
+class AviOutputStream extends OutputStream {
+
+    private static final Logger LOG = Logger.getLogger(AviOutputStream.class.getName());
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int BUFFER_COUNT = 4;
+    /** Tells the writing thread to stop. */
+    private static final ByteBuffer END_OF_OUTPUT = ByteBuffer.allocate(0);
+
+    private static class Patch {
+        public final long lngPos;
+        @Nonnull
+        public final byte[] abData;
+        public Patch(long lngPos, @Nonnull byte[] abData) {
+            this.lngPos = lngPos;
+            this.abData = abData;
+        }
+    }
+
+    @Nonnull
+    private final RandomAccessFile _file;
+    @Nonnull
+    private final FileChannel _channel;
+
+    /** Buffers filled and waiting to be written. */
+    private final BlockingQueue<ByteBuffer> _fullBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(BUFFER_COUNT + 1);
+    /** Buffers that have been written and can be filled again. */
+    private final BlockingQueue<ByteBuffer> _emptyBuffers =
+            new ArrayBlockingQueue<ByteBuffer>(BUFFER_COUNT);
+    @Nonnull
+    private final Thread _writingThread;
+    @CheckForNull
+    private volatile IOException _writingError;
+
+    /** Buffer being filled. */
+    @Nonnull
+    private ByteBuffer _current;
+    /** Position in the file of the start of {@link #_current}. */
+    private long _lngBufferStart = 0;
+    /** Changes to parts of the file that were already handed off. */
+    private final ArrayList<Patch> _pendingPatches = new ArrayList<Patch>();
+
+    public AviOutputStream(@Nonnull File file) throws FileNotFoundException, IOException {
+        _file = new RandomAccessFile(file, "rw");
+        try {
+            _file.setLength(0); // trim the file to 0
+        } catch (IOException ex) {
+            IO.closeSilently(_file, LOG);
+            throw ex;
+        }
+        _channel = _file.getChannel();
+
+        _current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        for (int i = 1; i < BUFFER_COUNT; i++)
+            _emptyBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+        _writingThread = new Thread(new Runnable() {
+            public void run() {
+                writeBuffers();
+            }
+        }, AviOutputStream.class.getSimpleName() + " " + file);
+        _writingThread.setDaemon(true);
+        _writingThread.start();
+    }
+
+    /** Run by the writing thread. After an error the buffers are still
+     * recycled so the producer never waits forever. */
+    private void writeBuffers() {
+        try {
+            while (true) {
+                ByteBuffer buff = _fullBuffers.take();
+                if (buff == END_OF_OUTPUT)
+                    break;
+                if (_writingError == null) {
+                    try {
+                        while (buff.hasRemaining())
+                            _channel.write(buff);
+                    } catch (IOException ex) {
+                        LOG.log(Level.SEVERE, null, ex);
+                        _writingError = ex;
+                    }
+                }
+                buff.clear();
+                _emptyBuffers.put(buff);
+            }
+        } catch (InterruptedException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void throwIfError() throws IOException {
+        IOException ex = _writingError;
+        if (ex != null)
+            throw ex;
+    }
+
+    /** Hands the current buffer to the writing thread and gets an empty one. */
+    private void handOff() throws IOException {
+        throwIfError();
+        _current.flip();
+        _lngBufferStart += _current.limit();
+        try {
+            _fullBuffers.put(_current);
+            _current = _emptyBuffers.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException6("Interrupted while writing " + _writingThread.getName(), ex);
+        }
+    }
+
+    /** Tells the writing thread to stop once it has written everything
+     * already handed off, and waits for it to end. */
+    private void stopWritingThread() throws IOException {
+        // never blocks because the queue has room for every buffer and this
+        _fullBuffers.offer(END_OF_OUTPUT);
+        try {
+            _writingThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException6("Interrupted while writing " + _writingThread.getName(), ex);
+        }
+    }
+
+    /** Position in the file where the next byte will be written. */
+    public long getFilePointer() {
+        return _lngBufferStart + _current.position();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!_current.hasRemaining())
+            handOff();
+        _current.put((byte)b);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] ab, int iOfs, int iLen) throws IOException {
+        while (iLen > 0) {
+            if (!_current.hasRemaining())
+                handOff();
+            int iCopy = Math.min(iLen, _current.remaining());
+            _current.put(ab, iOfs, iCopy);
+            iOfs += iCopy;
+            iLen -= iCopy;
+        }
+    }
+
+    /** Writes zeroes. */
+    public void writeZeroes(int iCount) throws IOException {
+        while (iCount > 0) {
+            if (!_current.hasRemaining())
+                handOff();
+            int iCopy = Math.min(iCount, _current.remaining());
+            for (int i = 0; i < iCopy; i++)
+                _current.put((byte)0);
+            iCount -= iCopy;
+        }
+    }
+
+    /** Replaces data that was already written at the given position. */
+    public void patch(long lngPos, @Nonnull byte[] abData) {
+        if (lngPos + abData.length > getFilePointer())
+            throw new IllegalArgumentException("Patching past the end of the written data");
+        if (lngPos >= _lngBufferStart) {
+            int iBufferPos = (int)(lngPos - _lngBufferStart);
+            for (int i = 0; i < abData.length; i++)
+                _current.put(iBufferPos + i, abData[i]);
+        } else {
+            _pendingPatches.add(new Patch(lngPos, abData.clone()));
+        }
+    }
+
+    /** Writes the remaining data, waits for the writing thread to finish,
+     * applies the pending patches, then closes the file.
+     * The writing thread is always stopped, even after a write error. */
+    @Override
+    public void close() throws IOException {
+        try {
+            try {
+                // after an error nothing more will be written
+                if (_writingError == null && _current.position() > 0)
+                    handOff();
+            } finally {
+                stopWritingThread();
+            }
+            throwIfError();
+
+            for (Patch patch : _pendingPatches) {
+                ByteBuffer buff = ByteBuffer.wrap(patch.abData);
+                long lngPos = patch.lngPos;
+                while (buff.hasRemaining())
+                    lngPos += _channel.write(buff, lngPos);
+            }
+            _pendingPatches.clear();
+        } finally {
+            _file.close();
+        }
+    }
+
+}
@@ -42,9 +42,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.logging.Logger;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.sound.sampled.AudioFormat;
@@ -54,12 +54,20 @@ import jpsxdec.i18n.I;
 import jpsxdec.i18n.LocalizedIOException;
 import jpsxdec.Version;
 import jpsxdec.util.IO;
+import jpsxdec.util.Misc;
 import jpsxdec.util.aviwriter.AVIOLDINDEX.AVIOLDINDEXENTRY;
 
 /**
  * Creates AVI files with audio and video without the need for JMF.
- * Subclasses should take care of codec handling. Note that this cannot
- * create AVI files larger than 4GB.
+ * Subclasses should take care of codec handling.
+ * <p>
+ * Files up to 1GB are plain AVI 1.0 files with an 'idx1' index.
+ * Beyond that, the OpenDML (AVI 2.0) extensions are used: the data continues
+ * in 'AVIX' RIFF chunks, each RIFF chunk ends with an 'ix##' standard index
+ * for each stream, and the stream headers get an 'indx' super index
+ * pointing to them. Only the index of the current RIFF chunk is kept in
+ * memory. The first RIFF chunk still has its 'idx1' index for programs
+ * that don't understand OpenDML.
  * <p> 
  * This code is originally based on (but now hardly resembles) the 
  * <a href="http://rsb.info.nih.gov/ij">ImageJ</a> program.
@@ -88,6 +96,8 @@ import jpsxdec.util.aviwriter.AVIOLDINDEX.AVIOLDINDEXENTRY;
  */
 public abstract class AviWriter implements Closeable {
 
+    private static final Logger LOG = Logger.getLogger(AviWriter.class.getName());
+
     // -------------------------------------------------------------------------
     // -- Fields ---------------------------------------------------------------
     // -------------------------------------------------------------------------
@@ -124,6 +134,14 @@ public abstract class AviWriter implements Closeable {
     private final String _sFourCCcodec;
     private final int _iCompression;
 
+    /** RIFF chunks are kept under this size (the same limit as most other
+     * OpenDML writers), which also keeps them under the 2GB limit of
+     * the RIFF chunk size. */
+    private static final long MAX_RIFF_SIZE = 1L << 30;
+    /** Number of RIFF chunks the 'indx' super indexes have room for. */
+    private static final int MAX_RIFF_CHUNKS = 256;
+    private long _lngMaxRiffSize = MAX_RIFF_SIZE;
+
     // -------------------------------------------------------------------------
     // -- Properties -----------------------------------------------------------
     // -------------------------------------------------------------------------
@@ -176,7 +194,7 @@ public abstract class AviWriter implements Closeable {
     // -------------------------------------------------------------------------
 
     @CheckForNull
-    private RandomAccessFile _aviFile;
+    private AviOutputStream _aviFile;
     
     private Chunk _RIFF_chunk;
     private     Chunk _LIST_hdr1;
@@ -187,24 +205,50 @@ public abstract class AviWriter implements Closeable {
     private                 BITMAPINFOHEADER _bif;
                         //strf_vid
     private             Chunk _strn_vid;
+    private             AVISUPERINDEX _indx_vid;
                     //LIST_strl_vid
     private         Chunk _LIST_strl_aud;
     private             Chunk _strf_aud;
     private                 AVISTREAMHEADER _strh_aud;
     private                 WAVEFORMATEX _wavfmt;
                         //strf_aud
+    private             AVISUPERINDEX _indx_aud;
                     //LIST_strl_aud
+    private         AVIEXTHEADER _odml;
                 //LIST_hdr1
                     //JUNK_writerId;
     private     Chunk LIST_movi;
                     /* image and audio chunk data go here */
+                    //ix00 and ix01 (if not the only RIFF chunk)
                 //LIST_movi
-    private     AVIOLDINDEX avioldidx;
+    private     AVIOLDINDEX avioldidx; // only in the first RIFF chunk
             //RIFF_chunk
-    
-    /** Holds the 'idx' section index data. */
-    @Nonnull
+        //more 'RIFF' 'AVIX' chunks with LIST_movi
+
+    /** Holds the 'idx1' index data of the first RIFF chunk.
+     * Null once the first RIFF chunk has ended. */
+    @CheckForNull
     private ArrayList<AVIOLDINDEXENTRY> _indexList;
+    /** Video standard index for the current RIFF chunk. */
+    @Nonnull
+    private final AVISTDINDEX _ix00;
+    /** Audio standard index for the current RIFF chunk, or null if there is
+     * no audio. */
+    @CheckForNull
+    private final AVISTDINDEX _ix01;
+    /** Number of RIFF chunks started. */
+    private int _iRiffCount = 1;
+    /** Number of frames in the first RIFF chunk (set when it ends). */
+    private long _lngFirstRiffFrameCount;
+
+    /** Position of the data of the last frame written, for
+     * {@link #repeatPreviousFrame()}. */
+    private long _lngLastFrameDataPos;
+    private int _iLastFrameSize;
+    /** 'idx1' entry of the last frame written, or null if it was not
+     * in the first RIFF chunk. */
+    @CheckForNull
+    private AVIOLDINDEXENTRY _lastFrameIdx1Entry;
     
     
     // -------------------------------------------------------------------------
@@ -257,9 +301,25 @@ public abstract class AviWriter implements Closeable {
         }
         _audioFormat = audioFormat;
 
-        _aviFile = new RandomAccessFile(outputfile, "rw");
-        _aviFile.setLength(0); // trim the file to 0
+        _ix00 = new AVISTDINDEX("ix00", AVIstruct.string2int(_blnCompressedVideo ? "00dc" : "00db"));
+        if (_audioFormat == null)
+            _ix01 = null;
+        else
+            _ix01 = new AVISTDINDEX("ix01", AVIstruct.string2int("01wb"));
+
+        _aviFile = new AviOutputStream(outputfile);
+        boolean blnException = true;
+        try {
+            writeHeader();
+            blnException = false;
+        } finally {
+            // stop the stream's writing thread
+            if (blnException)
+                IO.closeSilently(_aviFile, LOG);
+        }
+    }
 
+    private void writeHeader() throws IOException {
         //----------------------------------------------------------------------
         // Setup the header structure. 
         // Actual values will be filled in when avi is closed.
@@ -284,8 +344,11 @@ public abstract class AviWriter implements Closeable {
                     _strf_vid.endChunk(_aviFile);
                     
                     _strn_vid = new Chunk(_aviFile, "strn");
-                    _aviFile.writeBytes("jPSXdec AVI    \0");
+                    _aviFile.write(Misc.stringToAscii("jPSXdec AVI    \0"));
                     _strn_vid.endChunk(_aviFile);
+
+                    _indx_vid = new AVISUPERINDEX(_ix00.dwChunkId, MAX_RIFF_CHUNKS);
+                    _indx_vid.makePlaceholder(_aviFile);
                     
                 _LIST_strl_vid.endChunk(_aviFile);
                 
@@ -302,14 +365,20 @@ public abstract class AviWriter implements Closeable {
 
                     _strf_aud.endChunk(_aviFile);
 
+                    _indx_aud = new AVISUPERINDEX(_ix01.dwChunkId, MAX_RIFF_CHUNKS);
+                    _indx_aud.makePlaceholder(_aviFile);
+
                 _LIST_strl_aud.endChunk(_aviFile);
                 }
 
+                _odml = new AVIEXTHEADER();
+                _odml.makePlaceholder(_aviFile);
+
             _LIST_hdr1.endChunk(_aviFile);
             
             // some programs will use this to identify the program that wrote the avi
             Chunk JUNK_writerId = new Chunk(_aviFile, "JUNK");
-                _aviFile.writeBytes(I.JPSXDEC_VERSION_NON_COMMERCIAL(Version.Version).getEnglishMessage());
+                _aviFile.write(Misc.stringToAscii(I.JPSXDEC_VERSION_NON_COMMERCIAL(Version.Version).getEnglishMessage()));
                 _aviFile.write(0);
             JUNK_writerId.endChunk(_aviFile);
 
@@ -332,20 +401,11 @@ public abstract class AviWriter implements Closeable {
         if (_lngFrameCount < 1)
             throw new IllegalStateException("Unable to repeat a previous frame that doesn't exist.");
 
-        int iIndex = _indexList.size() - 1;
-
-        // find the previous chunk that is a frame
-        final int VID_CHUNK_ID = AVIstruct.string2int("00d_") & 0x00FFFFFF;
-        while (true) {
-            int iChunkId = _indexList.get(iIndex).dwChunkId;
-            // does it start with '00d'?
-            if ((iChunkId & 0x00FFFFFF) == VID_CHUNK_ID)
-                break;
-            else
-                iIndex--;
-        }
-        // add the same reference in the list
-        _indexList.add(_indexList.get(iIndex));
+        // add the same reference in the indexes
+        // (an 'ix00' entry may point back into the previous RIFF chunk)
+        _ix00.add(_lngLastFrameDataPos, _iLastFrameSize, 1);
+        if (_indexList != null && _lastFrameIdx1Entry != null)
+            _indexList.add(_lastFrameIdx1Entry);
         _lngFrameCount++;
     }
 
@@ -361,6 +421,10 @@ public abstract class AviWriter implements Closeable {
         
         Chunk data_size;
 
+        long lngFrameLength = audStream.getFrameLength();
+        if (lngFrameLength != AudioSystem.NOT_SPECIFIED)
+            makeRoomInRiff(lngFrameLength * _audioFormat.getFrameSize());
+
         AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
         idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
         
@@ -385,9 +449,11 @@ public abstract class AviWriter implements Closeable {
         // end the chunk
         data_size.endChunk(_aviFile);
         
-        // add this item to the index
+        // add this item to the indexes
         idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
+        if (_indexList != null)
+            _indexList.add(idxentry);
+        _ix01.add(data_size.getStart() + 4, iTotal, iTotal / _audioFormat.getFrameSize());
     }
 
     /** Audio data must be signed 16-bit PCM in little-endian order. */
@@ -405,12 +471,14 @@ public abstract class AviWriter implements Closeable {
         if (iLen % _audioFormat.getFrameSize() != 0)
             throw new IllegalArgumentException("Half an audio sample can't be processed.");
 
+        makeRoomInRiff(iLen);
+
         AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
         idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
         idxentry.dwChunkId = AVIstruct.string2int("01wb");
         idxentry.dwFlags = 0;
 
-        Chunk data_size = new Chunk(_aviFile, "01wb");
+        Chunk data_size = new Chunk(_aviFile, "01wb", iLen);
 
             // write the data
             _aviFile.write(abData, iOfs, iLen);
@@ -420,9 +488,11 @@ public abstract class AviWriter implements Closeable {
 
         _lngSampleCount += iLen / _audioFormat.getFrameSize();
 
-        // add the index to the list
+        // add the index to the lists
         idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
+        if (_indexList != null)
+            _indexList.add(idxentry);
+        _ix01.add(data_size.getStart() + 4, iLen, iLen / _audioFormat.getFrameSize());
     }
 
     private static class ZeroInputStream extends InputStream {
@@ -454,6 +524,8 @@ public abstract class AviWriter implements Closeable {
     protected void writeFrameChunk(@Nonnull byte[] abData, int iOfs, int iLen) throws IOException {
         if (_aviFile == null) throw new LocalizedIOException(I.AVI_FILE_IS_CLOSED());
 
+        makeRoomInRiff(iLen);
+
         AVIOLDINDEXENTRY idxentry = new AVIOLDINDEXENTRY();
         idxentry.dwOffset = (int)(_aviFile.getFilePointer() - (LIST_movi.getStart() + 4));
         String sChunkId;
@@ -465,7 +537,7 @@ public abstract class AviWriter implements Closeable {
         idxentry.dwFlags = AVIOLDINDEX.AVIIF_KEYFRAME; // Write the flags - select AVIIF_KEYFRAME
                                                        // AVIIF_KEYFRAME 0x00000010L
                                                        // The flag indicates key frames in the video sequence.
-        Chunk data_size = new Chunk(_aviFile, sChunkId);
+        Chunk data_size = new Chunk(_aviFile, sChunkId, iLen);
 
             // write the data
             _aviFile.write(abData, iOfs, iLen);
@@ -475,9 +547,17 @@ public abstract class AviWriter implements Closeable {
         
         _lngFrameCount++;
 
-        // add the index to the list
+        // add the index to the lists
         idxentry.dwSize = data_size.getSize();
-        _indexList.add(idxentry);
+        if (_indexList != null) {
+            _indexList.add(idxentry);
+            _lastFrameIdx1Entry = idxentry;
+        } else {
+            _lastFrameIdx1Entry = null;
+        }
+        _lngLastFrameDataPos = data_size.getStart() + 4;
+        _iLastFrameSize = iLen;
+        _ix00.add(_lngLastFrameDataPos, _iLastFrameSize, 1);
     }
 
     /** Subclasses should implement writing of a simple blank frame. */
@@ -492,15 +572,45 @@ public abstract class AviWriter implements Closeable {
      */
     public void close() throws IOException {
         if (_aviFile == null) throw new LocalizedIOException(I.AVI_FILE_IS_CLOSED());
+
+        boolean blnException = true;
+        try {
+            writeIndexesAndHeaders();
+            blnException = false;
+        } finally {
+            if (blnException) {
+                // still stop the stream's writing thread
+                IO.closeSilently(_aviFile, LOG);
+                _aviFile = null;
+            }
+        }
+
+        // and we're done
+        _aviFile.close();
+        _aviFile = null;
         
-            LIST_movi.endChunk(_aviFile);
-            
-            // write idx
-            avioldidx = new AVIOLDINDEX(_indexList.toArray(new AVIOLDINDEXENTRY[_indexList.size()]));
-            avioldidx.write(_aviFile);
-            // /write idx
-            
-        _RIFF_chunk.endChunk(_aviFile);
+        _RIFF_chunk = null;
+            _LIST_hdr1 = null;
+                _avih = null;
+                _LIST_strl_vid = null;
+                    _strf_vid = null;
+                        _strh_vid = null;
+                        _bif = null;
+                    _strn_vid = null;
+                _LIST_strl_aud = null;
+                    _strf_aud = null;
+                        _strh_aud = null;
+                        _wavfmt = null;
+                    _indx_vid = null;
+                    _indx_aud = null;
+                _odml = null;
+            LIST_movi = null;
+            avioldidx = null;
+            _indexList = null;
+    }
+
+    private void writeIndexesAndHeaders() throws IOException {
+        endRiff(false);
         
         //######################################################################
         //## Fill the headers fields ###########################################
@@ -517,7 +627,7 @@ public abstract class AviWriter implements Closeable {
                                               // 10H AVIF_HASINDEX: The AVI file has an idx1 chunk containing
                                               // an index at the end of the file.  For good performance, all
                                               // AVI files should contain an index.                         
-        _avih.dwTotalFrames         = _lngFrameCount;  // total frame number
+        _avih.dwTotalFrames         = _lngFirstRiffFrameCount;  // total frame number (in the first RIFF chunk)
         _avih.dwInitialFrames       = 0;      // Initial frame for interleaved files.
                                               // Noninterleaved files should specify 0.
         if (_audioFormat == null)
@@ -652,25 +762,91 @@ public abstract class AviWriter implements Closeable {
             _strh_aud.goBackAndWrite(_aviFile);
             _wavfmt.goBackAndWrite(_aviFile);
         }
-        
-        // and we're done
-        _aviFile.close();
-        _aviFile = null;
-        
-        _RIFF_chunk = null;
-            _LIST_hdr1 = null;
-                _avih = null;
-                _LIST_strl_vid = null;
-                    _strf_vid = null;
-                        _strh_vid = null;
-                        _bif = null;
-                    _strn_vid = null;
-                _LIST_strl_aud = null;
-                    _strf_aud = null;
-                        _strh_aud = null;
-                        _wavfmt = null;
-            LIST_movi = null;
-            avioldidx = null;
+
+        if (_iRiffCount > 1) {
+            // OpenDML headers (otherwise left as 'JUNK')
+            _indx_vid.goBackAndWrite(_aviFile);
+            if (_audioFormat != null)
+                _indx_aud.goBackAndWrite(_aviFile);
+            _odml.dwGrandFrames = _lngFrameCount;
+            _odml.goBackAndWrite(_aviFile);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // -- OpenDML --------------------------------------------------------------
+    // -------------------------------------------------------------------------
+
+    /** Change the size the RIFF chunks are kept under, only for testing. */
+    void setMaxRiffSize(long lngMaxRiffSize) {
+        _lngMaxRiffSize = lngMaxRiffSize;
+    }
+
+    /** If adding a chunk with the given data size would make the current
+     * RIFF chunk too large, ends it and starts a new 'AVIX' RIFF chunk. */
+    private void makeRoomInRiff(long lngDataSize) throws IOException {
+        if (_ix00.getEntryCount() == 0 && (_ix01 == null || _ix01.getEntryCount() == 0))
+            return; // nothing in this RIFF chunk yet, so it can't get smaller
+
+        // chunk header + data + padding
+        long lngRiffSize = _aviFile.getFilePointer() - _RIFF_chunk.getStart()
+                         + 8 + lngDataSize + 3;
+        // plus the indexes that still need to be written at the end
+        lngRiffSize += _ix00.sizeof();
+        if (_ix01 != null)
+            lngRiffSize += _ix01.sizeof();
+        if (_indexList != null)
+            lngRiffSize += 8 + 16L * (_indexList.size() + 1);
+
+        if (lngRiffSize <= _lngMaxRiffSize)
+            return;
+
+        if (_indx_vid.isFull())
+            throw new LocalizedIOException(I.AVI_FILE_TOO_LARGE());
+
+        endRiff(true);
+
+        _iRiffCount++;
+        _RIFF_chunk = new Chunk(_aviFile, "RIFF", "AVIX");
+        LIST_movi = new Chunk(_aviFile, "LIST", "movi");
+    }
+
+    /** Ends the 'movi' list and the RIFF chunk that contains it.
+     * The 'ix##' standard indexes are only written if this is not the only
+     * RIFF chunk, so small files are plain AVI 1.0 files.
+     * @param blnMoreToCome If another RIFF chunk will follow. */
+    private void endRiff(boolean blnMoreToCome) throws IOException {
+        if (blnMoreToCome || _iRiffCount > 1) {
+            writeStandardIndex(_ix00, _indx_vid);
+            if (_ix01 != null)
+                writeStandardIndex(_ix01, _indx_aud);
+        }
+
+            LIST_movi.endChunk(_aviFile);
+
+            if (_indexList != null) {
+                // write idx
+                avioldidx = new AVIOLDINDEX(_indexList.toArray(new AVIOLDINDEXENTRY[_indexList.size()]));
+                avioldidx.write(_aviFile);
+                // /write idx
+                _indexList = null;
+                _lngFirstRiffFrameCount = _lngFrameCount;
+            }
+
+        _RIFF_chunk.endChunk(_aviFile);
+    }
+
+    /** Writes the standard index for the current RIFF chunk,
+     * adds it to the super index, and clears it for the next RIFF chunk. */
+    private void writeStandardIndex(@Nonnull AVISTDINDEX ix, @Nonnull AVISUPERINDEX indx)
+            throws IOException
+    {
+        if (ix.getEntryCount() == 0)
+            return;
+        long lngPos = _aviFile.getFilePointer();
+        ix.write(_aviFile);
+        indx.add(lngPos, ix.sizeof(), (int)ix.getDuration());
+        ix.clear();
     }
 
     // -------------------------------------------------------------------------
@@ -678,46 +854,61 @@ public abstract class AviWriter implements Closeable {
     // -------------------------------------------------------------------------
     
     /** Represents an AVI RIFF 'chunk'. When created, it saves the current
-     *  position in the AVI RandomAccessFile. When endChunk() is called,
-     *  it temporarily jumps back to the start of the chunk and records how 
-     *  many bytes have been written. */
+     *  position in the AVI file. When endChunk() is called,
+     *  it patches the start of the chunk with how many bytes have been
+     *  written (unless the size was known from the start). */
     private static class Chunk {
 
         private static final byte[] ZEROES3 = new byte[3];
 
         private final long _lngPos;
         private int _iSize = -1;
+        /** Padded size written with the header, or -1 if it isn't known
+         *  until endChunk(). */
+        private final int _iKnownSize;
         
-        Chunk(@Nonnull RandomAccessFile raf, @Nonnull String sChunkName) throws IOException {
-            IO.writeInt32LE(raf, AVIstruct.string2int(sChunkName));
-            _lngPos = raf.getFilePointer();
-            raf.writeInt(0);
+        Chunk(@Nonnull AviOutputStream os, @Nonnull String sChunkName) throws IOException {
+            IO.writeInt32LE(os, AVIstruct.string2int(sChunkName));
+            _lngPos = os.getFilePointer();
+            IO.writeInt32LE(os, 0);
+            _iKnownSize = -1;
         }
         
-         Chunk(@Nonnull RandomAccessFile raf, @Nonnull String sChunkName, @Nonnull String sSubChunkName) throws IOException {
-            this(raf, sChunkName);
-            IO.writeInt32LE(raf, AVIstruct.string2int(sSubChunkName));
+         Chunk(@Nonnull AviOutputStream os, @Nonnull String sChunkName, @Nonnull String sSubChunkName) throws IOException {
+            this(os, sChunkName);
+            IO.writeInt32LE(os, AVIstruct.string2int(sSubChunkName));
+        }
+
+        /** Chunk with a known data size, so endChunk() doesn't need to
+         *  patch the header (which may already be on its way to the disk). */
+        Chunk(@Nonnull AviOutputStream os, @Nonnull String sChunkName, int iDataSize) throws IOException {
+            IO.writeInt32LE(os, AVIstruct.string2int(sChunkName));
+            _lngPos = os.getFilePointer();
+            _iKnownSize = (iDataSize + 3) & ~3;
+            IO.writeInt32LE(os, _iKnownSize);
         }
         
-        /** Jumps back to saved position in the RandomAccessFile and writes
-         *  how many bytes have passed since the position was saved, then
-         *  returns to the current position again. Pads to a 4 byte boundary. */
-        public void endChunk(@Nonnull RandomAccessFile raf) throws IOException {
-            long lngCurPos = raf.getFilePointer(); // save this pos
-            _iSize = (int)(lngCurPos - (_lngPos + 4)); // calculate number of bytes since start of chunk
+        /** Calculates how many bytes have passed since the position was
+         *  saved and pads to a 4 byte boundary, then patches the header size
+         *  into the file. */
+        public void endChunk(@Nonnull AviOutputStream os) throws IOException {
+            _iSize = (int)(os.getFilePointer() - (_lngPos + 4)); // calculate number of bytes since start of chunk
 
             // pad to 4 byte boundary
             int iNon4bytes = (int)(_iSize % 4);
             if (iNon4bytes > 0) {
                 int iBytesToPad = 4 - iNon4bytes;
-                raf.write(ZEROES3, 0, iBytesToPad);
+                os.write(ZEROES3, 0, iBytesToPad);
                 _iSize += iBytesToPad;
-                lngCurPos += iBytesToPad;
             }
 
-            raf.seek(_lngPos); // go back to where the header is
-            IO.writeInt32LE(raf, _iSize); // write the header size
-            raf.seek(lngCurPos); // return to current position
+            if (_iKnownSize < 0) {
+                byte[] abSize = new byte[4];
+                IO.writeInt32LE(abSize, 0, _iSize);
+                os.patch(_lngPos, abSize); // write the header size
+            } else if (_iKnownSize != _iSize) {
+                throw new IllegalStateException("Chunk size " + _iSize + " != " + _iKnownSize);
+            }
         }
 
         /** After endChunk() has been called, returns the size that was
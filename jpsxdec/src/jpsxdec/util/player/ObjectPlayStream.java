@@ -35,14 +35,23 @@
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+
 package jpsxdec.util.player;
 
 import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 /** Very powerful, thread-safe, blocking queue with the ability to specify 
- * behavior when taking and adding items.  */
+ * behavior when taking and adding items.
+ * <p>
+ * Objects are handed from one writer thread to one reader thread through a
+ * lock-free ring buffer. The writer only parks when the queue is full and
+ * the reader only parks when the queue is empty (or paused). Changing
+ * the state (pausing, closing) still synchronizes on
+ * {@link #getSyncObject()} and notifies it, since the players also use it
+ * to wait on the state. */
 class ObjectPlayStream<T> {
 
     private static final boolean DEBUG = false;
@@ -64,14 +73,22 @@ class ObjectPlayStream<T> {
     private volatile READ _eReadState = READ.PAUSED;
 
     @Nonnull
-    protected final T[] _aoQueue;
-    protected int _iHeadPos;
-    protected int _iTailPos;
-    private int _iSize;
+    private final T[] _aoQueue;
+    /** Total objects read. Only changed by the reader
+     * (or when the queue is reset). */
+    private volatile long _lngReadCount = 0;
+    /** Total objects written. Only changed by the writer. */
+    private volatile long _lngWriteCount = 0;
+
+    /** Reader thread parked because the queue is empty. */
+    @CheckForNull
+    private volatile Thread _parkedReader;
+    /** Writer thread parked because the queue is full. */
+    @CheckForNull
+    private volatile Thread _parkedWriter;
 
     public ObjectPlayStream(int iCapacity) {
         _aoQueue = (T[]) new Object[iCapacity];
-        _iSize = _iHeadPos = _iTailPos = 0;
     }
 
     //////////////////////////////////
@@ -80,8 +97,12 @@ class ObjectPlayStream<T> {
         return _eventSync;
     }
 
+    /** Should only be called while the reader is closed, when neither the
+     * reader nor writer threads are using the queue. Also empties it. */
     void writerOpen() {
         synchronized (_eventSync) {
+            Arrays.fill(_aoQueue, null);
+            _lngReadCount = _lngWriteCount;
             _eWriteState = WRITE.OPEN;
         }
     }
@@ -91,12 +112,14 @@ class ObjectPlayStream<T> {
             _eWriteState = WRITE.CLOSED;
             _eventSync.notifyAll();
         }
+        unparkWaiting();
     }
 
     public void readerPause() {
         synchronized (_eventSync) {
             _eReadState = READ.PAUSED;
         }
+        unparkWaiting();
     }
 
     public void readerOpen() {
@@ -104,19 +127,28 @@ class ObjectPlayStream<T> {
             _eReadState = READ.OPEN;
             _eventSync.notifyAll();
         }
+        unparkWaiting();
     }
 
     public void readerClose() {
         synchronized (_eventSync) {
             _eReadState = READ.CLOSED;
-            clear();
+            // release the objects
+            // (the counts are reset by writerOpen() after the threads are done)
+            Arrays.fill(_aoQueue, null);
             _eventSync.notifyAll();
         }
+        unparkWaiting();
     }
-    
-    private void clear() {
-        Arrays.fill(_aoQueue, null);
-        _iSize = _iHeadPos = _iTailPos = 0;
+
+    /** Wake up the threads so they see the new state. */
+    private void unparkWaiting() {
+        Thread t = _parkedReader;
+        if (t != null)
+            LockSupport.unpark(t);
+        t = _parkedWriter;
+        if (t != null)
+            LockSupport.unpark(t);
     }
 
     public boolean isReaderOpen() {
@@ -134,88 +166,103 @@ class ObjectPlayStream<T> {
     /////////////////////////////////
 
     /** Returns true if object was added, or false if it wasn't.
-     * This method may block. The object must not be null. */
+     * This method may block. The object must not be null.
+     * Only one thread may write. */
     public boolean write(@Nonnull T o) throws InterruptedException {
         if (o == null)
             throw new IllegalArgumentException();
 
         if (DEBUG) System.out.println(Thread.currentThread().getName() + " add("+o.toString()+")");
 
-        synchronized (_eventSync) {
-            while (true) {
-                if (_eWriteState == WRITE.CLOSED || _eReadState == READ.CLOSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " closed: returning false");
-                    return false;
-                } else if (isFull()) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " full: waiting");
-                    _eventSync.wait();
-                } else {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " writing " + o.toString());
-                    enqueue(o);
-                    _iSize++;
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " notifying other threads and returning");
-                    _eventSync.notifyAll();
-                    return true;
+        while (true) {
+            if (_eWriteState == WRITE.CLOSED || _eReadState == READ.CLOSED) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " closed: returning false");
+                return false;
+            } else if (isFull()) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " full: waiting");
+                _parkedWriter = Thread.currentThread();
+                // check again after announcing the park so a read isn't missed
+                if (isFull() && _eWriteState != WRITE.CLOSED && _eReadState != READ.CLOSED)
+                    LockSupport.park();
+                _parkedWriter = null;
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+            } else {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " writing " + o.toString());
+                long lngWriteCount = _lngWriteCount;
+                _aoQueue[(int)(lngWriteCount % _aoQueue.length)] = o;
+                _lngWriteCount = lngWriteCount + 1; // publish the object
+                Thread reader = _parkedReader;
+                if (reader != null) {
+                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " waking reader and returning");
+                    LockSupport.unpark(reader);
                 }
+                return true;
             }
         }
     }
 
     private boolean isFull() {
-        return _iSize >= _aoQueue.length;
-    }
-
-    protected void enqueue(@Nonnull T o) {
-        _aoQueue[_iTailPos] = o;
-        _iTailPos++;
-        if (_iTailPos >= _aoQueue.length) {
-            _iTailPos = 0;
-        }
+        return _lngWriteCount - _lngReadCount >= _aoQueue.length;
     }
 
     /** Retrieves the head of the queue. May return null if no object is removed.
-     * This method may block. */
+     * This method may block. Only one thread may read. */
     public @CheckForNull T read() throws InterruptedException {
         if (DEBUG) System.out.println(Thread.currentThread().getName() + " enter take()");
         
-        synchronized (_eventSync) {
-            while (true) {
-                if (_eReadState == READ.PAUSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " paused: waiting");
-                    _eventSync.wait();
-                } else if (_eReadState == READ.CLOSED) {
-                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " reader closed: returning null");
-                    return null;
-                } else if (isEmpty()) {
-                    if (_eWriteState == WRITE.CLOSED) {
-                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty & writer closed: closing reader & returning null");
-                        _eReadState = READ.CLOSED;
-                        return null;
-                    } else {
-                        if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty: waiting");
+        while (true) {
+            if (_eReadState == READ.PAUSED) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " paused: waiting");
+                synchronized (_eventSync) {
+                    while (_eReadState == READ.PAUSED)
                         _eventSync.wait();
+                }
+            } else if (_eReadState == READ.CLOSED) {
+                if (DEBUG) System.out.println(Thread.currentThread().getName() + " reader closed: returning null");
+                return null;
+            } else if (isEmpty()) {
+                // the writer publishes its last object before closing,
+                // so check it is still empty after seeing it closed
+                if (_eWriteState == WRITE.CLOSED && isEmpty()) {
+                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty & writer closed: closing reader & returning null");
+                    synchronized (_eventSync) {
+                        _eReadState = READ.CLOSED;
                     }
+                    return null;
                 } else {
-                    return dequeue();
+                    if (DEBUG) System.out.println(Thread.currentThread().getName() + " empty: waiting");
+                    _parkedReader = Thread.currentThread();
+                    // check again after announcing the park so a write isn't missed
+                    if (isEmpty() && _eReadState == READ.OPEN && _eWriteState != WRITE.CLOSED)
+                        LockSupport.park();
+                    _parkedReader = null;
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
                 }
+            } else {
+                T o = dequeue();
+                // null if the reader was closed while reading
+                if (o != null)
+                    return o;
             }
         }
     }
 
     private boolean isEmpty() {
-        return _iSize <= 0;
-    }
-
-    /** Always called within <code>syncronized (_eventSync)</code> */
-    private @Nonnull T dequeue() {
-        T o = _aoQueue[_iHeadPos];
-        if (DEBUG) System.out.println(Thread.currentThread().getName() + " removing object: " + o.toString());
-        _aoQueue[_iHeadPos] = null;
-        _iHeadPos++;
-        if (_iHeadPos >= _aoQueue.length)
-            _iHeadPos = 0;
-        _iSize--;
-        _eventSync.notifyAll();
+        return _lngReadCount >= _lngWriteCount;
+    }
+
+    private @CheckForNull T dequeue() {
+        long lngReadCount = _lngReadCount;
+        int iPos = (int)(lngReadCount % _aoQueue.length);
+        T o = _aoQueue[iPos];
+        if (DEBUG) System.out.println(Thread.currentThread().getName() + " removing object: " + o);
+        _aoQueue[iPos] = null;
+        _lngReadCount = lngReadCount + 1; // free the slot
+        Thread writer = _parkedWriter;
+        if (writer != null)
+            LockSupport.unpark(writer);
         return o;
     }
 
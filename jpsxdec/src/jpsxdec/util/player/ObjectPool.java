@@ -69,6 +69,11 @@ public abstract class ObjectPool<T> {
         return t;
     }
 
+    /** @return how many objects are waiting to be borrowed. */
+    public int getIdleCount() {
+        return _objects.size();
+    }
+
     public void giveBack(@Nonnull T object) {
         boolean blnIgnored = _objects.offer(object);   // no point to wait for free space, just return
         _iBalance--;
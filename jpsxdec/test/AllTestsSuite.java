@@ -49,16 +49,28 @@ import org.junit.runners.Suite;
     jpsxdec.discitems.FrameNumberFormatTest.class,
     jpsxdec.discitems.FrameNumberTest.class,
     jpsxdec.discitems.SerializedDiscItemTest.class,
+    jpsxdec.discitems.savers.DecoderPoolTest.class,
     jpsxdec.discitems.savers.FrameLookupTest.class,
+    jpsxdec.indexing.BinaryIndexFileTest.class,
     jpsxdec.indexing.DiscIndexerXaAudioTest.class,
     jpsxdec.indexing.psxvideofps.Fps.class,
+    jpsxdec.psxvideo.bitstreams.AcLookupTest.class,
     jpsxdec.psxvideo.bitstreams.BitReader.class,
     jpsxdec.psxvideo.bitstreams.Iki.class,
     jpsxdec.psxvideo.bitstreams.STRv2.class,
     jpsxdec.psxvideo.bitstreams.STRv3.class,
+    jpsxdec.psxvideo.mdec.MdecDecoder_intTest.class,
+    jpsxdec.psxvideo.mdec.idct.IDCT_intTest.class,
     jpsxdec.psxvideo.mdec.tojpeg.Mdec2JpegTest.class,
     jpsxdec.util.ArgParserTest.class,
-    jpsxdec.util.MiscTest.class
+    jpsxdec.util.MiscTest.class,
+    jpsxdec.util.aviwriter.AviWriterOpenDmlTest.class,
+    jpsxdec.util.player.ObjectPlayStreamTest.class,
+    jpsxdec.indexing.DiscProfilesTest.class,
+    jpsxdec.indexing.IndexCheckpointTest.class,
+    jpsxdec.indexing.IndexCacheTest.class,
+    jpsxdec.cdreaders.SectorErrorCorrectionTest.class,
+    jpsxdec.sectors.IdentifiedSectorIteratorTest.class
 })
 public class AllTestsSuite {
 
@@ -0,0 +1,135 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.cdreaders;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class SectorErrorCorrectionTest {
+
+    /** Bit-at-a-time EDC to compare the table version against. */
+    private static long referenceEdc(byte[] ab, int iStart, int iEnd) {
+        int edc = 0;
+        for (int i = iStart; i < iEnd; i++) {
+            edc ^= ab[i] & 0xff;
+            for (int iBit = 0; iBit < 8; iBit++)
+                edc = (edc >>> 1) ^ ((edc & 1) != 0 ? 0xD8018001 : 0);
+        }
+        return edc & 0xffffffffL;
+    }
+
+    /** Mode 2 sector with random user data and the sub header set to the
+     * given form. */
+    private static byte[] makeMode2Sector(int iForm, long lngSeed) {
+        byte[] ab = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+        new Random(lngSeed).nextBytes(ab);
+        ab[0] = 0;
+        for (int i = 1; i < 11; i++)
+            ab[i] = (byte)0xff;
+        ab[11] = 0;
+        ab[12] = 0x00; ab[13] = 0x02; ab[14] = 0x16; // 00:02:16
+        ab[15] = 2;
+        Arrays.fill(ab, 16, 24, (byte)0);
+        byte bSubMode = (byte)(iForm == 2 ? 0x20 : 0x00);
+        ab[18] = ab[22] = bSubMode;
+        CdSector2352.rebuildErrorCorrection(ab, iForm);
+        return ab;
+    }
+
+    @Test
+    public void edc() {
+        Random rand = new Random(1);
+        byte[] ab = new byte[2352];
+        rand.nextBytes(ab);
+        // different lengths to cover the leftover bytes after every 8
+        for (int iEnd = 16; iEnd < 40; iEnd++) {
+            assertEquals(referenceEdc(ab, 3, iEnd),
+                         SectorErrorCorrection.generateErrorDetectionAndCorrection(ab, 3, iEnd));
+        }
+        assertEquals(referenceEdc(ab, 0x10, 0x92C),
+                     SectorErrorCorrection.generateErrorDetectionAndCorrection(ab, 0x10, 0x92C));
+    }
+
+    @Test
+    public void verifyForm1() {
+        byte[] abScratch = new byte[SectorErrorCorrection.VERIFY_SCRATCH_SIZE];
+        byte[] ab = makeMode2Sector(1, 2);
+        byte[] abOriginal = ab.clone();
+        assertEquals(0, SectorErrorCorrection.verifySector(ab, 0, 2, 1, abScratch));
+        // header must be restored
+        assertArrayEquals(abOriginal, ab);
+
+        ab[100] ^= 1;
+        assertEquals(SectorErrorCorrection.EDC_ERROR |
+                     SectorErrorCorrection.ECC_P_ERROR |
+                     SectorErrorCorrection.ECC_Q_ERROR,
+                     SectorErrorCorrection.verifySector(ab, 0, 2, 1, abScratch));
+        ab[100] ^= 1;
+
+        // last byte of Q parity is only covered by itself
+        ab[0x92F] ^= 1;
+        assertEquals(SectorErrorCorrection.ECC_Q_ERROR,
+                     SectorErrorCorrection.verifySector(ab, 0, 2, 1, abScratch));
+    }
+
+    @Test
+    public void verifyForm2() {
+        byte[] abScratch = new byte[SectorErrorCorrection.VERIFY_SCRATCH_SIZE];
+        byte[] ab = makeMode2Sector(2, 3);
+        assertEquals(0, SectorErrorCorrection.verifySector(ab, 0, 2, 2, abScratch));
+
+        ab[1000] ^= 1;
+        assertEquals(SectorErrorCorrection.EDC_ERROR,
+                     SectorErrorCorrection.verifySector(ab, 0, 2, 2, abScratch));
+
+        // form 2 EDC is optional
+        ab[0x92C] = ab[0x92D] = ab[0x92E] = ab[0x92F] = 0;
+        assertEquals(0, SectorErrorCorrection.verifySector(ab, 0, 2, 2, abScratch));
+    }
+
+    @Test
+    public void verifySector() {
+        CdSector2352 sector = new CdSector2352(makeMode2Sector(1, 4), 0, 0, 0);
+        assertEquals(0, sector.verifyErrorCorrection());
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2014-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.discitems.savers;
+
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import jpsxdec.psxvideo.mdec.MdecDecoder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class DecoderPoolTest {
+
+    public DecoderPoolTest() {
+    }
+
+    @Test
+    public void reusesGivenBack() {
+        DecoderPool.Lease lease = new DecoderPool.Lease();
+        MdecDecoder decoder = lease.decoder(MdecDecodeQuality.LOW, 96, 80);
+        BufferedImage img = lease.rgbImage(96, 80);
+        // while borrowed, others get their own
+        DecoderPool.Lease other = new DecoderPool.Lease();
+        assertTrue(decoder != other.decoder(MdecDecodeQuality.LOW, 96, 80));
+        assertTrue(img != other.rgbImage(96, 80));
+        lease.giveBackAll();
+
+        DecoderPool.Lease again = new DecoderPool.Lease();
+        assertSame(decoder, again.decoder(MdecDecodeQuality.LOW, 96, 80));
+        assertSame(img, again.rgbImage(96, 80));
+        again.giveBackAll();
+        other.giveBackAll();
+    }
+
+    @Test
+    public void keyedByQualityAndSize() {
+        DecoderPool.Lease lease = new DecoderPool.Lease();
+        MdecDecoder decoder = lease.decoder(MdecDecodeQuality.PSX, 64, 48);
+        lease.giveBackAll();
+
+        DecoderPool.Lease other = new DecoderPool.Lease();
+        assertTrue(decoder != other.decoder(MdecDecodeQuality.LOW, 64, 48));
+        assertTrue(decoder != other.decoder(MdecDecodeQuality.PSX, 48, 64));
+        BufferedImage img = other.rgbImage(48, 64);
+        assertEquals(48, img.getWidth());
+        assertEquals(64, img.getHeight());
+        other.giveBackAll();
+    }
+
+    /** Borrows the images and counts how many were pooled. */
+    private static int countReused(@Nonnull DecoderPool.Lease lease,
+                                   @Nonnull Set<BufferedImage> pooled,
+                                   int iCount, int iWidth, int iHeight)
+    {
+        int iReused = 0;
+        for (int i = 0; i < iCount; i++) {
+            if (pooled.contains(lease.rgbImage(iWidth, iHeight)))
+                iReused++;
+        }
+        return iReused;
+    }
+
+    @Test
+    public void keepsLimitedIdle() {
+        DecoderPool.clear();
+        int iCount = DecoderPool.MAX_IDLE_PER_KEY + 3;
+        Set<BufferedImage> given = new HashSet<BufferedImage>();
+        DecoderPool.Lease lease = new DecoderPool.Lease();
+        for (int i = 0; i < iCount; i++)
+            given.add(lease.rgbImage(32, 16));
+        lease.giveBackAll();
+
+        DecoderPool.Lease again = new DecoderPool.Lease();
+        assertEquals(DecoderPool.MAX_IDLE_PER_KEY, countReused(again, given, iCount, 32, 16));
+        again.giveBackAll();
+        DecoderPool.clear();
+
+        // enough sizes to fill the total
+        int iSizes = DecoderPool.MAX_IDLE_TOTAL / DecoderPool.MAX_IDLE_PER_KEY + 2;
+        given.clear();
+        lease = new DecoderPool.Lease();
+        for (int iSize = 1; iSize <= iSizes; iSize++) {
+            for (int i = 0; i < DecoderPool.MAX_IDLE_PER_KEY; i++)
+                given.add(lease.rgbImage(iSize * 16, 16));
+        }
+        lease.giveBackAll();
+
+        again = new DecoderPool.Lease();
+        int iReused = 0;
+        for (int iSize = 1; iSize <= iSizes; iSize++)
+            iReused += countReused(again, given, DecoderPool.MAX_IDLE_PER_KEY, iSize * 16, 16);
+        assertEquals(DecoderPool.MAX_IDLE_TOTAL, iReused);
+        again.giveBackAll();
+        DecoderPool.clear();
+    }
+
+    @Test
+    public void clearDropsPooled() {
+        DecoderPool.Lease lease = new DecoderPool.Lease();
+        MdecDecoder decoder = lease.decoder(MdecDecodeQuality.LOW, 96, 80);
+        BufferedImage img = lease.rgbImage(96, 80);
+        lease.giveBackAll();
+        DecoderPool.clear();
+
+        DecoderPool.Lease again = new DecoderPool.Lease();
+        assertTrue(decoder != again.decoder(MdecDecodeQuality.LOW, 96, 80));
+        assertTrue(img != again.rgbImage(96, 80));
+        again.giveBackAll();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.discitems.DiscItem;
+import jpsxdec.util.DebugLogger;
+import jpsxdec.util.IO;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class BinaryIndexFileTest {
+
+    private File _disc, _textIndex, _binaryIndex, _roundTripIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        _disc = File.createTempFile("disc", ".iso");
+        _textIndex = File.createTempFile("index", ".idx");
+        _binaryIndex = File.createTempFile("index", DiscIndex.BINARY_INDEX_EXTENSION);
+        _roundTripIndex = File.createTempFile("index", ".idx");
+
+        FileOutputStream fos = new FileOutputStream(_disc);
+        fos.write(new byte[CdFileSectorReader.SECTOR_SIZE_2048_ISO * 20]);
+        fos.close();
+
+        CdFileSectorReader cd = new CdFileSectorReader(_disc, CdFileSectorReader.SECTOR_SIZE_2048_ISO);
+        PrintStream ps = new PrintStream(_textIndex, "UTF-8");
+        ps.println(Version.IndexHeader);
+        ps.println(cd.serialize());
+        ps.println("#:0|ID:DIR/FILE.TIM|Sectors:2-5|Type:File|Size:8192|Path:DIR/FILE.TIM|Has mode 2 form 2:No|Has CD audio:No");
+        ps.println("#:1|ID:DIR/FILE.TIM[0]|Sectors:2-3|Type:Tim|Start Offset:0|Dimensions:16x16|Palettes:1|Bpp:4");
+        ps.println("#:2|ID:DIR/FILE.TIM[1]|Sectors:4-5|Type:Tim|Start Offset:8|Dimensions:16x16|Palettes:1|Bpp:4");
+        ps.println("#:3|ID:?[3]|Sectors:10-10|Type:Tim|Start Offset:100|Dimensions:8x8|Palettes:1|Bpp:8");
+        ps.close();
+        cd.close();
+    }
+
+    @After
+    public void tearDown() {
+        _disc.delete();
+        _textIndex.delete();
+        _binaryIndex.delete();
+        _roundTripIndex.delete();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        DiscIndex textIndex = new DiscIndex(_textIndex.getPath(), DebugLogger.Log);
+        textIndex.serializeIndexBinary(_binaryIndex);
+        textIndex.serializeIndex(_roundTripIndex);
+        byte[] abExpected = IO.readFile(_roundTripIndex);
+        textIndex.getSourceCd().close();
+
+        assertTrue(BinaryIndexFile.isBinaryIndex(_binaryIndex));
+        assertFalse(BinaryIndexFile.isBinaryIndex(_textIndex));
+
+        DiscIndex binaryIndex = new DiscIndex(_binaryIndex.getPath(), DebugLogger.Log);
+        assertEquals(4, binaryIndex.size());
+        binaryIndex.serializeIndex(_roundTripIndex);
+
+        assertArrayEquals(abExpected, IO.readFile(_roundTripIndex));
+        binaryIndex.getSourceCd().close();
+    }
+
+    @Test
+    public void lookups() throws Exception {
+        DiscIndex textIndex = new DiscIndex(_textIndex.getPath(), DebugLogger.Log);
+        textIndex.serializeIndexBinary(_binaryIndex);
+        textIndex.getSourceCd().close();
+
+        DiscIndex binaryIndex = new DiscIndex(_binaryIndex.getPath(), DebugLogger.Log);
+
+        DiscItem tim = binaryIndex.getById("DIR/FILE.TIM[1]");
+        assertNotNull(tim);
+        assertEquals(2, tim.getIndex());
+        assertSame(tim, binaryIndex.getByIndex(2));
+        assertTrue(binaryIndex.hasIndex(3));
+        assertFalse(binaryIndex.hasIndex(4));
+        assertNull(binaryIndex.getById("DIR/FILE.TIM[2]"));
+
+        // the tree is rebuilt the same as the text index
+        assertEquals(2, binaryIndex.getRoot().size());
+        assertEquals(2, binaryIndex.getByIndex(0).getChildCount());
+        binaryIndex.getSourceCd().close();
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Set;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import jpsxdec.util.DebugLogger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class DiscProfilesTest {
+
+    @Test
+    public void parseSerial() {
+        assertEquals("SLUS_006.62", DiscProfiles.parseSerial("BOOT = cdrom:\\SLUS_006.62;1\r\nTCB = 4\r\n"));
+        assertEquals("SCUS_941.63", DiscProfiles.parseSerial("boot=cdrom:\\\\scus_941.63;1"));
+        assertEquals("SLPS_016.03", DiscProfiles.parseSerial("TCB=4\nBOOT = cdrom:\\EXE\\SLPS_016.03;1\n"));
+        assertEquals("MAIN.EXE", DiscProfiles.parseSerial("BOOT=cdrom:MAIN.EXE"));
+        assertNull(DiscProfiles.parseSerial("TCB = 4\r\nSTACK = 801FFFF0\r\n"));
+    }
+
+    @Test
+    public void userProfiles() throws Exception {
+        DiscProfiles profiles = new DiscProfiles();
+        profiles.add(new ByteArrayInputStream((
+                "A.serials = SLUS_000.01 slus_000.02\n" +
+                "A.sectors = XA_AUDIO STR_VIDEO\n" +
+                "A.indexers = StrVideoWithFrame XaAudio\n" +
+                "A.fps = NTSC15_A8-100,999\n" +
+                "Bad.serials = SLUS_000.03\n" +
+                "Bad.sectors = NOT_A_TYPE\n" +
+                "Bad.indexers = Tim\n").getBytes("ISO-8859-1")));
+
+        assertEquals(2, profiles.size());
+        assertNull(profiles.get("SLUS_000.03"));
+        DiscProfile a = profiles.get("SLUS_000.02");
+        assertNotNull(a);
+        assertSame(a, profiles.get("slus_000.01"));
+
+        // file system is always included
+        assertTrue(a.getSectorTypes().contains(SectorType.ISO9660_VOLUME_PRIMARY_DESCRIPTOR));
+        assertTrue(a.getSectorTypes().contains(SectorType.STR_VIDEO));
+        assertFalse(a.getSectorTypes().contains(SectorType.FF7_VIDEO));
+        assertTrue(a.usesIndexer(new DiscIndexerXaAudio(DebugLogger.Log)));
+        assertTrue(a.usesIndexer(new DiscIndexerISO9660(DebugLogger.Log)));
+        assertFalse(a.usesIndexer(new DiscIndexerTim()));
+        assertEquals(1, a.getFpsPatterns().size());
+    }
+
+    @Test
+    public void identity() {
+        DiscProfile a = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                        Arrays.asList("StrVideoWithFrame"), null);
+        DiscProfile same = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                           Arrays.asList("StrVideoWithFrame"), null);
+        DiscProfile edited = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                             Arrays.asList("StrVideoWithFrame", "Tim"), null);
+        DiscProfile fps = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                          Arrays.asList("StrVideoWithFrame"),
+                                          Arrays.<String>asList());
+        assertTrue(a.getIdentity().startsWith("A-"));
+        assertEquals(a.getIdentity(), same.getIdentity());
+        assertFalse(a.getIdentity().equals(edited.getIdentity()));
+        assertFalse(a.getIdentity().equals(fps.getIdentity()));
+        assertEquals(DiscProfile.FULL_SCAN_IDENTITY, DiscProfile.getIdentity(null));
+    }
+
+    @Test
+    public void bundledProfilesLoad() {
+        DiscProfiles profiles = DiscProfiles.load();
+        assertNotNull(profiles.get("SCUS_941.63"));
+    }
+
+    /** The indexer that turns each sector type into items,
+     * or null if no indexer needs it. */
+    private static final EnumMap<SectorType, Class<? extends DiscIndexer>> INDEXER_FOR_TYPE =
+            new EnumMap<SectorType, Class<? extends DiscIndexer>>(SectorType.class);
+    static {
+        INDEXER_FOR_TYPE.put(SectorType.XA_AUDIO, DiscIndexerXaAudio.class);
+        INDEXER_FOR_TYPE.put(SectorType.XA_NULL, null);
+        INDEXER_FOR_TYPE.put(SectorType.STR_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.ISO9660_DIRECTORY_RECORDS, DiscIndexerISO9660.class);
+        INDEXER_FOR_TYPE.put(SectorType.ISO9660_VOLUME_PRIMARY_DESCRIPTOR, DiscIndexerISO9660.class);
+        INDEXER_FOR_TYPE.put(SectorType.CD_AUDIO, null);
+        INDEXER_FOR_TYPE.put(SectorType.FF8_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.FF8_AUDIO, DiscIndexerSquare.class);
+        INDEXER_FOR_TYPE.put(SectorType.FF9_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.FF9_AUDIO, DiscIndexerSquare.class);
+        INDEXER_FOR_TYPE.put(SectorType.IKI_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.CHRONO_X_AUDIO, DiscIndexerSquare.class);
+        INDEXER_FOR_TYPE.put(SectorType.CHRONO_X_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.CHRONO_X_VIDEO_NULL, null);
+        INDEXER_FOR_TYPE.put(SectorType.ACE_COMBAT_3_VIDEO, DiscIndexerAceCombat3Video.class);
+        INDEXER_FOR_TYPE.put(SectorType.LAIN_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.CRUSADER, DiscIndexerCrusader.class);
+        INDEXER_FOR_TYPE.put(SectorType.GT_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.FF7_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.ALICE_VIDEO, DiscIndexerStrVideoWithFrame.class);
+        INDEXER_FOR_TYPE.put(SectorType.DREDD_VIDEO, DiscIndexerDredd.class);
+    }
+
+    @Test
+    public void bundledProfilesIndexTheirSectorTypes() throws Exception {
+        assertEquals("Every sector type needs an entry",
+                     SectorType.values().length, INDEXER_FOR_TYPE.size());
+
+        DiscProfiles profiles = new DiscProfiles();
+        InputStream is = DiscProfiles.class.getResourceAsStream(DiscProfiles.BUNDLED_RESOURCE);
+        assertNotNull(is);
+        try {
+            profiles.add(is);
+        } finally {
+            is.close();
+        }
+        assertTrue(profiles.size() > 0);
+
+        for (DiscProfile profile : profiles.getProfiles()) {
+            Set<Class<?>> indexers = new HashSet<Class<?>>();
+            for (DiscIndexer indexer : DiscIndexer.createIndexers(DebugLogger.Log, profile))
+                indexers.add(indexer.getClass());
+
+            for (SectorType type : profile.getSectorTypes()) {
+                Class<? extends DiscIndexer> needed = INDEXER_FOR_TYPE.get(type);
+                if (needed != null) {
+                    assertTrue(profile.getName() + " lists " + type + " but not " +
+                               needed.getSimpleName(),
+                               indexers.contains(needed));
+                }
+            }
+        }
+    }
+}
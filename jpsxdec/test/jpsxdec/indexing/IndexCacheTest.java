@@ -0,0 +1,234 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.indexing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import jpsxdec.Version;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import jpsxdec.util.DebugLogger;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class IndexCacheTest {
+
+    private static final int SECTORS = 20;
+
+    private File _cacheDir, _textIndex;
+    private final ArrayList<File> _discs = new ArrayList<File>();
+    private final ArrayList<CdFileSectorReader> _cds = new ArrayList<CdFileSectorReader>();
+    private DiscIndex _index;
+
+    @Before
+    public void setUp() throws Exception {
+        _cacheDir = File.createTempFile("idxcache", "");
+        assertTrue(_cacheDir.delete());
+        assertTrue(_cacheDir.mkdir());
+
+        File disc = makeDisc(1);
+        _textIndex = File.createTempFile("index", ".idx");
+        CdFileSectorReader cd = new CdFileSectorReader(disc, CdFileSectorReader.SECTOR_SIZE_2048_ISO);
+        PrintStream ps = new PrintStream(_textIndex, "UTF-8");
+        ps.println(Version.IndexHeader);
+        ps.println(cd.serialize());
+        ps.println("#:0|ID:DIR/FILE.TIM|Sectors:2-5|Type:File|Size:8192|Path:DIR/FILE.TIM|Has mode 2 form 2:No|Has CD audio:No");
+        ps.println("#:1|ID:DIR/FILE.TIM[0]|Sectors:2-3|Type:Tim|Start Offset:0|Dimensions:16x16|Palettes:1|Bpp:4");
+        ps.close();
+        cd.close();
+
+        _index = new DiscIndex(_textIndex.getPath(), DebugLogger.Log);
+        _cds.add(_index.getSourceCd());
+    }
+
+    @After
+    public void tearDown() {
+        for (CdFileSectorReader cd : _cds) {
+            try {
+                cd.close();
+            } catch (Exception ex) {
+            }
+        }
+        for (File disc : _discs)
+            disc.delete();
+        _textIndex.delete();
+        File[] aoEntries = _cacheDir.listFiles();
+        if (aoEntries != null) {
+            for (File entry : aoEntries)
+                entry.delete();
+        }
+        _cacheDir.delete();
+    }
+
+    /** Makes a disc image whose contents depend on the seed. */
+    private File makeDisc(int iSeed) throws Exception {
+        File disc = File.createTempFile("disc", ".iso");
+        _discs.add(disc);
+        byte[] ab = new byte[CdFileSectorReader.SECTOR_SIZE_2048_ISO * SECTORS];
+        for (int i = 0; i < ab.length; i++)
+            ab[i] = (byte)(i * iSeed);
+        FileOutputStream fos = new FileOutputStream(disc);
+        fos.write(ab);
+        fos.close();
+        return disc;
+    }
+
+    private CdFileSectorReader open(File disc) throws Exception {
+        CdFileSectorReader cd = new CdFileSectorReader(disc, CdFileSectorReader.SECTOR_SIZE_2048_ISO);
+        _cds.add(cd);
+        return cd;
+    }
+
+    /** The test index, but for another disc image. */
+    private DiscIndex indexFor(File disc) throws Exception {
+        return new DiscIndex(_index, open(disc), DebugLogger.Log);
+    }
+
+    private IndexCache bigCache() {
+        return new IndexCache(_cacheDir, 1024 * 1024);
+    }
+
+    @Test
+    public void hitSameImage() throws Exception {
+        IndexCache cache = bigCache();
+        assertTrue(cache.load(_index.getSourceCd(), null, DebugLogger.Log) == null);
+        File entry = cache.save(_index, null);
+        assertTrue(entry.exists());
+
+        DiscIndex loaded = cache.load(open(_index.getSourceCd().getSourceFile()), null, DebugLogger.Log);
+        assertNotNull(loaded);
+        assertEquals(_index.size(), loaded.size());
+        assertNotNull(loaded.getById("DIR/FILE.TIM[0]"));
+
+        // the same contents somewhere else is the same image
+        File copy = makeDisc(1);
+        assertNotNull(cache.load(open(copy), null, DebugLogger.Log));
+    }
+
+    @Test
+    public void missWhenImageChanges() throws Exception {
+        IndexCache cache = bigCache();
+        cache.save(_index, null);
+
+        assertTrue(cache.load(open(makeDisc(3)), null, DebugLogger.Log) == null);
+
+        // change one sampled byte of an image with the same size
+        File changed = makeDisc(1);
+        RandomAccessFile raf = new RandomAccessFile(changed, "rw");
+        raf.seek(100);
+        raf.write(raf.read() ^ 0xff);
+        raf.close();
+        assertTrue(cache.load(open(changed), null, DebugLogger.Log) == null);
+    }
+
+    @Test
+    public void missWhenProfileChanges() throws Exception {
+        DiscProfile profile = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                              Arrays.asList("StrVideoWithFrame"), null);
+        DiscProfile same = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                           Arrays.asList("StrVideoWithFrame"), null);
+        DiscProfile edited = new DiscProfile("A", Arrays.asList(SectorType.STR_VIDEO),
+                                             Arrays.asList("StrVideoWithFrame", "Tim"), null);
+        IndexCache cache = bigCache();
+        cache.save(_index, profile);
+
+        CdFileSectorReader cd = _index.getSourceCd();
+        assertNotNull(cache.load(cd, same, DebugLogger.Log));
+        assertTrue(cache.load(cd, edited, DebugLogger.Log) == null);
+        assertTrue(cache.load(cd, null, DebugLogger.Log) == null);
+
+        // and a full scan doesn't give an index limited by a profile
+        cache.save(_index, null);
+        assertNotNull(cache.load(cd, null, DebugLogger.Log));
+        assertTrue(cache.load(cd, edited, DebugLogger.Log) == null);
+    }
+
+    @Test
+    public void missWhenVersionChanges() throws Exception {
+        IndexCache cache = bigCache();
+        File entry = cache.save(_index, null);
+        // pretend the entry was made by another version
+        String sName = entry.getName();
+        File otherVersion = new File(_cacheDir, "00000000" + sName.substring(sName.indexOf('_')));
+        assertTrue(entry.renameTo(otherVersion));
+
+        assertTrue(cache.load(_index.getSourceCd(), null, DebugLogger.Log) == null);
+
+        // saving deletes entries from other versions
+        cache.save(indexFor(makeDisc(3)), null);
+        assertFalse(otherVersion.exists());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        File entry1 = bigCache().save(_index, null);
+        // room for 2 entries
+        IndexCache cache = new IndexCache(_cacheDir, entry1.length() * 5 / 2);
+        long lngNow = System.currentTimeMillis();
+        assertTrue(entry1.setLastModified(lngNow - 30000));
+
+        DiscIndex index2 = indexFor(makeDisc(3));
+        File entry2 = cache.save(index2, null);
+        assertTrue(entry2.setLastModified(lngNow - 20000));
+        assertTrue(entry1.exists());
+
+        // using the 1st entry makes the 2nd the least recently used
+        assertNotNull(cache.load(_index.getSourceCd(), null, DebugLogger.Log));
+
+        File entry3 = cache.save(indexFor(makeDisc(5)), null);
+        assertTrue(entry3.exists());
+        assertTrue(entry1.exists());
+        assertFalse(entry2.exists());
+        assertTrue(cache.load(index2.getSourceCd(), null, DebugLogger.Log) == null);
+    }
+
+    @Test
+    public void newestEntryIsKept() throws Exception {
+        IndexCache cache = new IndexCache(_cacheDir, 1);
+        File entry = cache.save(_index, null);
+        assertTrue(entry.exists());
+        assertNotNull(cache.load(_index.getSourceCd(), null, DebugLogger.Log));
+    }
+
+}
@@ -0,0 +1,305 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.indexing;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import jpsxdec.audio.XaAdpcmEncoder;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.i18n.ILocalizedMessage;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor_STRv2;
+import jpsxdec.psxvideo.encode.MacroBlockEncoder;
+import jpsxdec.psxvideo.encode.MdecEncoder;
+import jpsxdec.psxvideo.encode.PsxYCbCrImage;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import jpsxdec.tim.Tim;
+import jpsxdec.util.DeserializationFail;
+import jpsxdec.util.IO;
+import jpsxdec.util.ProgressLogger;
+import jpsxdec.util.TaskCanceledException;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class IndexCheckpointTest {
+
+    @Test
+    public void parseStateNumbers() throws Exception {
+        assertArrayEquals(new long[] {5}, IndexCheckpoint.parseStateNumbers("5"));
+        assertArrayEquals(new long[] {100, -1, 0, 4294967296L},
+                          IndexCheckpoint.parseStateNumbers("100,-1,0,4294967296"));
+    }
+
+    @Test
+    public void parseStateNumbersBad() {
+        try {
+            IndexCheckpoint.parseStateNumbers("1,x");
+            fail("Should have failed");
+        } catch (DeserializationFail ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void forIndexFile() {
+        IndexCheckpoint checkpoint = IndexCheckpoint.forIndexFile(new File("disc.idx"));
+        assertEquals(new File("disc.idx" + IndexCheckpoint.EXTENSION), checkpoint.getFile());
+    }
+
+    @Test
+    public void missingCheckpoint() throws Exception {
+        File file = File.createTempFile("ckidx", IndexCheckpoint.EXTENSION);
+        assertTrue(file.delete());
+        IndexCheckpoint checkpoint = new IndexCheckpoint(file, 0);
+        assertNull(checkpoint.resume(null, null, new DiscIndexer[0]));
+        checkpoint.delete();
+    }
+
+    // .........................................................................
+
+    /** Cancels indexing once it gets to a sector. */
+    private static class CancelingLogger extends ProgressLogger {
+        private final int _iCancelSector;
+        private final int _iSectorCount;
+
+        /** @param iCancelSector -1 to never cancel. */
+        public CancelingLogger(int iCancelSector, int iSectorCount) {
+            super("test", new PrintStream(new ByteArrayOutputStream()));
+            _iCancelSector = iCancelSector;
+            _iSectorCount = iSectorCount;
+        }
+
+        protected void handleProgressStart() {}
+        protected void handleProgressUpdate(double dblPercentComplete) throws TaskCanceledException {
+            if (_iCancelSector >= 0 && dblPercentComplete * _iSectorCount >= _iCancelSector)
+                throw new TaskCanceledException();
+        }
+        protected void handleProgressEnd() {}
+        public boolean isSeekingEvent() { return false; }
+        public void event(ILocalizedMessage msg) {}
+    }
+
+    private static final int SECTOR_COUNT = 1000;
+
+    /** Builds a disc image with TIMs in data sectors, two STR videos with
+     * interleaved XA audio, and XA audio on several channels. */
+    private static void writeTestImage(File file) throws Exception {
+        Random rand = new Random(7);
+        byte[] abImage = new byte[SECTOR_COUNT * CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+
+        int iPcmFrames = 37800 * 40;
+        byte[] abPcm = new byte[iPcmFrames * 4];
+        for (int i = 0; i < iPcmFrames; i++) {
+            short s = (short)(Math.sin(i / 20.0) * 8000 + rand.nextInt(2000));
+            abPcm[i*4] = abPcm[i*4+2] = (byte)s;
+            abPcm[i*4+1] = abPcm[i*4+3] = (byte)(s >> 8);
+        }
+        XaAdpcmEncoder xaEncoder = new XaAdpcmEncoder(new AudioInputStream(
+                new ByteArrayInputStream(abPcm), new AudioFormat(37800, 16, 2, true, false), iPcmFrames), 4);
+
+        byte[][] aabVideo = null;
+        int iVideoSector = 0, iFrame = 0;
+        for (int iSector = 0; iSector < SECTOR_COUNT; iSector++) {
+            int iOfs = iSector * CdFileSectorReader.SECTOR_SIZE_2352_BIN;
+            boolean blnVideo = (iSector >= 50 && iSector < 450) || (iSector >= 800);
+            if (iSector == 50 || iSector == 800)
+                iFrame = 0;
+            if (blnVideo && iSector % 8 != 7) {
+                if (aabVideo == null || iVideoSector == aabVideo.length) {
+                    aabVideo = encodeFrame(++iFrame, rand);
+                    iVideoSector = 0;
+                }
+                writeHeader(abImage, iSector, 1, 0x48, 0);
+                System.arraycopy(aabVideo[iVideoSector++], 0, abImage, iOfs + 24, 2048);
+            } else if (blnVideo || (iSector >= 600 && iSector < 800)) {
+                writeHeader(abImage, iSector, blnVideo ? 0 : 1 + iSector % 8, 0x64, 0x01);
+                ByteArrayOutputStream xa = new ByteArrayOutputStream();
+                xaEncoder.encode1Sector(xa);
+                byte[] abXa = xa.toByteArray();
+                System.arraycopy(abXa, 0, abImage, iOfs + 24, abXa.length);
+            } else {
+                writeHeader(abImage, iSector, 0, 0x08, 0);
+                for (int i = 0; i < 2048; i++)
+                    abImage[iOfs + 24 + i] = 0x55;
+                if (rand.nextInt(3) == 0) {
+                    BufferedImage bi = new BufferedImage(8 + 4 * rand.nextInt(8), 8 + rand.nextInt(20),
+                                                         BufferedImage.TYPE_INT_RGB);
+                    ByteArrayOutputStream tim = new ByteArrayOutputStream();
+                    Tim.create(bi, 16).write(tim);
+                    byte[] abTim = tim.toByteArray();
+                    if (abTim.length <= 2000)
+                        System.arraycopy(abTim, 0, abImage, iOfs + 24 + 4 * rand.nextInt(10), abTim.length);
+                }
+            }
+        }
+
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(abImage);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private static void writeHeader(byte[] abImage, int iSector, int iChannel, int iSubMode, int iCodingInfo) {
+        int iOfs = iSector * CdFileSectorReader.SECTOR_SIZE_2352_BIN;
+        for (int i = 1; i < 11; i++)
+            abImage[iOfs + i] = (byte)0xff;
+        int iLba = iSector + 150;
+        abImage[iOfs + 12] = toBcd(iLba / 75 / 60);
+        abImage[iOfs + 13] = toBcd(iLba / 75 % 60);
+        abImage[iOfs + 14] = toBcd(iLba % 75);
+        abImage[iOfs + 15] = 2;
+        abImage[iOfs + 16] = abImage[iOfs + 20] = 1;
+        abImage[iOfs + 17] = abImage[iOfs + 21] = (byte)iChannel;
+        abImage[iOfs + 18] = abImage[iOfs + 22] = (byte)iSubMode;
+        abImage[iOfs + 19] = abImage[iOfs + 23] = (byte)iCodingInfo;
+    }
+
+    private static byte toBcd(int i) {
+        return (byte)((i / 10) * 16 + i % 10);
+    }
+
+    /** Encodes a small frame and splits it into STR sector user data. */
+    private static byte[][] encodeFrame(int iFrame, Random rand) throws Exception {
+        final int W = 64, H = 48;
+        BufferedImage bi = new BufferedImage(W, H, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++)
+                bi.setRGB(x, y, ((x + iFrame * 3) & 0xff) << 16 | (y * 2) << 8 | rand.nextInt(128));
+        }
+        MdecEncoder encoder = new MdecEncoder(new PsxYCbCrImage(bi), W, H);
+        for (MacroBlockEncoder mb : encoder)
+            mb.setToFullEncode(new int[] {2, 2, 2, 2, 2, 2});
+        byte[] abBitstream = new BitStreamUncompressor_STRv2.BitStreamCompressor_STRv2()
+                                    .compress(encoder.getStream(), W, H);
+
+        int iChunks = (abBitstream.length + 2015) / 2016;
+        byte[][] aabSectors = new byte[iChunks][2048];
+        for (int iChunk = 0; iChunk < iChunks; iChunk++) {
+            byte[] ab = aabSectors[iChunk];
+            IO.writeInt32LE(ab, 0, 0x80010160L);
+            IO.writeInt16LE(ab, 4, (short)iChunk);
+            IO.writeInt16LE(ab, 6, (short)iChunks);
+            IO.writeInt32LE(ab, 8, iFrame);
+            IO.writeInt32LE(ab, 12, abBitstream.length);
+            IO.writeInt16LE(ab, 16, (short)W);
+            IO.writeInt16LE(ab, 18, (short)H);
+            System.arraycopy(abBitstream, 0, ab, 20, 8);
+            System.arraycopy(abBitstream, iChunk * 2016, ab, 32,
+                             Math.min(2016, abBitstream.length - iChunk * 2016));
+        }
+        return aabSectors;
+    }
+
+    private static String serialize(DiscIndex index) throws IOException {
+        File file = File.createTempFile("ckidx", ".idx");
+        try {
+            index.serializeIndex(file);
+            return new String(IO.readFile(file), "UTF-8");
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Indexing canceled and resumed from checkpoints, possibly several
+     * times, must end up with the same index as indexing all at once. */
+    @Test
+    public void resumeMatchesUninterrupted() throws Exception {
+        File image = File.createTempFile("ckidx", ".bin");
+        File checkpointFile = File.createTempFile("ckidx", IndexCheckpoint.EXTENSION);
+        try {
+            writeTestImage(image);
+            CdFileSectorReader cd = new CdFileSectorReader(image);
+            try {
+                String sExpected = serialize(new DiscIndex(cd, 1, null, new CancelingLogger(-1, 0)));
+                assertTrue(sExpected.contains("Type:Video"));
+                assertTrue(sExpected.contains("Type:XA"));
+                assertTrue(sExpected.contains("Type:Tim"));
+
+                int[][] aaiCancelSectors = {
+                    {120}, {451}, {300, 650}, {60, 420, 700, 900},
+                };
+                for (int[] aiCancelSectors : aaiCancelSectors) {
+                    assertTrue(checkpointFile.delete());
+                    for (int iCancelSector : aiCancelSectors) {
+                        try {
+                            // save at every chance
+                            new DiscIndex(cd, 1, null, new IndexCheckpoint(checkpointFile, 0),
+                                          new CancelingLogger(iCancelSector, SECTOR_COUNT));
+                            fail("Should have been canceled");
+                        } catch (TaskCanceledException ex) {
+                            // expected
+                        }
+                        assertTrue(checkpointFile.exists());
+                    }
+                    String sResumed = serialize(new DiscIndex(cd, 1, null,
+                                                              new IndexCheckpoint(checkpointFile, Long.MAX_VALUE),
+                                                              new CancelingLogger(-1, 0)));
+                    assertEquals(sExpected, sResumed);
+                }
+
+                // the checkpoint was made without a profile
+                DiscProfile profile = new DiscProfile("A", EnumSet.allOf(SectorType.class),
+                                                      Arrays.asList("XaAudio"), null);
+                try {
+                    new IndexCheckpoint(checkpointFile, 0).resume(cd, profile, new DiscIndexer[0]);
+                    fail("Should have failed");
+                } catch (DeserializationFail ex) {
+                    // expected
+                }
+            } finally {
+                cd.close();
+            }
+        } finally {
+            image.delete();
+            checkpointFile.delete();
+        }
+    }
+
+}
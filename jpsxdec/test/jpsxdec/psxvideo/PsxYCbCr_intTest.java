@@ -37,6 +37,8 @@
 
 package jpsxdec.psxvideo;
 
+import java.util.Random;
+import jpsxdec.formats.RGB;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -86,4 +88,52 @@ public class PsxYCbCr_intTest {
 
     }
 
+    private static void assertArgbMatches(PsxYCbCr_int psxycc, RGB[] aoRgb, int[] aiArgb) {
+        psxycc.toRgb(aoRgb[0], aoRgb[1], aoRgb[2], aoRgb[3]);
+        PsxYCbCr_int.toArgb(psxycc.y1, psxycc.y2, psxycc.y3, psxycc.y4,
+                            psxycc.cb, psxycc.cr, aiArgb, 0, 2);
+        for (int i = 0; i < 4; i++) {
+            if (aoRgb[i].toInt() != aiArgb[i])
+                fail(psxycc + " pixel " + i + " " + aoRgb[i] + " != " + Integer.toHexString(aiArgb[i]));
+        }
+    }
+
+    @Test
+    public void toArgbMatchesToRgb() {
+        PsxYCbCr_int psxycc = new PsxYCbCr_int();
+        RGB[] aoRgb = { new RGB(), new RGB(), new RGB(), new RGB() };
+        int[] aiArgb = new int[4];
+
+        // every combination the MDEC chip can output
+        for (psxycc.cb = -128; psxycc.cb < 128; psxycc.cb++) {
+            for (psxycc.cr = -128; psxycc.cr < 128; psxycc.cr++) {
+                for (int y = -128; y < 128; y += 4) {
+                    psxycc.y1 = y; psxycc.y2 = y+1; psxycc.y3 = y+2; psxycc.y4 = y+3;
+                    assertArgbMatches(psxycc, aoRgb, aiArgb);
+                }
+            }
+        }
+
+        // every chroma combination handled by the lookup tables, with
+        // luma values spread across the range
+        for (psxycc.cb = -1024; psxycc.cb < 1024; psxycc.cb++) {
+            for (psxycc.cr = -1024; psxycc.cr < 1024; psxycc.cr++) {
+                psxycc.y1 = ((psxycc.cb * 7 + psxycc.cr * 3) & 2047) - 1024;
+                psxycc.y2 = ((psxycc.cb + psxycc.cr * 13) & 2047) - 1024;
+                psxycc.y3 = ((psxycc.cb * 5 - psxycc.cr) & 255) - 128;
+                psxycc.y4 = ((psxycc.cr * 11 - psxycc.cb) & 511) - 256;
+                assertArgbMatches(psxycc, aoRgb, aiArgb);
+            }
+        }
+
+        // values outside the lookup tables
+        Random rand = new Random(5);
+        for (int i = 0; i < 100000; i++) {
+            psxycc.y1 = rand.nextInt(8192) - 4096; psxycc.y2 = rand.nextInt(2048) - 1024;
+            psxycc.y3 = rand.nextInt(8192) - 4096; psxycc.y4 = rand.nextInt(256) - 128;
+            psxycc.cb = rand.nextInt(8192) - 4096; psxycc.cr = rand.nextInt(8192) - 4096;
+            assertArgbMatches(psxycc, aoRgb, aiArgb);
+        }
+    }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2007-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.bitstreams;
+
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor.AcBitCode;
+import jpsxdec.psxvideo.bitstreams.BitStreamUncompressor.AcLookup;
+import jpsxdec.psxvideo.mdec.MdecException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Checks the packed AC code tables against the original lookup tables. */
+public class AcLookupTest {
+
+    @Test
+    public void packedMatchesLookupMpeg1() {
+        assertPackedMatchesLookup(BitStreamUncompressor_STRv2.AC_VARIABLE_LENGTH_CODES_MPEG1);
+    }
+
+    @Test
+    public void packedMatchesLookupLain() {
+        assertPackedMatchesLookup(BitStreamUncompressor_Lain.AC_VARIABLE_LENGTH_CODES_LAIN);
+    }
+
+    private static void assertPackedMatchesLookup(AcLookup lookup) {
+        for (int i17bits = 0; i17bits < (1 << BitStreamUncompressor.AC_LONGEST_VARIABLE_LENGTH_CODE); i17bits++) {
+            int iPacked = lookup.lookupPacked(i17bits);
+            AcBitCode code;
+            try {
+                code = lookup.lookup(i17bits);
+            } catch (MdecException.ReadCorruption ex) {
+                assertEquals(0, iPacked);
+                continue;
+            }
+            assertEquals(code.BitLength, iPacked & AcLookup.PACKED_LENGTH_MASK);
+            assertEquals(code == AcLookup.END_OF_BLOCK, (iPacked & AcLookup.PACKED_END_OF_BLOCK) != 0);
+            assertEquals(code == AcLookup.ESCAPE_CODE, (iPacked & AcLookup.PACKED_ESCAPE_CODE) != 0);
+            if (code != AcLookup.END_OF_BLOCK && code != AcLookup.ESCAPE_CODE) {
+                assertEquals(code.ZeroRun, (iPacked >> 8) & 0x3F);
+                assertEquals(code.AcCoefficient, iPacked >> 16);
+            }
+        }
+    }
+
+}
@@ -39,6 +39,7 @@ package jpsxdec.psxvideo.bitstreams;
 
 import java.util.Random;
 import jpsxdec.psxvideo.mdec.MdecException;
+import jpsxdec.util.ByteSlices;
 import jpsxdec.util.Misc;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -187,6 +188,117 @@ public class BitReader {
         assertTrue(READ_BITS, BIT_STRING.startsWith(READ_BITS));
     }
 
+    @Test
+    public void test64MatchesArrayBitReader() {
+        final Random rand = new Random();
+
+        for (int iTest = 0; iTest < 2000; iTest++) {
+            byte[] abTest = new byte[2 + rand.nextInt(20) * 2];
+            rand.nextBytes(abTest);
+            boolean blnLittleEndian = rand.nextBoolean();
+            int iStart = rand.nextInt(abTest.length / 2) * 2;
+
+            ArrayBitReader abr = new ArrayBitReader(abTest, abTest.length, blnLittleEndian, iStart);
+            ArrayBitReader abr64 = new ArrayBitReader64(abTest, abTest.length, blnLittleEndian, iStart);
+
+            for (int iOp = 0; iOp < 40; iOp++) {
+                int iOperation = rand.nextInt(3);
+                int iCount = rand.nextInt(iOperation == 2 ? 40 : 32);
+                int iExpected = 0, iActual = 0;
+                boolean blnExpectedEnd = false, blnActualEnd = false;
+                try {
+                    if (iOperation == 0)
+                        iExpected = abr.readUnsignedBits(iCount);
+                    else if (iOperation == 1)
+                        iExpected = abr.peekUnsignedBits(iCount);
+                    else
+                        abr.skipBits(iCount);
+                } catch (MdecException.EndOfStream ex) {
+                    blnExpectedEnd = true;
+                }
+                try {
+                    if (iOperation == 0)
+                        iActual = abr64.readUnsignedBits(iCount);
+                    else if (iOperation == 1)
+                        iActual = abr64.peekUnsignedBits(iCount);
+                    else
+                        abr64.skipBits(iCount);
+                } catch (MdecException.EndOfStream ex) {
+                    blnActualEnd = true;
+                }
+                String sOp = "op " + iOperation + " count " + iCount;
+                assertEquals(sOp, blnExpectedEnd, blnActualEnd);
+                assertEquals(sOp, iExpected, iActual);
+                assertEquals(sOp, abr.getBitsRead(), abr64.getBitsRead());
+                assertEquals(sOp, abr.getBitsRemaining(), abr64.getBitsRemaining());
+                assertEquals(sOp, abr.getWordPosition(), abr64.getWordPosition());
+            }
+        }
+    }
+
+    @Test
+    public void test64SlicesMatchArray() {
+        final Random rand = new Random();
+
+        for (int iTest = 0; iTest < 2000; iTest++) {
+            byte[] abTest = new byte[2 + rand.nextInt(40) * 2];
+            rand.nextBytes(abTest);
+            boolean blnLittleEndian = rand.nextBoolean();
+
+            // split the data into slices of random (possibly odd) sizes,
+            // each somewhere inside a bigger array
+            ByteSlices slices = new ByteSlices();
+            for (int iPos = 0; iPos < abTest.length;) {
+                int iLen = Math.min(1 + rand.nextInt(9), abTest.length - iPos);
+                int iOffset = rand.nextInt(4);
+                byte[] abSlice = new byte[iOffset + iLen + rand.nextInt(4)];
+                System.arraycopy(abTest, iPos, abSlice, iOffset, iLen);
+                slices.add(abSlice, iOffset, iLen);
+                iPos += iLen;
+            }
+            int iHeaderSize = rand.nextInt(abTest.length / 2 + 1) * 2;
+            byte[] abHeader = new byte[iHeaderSize];
+            slices.copyTo(0, abHeader, 0, iHeaderSize);
+            int iStart = rand.nextInt(iHeaderSize / 2 + 1) * 2;
+
+            ArrayBitReader abr = new ArrayBitReader64(abTest, abTest.length, blnLittleEndian, iStart);
+            ArrayBitReader64 abrSliced = new ArrayBitReader64(abHeader, iHeaderSize, blnLittleEndian, iStart);
+            abrSliced.continueWith(slices);
+
+            for (int iOp = 0; iOp < 60; iOp++) {
+                int iOperation = rand.nextInt(3);
+                int iCount = rand.nextInt(iOperation == 2 ? 80 : 32);
+                int iExpected = 0, iActual = 0;
+                boolean blnExpectedEnd = false, blnActualEnd = false;
+                try {
+                    if (iOperation == 0)
+                        iExpected = abr.readUnsignedBits(iCount);
+                    else if (iOperation == 1)
+                        iExpected = abr.peekUnsignedBits(iCount);
+                    else
+                        abr.skipBits(iCount);
+                } catch (MdecException.EndOfStream ex) {
+                    blnExpectedEnd = true;
+                }
+                try {
+                    if (iOperation == 0)
+                        iActual = abrSliced.readUnsignedBits(iCount);
+                    else if (iOperation == 1)
+                        iActual = abrSliced.peekUnsignedBits(iCount);
+                    else
+                        abrSliced.skipBits(iCount);
+                } catch (MdecException.EndOfStream ex) {
+                    blnActualEnd = true;
+                }
+                String sOp = "op " + iOperation + " count " + iCount;
+                assertEquals(sOp, blnExpectedEnd, blnActualEnd);
+                assertEquals(sOp, iExpected, iActual);
+                assertEquals(sOp, abr.getBitsRead(), abrSliced.getBitsRead());
+                assertEquals(sOp, abr.getBitsRemaining(), abrSliced.getBitsRemaining());
+            }
+        }
+    }
+
     @Test
     public void testPerformance() {
         byte[] abData = new byte[100000];
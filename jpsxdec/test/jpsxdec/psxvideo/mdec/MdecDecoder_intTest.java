@@ -0,0 +1,250 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.psxvideo.mdec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jpsxdec.formats.Rec601YCbCr;
+import jpsxdec.psxvideo.PsxYCbCr;
+import jpsxdec.psxvideo.mdec.MdecInputStream.MdecCode;
+import jpsxdec.psxvideo.mdec.idct.IDCT_int;
+import jpsxdec.psxvideo.mdec.idct.PsxMdecIDCT_int;
+import jpsxdec.psxvideo.mdec.idct.SimpleIDCT;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MdecDecoder_intTest {
+
+    private static final int WIDTH = 320, HEIGHT = 240;
+    private static final int THREADS = 3;
+
+    private static ExecutorService _executor;
+
+    public MdecDecoder_intTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        _executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        _executor.shutdown();
+    }
+
+    private static class MStream extends MdecInputStream {
+
+        private final MdecCode[] _codes;
+        private final int _iEnd;
+        private int _i = 0;
+
+        public MStream(MdecCode[] codes, int iEnd) {
+            _codes = codes;
+            _iEnd = iEnd;
+        }
+
+        @Override
+        public boolean readMdecCode(MdecCode code) throws MdecException.EndOfStream {
+            if (_i >= _iEnd)
+                throw new MdecException.EndOfStream();
+            code.set(_codes[_i++]);
+            return code.isEOD();
+        }
+    }
+
+    /** Random frame, some blocks empty, some with only a DC, some full. */
+    private static MdecCode[] randomFrame(Random rand, int iMacroBlocks) {
+        ArrayList<MdecCode> codes = new ArrayList<MdecCode>();
+        MdecCode eod = new MdecCode();
+        eod.setToEndOfData();
+        for (int i = 0; i < iMacroBlocks * 6; i++) {
+            int iDc = rand.nextInt(4) == 0 ? 0 : rand.nextInt(1024) - 512;
+            codes.add(new MdecCode(1 + rand.nextInt(63), iDc));
+            int iAcCount = rand.nextInt(3) == 0 ? 0 : rand.nextInt(20);
+            int iPos = 0;
+            for (int j = 0; j < iAcCount; j++) {
+                int iRun = rand.nextInt(4);
+                if (iPos + iRun + 1 > 63)
+                    break;
+                iPos += iRun + 1;
+                codes.add(new MdecCode(iRun, rand.nextInt(1024) - 512));
+            }
+            codes.add(eod);
+        }
+        return codes.toArray(new MdecCode[codes.size()]);
+    }
+
+    private static int[] decode(MdecDecoder_int decoder, MdecCode[] codes, int iEnd) {
+        try {
+            decoder.decode(new MStream(codes, iEnd));
+        } catch (MdecException.EndOfStream ex) {
+            assertTrue(iEnd < codes.length);
+        } catch (MdecException.ReadCorruption ex) {
+            fail(ex.toString());
+        }
+        int[] aiRgb = new int[WIDTH * HEIGHT];
+        decoder.readDecodedRgb(WIDTH, HEIGHT, aiRgb);
+        return aiRgb;
+    }
+
+    @Test
+    public void parallelMatchesSerialSimple() {
+        parallelMatchesSerial(new SimpleIDCT(), new IDCT_int[] {
+            new SimpleIDCT(), new SimpleIDCT(), new SimpleIDCT(), new SimpleIDCT()
+        });
+    }
+
+    @Test
+    public void parallelMatchesSerialPsx() {
+        parallelMatchesSerial(new PsxMdecIDCT_int(), new IDCT_int[] {
+            new PsxMdecIDCT_int(), new PsxMdecIDCT_int(), new PsxMdecIDCT_int()
+        });
+    }
+
+    private static int clamp(double dbl) {
+        long lng = Math.round(dbl);
+        return lng < 0 ? 0 : lng > 255 ? 255 : (int)lng;
+    }
+
+    @Test
+    public void yuvMatchesDoubleConversion() throws Exception {
+        MdecDecoder_int decoder = new MdecDecoder_int(new SimpleIDCT(), WIDTH, HEIGHT);
+        Random rand = new Random(4321);
+        MdecCode[] codes = randomFrame(rand, Calc.macroblocks(WIDTH, HEIGHT));
+        decoder.decode(new MStream(codes, codes.length));
+
+        assertYuvMatchesDoubleConversion(decoder);
+    }
+
+    /** Luma, Cb and Cr where the exact Rec.601 luma is halfway, or nearly,
+     * between two integers, so any error in the fixed-point conversion
+     * shows up in the rounding. */
+    private static ArrayList<int[]> nearlyHalfwayLuma() {
+        // PsxYCbCr.toRec_601_YCbCr() luma is exactly N / D
+        final long D = 2660418030L;
+        ArrayList<int[]> samples = new ArrayList<int[]>();
+        samples.add(new int[] {21, -2044, -1894}); // was off by 1 with 32 bit fixed-point
+        samples.add(new int[] {-9, -1363, -258});  // exactly halfway
+        samples.add(new int[] {44, 1363, 258});    // exactly halfway
+        for (int iCb = -2048; iCb < 2048; iCb += 16) {
+            for (int iCr = -2048; iCr < 2048; iCr += 8) {
+                // every luma that ends up between 0 and 255
+                for (int iY = -150; iY < 155; iY++) {
+                    long lngN = (iY + 128L) * 2285582500L - 488509L * iCb - 165476L * iCr + 16 * D;
+                    long lngFromHalf = ((lngN % D) + D) % D - D / 2;
+                    if (Math.abs(lngFromHalf) < 30000)
+                        samples.add(new int[] {iY, iCb, iCr});
+                }
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    public void yuvMatchesDoubleConversionNearlyHalfway() {
+        MdecDecoder_int decoder = new MdecDecoder_int(new SimpleIDCT(), WIDTH, HEIGHT);
+        ArrayList<int[]> samples = nearlyHalfwayLuma();
+        assertTrue(samples.size() > 100 && samples.size() <= WIDTH/2 * HEIGHT/2);
+        // each sample fills a 2x2 block
+        for (int i = 0; i < samples.size(); i++) {
+            int[] aiSample = samples.get(i);
+            int iCX = i % (WIDTH/2), iCY = i / (WIDTH/2);
+            int iLumaOfs = iCX*2 + iCY*2 * WIDTH;
+            decoder._LumaBuffer[iLumaOfs] = aiSample[0];
+            decoder._LumaBuffer[iLumaOfs + 1] = aiSample[0];
+            decoder._LumaBuffer[iLumaOfs + WIDTH] = aiSample[0];
+            decoder._LumaBuffer[iLumaOfs + WIDTH + 1] = aiSample[0];
+            decoder._CbBuffer[iCX + iCY * WIDTH/2] = aiSample[1];
+            decoder._CrBuffer[iCX + iCY * WIDTH/2] = aiSample[2];
+        }
+        assertYuvMatchesDoubleConversion(decoder);
+    }
+
+    private static void assertYuvMatchesDoubleConversion(MdecDecoder_int decoder) {
+        byte[] abY = new byte[WIDTH * HEIGHT],
+               abCb = new byte[WIDTH/2 * HEIGHT/2], abCr = new byte[abCb.length];
+        decoder.readDecodedYuv420(WIDTH, HEIGHT, abY, abCb, abCr);
+
+        PsxYCbCr psxycc = new PsxYCbCr();
+        Rec601YCbCr recycc = new Rec601YCbCr();
+        for (int iCY = 0; iCY < HEIGHT/2; iCY++) {
+            for (int iCX = 0; iCX < WIDTH/2; iCX++) {
+                int iLumaOfs = iCX*2 + iCY*2 * WIDTH, iChromaOfs = iCX + iCY * WIDTH/2;
+                psxycc.y1 = decoder._LumaBuffer[iLumaOfs];
+                psxycc.y2 = decoder._LumaBuffer[iLumaOfs + 1];
+                psxycc.y3 = decoder._LumaBuffer[iLumaOfs + WIDTH];
+                psxycc.y4 = decoder._LumaBuffer[iLumaOfs + WIDTH + 1];
+                psxycc.cb = decoder._CbBuffer[iChromaOfs];
+                psxycc.cr = decoder._CrBuffer[iChromaOfs];
+                psxycc.toRec_601_YCbCr(recycc);
+                assertEquals(clamp(recycc.y1), abY[iLumaOfs] & 0xff);
+                assertEquals(clamp(recycc.y2), abY[iLumaOfs + 1] & 0xff);
+                assertEquals(clamp(recycc.y3), abY[iLumaOfs + WIDTH] & 0xff);
+                assertEquals(clamp(recycc.y4), abY[iLumaOfs + WIDTH + 1] & 0xff);
+                assertEquals(clamp(recycc.cb), abCb[iChromaOfs] & 0xff);
+                assertEquals(clamp(recycc.cr), abCr[iChromaOfs] & 0xff);
+            }
+        }
+    }
+
+    private void parallelMatchesSerial(IDCT_int serialIdct, IDCT_int[] aoParallelIdcts) {
+        MdecDecoder_int serial = new MdecDecoder_int(serialIdct, WIDTH, HEIGHT);
+        MdecDecoder_int parallel = new MdecDecoder_int(serialIdct, WIDTH, HEIGHT);
+        parallel.setParallel(_executor, aoParallelIdcts);
+
+        Random rand = new Random(1234);
+        int iMacroBlocks = Calc.macroblocks(WIDTH, HEIGHT);
+        for (int i = 0; i < 4; i++) {
+            MdecCode[] codes = randomFrame(rand, iMacroBlocks);
+            assertTrue(Arrays.equals(decode(serial, codes, codes.length),
+                                     decode(parallel, codes, codes.length)));
+            // frame that ends early
+            int iEnd = rand.nextInt(codes.length);
+            assertTrue(Arrays.equals(decode(serial, codes, iEnd),
+                                     decode(parallel, codes, iEnd)));
+        }
+    }
+
+}
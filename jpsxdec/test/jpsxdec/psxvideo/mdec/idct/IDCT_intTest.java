@@ -0,0 +1,144 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2013-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package jpsxdec.psxvideo.mdec.idct;
+
+import java.util.Arrays;
+import java.util.Random;
+import jpsxdec.psxvideo.mdec.MdecInputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IDCT_intTest {
+
+    public IDCT_intTest() {
+    }
+
+    private static final int TRIES = 200;
+
+    @Test
+    public void sparseMatchesFull() {
+        sparseMatchesFull(new SimpleIDCT());
+        sparseMatchesFull(new PsxMdecIDCT_int());
+        sparseMatchesFull(new AanIDCT_int());
+    }
+
+    private static void sparseMatchesFull(IDCT_int idct) {
+        Random rand = new Random(1234);
+        int[] aiFull = new int[64], aiSparse = new int[64];
+        int[] aiFullOut = new int[64], aiSparseOut = new int[64];
+        for (int iLast = 0; iLast < 64; iLast++) {
+            int iRows = 0, iColumns = 0;
+            for (int i = 0; i <= iLast; i++) {
+                int iPos = MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i];
+                iRows = Math.max(iRows, (iPos >> 3) + 1);
+                iColumns = Math.max(iColumns, (iPos & 7) + 1);
+            }
+            for (int iTry = 0; iTry < TRIES; iTry++) {
+                Arrays.fill(aiFull, 0);
+                for (int i = 0; i <= iLast; i++) {
+                    // leave about half the coefficients zero
+                    if (i == iLast || rand.nextBoolean())
+                        aiFull[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i]] =
+                                rand.nextInt(4096) - 2048;
+                }
+                System.arraycopy(aiFull, 0, aiSparse, 0, 64);
+                idct.IDCT(aiFull, 0, aiFullOut);
+                idct.IDCT_Sparse(aiSparse, iRows, iColumns, 0, aiSparseOut);
+                assertArrayEquals(idct.getClass().getSimpleName() + " last " + iLast,
+                                  aiFullOut, aiSparseOut);
+            }
+        }
+    }
+
+    @Test
+    public void oneNonZeroMatchesFull() {
+        oneNonZeroMatchesFull(new SimpleIDCT());
+        oneNonZeroMatchesFull(new PsxMdecIDCT_int());
+        oneNonZeroMatchesFull(new AanIDCT_int());
+    }
+
+    private static void oneNonZeroMatchesFull(IDCT_int idct) {
+        Random rand = new Random(5678);
+        int[] aiFull = new int[64], aiOne = new int[64];
+        int[] aiFullOut = new int[64], aiOneOut = new int[64];
+        for (int iPos = 0; iPos < 64; iPos++) {
+            for (int iTry = 0; iTry < TRIES; iTry++) {
+                Arrays.fill(aiFull, 0);
+                aiFull[iPos] = rand.nextInt(4096) - 2048;
+                System.arraycopy(aiFull, 0, aiOne, 0, 64);
+                idct.IDCT(aiFull, 0, aiFullOut);
+                idct.IDCT_1NonZero(aiOne, iPos, 0, aiOneOut);
+                assertArrayEquals(idct.getClass().getSimpleName() + " pos " + iPos,
+                                  aiFullOut, aiOneOut);
+            }
+        }
+    }
+
+    @Test
+    public void aanCloseToPsx() {
+        Random rand = new Random(42);
+        IDCT_int psx = new PsxMdecIDCT_int(), aan = new AanIDCT_int();
+        int[] aiPsx = new int[64], aiAan = new int[64];
+        int[] aiPsxOut = new int[64], aiAanOut = new int[64];
+        double dblSquaredErr = 0;
+        int iMaxErr = 0;
+        for (int iTry = 0; iTry < 20000; iTry++) {
+            // DC with AC falling off along the zig-zag, like real blocks
+            Arrays.fill(aiPsx, 0);
+            aiPsx[0] = rand.nextInt(2048) - 1024;
+            int iLast = rand.nextInt(40);
+            for (int i = 1; i <= iLast; i++) {
+                if (rand.nextInt(3) == 0)
+                    aiPsx[MdecInputStream.REVERSE_ZIG_ZAG_LOOKUP_LIST[i]] =
+                            (int)(rand.nextGaussian() * 400 / (1 + i / 4));
+            }
+            System.arraycopy(aiPsx, 0, aiAan, 0, 64);
+            psx.IDCT(aiPsx, 0, aiPsxOut);
+            aan.IDCT(aiAan, 0, aiAanOut);
+            for (int i = 0; i < 64; i++) {
+                int iErr = Math.abs(aiPsxOut[i] - aiAanOut[i]);
+                dblSquaredErr += iErr * iErr;
+                iMaxErr = Math.max(iMaxErr, iErr);
+            }
+        }
+        double dblPsnr = 10 * Math.log10(255.0 * 255.0 / (dblSquaredErr / (20000 * 64)));
+        assertTrue("PSNR " + dblPsnr, dblPsnr > 55);
+        assertTrue("Max error " + iMaxErr, iMaxErr <= 4);
+    }
+
+}
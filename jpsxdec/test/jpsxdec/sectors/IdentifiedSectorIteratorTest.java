@@ -0,0 +1,360 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.sectors;
+
+import java.util.Arrays;
+import java.util.Random;
+import jpsxdec.cdreaders.CdFileSectorReader;
+import jpsxdec.cdreaders.CdSector;
+import jpsxdec.cdreaders.CdSector2048;
+import jpsxdec.cdreaders.CdSector2352;
+import jpsxdec.cdreaders.CdxaSubHeader.SubMode;
+import jpsxdec.sectors.IdentifiedSectorIterator.SectorType;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+
+public class IdentifiedSectorIteratorTest {
+
+    /** A sector as raw bytes, either a full 2352 byte mode 2 sector,
+     * or only the 2048 bytes of user data. */
+    private static class RawSector {
+        public final byte[] abRaw;
+        public int iSectorIndex = 100;
+
+        /** Mode 2 sector, form 1 unless the sub mode says form 2. */
+        public RawSector(int iFile, int iChannel, int iSubMode, int iCodingInfo) {
+            abRaw = new byte[CdFileSectorReader.SECTOR_SIZE_2352_BIN];
+            for (int i = 1; i < 11; i++)
+                abRaw[i] = (byte)0xff;
+            abRaw[12] = 0x00; abRaw[13] = 0x03; abRaw[14] = 0x25; // 00:03:25
+            abRaw[15] = 2;
+            setSubHeader(iFile, iChannel, iSubMode, iCodingInfo);
+        }
+
+        /** Only user data, without any raw header. */
+        public RawSector() {
+            abRaw = new byte[CdFileSectorReader.SECTOR_SIZE_2048_ISO];
+        }
+
+        public boolean hasSubHeader() {
+            return abRaw.length == CdFileSectorReader.SECTOR_SIZE_2352_BIN;
+        }
+
+        public void setSubHeader(int iFile, int iChannel, int iSubMode, int iCodingInfo) {
+            abRaw[16] = abRaw[20] = (byte)iFile;
+            abRaw[17] = abRaw[21] = (byte)iChannel;
+            abRaw[18] = abRaw[22] = (byte)iSubMode;
+            abRaw[19] = abRaw[23] = (byte)iCodingInfo;
+        }
+
+        private int userDataStart() {
+            return hasSubHeader() ? 24 : 0;
+        }
+
+        public RawSector setByte(int iUserDataOfs, int iValue) {
+            abRaw[userDataStart() + iUserDataOfs] = (byte)iValue;
+            return this;
+        }
+        public RawSector set16LE(int iUserDataOfs, int iValue) {
+            setByte(iUserDataOfs, iValue);
+            return setByte(iUserDataOfs + 1, iValue >> 8);
+        }
+        public RawSector set32LE(int iUserDataOfs, long lngValue) {
+            set16LE(iUserDataOfs, (int)lngValue);
+            return set16LE(iUserDataOfs + 2, (int)(lngValue >> 16));
+        }
+        public RawSector set32BE(int iUserDataOfs, long lngValue) {
+            return set32LE(iUserDataOfs, Integer.reverseBytes((int)lngValue));
+        }
+        public RawSector setAscii(int iUserDataOfs, String s) {
+            for (int i = 0; i < s.length(); i++)
+                setByte(iUserDataOfs + i, s.charAt(i));
+            return this;
+        }
+        /** 16-bit value both little-endian and big-endian, as in ISO9660. */
+        public RawSector setBoth16(int iUserDataOfs, int iValue) {
+            set16LE(iUserDataOfs, iValue);
+            setByte(iUserDataOfs + 2, iValue >> 8);
+            return setByte(iUserDataOfs + 3, iValue);
+        }
+        /** 32-bit value both little-endian and big-endian, as in ISO9660. */
+        public RawSector setBoth32(int iUserDataOfs, long lngValue) {
+            set32LE(iUserDataOfs, lngValue);
+            return set32BE(iUserDataOfs + 4, lngValue);
+        }
+
+        public CdSector toCdSector() {
+            if (hasSubHeader())
+                return new CdSector2352(abRaw.clone(), 0, iSectorIndex, 0);
+            else
+                return new CdSector2048(abRaw.clone(), 0, iSectorIndex, 0);
+        }
+
+        public RawSector copy() {
+            RawSector copy = hasSubHeader() ? new RawSector(0, 0, 0, 0) : new RawSector();
+            System.arraycopy(abRaw, 0, copy.abRaw, 0, abRaw.length);
+            copy.iSectorIndex = iSectorIndex;
+            return copy;
+        }
+    }
+
+    private static final int DATA = SubMode.MASK_DATA;
+    private static final int DATA_VIDEO = SubMode.MASK_REAL_TIME | SubMode.MASK_DATA;
+
+    /** ISO9660 directory record of a directory named with 1 byte. */
+    private static void directoryRecord(RawSector s, int iOfs) {
+        s.setByte(iOfs, 34); // length
+        s.setBoth32(iOfs + 2, 20); // extent
+        s.setBoth32(iOfs + 10, 2048); // size
+        s.setByte(iOfs + 25, 2); // directory
+        s.setBoth16(iOfs + 28, 1); // volume sequence number
+        s.setByte(iOfs + 32, 1); // name length
+    }
+
+    /** A sector that the type identifies (without context for
+     * {@link SectorType#GT_VIDEO} and {@link SectorType#DREDD_VIDEO}). */
+    private static RawSector validSector(SectorType type) {
+        RawSector s;
+        switch (type) {
+            case XA_AUDIO:
+                return new RawSector(1, 1, SubMode.MASK_REAL_TIME | SubMode.MASK_FORM | SubMode.MASK_AUDIO, 1);
+            case XA_NULL:
+                return new RawSector(0, 0, SubMode.MASK_FORM, 0);
+            case STR_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorStrVideo.VIDEO_SECTOR_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 2).set32LE(8, 1).set32LE(12, 4000)
+                        .set16LE(16, 320).set16LE(18, 240).set16LE(20, 100)
+                        .set16LE(22, 0x3800).set16LE(24, 1).set16LE(26, 2);
+            case IKI_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorStrVideo.VIDEO_SECTOR_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 2).set32LE(8, 1).set32LE(12, 4000)
+                        .set16LE(16, 320).set16LE(18, 240).set16LE(20, 100)
+                        .set16LE(22, 0x3800).set16LE(24, 320).set16LE(26, 240);
+            case LAIN_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorStrVideo.VIDEO_SECTOR_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 9).set32LE(8, 1).set32LE(12, 18144)
+                        .set16LE(16, 320).set16LE(18, 240).setByte(20, 1).setByte(21, 1)
+                        .set16LE(22, 0x3800).set16LE(24, 100);
+            case FF7_VIDEO:
+                return new RawSector(1, 1, DATA, 0)
+                        .set32LE(0, SectorStrVideo.VIDEO_SECTOR_MAGIC)
+                        .set16LE(4, 1).set16LE(6, 8).set32LE(8, 1).set32LE(12, 10000)
+                        .set16LE(16, 320).set16LE(18, 224);
+            case CD_AUDIO:
+                s = new RawSector(0, 0, 0, 0);
+                new Random(5).nextBytes(s.abRaw);
+                s.abRaw[0] = 0x12; // not a sync header
+                return s;
+            case ISO9660_DIRECTORY_RECORDS:
+                s = new RawSector(0, 0, DATA, 0);
+                directoryRecord(s, 0);
+                directoryRecord(s, 34);
+                return s;
+            case ISO9660_VOLUME_PRIMARY_DESCRIPTOR:
+                s = new RawSector(0, 0, DATA, 0);
+                s.iSectorIndex = 16;
+                s.setByte(0, 1).setAscii(1, "CD001").setByte(6, 1);
+                s.setBoth32(80, 1000); // volume space size
+                s.setBoth16(120, 1).setBoth16(124, 1).setBoth16(128, 2048);
+                s.setBoth32(132, 10); // path table size
+                directoryRecord(s, 156);
+                s.setByte(881, 1); // file structure version
+                return s;
+            case FF8_VIDEO:
+                return new RawSector(1, 1, DATA, 0).setAscii(0, "SMJ\1").setByte(4, 2).setByte(5, 9);
+            case FF8_AUDIO:
+                s = new RawSector(1, 1, DATA, 0).setAscii(0, "SMN\1").setByte(5, 9).setAscii(240, "SHUN.MORIYA");
+                return s.set32LE(256, SquareAKAOstruct.AKAO_ID).set32LE(256 + 32, 1680);
+            case FF9_VIDEO:
+                return new RawSector(1, 1, DATA | SubMode.MASK_FORM, 0)
+                        .set32LE(0, SectorFF9.SectorFF9Video.VIDEO_CHUNK_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 10).set32LE(8, 1).set32LE(12, 4000)
+                        .set16LE(16, 320).set16LE(18, 224).set16LE(20, 100)
+                        .set16LE(22, 0x3800).set16LE(24, 1).set16LE(26, 2);
+            case FF9_AUDIO:
+                return new RawSector(1, 1, DATA, 0)
+                        .set32LE(0, SectorFF9.SectorFF9Audio.FF9_AUDIO_CHUNK_MAGIC)
+                        .set16LE(4, 1).set16LE(6, 10).set32LE(8, 1);
+            case CHRONO_X_AUDIO:
+                return new RawSector(1, 1, DATA, 0)
+                        .set32LE(0, SectorChronoXAudio.AUDIO_CHUNK_MAGIC2)
+                        .set16LE(4, 0).set16LE(6, 2).set16LE(8, 1)
+                        .set32LE(128, SquareAKAOstruct.AKAO_ID).set32LE(128 + 32, 1000);
+            case CHRONO_X_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC1)
+                        .set16LE(4, 0).set16LE(6, 5).set32LE(8, 1).set32LE(12, 4000)
+                        .set16LE(16, 320).set16LE(18, 224).set16LE(20, 100)
+                        .set16LE(22, 0x3800).set16LE(24, 1).set16LE(26, 2);
+            case CHRONO_X_VIDEO_NULL:
+                s = new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorChronoXVideo.CHRONO_CROSS_VIDEO_CHUNK_MAGIC2)
+                        .set16LE(4, 0).set16LE(6, 1).set16LE(8, 0);
+                for (int i = 10; i < 32; i++)
+                    s.setByte(i, 0xff);
+                return s;
+            case ACE_COMBAT_3_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .setByte(0, 1).setByte(1, 0).set16LE(2, 5)
+                        .set16LE(6, 0xfffe).set16LE(8, 304).set16LE(10, 224);
+            case CRUSADER:
+                return new RawSector(1, 1, DATA, 0).set32BE(0, SectorCrusader.MAGIC).set32BE(4, 5);
+            case GT_VIDEO:
+                return new RawSector(1, 1, DATA, 0)
+                        .set32LE(0, SectorGTVideo.GT_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 5).set32LE(8, 1).set32LE(12, 4000)
+                        .set16LE(16, 10)
+                        .set16LE(32, 100).set16LE(34, 0x3800)
+                        .set16LE(36, 320).set16LE(38, 240).set16LE(40, 100);
+            case ALICE_VIDEO:
+                return new RawSector(1, 1, DATA_VIDEO, 0)
+                        .set32LE(0, SectorAliceNullVideo.ALICE_VIDEO_SECTOR_MAGIC)
+                        .set16LE(4, 0).set16LE(6, 3).set32LE(8, 1).set32LE(12, 4000);
+            case DREDD_VIDEO:
+                return new RawSector(1, 2, DATA, 0)
+                        .set32LE(0, 0)
+                        .set16LE(4, 100).set16LE(6, 0x3800).set16LE(8, 1).set16LE(10, 2);
+            default:
+                fail("No test sector for " + type);
+                return null;
+        }
+    }
+
+    /** If the type identifies the sector when tried directly. Contextual
+     * types are only checked as far as they can be without context. */
+    private static boolean typeMatches(SectorType type, CdSector cdSector) {
+        switch (type) {
+            case GT_VIDEO:
+                return new SectorGTVideo(cdSector, null).getProbability() > 0;
+            case ALICE_VIDEO:
+                return new SectorAliceNullVideo(cdSector).getProbability() > 0;
+            case DREDD_VIDEO:
+                return new SectorDreddVideo(cdSector).getProbability() > 0;
+            default:
+                return IdentifiedSectorIterator.create(type, cdSector).getProbability() > 0;
+        }
+    }
+
+    private static void assertSameIdentification(String sMessage, CdSector cdSector) {
+        IdentifiedSector expected = IdentifiedSectorIterator.identifyWithoutPreClassifying(cdSector);
+        IdentifiedSector actual = IdentifiedSectorIterator.identifyWithoutContext(cdSector);
+        if (expected == null) {
+            assertTrue(sMessage, actual == null);
+        } else {
+            assertTrue(sMessage, actual != null);
+            assertEquals(sMessage, expected.getClass(), actual.getClass());
+            assertEquals(sMessage, expected.toString(), actual.toString());
+        }
+    }
+
+    private static void assertCandidate(String sMessage, SectorType type, CdSector cdSector) {
+        int iCandidates = IdentifiedSectorIterator.preClassify(cdSector);
+        assertTrue(sMessage, (iCandidates & (1 << type.ordinal())) != 0);
+    }
+
+    @Test
+    public void validSectorOfEachTypeIsCandidate() {
+        for (SectorType type : SectorType.values()) {
+            CdSector cdSector = validSector(type).toCdSector();
+            assertTrue(type + " test sector is not valid", typeMatches(type, cdSector));
+            assertCandidate(type.toString(), type, cdSector);
+            assertSameIdentification(type.toString(), cdSector);
+        }
+    }
+
+    /** Sectors close to being each type: the sub header, sector number
+     * and first bytes of user data are changed at random, or the raw
+     * header is dropped. Whatever type identifies the sector must
+     * survive pre-classification. */
+    @Test
+    public void preClassifyNeverRulesOutAMatch() {
+        Random rand = new Random(24);
+        int[] aiMatches = new int[SectorType.values().length];
+        for (SectorType baseType : SectorType.values()) {
+            RawSector base = validSector(baseType);
+            for (int iVariant = 0; iVariant < 400; iVariant++) {
+                RawSector s;
+                if (base.hasSubHeader() && rand.nextInt(8) == 0) {
+                    s = new RawSector();
+                    System.arraycopy(base.abRaw, 24, s.abRaw, 0, s.abRaw.length);
+                } else {
+                    s = base.copy();
+                }
+                if (s.hasSubHeader() && baseType != SectorType.CD_AUDIO && rand.nextBoolean()) {
+                    // usually keep the form, which changes the user data size
+                    // (and Crusader fails hard if its size is wrong)
+                    int iSubMode = (s.abRaw[18] & SubMode.MASK_FORM) |
+                                   (rand.nextInt(256) & ~SubMode.MASK_FORM);
+                    if (baseType != SectorType.CRUSADER && rand.nextInt(4) == 0)
+                        iSubMode ^= SubMode.MASK_FORM;
+                    int[] aiFileChannel = {0, 1, 2, 31, 32, 255};
+                    s.setSubHeader(aiFileChannel[rand.nextInt(aiFileChannel.length)],
+                                   aiFileChannel[rand.nextInt(aiFileChannel.length)],
+                                   iSubMode, s.abRaw[19]);
+                }
+                s.iSectorIndex = rand.nextBoolean() ? 16 : 100;
+                for (int i = rand.nextInt(3); i > 0; i--) {
+                    int[] aiValues = {0, 1, 0xff, rand.nextInt(256)};
+                    s.setByte(rand.nextInt(32), aiValues[rand.nextInt(aiValues.length)]);
+                }
+
+                CdSector cdSector = s.toCdSector();
+                byte[] abStart = new byte[56];
+                System.arraycopy(s.abRaw, 0, abStart, 0, abStart.length);
+                String sMessage = baseType + " variant " + iVariant + " " + Arrays.toString(abStart);
+                for (SectorType type : SectorType.values()) {
+                    if (typeMatches(type, cdSector)) {
+                        aiMatches[type.ordinal()]++;
+                        assertCandidate(type + " " + sMessage, type, cdSector);
+                    }
+                }
+                assertSameIdentification(sMessage, cdSector);
+            }
+        }
+        // make sure the variants actually exercised every type
+        for (SectorType type : SectorType.values()) {
+            assertTrue(type.toString(), aiMatches[type.ordinal()] > 0);
+        }
+    }
+
+}
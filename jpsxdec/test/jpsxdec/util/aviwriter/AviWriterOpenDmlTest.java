@@ -0,0 +1,273 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.util.aviwriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javax.sound.sampled.AudioFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class AviWriterOpenDmlTest {
+
+    private static final int WIDTH = 16, HEIGHT = 16;
+    /** {@link AviWriterDIB} marks its frames as compressed. */
+    private static final String VIDEO_CHUNK = "00dc";
+    private static final long MAX_RIFF_SIZE = 16384;
+
+    private File _avi;
+
+    public AviWriterOpenDmlTest() {
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        _avi = File.createTempFile("opendml", ".avi");
+    }
+
+    @After
+    public void tearDown() {
+        _avi.delete();
+    }
+
+    private static class ChunkInfo {
+        public final String fcc;
+        public final long pos;
+        public final int size;
+        public ChunkInfo(String fcc, long pos, int size) {
+            this.fcc = fcc;
+            this.pos = pos;
+            this.size = size;
+        }
+    }
+
+    @Test
+    public void smallFileHasNoOpenDml() throws IOException {
+        AviWriterDIB avi = new AviWriterDIB(_avi, WIDTH, HEIGHT, 15, 1);
+        writeFrames(avi, 3, false);
+        avi.close();
+
+        RandomAccessFile raf = new RandomAccessFile(_avi, "r");
+        try {
+            ArrayList<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+            walk(raf, 0, raf.length(), chunks);
+            assertEquals(1, count(chunks, "RIFF"));
+            assertEquals(0, count(chunks, "indx"));
+            assertEquals(0, count(chunks, "ix00"));
+            assertEquals(1, count(chunks, "idx1"));
+            assertEquals(3, count(chunks, VIDEO_CHUNK));
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Test
+    public void largeFileSplitsIntoAvixChunks() throws IOException {
+        AudioFormat fmt = new AudioFormat(18900, 16, 2, true, false);
+        AviWriterDIB avi = new AviWriterDIB(_avi, WIDTH, HEIGHT, 15, 1, fmt);
+        avi.setMaxRiffSize(MAX_RIFF_SIZE);
+        int iFrames = writeFrames(avi, 60, true);
+        avi.close();
+
+        RandomAccessFile raf = new RandomAccessFile(_avi, "r");
+        try {
+            ArrayList<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+            walk(raf, 0, raf.length(), chunks);
+
+            int iRiffs = 0;
+            for (ChunkInfo c : chunks) {
+                if (c.fcc.equals("RIFF")) {
+                    raf.seek(c.pos + 8);
+                    assertEquals(iRiffs == 0 ? "AVI " : "AVIX", readFourCC(raf));
+                    assertTrue(c.size + 8 <= MAX_RIFF_SIZE);
+                    iRiffs++;
+                }
+            }
+            assertTrue(iRiffs > 2);
+            // only the first RIFF has the old index
+            assertEquals(1, count(chunks, "idx1"));
+            assertEquals(iRiffs, count(chunks, "ix00"));
+            assertEquals(iRiffs, count(chunks, "ix01"));
+
+            ChunkInfo dmlh = find(chunks, "dmlh");
+            raf.seek(dmlh.pos + 8);
+            assertEquals(iFrames, readInt(raf));
+
+            ChunkInfo avih = find(chunks, "avih");
+            raf.seek(avih.pos + 8 + 16);
+            int iFirstRiffFrames = readInt(raf);
+            assertEquals(count(chunks.subList(0, chunks.indexOf(find(chunks, "idx1"))), VIDEO_CHUNK) + 1,
+                         iFirstRiffFrames); // + the repeated frame
+
+            // follow the video super index to every frame
+            ChunkInfo indx = find(chunks, "indx");
+            raf.seek(indx.pos + 8);
+            assertEquals(4, readShort(raf));
+            raf.readShort();
+            int iSuperEntries = readInt(raf);
+            assertEquals(iRiffs, iSuperEntries);
+            assertEquals(VIDEO_CHUNK, readFourCC(raf));
+            raf.skipBytes(12);
+            long[] alngIxPos = new long[iSuperEntries];
+            int iDuration = 0;
+            for (int i = 0; i < iSuperEntries; i++) {
+                alngIxPos[i] = readLong(raf);
+                raf.readInt();
+                iDuration += readInt(raf);
+            }
+            assertEquals(iFrames, iDuration);
+
+            int iFrame = 0;
+            for (long lngIxPos : alngIxPos) {
+                raf.seek(lngIxPos);
+                assertEquals("ix00", readFourCC(raf));
+                raf.readInt();
+                assertEquals(2, readShort(raf));
+                raf.readShort();
+                int iEntries = readInt(raf);
+                assertEquals(VIDEO_CHUNK, readFourCC(raf));
+                long lngBase = readLong(raf);
+                raf.readInt();
+                long[] alngData = new long[iEntries];
+                int[] aiSize = new int[iEntries];
+                for (int i = 0; i < iEntries; i++) {
+                    alngData[i] = lngBase + (readInt(raf) & 0xffffffffL);
+                    aiSize[i] = readInt(raf);
+                }
+                for (int i = 0; i < iEntries; i++) {
+                    raf.seek(alngData[i] - 8);
+                    assertEquals(VIDEO_CHUNK, readFourCC(raf));
+                    assertEquals(aiSize[i], readInt(raf));
+                    assertEquals(frameValue(iFrame), raf.read());
+                    iFrame++;
+                }
+            }
+            assertEquals(iFrames, iFrame);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** Frame 5 is repeated. */
+    private static int frameValue(int iFrame) {
+        if (iFrame > 5)
+            iFrame--;
+        return (iFrame * 5) & 0xff;
+    }
+
+    /** @return number of frames written, including 1 repeated frame. */
+    private static int writeFrames(AviWriterDIB avi, int iCount, boolean blnAudio)
+            throws IOException
+    {
+        int[] aiRgb = new int[WIDTH * HEIGHT];
+        byte[] abAudio = new byte[252];
+        int iFrames = 0;
+        for (int i = 0; i < iCount; i++) {
+            int iGrey = frameValue(iFrames);
+            Arrays.fill(aiRgb, (iGrey << 16) | (iGrey << 8) | iGrey);
+            avi.writeFrameRGB(aiRgb, 0, WIDTH);
+            iFrames++;
+            if (blnAudio)
+                avi.writeAudio(abAudio);
+            if (i == 5) {
+                avi.repeatPreviousFrame();
+                iFrames++;
+            }
+        }
+        return iFrames;
+    }
+
+    private static void walk(RandomAccessFile raf, long lngPos, long lngEnd,
+                             ArrayList<ChunkInfo> chunks)
+            throws IOException
+    {
+        while (lngPos + 8 <= lngEnd) {
+            raf.seek(lngPos);
+            String sFcc = readFourCC(raf);
+            int iSize = readInt(raf);
+            chunks.add(new ChunkInfo(sFcc, lngPos, iSize));
+            if (sFcc.equals("RIFF") || sFcc.equals("LIST"))
+                walk(raf, lngPos + 12, lngPos + 8 + iSize, chunks);
+            lngPos += 8 + ((iSize + 1) & ~1);
+        }
+    }
+
+    private static int count(Iterable<ChunkInfo> chunks, String sFcc) {
+        int i = 0;
+        for (ChunkInfo c : chunks) {
+            if (c.fcc.equals(sFcc))
+                i++;
+        }
+        return i;
+    }
+
+    private static ChunkInfo find(Iterable<ChunkInfo> chunks, String sFcc) {
+        for (ChunkInfo c : chunks) {
+            if (c.fcc.equals(sFcc))
+                return c;
+        }
+        fail(sFcc + " not found");
+        return null;
+    }
+
+    private static String readFourCC(RandomAccessFile raf) throws IOException {
+        byte[] ab = new byte[4];
+        raf.readFully(ab);
+        return new String(ab, "US-ASCII");
+    }
+
+    private static int readShort(RandomAccessFile raf) throws IOException {
+        return raf.read() | (raf.read() << 8);
+    }
+
+    private static int readInt(RandomAccessFile raf) throws IOException {
+        return Integer.reverseBytes(raf.readInt());
+    }
+
+    private static long readLong(RandomAccessFile raf) throws IOException {
+        return Long.reverseBytes(raf.readLong());
+    }
+
+}
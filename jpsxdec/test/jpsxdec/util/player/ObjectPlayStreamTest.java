@@ -0,0 +1,134 @@
+/*
+ * jPSXdec: PlayStation 1 Media Decoder/Converter in Java
+ * Copyright (C) 2016-2017  Michael Sabin
+ * All rights reserved.
+ *
+ * Redistribution and use of the jPSXdec code or any derivative works are
+ * permitted provided that the following conditions are met:
+ *
+ *  * Redistributions may not be sold, nor may they be used in commercial
+ *    or revenue-generating business activities.
+ *
+ *  * Redistributions that are modified from the original source must
+ *    include the complete source code, including the source code for all
+ *    components used by a binary built from the modified sources. However, as
+ *    a special exception, the source code distributed need not include
+ *    anything that is normally distributed (in either source or binary form)
+ *    with the major components (compiler, kernel, and so on) of the operating
+ *    system on which the executable runs, unless that component itself
+ *    accompanies the executable.
+ *
+ *  * Redistributions must reproduce the above copyright notice, this list
+ *    of conditions and the following disclaimer in the documentation and/or
+ *    other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+ * IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package jpsxdec.util.player;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class ObjectPlayStreamTest {
+
+    public ObjectPlayStreamTest() {
+    }
+
+    @Test
+    public void handsOffInOrder() throws Exception {
+        final int COUNT = 200000;
+        final ObjectPlayStream<Integer> stream = new ObjectPlayStream<Integer>(4);
+        stream.readerOpen();
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    for (int i = 0; i < COUNT; i++)
+                        assertTrue(stream.write(Integer.valueOf(i)));
+                    stream.writerClose();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        writer.start();
+        Integer o;
+        int iExpected = 0;
+        while ((o = stream.read()) != null) {
+            assertEquals(iExpected, o.intValue());
+            iExpected++;
+        }
+        writer.join();
+        assertEquals(COUNT, iExpected);
+        assertTrue(stream.isReaderClosed());
+    }
+
+    @Test
+    public void readerCloseStopsWriter() throws Exception {
+        final ObjectPlayStream<Integer> stream = new ObjectPlayStream<Integer>(2);
+        stream.readerOpen();
+        assertTrue(stream.write(Integer.valueOf(0)));
+        assertTrue(stream.write(Integer.valueOf(1)));
+        final boolean[] ablnWritten = new boolean[] {true};
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    // full, so waits until the reader closes
+                    ablnWritten[0] = stream.write(Integer.valueOf(2));
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+        stream.readerClose();
+        writer.join();
+        assertFalse(ablnWritten[0]);
+        assertNull(stream.read());
+
+        // reopening empties the queue
+        stream.writerOpen();
+        stream.readerOpen();
+        assertTrue(stream.write(Integer.valueOf(3)));
+        stream.writerClose();
+        assertEquals(3, stream.read().intValue());
+        assertNull(stream.read());
+    }
+
+    @Test
+    public void pausedReaderWaits() throws Exception {
+        final ObjectPlayStream<Integer> stream = new ObjectPlayStream<Integer>(2);
+        assertTrue(stream.isReaderOpenPaused());
+        assertTrue(stream.write(Integer.valueOf(7)));
+        final Integer[] aoRead = new Integer[1];
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    aoRead[0] = stream.read();
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        });
+        reader.start();
+        Thread.sleep(50);
+        assertNull(aoRead[0]);
+        stream.readerOpen();
+        reader.join();
+        assertEquals(7, aoRead[0].intValue());
+    }
+
+}